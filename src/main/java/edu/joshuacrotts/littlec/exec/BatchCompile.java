@@ -0,0 +1,307 @@
+package edu.joshuacrotts.littlec.exec;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import edu.joshuacrotts.littlec.main.CompilationContext;
+import edu.joshuacrotts.littlec.main.CompilerPipeline;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.Phase;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.PhaseTimer;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.Unit;
+import edu.joshuacrotts.littlec.main.LCErrorListener;
+
+/**
+ * Compiles every .lc file under a directory, one file per task on a
+ * work-stealing pool with a thread per core. Each file gets its own
+ * CompilationContext, so the compilations can't see each other. The output of
+ * "-pa" goes to a .s file next to the source and the output of "-pi" to a .ic
+ * file. A summary with the time each phase took per file, and any failures,
+ * is printed at the end in the order the files were found.
+ *
+ * @author Joshua Crotts
+ */
+public class BatchCompile {
+
+  /**
+   * What became of compiling one file.
+   */
+  private static class Result {
+
+    /** Source file. */
+    private final Path SOURCE;
+
+    /** Nanoseconds spent lexing, parsing and building the syntax tree. */
+    private long parseTime;
+
+    /** Nanoseconds spent generating and optimizing the intermediate code. */
+    private long icodeTime;
+
+    /** Nanoseconds spent generating and writing the output. */
+    private long outputTime;
+
+    /** Why the file failed, or null if it compiled. */
+    private String failure;
+
+    /** Did the compiler itself fail, rather than the file having errors? */
+    private boolean isInternalError;
+
+    private Result(Path source) {
+      this.SOURCE = source;
+    }
+  }
+
+  /** Exit status when every file compiled. */
+  public static final int EXIT_OK = 0;
+
+  /** Exit status when at least one file failed to compile. */
+  public static final int EXIT_FAILED = 1;
+
+  /** Exit status when the arguments or the directory were unusable. */
+  public static final int EXIT_USAGE = 2;
+
+  /**
+   * Exit status when the compiler itself failed on at least one file. Like
+   * EXIT_USAGE, it means the batch couldn't do what it was asked, so the two
+   * share a value.
+   */
+  public static final int EXIT_INTERNAL_ERROR = 2;
+
+  /**
+   * Command line interface -- the directory to compile and either "-pa" or
+   * "-pi", in either order. Exits with the status run returns.
+   *
+   * @param argv command line arguments
+   */
+  public static void main(String[] argv) {
+    System.exit(run(argv, new CompilationContext()));
+  }
+
+  /**
+   * Compiles the directory named in the arguments, printing the summary and
+   * any errors on the given compilation's streams. Every file still gets its
+   * own context; this one only supplies the streams and the number of
+   * functions each file generates at once.
+   *
+   * @param argv    command line arguments
+   * @param context compilation whose streams to print to
+   *
+   * @return EXIT_OK if every file compiled, EXIT_INTERNAL_ERROR if the
+   *         compiler failed on any, EXIT_FAILED if any had errors, or
+   *         EXIT_USAGE if nothing could be compiled.
+   */
+  public static int run(String[] argv, CompilationContext context) {
+    String dir = null;
+    boolean isAsm = true;
+    for (String arg : argv) {
+      if (arg.equals("-pa") || arg.equals("-pi")) {
+        isAsm = arg.equals("-pa");
+      } else if (dir == null) {
+        dir = arg;
+      } else {
+        dir = null;
+        break;
+      }
+    }
+
+    if (dir == null) {
+      context.getErr().println("Batch mode needs exactly one directory to compile");
+      return EXIT_USAGE;
+    }
+
+    List<Path> sources;
+    try (Stream<Path> files = Files.walk(Paths.get(dir))) {
+      sources = files.filter(p -> p.toString().endsWith(".lc") && Files.isRegularFile(p)).sorted()
+          .collect(Collectors.toList());
+    } catch (IOException | UncheckedIOException e) {
+      context.getErr().println("Could not read directory " + dir);
+      return EXIT_USAGE;
+    }
+
+    long start = System.nanoTime();
+    List<Result> results = compileAll(sources, isAsm, context.getParallelism());
+    if (printSummary(context.getOut(), results, System.nanoTime() - start) == 0) {
+      return EXIT_OK;
+    }
+    return results.stream().anyMatch(r -> r.isInternalError) ? EXIT_INTERNAL_ERROR : EXIT_FAILED;
+  }
+
+  /**
+   * Compiles every source file on a work-stealing pool. A file that takes its
+   * worker down with it is recorded as an internal error like any other, and
+   * the rest still get compiled.
+   *
+   * @param sources     - files to compile.
+   * @param isAsm       - write assembly if true, intermediate code otherwise.
+   * @param parallelism - number of functions each file generates at once.
+   *
+   * @return one result per file, in the same order as sources.
+   */
+  private static List<Result> compileAll(List<Path> sources, boolean isAsm, int parallelism) {
+    ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    try {
+      List<Future<Result>> futures = new ArrayList<>();
+      for (Path source : sources) {
+        futures.add(pool.submit(() -> compile(source, isAsm, parallelism)));
+      }
+
+      List<Result> results = new ArrayList<>();
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          results.add(futures.get(i).get());
+        } catch (ExecutionException e) {
+          Result result = new Result(sources.get(i));
+          fail(result, "internal compiler error: " + e.getCause(), true, getOutputPath(sources.get(i), isAsm));
+          results.add(result);
+        }
+      }
+      return results;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Batch compile was interrupted", e);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Compiles one file in a fresh context and writes its output next to it.
+   * Anything that goes wrong is recorded in the result rather than thrown,
+   * including running out of stack on deeply nested input. A file that fails
+   * is left without an output file, so neither a partly written one nor one
+   * from an earlier run passes for its output.
+   *
+   * @param source      - file to compile.
+   * @param isAsm       - write assembly if true, intermediate code otherwise.
+   * @param parallelism - number of functions generated at once.
+   *
+   * @return the result.
+   */
+  private static Result compile(Path source, boolean isAsm, int parallelism) {
+    Result result = new Result(source);
+    Path target = getOutputPath(source, isAsm);
+    CompilationContext context = new CompilationContext();
+    context.setParallelism(parallelism);
+    PhaseTimer timer = new PhaseTimer();
+    CompilerPipeline pipeline = new CompilerPipeline(context).addHook(timer).setReportingErrors(false);
+    CompilationContext.Binding binding = context.bind();
+    try {
+      Unit unit = pipeline.runFile(source.toString(), isAsm ? Phase.BACKEND : Phase.OPTIMIZE);
+      result.parseTime = timer.getTime(Phase.LEX, Phase.PARSE, Phase.SEMANTIC);
+      result.icodeTime = timer.getTime(Phase.ICODE, Phase.OPTIMIZE);
+      if (unit == null) {
+        fail(result, "could not be read", false, target);
+      } else if (LCErrorListener.sawError()) {
+        fail(result, LCErrorListener.getErrorReport().trim(), false, target);
+      } else {
+        long start = System.nanoTime();
+        try (Writer out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+          if (isAsm) {
+            unit.getMIPSGen().writeTo(out);
+          } else {
+            out.write(unit.getICode().toString());
+          }
+        }
+        result.outputTime = timer.getTime(Phase.BACKEND) + System.nanoTime() - start;
+      }
+    } catch (IOException | UncheckedIOException e) {
+      fail(result, "could not write output: " + e.getMessage(), false, target);
+    } catch (RuntimeException | StackOverflowError e) {
+      fail(result, "internal compiler error: " + e, true, target);
+    } finally {
+      binding.unbind();
+    }
+    return result;
+  }
+
+  /**
+   * Records why a file failed and deletes its output file, if there is one.
+   *
+   * @param result          - result of the file.
+   * @param failure         - why it failed.
+   * @param isInternalError - true if the compiler failed rather than the file.
+   * @param target          - output file of the file.
+   *
+   * @return void.
+   */
+  private static void fail(Result result, String failure, boolean isInternalError, Path target) {
+    result.failure = failure;
+    result.isInternalError = isInternalError;
+    try {
+      Files.deleteIfExists(target);
+    } catch (IOException e) {
+      result.failure += " (and " + target + " could not be deleted)";
+    }
+  }
+
+  /**
+   * Swaps a source file's .lc extension for the extension of its output.
+   *
+   * @param source - source file.
+   * @param isAsm  - true for a .s file, false for a .ic file.
+   *
+   * @return path of the output file.
+   */
+  private static Path getOutputPath(Path source, boolean isAsm) {
+    String name = source.getFileName().toString();
+    return source.resolveSibling(name.substring(0, name.length() - ".lc".length()) + (isAsm ? ".s" : ".ic"));
+  }
+
+  /**
+   * Prints the phase times of every file, the failures, and the totals.
+   *
+   * @param out      - stream to print to.
+   * @param results  - results in source order.
+   * @param wallTime - nanoseconds the whole batch took.
+   *
+   * @return the number of files that failed.
+   */
+  private static int printSummary(PrintStream out, List<Result> results, long wallTime) {
+    long parseTotal = 0, icodeTotal = 0, outputTotal = 0;
+    int failures = 0;
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%10s %10s %10s  %s%n", "parse ms", "icode ms", "output ms", "file"));
+    for (Result r : results) {
+      sb.append(String.format("%10.2f %10.2f %10.2f  %s%s%n", toMillis(r.parseTime), toMillis(r.icodeTime),
+          toMillis(r.outputTime), r.SOURCE, r.failure == null ? "" : "  FAILED"));
+      parseTotal += r.parseTime;
+      icodeTotal += r.icodeTime;
+      outputTotal += r.outputTime;
+      if (r.failure != null) {
+        failures++;
+      }
+    }
+    sb.append(String.format("%10.2f %10.2f %10.2f  total%n", toMillis(parseTotal), toMillis(icodeTotal),
+        toMillis(outputTotal)));
+
+    if (failures > 0) {
+      sb.append(String.format("%nFailures:%n"));
+      for (Result r : results) {
+        if (r.failure != null) {
+          sb.append(r.SOURCE).append(": ").append(r.failure).append(System.lineSeparator());
+        }
+      }
+    }
+
+    sb.append(String.format("%n%d files, %d failed, %.2f ms wall time on %d threads%n", results.size(), failures,
+        toMillis(wallTime), Runtime.getRuntime().availableProcessors()));
+    out.print(sb);
+    return failures;
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1e6;
+  }
+}
@@ -0,0 +1,621 @@
+package edu.joshuacrotts.littlec.exec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import edu.joshuacrotts.littlec.main.CompilationContext;
+
+/**
+ * Keeps the compiler loaded in one JVM and runs Launcher modes for clients
+ * that connect over a localhost socket. A fresh "littlec" process spends most
+ * of its time loading classes, deserializing the ANTLR ATN and running the
+ * compiler in the bytecode interpreter. The daemon pays for that once, so after
+ * a few requests everything runs JIT-compiled and the parser's DFA cache is
+ * already filled in.
+ *
+ * Every request runs on its own thread with its own CompilationContext, whose
+ * standard streams are the client's socket. The optimization flags are still
+ * settings for the whole JVM, so requests only run at the same time as other
+ * requests with the same flags.
+ *
+ * Anyone on the machine can connect to a loopback port, so every request has
+ * to start with the daemon's token: a random string that the daemon writes to
+ * a file only its owner can read, and that changes every time it starts. A
+ * request without it is turned away before anything else is read, "-stop"
+ * included. The daemon never opens a path a client names either; the input
+ * file comes over the socket, and every other argument has to be a setting.
+ *
+ * A request is the token, then the argument list of a Launcher command, then
+ * the contents of the input file if there is one, then stdin in chunks. The
+ * daemon answers the token with READY, or with an error and DONE. The reply
+ * to the rest is chunks of stdout and stderr, then how long the request took.
+ * DaemonClient speaks the other end.
+ *
+ * @author Joshua Crotts
+ */
+public class CompileDaemon implements AutoCloseable {
+
+  /** Port the daemon listens on if none is given. */
+  public static final int DEFAULT_PORT = 7575;
+
+  /** Reply chunk tags. */
+  static final byte STDOUT = 1, STDERR = 2, DONE = 3, READY = 4;
+
+  /** Directory the token files go in if no other is given. */
+  public static final Path DEFAULT_TOKEN_DIR = Paths.get(System.getProperty("user.home"), ".littlec");
+
+  /** Random bytes in a token. */
+  private static final int TOKEN_BYTES = 32;
+
+  /** Mode that asks the daemon to shut down. */
+  static final String STOP = "-stop";
+
+  private final ServerSocket SERVER;
+
+  private final ExecutorService WORKERS;
+
+  private final SettingsGate GATE;
+
+  /** Number of requests accepted so far, used to tag the log. */
+  private final AtomicInteger REQUEST_COUNT;
+
+  /** Where each request's latency is logged. */
+  private final PrintStream LOG;
+
+  /** Token every request has to start with. */
+  private final byte[] TOKEN;
+
+  /** File the token is written to. */
+  private final Path TOKEN_FILE;
+
+  /**
+   * Starts listening on the loopback interface, with the token file in the
+   * default directory. Requests aren't accepted until serve() is called.
+   *
+   * @param port - port to listen on, or 0 for any free port.
+   * @param log  - stream to log each request to.
+   *
+   * @throws IOException if the port can't be bound or the token can't be
+   *                     written.
+   */
+  public CompileDaemon(int port, PrintStream log) throws IOException {
+    this(port, log, DEFAULT_TOKEN_DIR);
+  }
+
+  /**
+   * Starts listening on the loopback interface. Requests aren't accepted until
+   * serve() is called.
+   *
+   * @param port     - port to listen on, or 0 for any free port.
+   * @param log      - stream to log each request to.
+   * @param tokenDir - directory to write the token file to. It's created if
+   *                 need be, and made private to its owner.
+   *
+   * @throws IOException if the port can't be bound or the token can't be
+   *                     written.
+   */
+  public CompileDaemon(int port, PrintStream log, Path tokenDir) throws IOException {
+    this.SERVER = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    this.WORKERS = Executors.newCachedThreadPool();
+    this.GATE = new SettingsGate();
+    this.REQUEST_COUNT = new AtomicInteger();
+    this.LOG = log;
+    this.TOKEN = newToken();
+    this.TOKEN_FILE = getTokenFile(tokenDir, this.getPort());
+    try {
+      writeToken(this.TOKEN_FILE, this.TOKEN);
+    } catch (IOException e) {
+      this.SERVER.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @param tokenDir - directory the daemon writes its token file to.
+   * @param port     - port the daemon listens on.
+   *
+   * @return the token file of the daemon on that port.
+   */
+  public static Path getTokenFile(Path tokenDir, int port) {
+    return tokenDir.resolve("daemon-" + port + ".token");
+  }
+
+  /**
+   * @return a new token: random bytes spelled out in hex.
+   */
+  private static byte[] newToken() {
+    byte[] random = new byte[TOKEN_BYTES];
+    new SecureRandom().nextBytes(random);
+    StringBuilder sb = new StringBuilder();
+    for (byte b : random) {
+      sb.append(String.format("%02x", b));
+    }
+    return sb.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Writes the token to a new file that only the owner can read, in a
+   * directory that only the owner can open. A file left behind by an earlier
+   * daemon on the same port is replaced.
+   *
+   * @param file  - token file.
+   * @param token - token.
+   *
+   * @throws IOException if the file can't be written.
+   *
+   * @return void.
+   */
+  private static void writeToken(Path file, byte[] token) throws IOException {
+    Path dir = file.toAbsolutePath().getParent();
+    if (!dir.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      // Elsewhere the user's home directory is private already.
+      Files.createDirectories(dir);
+      Files.deleteIfExists(file);
+      Files.write(file, token);
+      return;
+    }
+
+    Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rwx------");
+    if (!Files.isDirectory(dir)) {
+      Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(ownerOnly));
+    }
+    Files.setPosixFilePermissions(dir, ownerOnly);
+
+    Files.deleteIfExists(file);
+    Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    Files.write(file, token);
+  }
+
+  /**
+   * Command line interface -- an optional "-port=N".
+   *
+   * @param argv command line arguments
+   */
+  public static void main(String[] argv) {
+    int port = DEFAULT_PORT;
+    for (String arg : argv) {
+      if (arg.matches("-port=\\d+")) {
+        port = Integer.parseInt(arg.substring(arg.indexOf('=') + 1));
+      } else {
+        System.err.println("Unknown daemon argument " + arg);
+        return;
+      }
+    }
+
+    PrintStream log = System.out;
+    try (CompileDaemon daemon = new CompileDaemon(port, log)) {
+      log.println("littlec daemon listening on " + daemon.getAddress() + ":" + daemon.getPort() + ", token in "
+          + daemon.TOKEN_FILE);
+      daemon.serve();
+    } catch (IOException e) {
+      System.err.println("Could not start the daemon on port " + port + ": " + e.getMessage());
+    }
+  }
+
+  public int getPort() {
+    return this.SERVER.getLocalPort();
+  }
+
+  public String getAddress() {
+    return this.SERVER.getInetAddress().getHostAddress();
+  }
+
+  /**
+   * Accepts connections until a client sends "-stop" or the daemon is closed.
+   *
+   * @param void.
+   *
+   * @return void.
+   */
+  public void serve() {
+    while (!this.SERVER.isClosed()) {
+      try {
+        Socket client = this.SERVER.accept();
+        this.WORKERS.execute(() -> this.handle(client));
+      } catch (IOException e) {
+        if (!this.SERVER.isClosed()) {
+          this.LOG.println("littlec daemon: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Stops accepting requests, which makes serve() return.
+   *
+   * @param void.
+   *
+   * @return void.
+   */
+  public void stopAccepting() {
+    try {
+      this.SERVER.close();
+    } catch (IOException e) {
+      // Nothing left to do with it.
+    }
+  }
+
+  /**
+   * Stops accepting requests, deletes the token file and lets the running
+   * requests finish.
+   *
+   * @param void.
+   *
+   * @return void.
+   */
+  @Override
+  public void close() {
+    this.stopAccepting();
+    try {
+      Files.deleteIfExists(this.TOKEN_FILE);
+    } catch (IOException e) {
+      this.LOG.println("littlec daemon: could not delete " + this.TOKEN_FILE);
+    }
+    this.WORKERS.shutdown();
+    try {
+      this.WORKERS.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Reads one request off the socket, runs it and sends back its output.
+   *
+   * @param client - connected socket.
+   *
+   * @return void.
+   */
+  private void handle(Socket client) {
+    int id = this.REQUEST_COUNT.incrementAndGet();
+    Path tempDir = null;
+    try (Socket socket = client) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+      // Nothing else is read from a client that doesn't know the token.
+      byte[] token = in.readUTF().getBytes(StandardCharsets.US_ASCII);
+      if (!MessageDigest.isEqual(token, this.TOKEN)) {
+        this.LOG.println("[" + id + "] rejected a request without the daemon's token");
+        sendError(out, "littlec daemon: the request didn't carry the daemon's token");
+        sendDone(out, 0);
+        return;
+      }
+      synchronized (out) {
+        out.writeByte(READY);
+        out.flush();
+      }
+
+      // Arguments, then which one names the input file and what's in it.
+      String[] args = new String[in.readInt()];
+      for (int i = 0; i < args.length; i++) {
+        args[i] = in.readUTF();
+      }
+
+      String command = String.join(" ", args);
+      int fileIndex = in.readInt();
+      if (fileIndex >= args.length) {
+        throw new IOException("the input file index is out of range");
+      } else if (fileIndex >= 0) {
+        byte[] contents = new byte[in.readInt()];
+        in.readFully(contents);
+        tempDir = Files.createTempDirectory("littlec");
+        Path file = tempDir.resolve(getInputName(args[fileIndex]));
+        Files.write(file, contents);
+        args[fileIndex] = file.toString();
+      }
+
+      String rejected = getRejectedArgument(args, fileIndex);
+      if (rejected != null) {
+        this.LOG.println("[" + id + "] rejected " + command);
+        sendError(out, "littlec daemon: " + rejected + " isn't a setting; the daemon only compiles source sent by "
+            + "the client\n");
+        sendDone(out, 0);
+        return;
+      }
+
+      if (args.length > 0 && args[0].equals(STOP)) {
+        this.LOG.println("[" + id + "] stopping");
+        this.stopAccepting();
+        sendDone(out, 0);
+        return;
+      }
+
+      long start = System.nanoTime();
+      this.run(args, in, out);
+      long elapsed = System.nanoTime() - start;
+      sendDone(out, elapsed);
+
+      this.LOG.println(String.format("[%d] %s: %.2f ms", id, command, elapsed / 1e6));
+    } catch (IOException e) {
+      this.LOG.println("[" + id + "] lost the client: " + e.getMessage());
+    } finally {
+      if (tempDir != null) {
+        deleteTempDir(tempDir);
+      }
+    }
+  }
+
+  /**
+   * Runs a Launcher command in a context of its own, with its standard streams
+   * pointed at the client.
+   *
+   * @param args - Launcher arguments.
+   * @param in   - socket input, positioned at the first stdin chunk.
+   * @param out  - socket output.
+   *
+   * @throws IOException if the output can't be sent.
+   *
+   * @return void.
+   */
+  private void run(String[] args, DataInputStream in, DataOutputStream out) throws IOException {
+    PrintStream stdout = new PrintStream(new BufferedOutputStream(new ChunkOutputStream(out, STDOUT)));
+    PrintStream stderr = new PrintStream(new ChunkOutputStream(out, STDERR));
+    CompilationContext context = new CompilationContext();
+    context.setStreams(new ChunkInputStream(in), stdout, stderr);
+
+    this.GATE.enter(getSettings(args));
+    try {
+      if (args.length == 0 || args[0].equals("-daemon") || args[0].equals("-client") || args[0].equals("-batch")) {
+        stderr.println("The daemon can't run " + (args.length == 0 ? "an empty command" : args[0]));
+      } else {
+        Launcher.run(args, context);
+      }
+    } catch (RuntimeException | StackOverflowError e) {
+      stderr.println("internal compiler error: " + e);
+    } finally {
+      this.GATE.exit();
+    }
+
+    // PrintStream keeps write errors to itself, so ask it whether the client
+    // went away.
+    if (stdout.checkError() | stderr.checkError()) {
+      throw new IOException("could not send the output");
+    }
+  }
+
+  /**
+   * @param args - Launcher arguments.
+   *
+   * @return the flags among args that change a setting for the whole run.
+   */
+  private static String getSettings(String[] args) {
+    StringBuilder sb = new StringBuilder();
+    for (String arg : args) {
+      if (Launcher.isRunWideSetting(arg)) {
+        sb.append(arg).append(' ');
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @param args      - Launcher arguments.
+   * @param fileIndex - position of the input file the client sent, or -1.
+   *
+   * @return the first argument after the mode that is neither a setting nor
+   *         the input file, or null if there isn't one. Launcher would take it
+   *         as a file name, and the daemon doesn't open files for clients.
+   */
+  private static String getRejectedArgument(String[] args, int fileIndex) {
+    for (int i = 1; i < args.length; i++) {
+      if (i != fileIndex && !Launcher.isSetting(args[i])) {
+        return args[i];
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * @param clientName - name the client gave its input file.
+   *
+   * @return the file name to save the input as in the request's own
+   *         directory.
+   */
+  private static String getInputName(String clientName) {
+    Path name = Paths.get(clientName).getFileName();
+    if (name == null || name.toString().equals("..") || name.toString().equals(".")) {
+      return "input.lc";
+    }
+    return name.toString();
+  }
+
+  private static void sendError(DataOutputStream out, String message) throws IOException {
+    byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+    synchronized (out) {
+      out.writeByte(STDERR);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static void sendDone(DataOutputStream out, long elapsed) throws IOException {
+    synchronized (out) {
+      out.writeByte(DONE);
+      out.writeLong(elapsed);
+      out.flush();
+    }
+  }
+
+  private void deleteTempDir(Path dir) {
+    try (Stream<Path> files = Files.list(dir)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.deleteIfExists(file);
+      }
+      Files.deleteIfExists(dir);
+    } catch (IOException e) {
+      this.LOG.println("littlec daemon: could not delete " + dir);
+    }
+  }
+
+  /**
+   * Lets requests with the same settings run together. The first request of a
+   * group resets the settings, and Launcher then applies the request's flags;
+   * every other request in the group would apply the same values. A request
+   * with different settings waits until the group has drained.
+   */
+  private static final class SettingsGate {
+
+    /** Settings of the requests running now. */
+    private String current = null;
+
+    /** Number of requests running now. */
+    private int active = 0;
+
+    private synchronized void enter(String settings) {
+      while (this.active > 0 && !settings.equals(this.current)) {
+        try {
+          this.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted waiting to run a request", e);
+        }
+      }
+
+      if (this.active == 0) {
+        this.current = settings;
+        Launcher.resetSettings();
+      }
+      this.active++;
+    }
+
+    private synchronized void exit() {
+      if (--this.active == 0) {
+        this.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Writes to the socket as chunks with a tag saying which stream they're for.
+   * Both of a request's streams share the socket, so writes lock it.
+   */
+  private static final class ChunkOutputStream extends OutputStream {
+
+    private final DataOutputStream OUT;
+
+    private final byte TAG;
+
+    private ChunkOutputStream(DataOutputStream out, byte tag) {
+      this.OUT = out;
+      this.TAG = tag;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      this.write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return;
+      }
+
+      synchronized (this.OUT) {
+        this.OUT.writeByte(this.TAG);
+        this.OUT.writeInt(len);
+        this.OUT.write(b, off, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      synchronized (this.OUT) {
+        this.OUT.flush();
+      }
+    }
+  }
+
+  /**
+   * Reads the client's stdin off the socket. It arrives as length-prefixed
+   * chunks, and a chunk of length zero marks the end.
+   */
+  static final class ChunkInputStream extends InputStream {
+
+    private final DataInputStream IN;
+
+    /** Bytes left in the current chunk. */
+    private int remaining = 0;
+
+    private boolean atEnd = false;
+
+    ChunkInputStream(DataInputStream in) {
+      this.IN = in;
+    }
+
+    /**
+     * Moves on to the next chunk if the current one is used up.
+     *
+     * @return false if there's nothing left to read.
+     */
+    private boolean fill() throws IOException {
+      while (this.remaining == 0 && !this.atEnd) {
+        try {
+          this.remaining = this.IN.readInt();
+        } catch (EOFException e) {
+          this.remaining = 0;
+        }
+        this.atEnd = this.remaining <= 0;
+      }
+      return !this.atEnd;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!this.fill()) {
+        return -1;
+      }
+      this.remaining--;
+      return this.IN.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      } else if (!this.fill()) {
+        return -1;
+      }
+
+      int n = this.IN.read(b, off, Math.min(len, this.remaining));
+      if (n < 0) {
+        this.atEnd = true;
+        this.remaining = 0;
+        return -1;
+      }
+      this.remaining -= n;
+      return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return this.atEnd ? 0 : Math.min(this.remaining, this.IN.available());
+    }
+  }
+}
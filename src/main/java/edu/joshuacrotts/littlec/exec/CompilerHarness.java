@@ -0,0 +1,100 @@
+package edu.joshuacrotts.littlec.exec;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import edu.joshuacrotts.littlec.main.CompilationContext;
+
+/**
+ * Runs one of the Launcher modes on a file with its own standard streams and
+ * its own compiler state, so any number of runs can go at once in the same JVM.
+ * The optimization level is given per run instead of through the run-wide
+ * setting. This is what the testers use to run the whole tests directory in
+ * parallel.
+ *
+ * @author Joshua Crotts
+ */
+public final class CompilerHarness {
+
+  /**
+   * What to do with the input file. Each one is the Launcher mode of the same
+   * name.
+   */
+  public enum Mode {
+    LEX, PARSE, SYNTAX_TREE, ICODE, ASM, RUN_ICODE, RUN_MIPS
+  }
+
+  private CompilerHarness() {
+  }
+
+  /**
+   * Runs a mode on a file at the default optimization level.
+   *
+   * @param mode     - what to do with the file.
+   * @param fileName - LittleC source file.
+   * @param in       - standard input of the run.
+   * @param out      - standard output of the run.
+   * @param err      - standard error of the run; may be the same stream as out.
+   *
+   * @return true if the compiler reported any errors.
+   */
+  public static boolean run(Mode mode, String fileName, InputStream in, OutputStream out, OutputStream err) {
+    return run(mode, fileName, -1, in, out, err);
+  }
+
+  /**
+   * Runs a mode on a file. Nothing the run does is visible to any other run,
+   * whichever threads they're on, except through the run-wide settings other
+   * than the optimization level.
+   *
+   * @param mode              - what to do with the file.
+   * @param fileName          - LittleC source file.
+   * @param optimizationLevel - level to optimize at, or -1 for the run-wide
+   *                          level.
+   * @param in                - standard input of the run.
+   * @param out               - standard output of the run.
+   * @param err               - standard error of the run; may be the same
+   *                          stream as out.
+   *
+   * @return true if the compiler reported any errors.
+   */
+  public static boolean run(Mode mode, String fileName, int optimizationLevel, InputStream in, OutputStream out,
+      OutputStream err) {
+    PrintStream printOut = new PrintStream(out);
+    PrintStream printErr = err == out ? printOut : new PrintStream(err);
+    CompilationContext context = new CompilationContext();
+    context.setOptimizationLevel(optimizationLevel);
+    context.setStreams(in, printOut, printErr);
+
+    String[] args = { fileName };
+    switch (mode) {
+      case LEX:
+        LexerTest.run(args, context);
+        break;
+      case PARSE:
+        ParserTest.run(args, context);
+        break;
+      case SYNTAX_TREE:
+        OutputSTree.run(args, context);
+        break;
+      case ICODE:
+        OutputICode.run(args, context);
+        break;
+      case ASM:
+        OutputAsm.run(args, context);
+        break;
+      case RUN_ICODE:
+        RunCode.run(args, context);
+        break;
+      case RUN_MIPS:
+        RunMIPS.run(args, context);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown mode " + mode);
+    }
+    printOut.flush();
+    printErr.flush();
+    return context.getErrorListener().hasError();
+  }
+}
@@ -0,0 +1,198 @@
+package edu.joshuacrotts.littlec.exec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thin client for CompileDaemon. It proves it may use the daemon with the token
+ * from the daemon's token file, forwards a Launcher command line, the input
+ * file it names and its own stdin, and copies what comes back to its stdout
+ * and stderr. Run as
+ *
+ * littlec -client [-port=N] [-time] mode flags [optinfile]
+ *
+ * where -time prints how long the daemon spent on the request to stderr.
+ *
+ * @author Joshua Crotts
+ */
+public class DaemonClient {
+
+  /**
+   * Command line interface -- client flags, then the command for the daemon.
+   *
+   * @param argv command line arguments
+   */
+  public static void main(String[] argv) {
+    int port = CompileDaemon.DEFAULT_PORT;
+    boolean printTime = false;
+    List<String> command = new ArrayList<>();
+    for (String arg : argv) {
+      if (command.isEmpty() && arg.matches("-port=\\d+")) {
+        port = Integer.parseInt(arg.substring(arg.indexOf('=') + 1));
+      } else if (command.isEmpty() && arg.equals("-time")) {
+        printTime = true;
+      } else {
+        command.add(arg);
+      }
+    }
+
+    try {
+      long elapsed = send(port, command.toArray(new String[0]), System.in, System.out, System.err);
+      if (printTime) {
+        System.err.println(String.format("littlec: %.2f ms in the daemon", elapsed / 1e6));
+      }
+    } catch (IOException e) {
+      System.err.println("Could not reach the littlec daemon on port " + port + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Runs a command on the daemon, with the token from the default directory.
+   *
+   * @param port  - port the daemon listens on.
+   * @param args  - Launcher command line.
+   * @param stdin - standard input of the command.
+   * @param out   - where the command's stdout goes.
+   * @param err   - where the command's stderr goes.
+   *
+   * @throws IOException if the daemon can't be reached or hangs up early.
+   *
+   * @return nanoseconds the daemon spent running the command.
+   */
+  public static long send(int port, String[] args, InputStream stdin, OutputStream out, OutputStream err)
+      throws IOException {
+    return send(CompileDaemon.DEFAULT_TOKEN_DIR, port, args, stdin, out, err);
+  }
+
+  /**
+   * Runs a command on the daemon. The last argument that names an existing
+   * file is taken to be the input file and its contents are sent along.
+   *
+   * @param tokenDir - directory the daemon wrote its token file to.
+   * @param port     - port the daemon listens on.
+   * @param args     - Launcher command line.
+   * @param stdin    - standard input of the command.
+   * @param out      - where the command's stdout goes.
+   * @param err      - where the command's stderr goes.
+   *
+   * @throws IOException if the daemon can't be reached or hangs up early.
+   *
+   * @return nanoseconds the daemon spent running the command.
+   */
+  public static long send(Path tokenDir, int port, String[] args, InputStream stdin, OutputStream out,
+      OutputStream err) throws IOException {
+    String token;
+    try {
+      token = new String(Files.readAllBytes(CompileDaemon.getTokenFile(tokenDir, port)), StandardCharsets.US_ASCII);
+    } catch (NoSuchFileException e) {
+      throw new IOException("no token in " + tokenDir + "; is the daemon running?");
+    }
+
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      DataOutputStream toDaemon = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      DataInputStream fromDaemon = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+      // The rest of the request waits until the daemon has accepted the token.
+      toDaemon.writeUTF(token.trim());
+      toDaemon.flush();
+      if (fromDaemon.readByte() != CompileDaemon.READY) {
+        return copyReply(CompileDaemon.STDERR, fromDaemon, out, err);
+      }
+
+      toDaemon.writeInt(args.length);
+      for (String arg : args) {
+        toDaemon.writeUTF(arg);
+      }
+
+      int fileIndex = -1;
+      for (int i = args.length - 1; i >= 0 && fileIndex < 0; i--) {
+        if (!args[i].startsWith("-") && Files.isRegularFile(Paths.get(args[i]))) {
+          fileIndex = i;
+        }
+      }
+
+      toDaemon.writeInt(fileIndex);
+      if (fileIndex >= 0) {
+        byte[] contents = Files.readAllBytes(Paths.get(args[fileIndex]));
+        toDaemon.writeInt(contents.length);
+        toDaemon.write(contents);
+      }
+      toDaemon.flush();
+
+      // Stdin is forwarded as it arrives so interactive programs still work.
+      Thread pump = new Thread(() -> pumpStdin(stdin, toDaemon), "littlec-stdin");
+      pump.setDaemon(true);
+      pump.start();
+
+      return copyReply(fromDaemon.readByte(), fromDaemon, out, err);
+    }
+  }
+
+  /**
+   * Copies reply chunks to stdout and stderr until the daemon is done.
+   *
+   * @param tag        - tag of the first chunk, already read.
+   * @param fromDaemon - socket input.
+   * @param out        - where stdout chunks go.
+   * @param err        - where stderr chunks go.
+   *
+   * @throws IOException if the daemon hangs up early.
+   *
+   * @return nanoseconds the daemon spent running the command.
+   */
+  private static long copyReply(byte tag, DataInputStream fromDaemon, OutputStream out, OutputStream err)
+      throws IOException {
+    while (tag != CompileDaemon.DONE) {
+      byte[] chunk = new byte[fromDaemon.readInt()];
+      fromDaemon.readFully(chunk);
+      OutputStream target = tag == CompileDaemon.STDERR ? err : out;
+      target.write(chunk);
+      target.flush();
+      tag = fromDaemon.readByte();
+    }
+
+    long elapsed = fromDaemon.readLong();
+    out.flush();
+    err.flush();
+    return elapsed;
+  }
+
+  /**
+   * Copies stdin to the daemon in chunks, then an empty chunk to mark the end.
+   * Stops quietly once the daemon hangs up.
+   *
+   * @param stdin    - standard input.
+   * @param toDaemon - socket output.
+   *
+   * @return void.
+   */
+  private static void pumpStdin(InputStream stdin, DataOutputStream toDaemon) {
+    byte[] buffer = new byte[8192];
+    try {
+      int n;
+      while ((n = stdin.read(buffer)) > 0) {
+        toDaemon.writeInt(n);
+        toDaemon.write(buffer, 0, n);
+        toDaemon.flush();
+      }
+      toDaemon.writeInt(0);
+      toDaemon.flush();
+    } catch (IOException e) {
+      // The request is over.
+    }
+  }
+}
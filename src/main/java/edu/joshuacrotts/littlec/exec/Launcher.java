@@ -1,5 +1,15 @@
 package edu.joshuacrotts.littlec.exec;
 
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.joshuacrotts.littlec.icode.ICOptimizer;
+import edu.joshuacrotts.littlec.main.CompilationContext;
+import edu.joshuacrotts.littlec.mipsgen.GraphColoringAllocator;
+import edu.joshuacrotts.littlec.mipsgen.MIPSFunction;
+
 /**
  * Launcher for different functionality of the compiler.
  *
@@ -9,24 +19,43 @@ package edu.joshuacrotts.littlec.exec;
  */
 public class Launcher {
   
-  public static void usage() {
-    System.out.print("LittleC Compiler\n");
-    System.out.print("Run as follows (input is from stdin unless a filename is given):\n\n");
-    System.out.print("   littlec mode flags [optinfile]\n\n");
-    System.out.print("where [optinfile] is a .lc file or standard input (leave blank)\n\n");
-    System.out.print("where \"flags\" is zero or more of the following:\n");
-    System.out.print("   -o enables optimizations (in progress)\n");
-    System.out.print("   -w enables warnings (displayed even if none exist) (in progress)\n");
-    System.out.print("   -e enables errors (displayed even if none exist) (in progress)\n");
-    System.out.print("   -d enables comments in assembly code generation (in progress)\n\n");
-    System.out.print("where \"mode\" is one of the following:\n");
-    System.out.print("   -lt runs LexerTest\n");
-    System.out.print("   -pt runs ParserTest\n");
-    System.out.print("   -st outputs the syntax tree (like pt without symbol tables)\n");
-    System.out.print("   -pi produces intermediate code output with Quadruple data structure\n");
-    System.out.print("   -pa produces MIPS assembly language output\n");
-    System.out.print("   -rc runs code (from interpreting intermediate code)\n");
-    System.out.print("   -rm runs MIPS assembly code (warning: you must have SPIM installed!)\n");
+  /**
+   * Prints how to run the compiler.
+   *
+   * @param out stream to print to
+   */
+  public static void usage(PrintStream out) {
+    out.print("LittleC Compiler\n");
+    out.print("Run as follows (input is from stdin unless a filename is given):\n\n");
+    out.print("   littlec mode flags [optinfile]\n\n");
+    out.print("where [optinfile] is a .lc file or standard input (leave blank)\n\n");
+    out.print("where \"flags\" is zero or more of the following:\n");
+    out.print("   -O0, -O1, -O2 set the optimization level (default -O1; -O0 disables optimizations)\n");
+    out.print("   -o is the same as -O2\n");
+    out.print("   -maxgraph=N colors at most N interference edges per function at -O2 before\n");
+    out.print("               falling back to linear scan (default " + GraphColoringAllocator.DEFAULT_MAX_GRAPH_SIZE + ")\n");
+    out.print("   -threads=N generates at most N functions at once (default one per core; 1 turns it off)\n");
+    out.print("   -frames prints the stack frame layout of every function to stderr\n");
+    out.print("   -w enables warnings (displayed even if none exist) (in progress)\n");
+    out.print("   -e enables errors (displayed even if none exist) (in progress)\n");
+    out.print("   -d enables comments in assembly code generation (in progress)\n\n");
+    out.print("where \"mode\" is one of the following:\n");
+    out.print("   -lt runs LexerTest\n");
+    out.print("   -pt runs ParserTest\n");
+    out.print("   -st outputs the syntax tree (like pt without symbol tables)\n");
+    out.print("   -pi produces intermediate code output with Quadruple data structure\n");
+    out.print("   -pa produces MIPS assembly language output\n");
+    out.print("   -rc runs code (from interpreting intermediate code)\n");
+    out.print("   -rm runs MIPS assembly code on the built-in MIPS interpreter\n");
+    out.print("   -batch dir -pa|-pi compiles every .lc file under dir in parallel, writing a .s\n");
+    out.print("               (-pa) or .ic (-pi) file next to each one; exits with 1 if any file\n");
+    out.print("               had errors and 2 if the compiler failed on one or the directory\n");
+    out.print("               couldn't be read\n");
+    out.print("   -daemon [-port=N] keeps a compiler running in the background (default port "
+        + CompileDaemon.DEFAULT_PORT + ")\n");
+    out.print("   -client [-port=N] [-time] mode flags [optinfile] runs any other mode on the daemon\n");
+    out.print("               as the same user, sending it optinfile and the token from\n");
+    out.print("               ~/.littlec/daemon-N.token\n");
 
   }
 
@@ -36,32 +65,142 @@ public class Launcher {
    * @param argv command line arguments
    */
   public static void main(String[] argv) {
-    if ((argv.length < 1) || (argv.length > 2)) {
-      usage();
-      return;
+    int status = run(argv, new CompilationContext());
+    if (status != 0) {
+      System.exit(status);
     }
+  }
 
-    String[] argsTail = new String[argv.length - 1];
-    for (int i = 1; i < argv.length; i++)
-      argsTail[i - 1] = argv[i];
+  /**
+   * Runs the mode named by the first argument in the given compilation, which
+   * also gives the mode its standard streams.
+   *
+   * @param argv    command line arguments
+   * @param context compilation to run the mode in
+   *
+   * @return the exit status of batch mode, or 0 for every other mode.
+   */
+  public static int run(String[] argv, CompilationContext context) {
+    if (argv.length < 1) {
+      usage(context.getOut());
+      return 0;
+    }
+
+    // The daemon and its client pass their flags along untouched.
+    String[] rest = Arrays.copyOfRange(argv, 1, argv.length);
+    if (argv[0].equals("-daemon")) {
+      CompileDaemon.main(rest);
+      return 0;
+    } else if (argv[0].equals("-client")) {
+      DaemonClient.main(rest);
+      return 0;
+    }
+
+    // Pull the optimization flags out; whatever is left goes to the mode.
+    List<String> modeArgs = new ArrayList<>();
+    for (String arg : rest) {
+      if (!isSetting(arg)) {
+        modeArgs.add(arg);
+      } else if (!applySetting(arg, context)) {
+        usage(context.getOut());
+        return 0;
+      }
+    }
+
+    // Batch mode takes a directory and an output mode; the rest take a file.
+    String[] argsTail = modeArgs.toArray(new String[0]);
+    if (argv[0].equals("-batch")) {
+      return BatchCompile.run(argsTail, context);
+    } else if (modeArgs.size() > 1) {
+      usage(context.getOut());
+      return 0;
+    }
 
     if (argv[0].equals("-lt"))
-      LexerTest.main(argsTail);
+      LexerTest.run(argsTail, context);
     else if (argv[0].equals("-pt"))
-      ParserTest.main(argsTail);
+      ParserTest.run(argsTail, context);
     else if (argv[0].equals("-pi"))
-      OutputICode.main(argsTail);
+      OutputICode.run(argsTail, context);
     else if (argv[0].equals("-st"))
-      OutputSTree.main(argsTail);
+      OutputSTree.run(argsTail, context);
     else if (argv[0].equals("-rc"))
-      RunCode.main(argsTail);
+      RunCode.run(argsTail, context);
     else if (argv[0].equals("-pa"))
-      OutputAsm.main(argsTail);
+      OutputAsm.run(argsTail, context);
     else if (argv[0].equals("-rm")) {
-      RunMIPS.main(argsTail);
+      RunMIPS.run(argsTail, context);
     }
     else {
-      usage();
+      usage(context.getOut());
     }
+
+    return 0;
+  }
+
+  /**
+   * @param arg - command line argument.
+   *
+   * @return true if the argument is one of the settings flags (-O0, -O1, -O2,
+   *         -o, -maxgraph=N, -threads=N or -frames).
+   */
+  static boolean isSetting(String arg) {
+    return isRunWideSetting(arg) || arg.matches("-threads=\\d+");
+  }
+
+  /**
+   * @param arg - command line argument.
+   *
+   * @return true if the argument is a settings flag that changes a setting for
+   *         the whole run rather than for its own compilation.
+   */
+  static boolean isRunWideSetting(String arg) {
+    return arg.matches("-O\\d") || arg.equals("-o") || arg.matches("-maxgraph=\\d+") || arg.equals("-frames");
+  }
+
+  /**
+   * Applies one of the flags recognized by isSetting. The number of threads
+   * only applies to the given compilation.
+   *
+   * @param arg     - command line argument.
+   * @param context - compilation the flag is given to.
+   *
+   * @return false if the flag asks for an optimization level that doesn't
+   *         exist or for no threads, true otherwise.
+   */
+  static boolean applySetting(String arg, CompilationContext context) {
+    if (arg.matches("-O\\d")) {
+      int level = Character.getNumericValue(arg.charAt(2));
+      if (level > ICOptimizer.MAX_OPTIMIZATION_LEVEL) {
+        return false;
+      }
+      ICOptimizer.setOptimizationLevel(level);
+    } else if (arg.equals("-o")) {
+      ICOptimizer.setOptimizationLevel(ICOptimizer.MAX_OPTIMIZATION_LEVEL);
+    } else if (arg.startsWith("-maxgraph=")) {
+      GraphColoringAllocator.setMaxGraphSize(Integer.parseInt(arg.substring(arg.indexOf('=') + 1)));
+    } else if (arg.startsWith("-threads=")) {
+      int threads = Integer.parseInt(arg.substring(arg.indexOf('=') + 1));
+      if (threads < 1) {
+        return false;
+      }
+      context.setParallelism(threads);
+    } else if (arg.equals("-frames")) {
+      MIPSFunction.setDumpFrameLayouts(true);
+    }
+    return true;
+  }
+
+  /**
+   * Puts every setting isRunWideSetting knows about back to its default.
+   *
+   * @param void.
+   *
+   * @return void.
+   */
+  static void resetSettings() {
+    ICOptimizer.setOptimizationLevel(ICOptimizer.DEFAULT_OPTIMIZATION_LEVEL);
+    GraphColoringAllocator.setMaxGraphSize(GraphColoringAllocator.DEFAULT_MAX_GRAPH_SIZE);
+    MIPSFunction.setDumpFrameLayouts(false);
   }
 }
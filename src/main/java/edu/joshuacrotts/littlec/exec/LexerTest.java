@@ -1,15 +1,16 @@
 package edu.joshuacrotts.littlec.exec;
-import java.io.IOException;
-import java.nio.file.NoSuchFileException;
+import java.io.PrintStream;
 
-import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonToken;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.Token;
 
-import edu.joshuacrotts.littlec.antlr4.LittleCLexer;
+import edu.joshuacrotts.littlec.main.CompilationContext;
+import edu.joshuacrotts.littlec.main.CompilerPipeline;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.Phase;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.Unit;
+import edu.joshuacrotts.littlec.main.LCErrorListener;
 
 /**
  * Basic Lexical Analyzer tester. Has a main() so can be run from the command
@@ -66,21 +67,35 @@ public class LexerTest {
 
   /**
    * Internal lexer tokenizer/print loop. Called from one of the public methods
-   * after establishing a CharStream.
+   * after the pipeline has lexed the input. The tokens and then any lexical
+   * errors are printed to the standard streams of the unit's compilation.
    *
-   * @param input an initialized CharStream
+   * @param unit the lexed input, or null if it couldn't be read
    */
-  private static void lexStream(CharStream input) {
-    Lexer lexer = new LittleCLexer(input);
-    CommonTokenStream tokens = new CommonTokenStream(lexer);
-    tokens.fill();
+  private static void printTokens(Unit unit) {
+    if (unit == null) {
+      return;
+    }
 
+    CompilationContext context = unit.getContext();
+    PrintStream out = context.getOut();
+    CommonTokenStream tokens = unit.getTokens();
+    Lexer lexer = (Lexer) tokens.getTokenSource();
     for (Token tok : tokens.getTokens()) {
       if (tok instanceof CommonToken) {
-        System.out.println(portable(lexer, (CommonToken) tok));
+        out.println(portable(lexer, (CommonToken) tok));
       } else {
-        System.out.println(tok.toString());
+        out.println(tok.toString());
+      }
+    }
+
+    CompilationContext.Binding binding = context.bind();
+    try {
+      if (LCErrorListener.sawError()) {
+        LCErrorListener.printErrors();
       }
+    } finally {
+      binding.unbind();
     }
   }
 
@@ -90,15 +105,7 @@ public class LexerTest {
    * @param fileName the name of the file to use for input
    */
   public static void lexFromFile(String fileName) {
-    try {
-      lexStream(CharStreams.fromFileName(fileName));
-    } catch (IOException e) {
-      if (e instanceof NoSuchFileException) {
-        System.err.println("Could not open file " + fileName);
-      } else {
-        e.printStackTrace();
-      }
-    }
+    printTokens(new CompilerPipeline(new CompilationContext()).runFile(fileName, Phase.LEX));
   }
 
   /**
@@ -106,11 +113,7 @@ public class LexerTest {
    * stream.
    */
   public static void lexFromStdin() {
-    try {
-      lexStream(CharStreams.fromStream(System.in));
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
+    printTokens(new CompilerPipeline(new CompilationContext()).runStdin(Phase.LEX));
   }
 
   /**
@@ -120,12 +123,17 @@ public class LexerTest {
    * @param argv command line arguments
    */
   public static void main(String[] argv) {
-    if (argv.length > 1) {
-      System.err.println("Can provide at most one command line argument (an input filename)");
-    } else if (argv.length == 1) {
-      lexFromFile(argv[0]);
-    } else {
-      lexFromStdin();
-    }
+    run(argv, new CompilationContext());
+  }
+
+  /**
+   * Runs the mode in a compilation of its own, reading from and printing to
+   * that compilation's standard streams.
+   *
+   * @param argv    command line arguments
+   * @param context compilation to run in
+   */
+  public static void run(String[] argv, CompilationContext context) {
+    printTokens(new CompilerPipeline(context).runArgs(argv, Phase.LEX));
   }
 }
@@ -1,103 +1,24 @@
 package edu.joshuacrotts.littlec.exec;
 
-import java.io.IOException;
-import java.nio.file.NoSuchFileException;
+import java.io.PrintStream;
 
-import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
-
-import edu.joshuacrotts.littlec.antlr4.LittleCLexer;
-import edu.joshuacrotts.littlec.antlr4.LittleCParser;
-import edu.joshuacrotts.littlec.main.LCErrorListener;
-import edu.joshuacrotts.littlec.main.LCListener;
+import edu.joshuacrotts.littlec.main.CompilationContext;
+import edu.joshuacrotts.littlec.main.CompilerPipeline;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.Phase;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.Unit;
 import edu.joshuacrotts.littlec.main.SymbolTable;
-import edu.joshuacrotts.littlec.syntaxtree.LCSyntaxTree;
 
 /**
  * Basic parser tester. Has a main() so can be run from the command line, with
  * one optional command line parameter. If provided, this is a filename to use
- * for input. Otherwise, input is taken from standard input. More importantly,
- * the parseFromFile and parseFromStdin methods are public static methods and
- * can be called from automated tests. They return the
- * edu.joshuacrotts.littlec.LCListener object that was used in parsing, giving
- * access to both the final syntax tree and the final symbol table.
+ * for input. Otherwise, input is taken from standard input. Automated tests
+ * that need the final syntax tree and symbol table can run a CompilerPipeline
+ * up to the SEMANTIC phase themselves.
  *
  * @author Steve Tate (srtate@uncg.edu)
  */
 public class ParserTest {
 
-  /**
-   * Runs the parser and edu.joshuacrotts.littlec.LCListener syntax tree
-   * constructor for the provided input stream. The returned object can be used to
-   * access the syntax tree and the symbol table for either futher processing or
-   * for checking results in automated tests.
-   *
-   * @param input an initialized CharStream
-   * @return the edu.joshuacrotts.littlec.LCListener object that processed the
-   *         parsed input or null if an error was encountered
-   */
-  private static LCListener parseStream(CharStream input) {
-    // "input" is the character-by-character input - connect to lexer
-    LittleCLexer lexer = new LittleCLexer(input);
-    LCErrorListener catchErrs = new LCErrorListener();
-    lexer.removeErrorListeners();
-    lexer.addErrorListener(catchErrs);
-
-    // Connect token stream to lexer
-    CommonTokenStream tokens = new CommonTokenStream(lexer);
-
-    // Connect parser to token stream
-    LittleCParser parser = new LittleCParser(tokens);
-    parser.removeErrorListeners();
-    parser.addErrorListener(catchErrs);
-    ParseTree tree = parser.program();
-
-    // Now do the parsing, and walk the parse tree with our listeners
-    ParseTreeWalker walker = new ParseTreeWalker();
-    LCListener compiler = new LCListener(parser);
-    walker.walk(compiler, tree);
-
-    return compiler;
-  }
-
-  /**
-   * Public static method to run the parser on an input file.
-   *
-   * @param fileName the name of the file to use for input
-   * @return the edu.joshuacrotts.littlec.LCListener object that processed the
-   *         parsed input
-   */
-  public static LCListener parseFromFile(String fileName) {
-    try {
-      return parseStream(CharStreams.fromFileName(fileName));
-    } catch (IOException e) {
-      if (e instanceof NoSuchFileException) {
-        System.err.println("Could not open file " + fileName);
-      } else {
-        e.printStackTrace();
-      }
-    }
-    return null;
-  }
-
-  /**
-   * Public static method to run the parser on the standard input stream.
-   *
-   * @return the edu.joshuacrotts.littlec.LCListener object that processed the
-   *         parsed input
-   */
-  public static LCListener parseFromStdin() {
-    try {
-      return parseStream(CharStreams.fromStream(System.in));
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
-    return null;
-  }
-
   /**
    * Command line interface -- one argument is filename, and if omitted then input
    * is taken from standard input.
@@ -105,30 +26,29 @@ public class ParserTest {
    * @param argv command line arguments
    */
   public static void main(String[] argv) {
-    LCListener parser;
-    if (argv.length > 1) {
-      System.err.println("Can provide at most one command line argument (an input filename)");
-      return;
-    } else if (argv.length == 1) {
-      parser = parseFromFile(argv[0]);
-    } else {
-      parser = parseFromStdin();
-    }
-
-    LCSyntaxTree result = null;
-    if (parser != null)
-      result = parser.getSyntaxTree();
-
-    if (result != null) {
-      SymbolTable symbolTable = parser.getSymbolTable();
-      System.out.println("Global Variables:\n");
-      symbolTable.printGlobalVars();
-
-      System.out.println("\nGlobal Functions:\n");
-      symbolTable.printGlobalFns();
+    run(argv, new CompilationContext());
+  }
 
-      System.out.println("\nSyntax Tree:\n");
-      result.printSyntaxTree();
+  /**
+   * Runs the mode in a compilation of its own, reading from and printing to
+   * that compilation's standard streams.
+   *
+   * @param argv    command line arguments
+   * @param context compilation to run in
+   */
+  public static void run(String[] argv, CompilationContext context) {
+    Unit unit = new CompilerPipeline(context).runArgs(argv, Phase.SEMANTIC);
+    if (unit != null && unit.getSyntaxTree() != null) {
+      SymbolTable symbolTable = unit.getListener().getSymbolTable();
+      PrintStream out = context.getOut();
+      out.println("Global Variables:\n");
+      symbolTable.printGlobalVars(out);
+
+      out.println("\nGlobal Functions:\n");
+      symbolTable.printGlobalFns(out);
+
+      out.println("\nSyntax Tree:\n");
+      unit.getSyntaxTree().printSyntaxTree(out);
     }
   }
 }
@@ -1,5 +1,7 @@
 package edu.joshuacrotts.littlec.icinterp;
 
+import java.io.InputStream;
+import java.io.PrintStream;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -33,6 +35,8 @@ public class ICInterp {
   private int[] globals;
   private AddrSegment dSegment;
   private Scanner sin;
+  private PrintStream out;
+  private PrintStream err;
 
   public class AddrSegment {
     private byte[] storage;
@@ -43,7 +47,7 @@ public class ICInterp {
 
     public AddrSegment(int size) {
       if (size > 0x10000) {
-        System.err.println("Internal simulator error: Requested " + size + " segment");
+        err.println("Internal simulator error: Requested " + size + " segment");
         System.exit(1);
       }
       if (!segFreeList.isEmpty()) {
@@ -52,7 +56,7 @@ public class ICInterp {
       } else {
         segID = segments.size();
         if (segID >= 0x10000) {
-          System.err.println("Internal simulator error: Too many segments");
+          err.println("Internal simulator error: Too many segments");
           System.exit(1);
         }
         segments.add(this);
@@ -81,7 +85,7 @@ public class ICInterp {
 
     public int getPtr(int offset) {
       if ((offset < 0) || (offset >= size)) {
-        System.err.println("Internal sim error: Bad segment offset");
+        err.println("Internal sim error: Bad segment offset");
         System.exit(1);
       }
       return (segID << 16) + offset;
@@ -97,7 +101,7 @@ public class ICInterp {
         val = ((int) (storage[offset]) & 0xff) | (((int) (storage[offset + 1]) & 0xff) << 8)
             | (((int) (storage[offset + 2]) & 0xff) << 16) | (((int) (storage[offset + 3]) & 0xff) << 24);
       } else {
-        System.err.println("Out of bounds memory access (getInt) - this should never happen.");
+        err.println("Out of bounds memory access (getInt) - this should never happen.");
         System.exit(1);
       }
       return val;
@@ -110,7 +114,7 @@ public class ICInterp {
         storage[offset + 2] = (byte) ((val >> 16) & 0xff);
         storage[offset + 3] = (byte) ((val >> 24) & 0xff);
       } else {
-        System.err.println("Out of bounds memory access (setInt) - this should never happen.");
+        err.println("Out of bounds memory access (setInt) - this should never happen.");
         System.exit(1);
       }
     }
@@ -120,7 +124,7 @@ public class ICInterp {
       if (offset < size) {
         rVal = storage[offset];
       } else {
-        System.err.println("Out of bounds memory access (getByte) - this should never happen.");
+        err.println("Out of bounds memory access (getByte) - this should never happen.");
         System.exit(1);
       }
       return rVal;
@@ -130,7 +134,7 @@ public class ICInterp {
       if (offset < size) {
         storage[offset] = val;
       } else {
-        System.err.println("Out of bounds memory access (setByte) - this should never happen.");
+        err.println("Out of bounds memory access (setByte) - this should never happen.");
         System.exit(1);
       }
     }
@@ -154,7 +158,7 @@ public class ICInterp {
   public AddrSegment ptrToSeg(int ptr) {
     int segID = (ptr >> 16) & 0xffff;
     if (segID >= segments.size()) {
-      System.err.println("Internal sim error: Bad segment number");
+      err.println("Internal sim error: Bad segment number");
       System.exit(1);
     }
     AddrSegment s = segments.get(segID);
@@ -232,6 +236,28 @@ public class ICInterp {
     }
   }
 
+  /**
+   * Raises base to exp the way the generated MIPS code does: ints wrap on
+   * overflow rather than saturate, and a negative exponent gives 1. Uses
+   * square-and-multiply, which wraps to the same value as the MIPS multiply
+   * loop and as the chains the strength reducer expands constant powers into.
+   *
+   * @param base - base of the power.
+   * @param exp  - exponent.
+   *
+   * @return base ** exp, modulo 2^32.
+   */
+  public static int intPow(int base, int exp) {
+    int result = 1;
+    for (; exp > 0; exp >>= 1) {
+      if ((exp & 1) != 0) {
+        result *= base;
+      }
+      base *= base;
+    }
+    return result;
+  }
+
   public static int getTWidth(String name) {
     switch (name.charAt(0)) {
     case 't':
@@ -397,7 +423,7 @@ public class ICInterp {
       } else if (parts[si].equals("widen")) {
         val1 = getVal(tWidth, parts[si + 1]);
         return new SimValue(4, val1.getAsI());
-      } else if (parts[si].substring(0, 1).matches("[A-Za-z0-9_]")) {
+      } else if (parts[si].substring(0, 1).matches("[A-Za-z0-9_]") || parts[si].matches("-\\d+")) {
         val1 = getVal(tWidth, parts[si]);
         if (si + 2 >= parts.length)
           return val1;
@@ -417,7 +443,7 @@ public class ICInterp {
           else if (parts[si + 1].equals("%"))
             return new SimValue(1, (byte) (val1.cVal % val2.cVal));
           else if (parts[si + 1].equals("**"))
-            return new SimValue(1, (byte) (Math.pow(val1.cVal, val2.cVal)));
+            return new SimValue(1, (byte) intPow(val1.cVal, val2.cVal));
           else if (parts[si + 1].equals("^"))
             return new SimValue(1, (byte) (val1.cVal ^ val2.cVal));
           else if (parts[si + 1].equals("^"))
@@ -466,7 +492,7 @@ public class ICInterp {
           else if (parts[si + 1].equals("%"))
             return new SimValue(4, val1.iVal % val2.iVal);
           else if (parts[si + 1].equals("**"))
-            return new SimValue(4, (int) Math.pow(val1.iVal, val2.iVal));
+            return new SimValue(4, intPow(val1.iVal, val2.iVal));
           else if (parts[si + 1].equals("^"))
             return new SimValue(4, val1.iVal ^ val2.iVal);
           else if (parts[si + 1].equals("&"))
@@ -582,7 +608,7 @@ public class ICInterp {
       } else if (parts[0].equals("goto")) {
         Integer nextLine = labels.get(parts[1]);
         if (nextLine == null) {
-          System.err.println("Jump to unknown label: " + parts[1]);
+          err.println("Jump to unknown label: " + parts[1]);
           return false;
         } else {
           currLine = nextLine;
@@ -594,7 +620,7 @@ public class ICInterp {
           if (val != 0) {
             Integer nextLine = labels.get(parts[3]);
             if (nextLine == null) {
-              System.err.println("Jump to unknown label: " + parts[3]);
+              err.println("Jump to unknown label: " + parts[3]);
               return false;
             } else {
               currLine = nextLine;
@@ -606,7 +632,7 @@ public class ICInterp {
           if (result != 0) {
             Integer nextLine = labels.get(parts[5]);
             if (nextLine == null) {
-              System.err.println("Jump to unknown label: " + parts[5]);
+              err.println("Jump to unknown label: " + parts[5]);
               return false;
             } else {
               currLine = nextLine;
@@ -619,7 +645,7 @@ public class ICInterp {
         if (val == 0) {
           Integer nextLine = labels.get(parts[3]);
           if (nextLine == null) {
-            System.err.println("Jump to unknown label: " + parts[3]);
+            err.println("Jump to unknown label: " + parts[3]);
             return false;
           } else {
             currLine = nextLine;
@@ -650,13 +676,29 @@ public class ICInterp {
   }
 
   public ICInterp(String code) {
+    this(code, System.in, System.out, System.err);
+  }
+
+  /**
+   * Sets up the interpreter for the given intermediate code. The program reads
+   * and writes the given streams rather than the JVM's own, as do the
+   * interpreter's error messages.
+   *
+   * @param code - intermediate code, as printed by ICode.toString().
+   * @param in   - standard input of the program.
+   * @param out  - standard output of the program.
+   * @param err  - where errors in running the program are printed.
+   */
+  public ICInterp(String code, InputStream in, PrintStream out, PrintStream err) {
+    this.out = out;
+    this.err = err;
     lines = code.split("\n");
     globals = new int[lines.length];
     segments = new Vector<>();
     segments.add(null); // Entry 0 is null (uninit/null ptr check)
     segFreeList = new Stack<>();
     dSegment = new AddrSegment(0);
-    sin = new Scanner(System.in);
+    sin = new Scanner(in);
 
     labels = new HashMap<>();
     List<String> carryOverLabels = null;
@@ -724,7 +766,7 @@ public class ICInterp {
   public SimValue executeFunction(String fname, List<SimValue> params) {
     if (fname.equals("gf_printd")) {
       if ((params != null) && (params.size() == 1))
-        System.out.print(params.get(0).getAsI());
+        out.print(params.get(0).getAsI());
       return SimValue.errVal;
     } else if (fname.equals("gf_prints")) {
       if ((params != null) && (params.size() == 1)) {
@@ -736,17 +778,17 @@ public class ICInterp {
           char c = (char) ptrGetByte(ptr, 4 + i);
           if (c == '\0')
             break;
-          System.out.print(c);
+          out.print(c);
         }
       }
       return SimValue.errVal;
     } else if (fname.equals("gf_printc")) {
       if ((params != null) && (params.size() == 1))
-        System.out.print((char) params.get(0).getAsC());
+        out.print((char) params.get(0).getAsC());
       return SimValue.errVal;
     } else if (fname.equals("gf_printf")) {
       if ((params != null) && (params.size() == 1))
-        System.out.print((float) params.get(0).getAsF());
+        out.print((float) params.get(0).getAsF());
       return SimValue.errVal;
     } else if (fname.equals("gf_read")) {
       int readVal = sin.nextInt();
@@ -776,7 +818,7 @@ public class ICInterp {
     debugPrint("Executing function " + fname + " (line " + labels.get(fname) + ")");
     Integer startLine = labels.get(fname);
     if (startLine == null) {
-      System.err.println("Error in executing intermediate code: Unknown function " + fname);
+      err.println("Error in executing intermediate code: Unknown function " + fname);
       return SimValue.errVal;
     }
     
@@ -3,6 +3,7 @@ package edu.joshuacrotts.littlec.icode;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import edu.joshuacrotts.littlec.main.CompilationContext;
 import edu.joshuacrotts.littlec.main.LCUtilities;
 
 /**
@@ -10,21 +11,13 @@ import edu.joshuacrotts.littlec.main.LCUtilities;
  * variables, parameters, and string declarations there are in one block of
  * code. The String and global variables, however, are shared across all
  * ActivationRecords because they should not change (as they are declared in the
- * "global" AR/Environment; the one with the widest scope).
+ * "global" AR/Environment; the one with the widest scope). They live in the
+ * CompilationContext, as does the label counter.
  * 
  * @author Joshua Crotts
  */
 public class ActivationRecord {
 
-  /** Compiler string-generated ID to string array of bytes. */
-  private static final ArrayList<StringEntry> STRING_VARS = new ArrayList<>();
-
-  /** ID -> Global variable ID. */
-  private static final HashMap<String, String> GLOBAL_VARS = new HashMap<>();
-
-  /** Keeps track of how many labels we have stored. */
-  private static int labelCount = 0;
-
   /** ID -> Local Variable ID. */
   private final HashMap<String, String> LOCAL_VARS;
 
@@ -54,8 +47,7 @@ public class ActivationRecord {
    * @return new label.
    */
   public static String newLabel() {
-    labelCount++;
-    return "L" + labelCount;
+    return "L" + CompilationContext.current().nextLabel();
   }
 
   /**
@@ -67,10 +59,11 @@ public class ActivationRecord {
    * @return compiler-generated name of string.
    */
   public String addString(String s) {
-    String compilerID = "S0_" + (ActivationRecord.STRING_VARS.size() + 1);
+    ArrayList<StringEntry> stringVars = CompilationContext.current().getStringTable();
+    String compilerID = "S0_" + (stringVars.size() + 1);
     StringEntry se = new StringEntry(s, compilerID);
 
-    ActivationRecord.STRING_VARS.add(se);
+    stringVars.add(se);
     return compilerID;
   }
 
@@ -134,7 +127,7 @@ public class ActivationRecord {
     }
 
     String globalID = "g" + width + "_" + id;
-    ActivationRecord.GLOBAL_VARS.put(id, globalID);
+    CompilationContext.current().getGlobalVariables().put(id, globalID);
 
     return globalID;
   }
@@ -218,7 +211,7 @@ public class ActivationRecord {
    * @return compiler-generated name if in map, null otherwise.
    */
   public String getGlobalVariable(String id) {
-    return ActivationRecord.GLOBAL_VARS.get(id);
+    return CompilationContext.current().getGlobalVariables().get(id);
   }
 
   /**
@@ -229,21 +222,22 @@ public class ActivationRecord {
    * @return string table.
    */
   public ArrayList<StringEntry> getStringTable() {
-    return ActivationRecord.STRING_VARS;
+    return CompilationContext.current().getStringTable();
   }
 
   /**
-   * Cleans up the stacks used in a static context. This is to prevent JUnit test
-   * failures.
+   * Clears the string and global tables and the label count of the current
+   * compilation.
    * 
    * @param void.
    * 
    * @return void.
    */
   public void cleanup() {
-    ActivationRecord.GLOBAL_VARS.clear();
-    ActivationRecord.STRING_VARS.clear();
-    labelCount = 0;
+    CompilationContext context = CompilationContext.current();
+    context.getGlobalVariables().clear();
+    context.getStringTable().clear();
+    context.resetLabels();
   }
 
   /**
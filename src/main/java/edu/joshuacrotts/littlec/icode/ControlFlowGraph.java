@@ -0,0 +1,286 @@
+package edu.joshuacrotts.littlec.icode;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.TreeSet;
+
+/**
+ * Control flow graph over the body of a single function (the instructions
+ * between .fnStart and .fnEnd). Blocks are numbered in layout order, so block 0
+ * is the entry. Unlike the BasicBlock generation used by the MIPS backend,
+ * calls do not end a block here since they always return to the next line.
+ *
+ * The graph also computes dominators, which are used to find the natural loops
+ * of the function.
+ *
+ * @author Joshua Crotts
+ */
+public class ControlFlowGraph {
+
+  /** Function body that the graph was built over. */
+  private final List<LinkedList<String>> INSTRUCTIONS;
+
+  /** First line of each block. */
+  private final ArrayList<Integer> BLOCK_STARTS;
+
+  /** Block number that each line belongs to. */
+  private final int[] LINE_BLOCKS;
+
+  /** Successor blocks of each block. */
+  private final ArrayList<TreeSet<Integer>> SUCCESSORS;
+
+  /** Predecessor blocks of each block. */
+  private final ArrayList<TreeSet<Integer>> PREDECESSORS;
+
+  /** Dominator set of each block. */
+  private final ArrayList<BitSet> DOMINATORS;
+
+  /** Blocks reachable from the entry. */
+  private final BitSet REACHABLE;
+
+  public ControlFlowGraph(List<LinkedList<String>> instructions) {
+    this.INSTRUCTIONS = instructions;
+    this.BLOCK_STARTS = new ArrayList<>();
+    this.LINE_BLOCKS = new int[instructions.size()];
+    this.SUCCESSORS = new ArrayList<>();
+    this.PREDECESSORS = new ArrayList<>();
+    this.DOMINATORS = new ArrayList<>();
+    this.REACHABLE = new BitSet();
+
+    this.generateBlocks();
+    this.generateEdges();
+    this.generateDominators();
+  }
+
+  /**
+   * Splits the instructions into blocks. A block starts at the first of a run of
+   * labels, and ends after any goto, conditional goto, or return.
+   */
+  private void generateBlocks() {
+    for (int i = 0; i < INSTRUCTIONS.size(); i++) {
+      LinkedList<String> tac = INSTRUCTIONS.get(i);
+      boolean startsBlock = i == 0;
+      if (i > 0 && ICUtilities.isLabel(tac) && !ICUtilities.isLabel(INSTRUCTIONS.get(i - 1))) {
+        startsBlock = true;
+      } else if (i > 0 && endsBlock(INSTRUCTIONS.get(i - 1))) {
+        startsBlock = true;
+      }
+
+      if (startsBlock) {
+        BLOCK_STARTS.add(i);
+        SUCCESSORS.add(new TreeSet<>());
+        PREDECESSORS.add(new TreeSet<>());
+      }
+      LINE_BLOCKS[i] = BLOCK_STARTS.size() - 1;
+    }
+  }
+
+  /**
+   * Connects each block to the blocks that can execute right after it.
+   */
+  private void generateEdges() {
+    Map<String, Integer> labelBlocks = new HashMap<>();
+    for (int i = 0; i < INSTRUCTIONS.size(); i++) {
+      if (ICUtilities.isLabel(INSTRUCTIONS.get(i))) {
+        labelBlocks.put(ICUtilities.getLabelName(INSTRUCTIONS.get(i)), LINE_BLOCKS[i]);
+      }
+    }
+
+    for (int b = 0; b < this.getBlockCount(); b++) {
+      LinkedList<String> last = INSTRUCTIONS.get(this.getBlockEnd(b) - 1);
+      if (ICUtilities.isJump(last) || ICUtilities.isBranch(last)) {
+        Integer target = labelBlocks.get(ICUtilities.getJumpTarget(last));
+        if (target != null) {
+          this.addEdge(b, target);
+        }
+      }
+
+      boolean fallsThrough = !ICUtilities.isJump(last) && !ICUtilities.isReturn(last);
+      if (fallsThrough && b + 1 < this.getBlockCount()) {
+        this.addEdge(b, b + 1);
+      }
+    }
+  }
+
+  /**
+   * Computes the dominators of every block with the standard iterative data-flow
+   * algorithm. Unreachable blocks are left dominated by every block.
+   */
+  private void generateDominators() {
+    int n = this.getBlockCount();
+    if (n == 0) {
+      return;
+    }
+
+    Stack<Integer> worklist = new Stack<>();
+    worklist.push(0);
+    while (!worklist.isEmpty()) {
+      int b = worklist.pop();
+      if (!REACHABLE.get(b)) {
+        REACHABLE.set(b);
+        worklist.addAll(SUCCESSORS.get(b));
+      }
+    }
+
+    for (int b = 0; b < n; b++) {
+      BitSet dom = new BitSet(n);
+      if (b == 0) {
+        dom.set(0);
+      } else {
+        dom.set(0, n);
+      }
+      DOMINATORS.add(dom);
+    }
+
+    boolean changed;
+    do {
+      changed = false;
+      for (int b = 1; b < n; b++) {
+        if (!REACHABLE.get(b)) {
+          continue;
+        }
+
+        BitSet dom = new BitSet(n);
+        dom.set(0, n);
+        for (int p : PREDECESSORS.get(b)) {
+          if (REACHABLE.get(p)) {
+            dom.and(DOMINATORS.get(p));
+          }
+        }
+        dom.set(b);
+
+        if (!dom.equals(DOMINATORS.get(b))) {
+          DOMINATORS.set(b, dom);
+          changed = true;
+        }
+      }
+    } while (changed);
+  }
+
+  /**
+   * Finds the natural loops of the function. Every back edge (an edge to a block
+   * that dominates its source) defines a loop, and loops sharing a header are
+   * merged.
+   *
+   * @return list of loops, innermost (smallest) first.
+   */
+  public LinkedList<NaturalLoop> getLoops() {
+    Map<Integer, NaturalLoop> loops = new HashMap<>();
+    for (int b = 0; b < this.getBlockCount(); b++) {
+      if (!REACHABLE.get(b)) {
+        continue;
+      }
+
+      for (int header : SUCCESSORS.get(b)) {
+        if (!this.dominates(header, b)) {
+          continue;
+        }
+
+        NaturalLoop loop = loops.computeIfAbsent(header, h -> new NaturalLoop(this, h));
+        loop.addLatch(b);
+
+        // Everything that reaches the latch without going through the header.
+        Stack<Integer> worklist = new Stack<>();
+        worklist.push(b);
+        while (!worklist.isEmpty()) {
+          int curr = worklist.pop();
+          if (loop.addBlock(curr)) {
+            worklist.addAll(PREDECESSORS.get(curr));
+          }
+        }
+      }
+    }
+
+    LinkedList<NaturalLoop> sortedLoops = new LinkedList<>(loops.values());
+    sortedLoops.sort(Comparator.comparingInt(NaturalLoop::getBlockCount));
+    return sortedLoops;
+  }
+
+  /**
+   * @param a - block number.
+   * @param b - block number.
+   *
+   * @return true if every path from the entry to b goes through a.
+   */
+  public boolean dominates(int a, int b) {
+    return DOMINATORS.get(b).get(a);
+  }
+
+  /**
+   * @param b - block number.
+   *
+   * @return true if the block can be reached from the function entry.
+   */
+  public boolean isReachable(int b) {
+    return REACHABLE.get(b);
+  }
+
+  public int getBlockCount() {
+    return BLOCK_STARTS.size();
+  }
+
+  /**
+   * @param b - block number.
+   *
+   * @return line of the first instruction in the block.
+   */
+  public int getBlockStart(int b) {
+    return BLOCK_STARTS.get(b);
+  }
+
+  /**
+   * @param b - block number.
+   *
+   * @return line after the last instruction in the block.
+   */
+  public int getBlockEnd(int b) {
+    return b + 1 < BLOCK_STARTS.size() ? BLOCK_STARTS.get(b + 1) : INSTRUCTIONS.size();
+  }
+
+  /**
+   * @param line - line in the function body.
+   *
+   * @return block number containing the line.
+   */
+  public int getBlock(int line) {
+    return LINE_BLOCKS[line];
+  }
+
+  public TreeSet<Integer> getSuccessors(int b) {
+    return SUCCESSORS.get(b);
+  }
+
+  public TreeSet<Integer> getPredecessors(int b) {
+    return PREDECESSORS.get(b);
+  }
+
+  public List<LinkedList<String>> getInstructions() {
+    return INSTRUCTIONS;
+  }
+
+  /**
+   * Adds a directed edge from one block to another.
+   *
+   * @param from - source block.
+   * @param to   - destination block.
+   */
+  private void addEdge(int from, int to) {
+    SUCCESSORS.get(from).add(to);
+    PREDECESSORS.get(to).add(from);
+  }
+
+  /**
+   * @param tac - 3AC instruction.
+   *
+   * @return true if control does not simply continue to the next line.
+   */
+  private static boolean endsBlock(LinkedList<String> tac) {
+    return ICUtilities.isJump(tac) || ICUtilities.isBranch(tac) || ICUtilities.isReturn(tac);
+  }
+}
@@ -1,17 +1,18 @@
 package edu.joshuacrotts.littlec.icode;
 
+import edu.joshuacrotts.littlec.main.CompilationContext;
+
 /**
  * Intermediate code addresses. Addresses can indicate either global variables,
  * module-scope variables, local variables, function parameters, temporary
  * values, literals, or indexed locations (for arrays). When printed, names of
  * addresses are mangled according to the mangling rules in the assignment.
+ * Fresh temporary, module and string numbers come from the current
+ * CompilationContext.
  */
 public class ICAddress {
   private final static int ADDR_GLOBAL = 0, ADDR_LOCAL = 1, ADDR_PARAM = 2, ADDR_TEMP = 3, ADDR_LIT = 4, ADDR_STR = 5,
       ADDR_AIDX = 6, ADDR_MODULE = 7;
-  private static int nextTemp = 1;
-  private static int nextModule = 1;
-  private static int nextString = 1;
 
   /**
    * A few pre-allocated literals for common constants.
@@ -176,7 +177,7 @@ public class ICAddress {
   public static ICAddress newModule(int width, String name) {
     ICAddress toRet = new ICAddress(ADDR_MODULE);
     if (name == null)
-      name = "" + nextModule++;
+      name = "" + CompilationContext.current().nextModule();
     toRet.width = width;
     toRet.name = ((width == -1) ? "mf_" : ("m" + width + "_")) + name;
     return toRet;
@@ -223,7 +224,7 @@ public class ICAddress {
    */
   public static ICAddress newTemp(int width) {
     ICAddress toRet = new ICAddress(ADDR_TEMP);
-    toRet.offset = nextTemp++;
+    toRet.offset = CompilationContext.current().nextTemp();
     toRet.width = width;
     toRet.name = "t" + width + "_" + toRet.offset;
     return toRet;
@@ -251,7 +252,7 @@ public class ICAddress {
    */
   public static ICAddress newLitStr() {
     ICAddress toRet = new ICAddress(ADDR_STR);
-    toRet.offset = nextString++;
+    toRet.offset = CompilationContext.current().nextString();
     toRet.name = "S0_" + toRet.offset;
     return toRet;
   }
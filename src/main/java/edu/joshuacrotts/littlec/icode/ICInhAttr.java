@@ -2,15 +2,13 @@ package edu.joshuacrotts.littlec.icode;
 
 /**
  * This class acts as an inherited attribute. Everything is public because it's
- * easier to set things that way.
+ * easier to set things that way. The label a break jumps to is kept in the
+ * CompilationContext instead, since it outlives any one attribute.
  * 
  * @author Joshua Crotts
  */
 public class ICInhAttr {
 
-  /** */
-  public static String SUCC = ""; // Next label in line if we break.
-
   /** */
   public String TYPE = "";
 
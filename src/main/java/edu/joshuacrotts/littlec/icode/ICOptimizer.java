@@ -0,0 +1,498 @@
+package edu.joshuacrotts.littlec.icode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.joshuacrotts.littlec.main.CompilationContext;
+
+/**
+ * This class performs optimizations over the intermediate code once it has been
+ * generated, but before it is handed off to the interpreter or to MIPS code
+ * generation. Because both backends read from the quadruple, anything we clean
+ * up here is something neither of them has to dispatch.
+ *
+ * The if/while/for lowering produces a lot of control flow noise: gotos to
+ * labels that immediately goto somewhere else, conditional jumps over an
+ * unconditional jump, jumps to the very next line, and several labels stacked
+ * on the same instruction. This pass threads every jump to its final target and
+ * then cleans up whatever becomes redundant. Inlining (see Inliner) and loop
+ * optimizations (see LoopOptimizer) are run from here as well.
+ *
+ * @author Joshua Crotts
+ */
+public class ICOptimizer {
+
+  /** Optimization level used when none is given on the command line. */
+  public static final int DEFAULT_OPTIMIZATION_LEVEL = 1;
+
+  /** Highest optimization level that does anything different. */
+  public static final int MAX_OPTIMIZATION_LEVEL = 2;
+
+  /** Maps a relational operator to its logical negation. */
+  private static final Map<String, String> INVERSE_RELOPS = new HashMap<>();
+
+  static {
+    INVERSE_RELOPS.put("if==", "if!=");
+    INVERSE_RELOPS.put("if!=", "if==");
+    INVERSE_RELOPS.put("if<", "if>=");
+    INVERSE_RELOPS.put("if>=", "if<");
+    INVERSE_RELOPS.put("if>", "if<=");
+    INVERSE_RELOPS.put("if<=", "if>");
+  }
+
+  /**
+   * Optimization level of every compilation that doesn't set its own; -O0 turns
+   * the optimizer off entirely.
+   */
+  private static int optimizationLevel = DEFAULT_OPTIMIZATION_LEVEL;
+
+  /**
+   * Optimizes the quadruple in-place. Small functions are inlined first, then
+   * each function (everything between a .fnStart and its .fnEnd) is optimized
+   * on its own since labels never cross function boundaries. Global
+   * declarations are left untouched.
+   *
+   * @param quad - quadruple of 3AC to optimize.
+   *
+   * @return void.
+   */
+  public static void optimize(Quadruple quad) {
+    int level = getOptimizationLevel();
+    if (level == 0) {
+      return;
+    }
+
+    ArrayList<LinkedList<String>> instructions = quad.getInstructions();
+    Inliner.inline(instructions, level);
+    ArrayList<LinkedList<String>> optimized = new ArrayList<>(instructions.size());
+
+    for (int i = 0; i < instructions.size(); i++) {
+      LinkedList<String> tac = instructions.get(i);
+      optimized.add(tac);
+      if (!tac.get(1).equals(".fnStart")) {
+        continue;
+      }
+
+      // Collect the body of the function, excluding the .fnEnd line.
+      int j = i + 1;
+      ArrayList<LinkedList<String>> body = new ArrayList<>();
+      while (j < instructions.size() && !instructions.get(j).get(0).equals(".fnEnd")) {
+        body.add(instructions.get(j));
+        j++;
+      }
+
+      optimized.addAll(optimizeFunction(body));
+      i = j - 1;
+    }
+
+    quad.setInstructions(optimized);
+  }
+
+  /**
+   * Sets the optimization level for every compilation that doesn't set its own
+   * in its CompilationContext.
+   *
+   * @param level - level from 0 (no optimization) to MAX_OPTIMIZATION_LEVEL.
+   *
+   * @throws IllegalArgumentException if the level is out of range.
+   *
+   * @return void.
+   */
+  public static void setOptimizationLevel(int level) {
+    if (level < 0 || level > MAX_OPTIMIZATION_LEVEL) {
+      throw new IllegalArgumentException("optimization level must be between 0 and " + MAX_OPTIMIZATION_LEVEL + ".");
+    }
+
+    optimizationLevel = level;
+  }
+
+  /**
+   * @return the optimization level of the current compilation.
+   */
+  public static int getOptimizationLevel() {
+    int level = CompilationContext.current().getOptimizationLevel();
+    return level >= 0 ? level : optimizationLevel;
+  }
+
+  /**
+   * Optimizes the body of a single function. Jumps are threaded first so loops
+   * have a clean shape, and again afterwards to tidy up any preheaders. Strength
+   * reduction runs before hoisting so that the cheaper sequences it produces
+   * can move out of loops too.
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return optimized function body.
+   */
+  private static ArrayList<LinkedList<String>> optimizeFunction(ArrayList<LinkedList<String>> body) {
+    threadJumps(body);
+    StrengthReducer.reduce(body);
+
+    if (LoopOptimizer.optimizeLoops(body)) {
+      threadJumps(body);
+    }
+
+    return body;
+  }
+
+  /**
+   * Runs the jump threading passes over a function body until none of them make
+   * any more changes.
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return optimized function body.
+   */
+  private static ArrayList<LinkedList<String>> threadJumps(ArrayList<LinkedList<String>> body) {
+    removeDuplicateLabels(body);
+
+    boolean changed;
+    do {
+      changed = retargetJumps(body);
+      changed |= invertBranchesOverJumps(body);
+      changed |= removeJumpsToNextLine(body);
+      changed |= removeUnreachableCode(body);
+      changed |= moveSingleEntryBlocks(body);
+      changed |= removeUnusedLabels(body);
+    } while (changed);
+
+    return body;
+  }
+
+  /**
+   * Short-circuit lowering can define the same label more than once. Both
+   * backends resolve a jump to the last definition, so the earlier ones are
+   * removed.
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return true if the body changed, false otherwise.
+   */
+  private static boolean removeDuplicateLabels(ArrayList<LinkedList<String>> body) {
+    Set<String> visitedLabels = new HashSet<>();
+    boolean changed = false;
+
+    for (int i = body.size() - 1; i >= 0; i--) {
+      if (ICUtilities.isLabel(body.get(i)) && !visitedLabels.add(body.get(i).get(0))) {
+        body.remove(i);
+        changed = true;
+      }
+    }
+
+    return changed;
+  }
+
+  /**
+   * Redirects every goto and conditional goto to its final destination. If the
+   * target label is followed by an unconditional goto, we jump straight to that
+   * goto's target instead. Labels that are stacked on top of one another are
+   * canonicalized to the first of them so the rest become unreferenced.
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return true if the body changed, false otherwise.
+   */
+  private static boolean retargetJumps(ArrayList<LinkedList<String>> body) {
+    Map<String, Integer> labelLines = getLabelLines(body);
+    boolean changed = false;
+
+    for (LinkedList<String> tac : body) {
+      if (!ICUtilities.isJump(tac) && !ICUtilities.isBranch(tac)) {
+        continue;
+      }
+
+      String target = ICUtilities.getJumpTarget(tac);
+      String finalTarget = resolveLabel(body, labelLines, target, new HashSet<>());
+      if (!finalTarget.equals(target)) {
+        tac.set(0, "goto " + finalTarget);
+        changed = true;
+      }
+    }
+
+    return changed;
+  }
+
+  /**
+   * Finds the label that a jump to the label parameter eventually lands on.
+   *
+   * @param body       - list of 3AC instructions in the function.
+   * @param labelLines - map of label names to their line in the body.
+   * @param label      - label to resolve.
+   * @param visited    - labels already seen, so that goto cycles terminate.
+   *
+   * @return name of the final label.
+   */
+  private static String resolveLabel(ArrayList<LinkedList<String>> body, Map<String, Integer> labelLines,
+      String label, Set<String> visited) {
+    Integer line = labelLines.get(label);
+    if (line == null) {
+      return label;
+    }
+
+    // Walk back to the first label in the stack.
+    int first = line;
+    while (first > 0 && ICUtilities.isLabel(body.get(first - 1))) {
+      first--;
+    }
+    String canonical = ICUtilities.getLabelName(body.get(first));
+    if (!visited.add(canonical)) {
+      return canonical;
+    }
+
+    // Walk forward to the first real instruction after the stack.
+    int next = line;
+    while (next < body.size() && ICUtilities.isLabel(body.get(next))) {
+      next++;
+    }
+    if (next < body.size() && ICUtilities.isJump(body.get(next))) {
+      return resolveLabel(body, labelLines, ICUtilities.getJumpTarget(body.get(next)), visited);
+    }
+
+    return canonical;
+  }
+
+  /**
+   * Rewrites the pattern
+   *
+   * if a < b goto L1
+   * goto L2
+   * L1:
+   *
+   * into
+   *
+   * if a >= b goto L2
+   * L1:
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return true if the body changed, false otherwise.
+   */
+  private static boolean invertBranchesOverJumps(ArrayList<LinkedList<String>> body) {
+    boolean changed = false;
+
+    for (int i = 0; i < body.size() - 1; i++) {
+      LinkedList<String> branch = body.get(i);
+      LinkedList<String> jump = body.get(i + 1);
+      if (!ICUtilities.isBranch(branch) || !ICUtilities.isJump(jump)
+          || !INVERSE_RELOPS.containsKey(branch.get(3))) {
+        continue;
+      }
+
+      if (isLabelOnLine(body, i + 2, ICUtilities.getJumpTarget(branch))) {
+        branch.set(0, jump.get(0));
+        branch.set(3, INVERSE_RELOPS.get(branch.get(3)));
+        body.remove(i + 1);
+        changed = true;
+      }
+    }
+
+    return changed;
+  }
+
+  /**
+   * Removes gotos and conditional gotos whose target is the line that would run
+   * next anyways. The operands of a conditional are plain addresses, so dropping
+   * the comparison has no side effects.
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return true if the body changed, false otherwise.
+   */
+  private static boolean removeJumpsToNextLine(ArrayList<LinkedList<String>> body) {
+    boolean changed = false;
+
+    for (int i = body.size() - 1; i >= 0; i--) {
+      LinkedList<String> tac = body.get(i);
+      if ((ICUtilities.isJump(tac) || ICUtilities.isBranch(tac))
+          && isLabelOnLine(body, i + 1, ICUtilities.getJumpTarget(tac))) {
+        body.remove(i);
+        changed = true;
+      }
+    }
+
+    return changed;
+  }
+
+  /**
+   * Removes instructions that follow an unconditional goto or a return, up until
+   * the next label, since nothing can ever reach them.
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return true if the body changed, false otherwise.
+   */
+  private static boolean removeUnreachableCode(ArrayList<LinkedList<String>> body) {
+    boolean changed = false;
+
+    for (int i = 0; i < body.size(); i++) {
+      if (!ICUtilities.isJump(body.get(i)) && !ICUtilities.isReturn(body.get(i))) {
+        continue;
+      }
+
+      while (i + 1 < body.size() && !ICUtilities.isLabel(body.get(i + 1))) {
+        body.remove(i + 1);
+        changed = true;
+      }
+    }
+
+    return changed;
+  }
+
+  /**
+   * Merges a block into its only predecessor. If a goto is the only way to reach
+   * a block (there's exactly one reference to it and nothing falls into it), and
+   * that block itself ends in a goto or return, then it can be moved to replace
+   * the goto. The jump disappears and the two blocks become straight-line code.
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return true if the body changed, false otherwise.
+   */
+  private static boolean moveSingleEntryBlocks(ArrayList<LinkedList<String>> body) {
+    Map<String, Integer> labelLines = getLabelLines(body);
+    Map<String, Integer> labelRefs = getLabelReferences(body);
+
+    for (int i = 0; i < body.size(); i++) {
+      if (!ICUtilities.isJump(body.get(i))) {
+        continue;
+      }
+
+      Integer line = labelLines.get(ICUtilities.getJumpTarget(body.get(i)));
+      if (line == null) {
+        continue;
+      }
+
+      // Find the stack of labels that starts the block, and make sure this goto
+      // is the only way in.
+      int start = line;
+      while (start > 0 && ICUtilities.isLabel(body.get(start - 1))) {
+        start--;
+      }
+      if (start == 0 || (!ICUtilities.isJump(body.get(start - 1)) && !ICUtilities.isReturn(body.get(start - 1)))) {
+        continue;
+      }
+
+      int refs = 0;
+      int end = start;
+      for (; end < body.size() && ICUtilities.isLabel(body.get(end)); end++) {
+        Integer count = labelRefs.get(ICUtilities.getLabelName(body.get(end)));
+        refs += count == null ? 0 : count;
+      }
+      if (refs != 1) {
+        continue;
+      }
+
+      // The block has to end in a goto or return, otherwise it relies on falling
+      // through to whatever follows it.
+      while (end < body.size() && !ICUtilities.isLabel(body.get(end)) && !ICUtilities.isJump(body.get(end))
+          && !ICUtilities.isReturn(body.get(end))) {
+        end++;
+      }
+      if (end >= body.size() || ICUtilities.isLabel(body.get(end)) || (i >= start && i <= end)) {
+        continue;
+      }
+
+      // Splice the block (without its labels) in place of the goto.
+      List<LinkedList<String>> block = new ArrayList<>(body.subList(start, end + 1));
+      while (ICUtilities.isLabel(block.get(0))) {
+        block.remove(0);
+      }
+
+      ArrayList<LinkedList<String>> merged = new ArrayList<>(body.size());
+      for (int j = 0; j < body.size(); j++) {
+        if (j == i) {
+          merged.addAll(block);
+        } else if (j < start || j > end) {
+          merged.add(body.get(j));
+        }
+      }
+      body.clear();
+      body.addAll(merged);
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Removes every label that is no longer the target of a goto.
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return true if the body changed, false otherwise.
+   */
+  private static boolean removeUnusedLabels(ArrayList<LinkedList<String>> body) {
+    Map<String, Integer> labelRefs = getLabelReferences(body);
+    boolean changed = false;
+
+    for (int i = body.size() - 1; i >= 0; i--) {
+      if (ICUtilities.isLabel(body.get(i)) && !labelRefs.containsKey(ICUtilities.getLabelName(body.get(i)))) {
+        body.remove(i);
+        changed = true;
+      }
+    }
+
+    return changed;
+  }
+
+  /**
+   * Determines whether the label is defined in the stack of labels beginning at
+   * the specified line.
+   *
+   * @param body  - list of 3AC instructions in the function.
+   * @param line  - first line to check.
+   * @param label - label name without the colon.
+   *
+   * @return true if the label is found before a non-label instruction.
+   */
+  private static boolean isLabelOnLine(ArrayList<LinkedList<String>> body, int line, String label) {
+    for (int i = line; i < body.size() && ICUtilities.isLabel(body.get(i)); i++) {
+      if (ICUtilities.getLabelName(body.get(i)).equals(label)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Maps each label defined in the body to its line number.
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return map of label name to line number.
+   */
+  private static Map<String, Integer> getLabelLines(ArrayList<LinkedList<String>> body) {
+    Map<String, Integer> labelLines = new HashMap<>();
+    for (int i = 0; i < body.size(); i++) {
+      if (ICUtilities.isLabel(body.get(i))) {
+        labelLines.put(ICUtilities.getLabelName(body.get(i)), i);
+      }
+    }
+
+    return labelLines;
+  }
+
+  /**
+   * Counts how many gotos (conditional or otherwise) reference each label.
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return map of label name to number of references.
+   */
+  private static Map<String, Integer> getLabelReferences(ArrayList<LinkedList<String>> body) {
+    Map<String, Integer> labelRefs = new HashMap<>();
+    for (LinkedList<String> tac : body) {
+      if (ICUtilities.isJump(tac) || ICUtilities.isBranch(tac)) {
+        labelRefs.merge(ICUtilities.getJumpTarget(tac), 1, Integer::sum);
+      }
+    }
+
+    return labelRefs;
+  }
+}
@@ -0,0 +1,287 @@
+package edu.joshuacrotts.littlec.icode;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class has static utilities for inspecting a single 3AC instruction. An
+ * instruction is the (res, op1, op2, op) LinkedList used by the quadruple, the
+ * function blocks, and the basic blocks. The optimizers call these in their
+ * inner loops, so they look at characters rather than matching regexes.
+ *
+ * @author Joshua Crotts
+ */
+public class ICUtilities {
+
+  /** Runtime functions provided by the backends. None of them write globals. */
+  private static final Set<String> RUNTIME_FUNCTIONS = new HashSet<>(Arrays.asList("gf_prints", "gf_printd",
+      "gf_printc", "gf_printf", "gf_read", "gf_readc", "gf_readf", "gf_readline"));
+
+  /**
+   * @param tac - 3AC instruction.
+   *
+   * @return true if the instruction is a compiler label definition (e.g. L5:).
+   */
+  public static boolean isLabel(LinkedList<String> tac) {
+    String res = tac.get(0);
+    return tac.get(3).isEmpty() && res.length() > 2 && res.charAt(0) == 'L' && res.endsWith(":")
+        && isDigits(res, 1, res.length() - 1);
+  }
+
+  /**
+   * @param tac - 3AC instruction.
+   *
+   * @return true if the instruction is an unconditional goto.
+   */
+  public static boolean isJump(LinkedList<String> tac) {
+    return tac.get(3).isEmpty() && tac.get(0).startsWith("goto ");
+  }
+
+  /**
+   * @param tac - 3AC instruction.
+   *
+   * @return true if the instruction is a conditional goto.
+   */
+  public static boolean isBranch(LinkedList<String> tac) {
+    return tac.get(3).startsWith("if") && tac.get(0).startsWith("goto ");
+  }
+
+  /**
+   * @param tac - 3AC instruction.
+   *
+   * @return true if the instruction returns from the function.
+   */
+  public static boolean isReturn(LinkedList<String> tac) {
+    return tac.get(3).startsWith("return");
+  }
+
+  /**
+   * @param tac - 3AC instruction.
+   *
+   * @return true if the instruction is a function call (void or non-void).
+   */
+  public static boolean isCall(LinkedList<String> tac) {
+    return tac.get(3).equals("call");
+  }
+
+  /**
+   * @param tac - 3AC instruction.
+   *
+   * @return true if the instruction calls a function provided by the runtime
+   *         (prints, read, etc.) rather than one defined in the program.
+   */
+  public static boolean isRuntimeCall(LinkedList<String> tac) {
+    return isCall(tac) && RUNTIME_FUNCTIONS.contains(tac.get(1));
+  }
+
+  /**
+   * Determines whether a call may write to a global variable. Calls into the
+   * runtime (prints, read, etc.) never do; any user function might.
+   *
+   * @param tac - call instruction.
+   *
+   * @return true if the call may modify globals.
+   */
+  public static boolean callWritesGlobals(LinkedList<String> tac) {
+    return !isRuntimeCall(tac);
+  }
+
+  /**
+   * @param tac - goto or conditional goto instruction.
+   *
+   * @return name of the label being jumped to.
+   */
+  public static String getJumpTarget(LinkedList<String> tac) {
+    return tac.get(0).substring(5);
+  }
+
+  /**
+   * @param tac - label instruction.
+   *
+   * @return label name without the trailing colon.
+   */
+  public static String getLabelName(LinkedList<String> tac) {
+    String res = tac.get(0);
+    return res.substring(0, res.length() - 1);
+  }
+
+  /**
+   * Determines if the string is a variable address (temporary, local, parameter,
+   * or global), as opposed to a literal, string constant, or function name.
+   *
+   * @param addr - address string.
+   *
+   * @return true if addr names a variable.
+   */
+  public static boolean isVariable(String addr) {
+    if (addr.length() < 3 || "tlpg".indexOf(addr.charAt(0)) < 0 || !isDigit(addr.charAt(1))) {
+      return false;
+    }
+    return addr.charAt(2) == '_' || addr.charAt(2) == '@';
+  }
+
+  /**
+   * @param addr - address string.
+   *
+   * @return true if addr is a compiler temporary (e.g. t4_3).
+   */
+  public static boolean isTemp(String addr) {
+    return addr.length() > 3 && addr.charAt(0) == 't' && isDigit(addr.charAt(1)) && addr.charAt(2) == '_'
+        && isDigits(addr, 3, addr.length());
+  }
+
+  /**
+   * @param addr - address string.
+   *
+   * @return true if addr is a global variable (e.g. g4_count).
+   */
+  public static boolean isGlobal(String addr) {
+    return addr.length() > 2 && addr.charAt(0) == 'g' && isDigit(addr.charAt(1)) && addr.charAt(2) == '_';
+  }
+
+  /**
+   * @param addr - address string.
+   *
+   * @return true if addr is an integer literal.
+   */
+  public static boolean isLiteral(String addr) {
+    int start = addr.startsWith("-") ? 1 : 0;
+    return addr.length() > start && isDigits(addr, start, addr.length());
+  }
+
+  /**
+   * @param c - character.
+   *
+   * @return true if c is an ASCII digit.
+   */
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * @param s    - string.
+   * @param from - first index to check.
+   * @param to   - index after the last one to check.
+   *
+   * @return true if every character of s from "from" up to "to" is an ASCII
+   *         digit.
+   */
+  private static boolean isDigits(String s, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (!isDigit(s.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the width of a variable address, i.e. the digit after its prefix
+   * (t4_3 is 4 bytes wide, l1@8 is 1 byte wide).
+   *
+   * @param addr - variable address.
+   *
+   * @return width of the variable in bytes.
+   */
+  public static int getWidth(String addr) {
+    return Character.getNumericValue(addr.charAt(1));
+  }
+
+  /**
+   * Finds the highest temporary number used in a list of instructions. Passes
+   * that need new temporaries number them after this so they never collide with
+   * the ones the activation record handed out.
+   *
+   * @param instructions - list of 3AC instructions.
+   *
+   * @return highest temporary number, or 0 if there are none.
+   */
+  public static int getLastTemp(List<LinkedList<String>> instructions) {
+    int lastTemp = 0;
+    for (LinkedList<String> tac : instructions) {
+      for (String addr : tac) {
+        if (isTemp(addr)) {
+          lastTemp = Math.max(lastTemp, Integer.parseInt(addr.substring(addr.indexOf("_") + 1)));
+        }
+      }
+    }
+
+    return lastTemp;
+  }
+
+  /**
+   * Builds a new 3AC instruction.
+   *
+   * @param res - result of three-address code.
+   * @param op1 - operand 1.
+   * @param op2 - operand 2.
+   * @param op  - operator used.
+   *
+   * @return LinkedList of the four components.
+   */
+  public static LinkedList<String> newInstruction(String res, String op1, String op2, String op) {
+    return new LinkedList<>(Arrays.asList(res, op1, op2, op));
+  }
+
+  /**
+   * Returns the variable written by the instruction, if any. Indexed stores
+   * (stidx) write to memory rather than to their result address, so they define
+   * nothing.
+   *
+   * @param tac - 3AC instruction.
+   *
+   * @return address written by the instruction, or null if nothing is written.
+   */
+  public static String getDefinedAddress(LinkedList<String> tac) {
+    String res = tac.get(0);
+    String op = tac.get(3);
+    if (res.isEmpty() || isLabel(tac) || isJump(tac) || isBranch(tac) || op.contains("stidx")
+        || op.startsWith("param") || op.startsWith("return")) {
+      return null;
+    }
+
+    return isVariable(res) ? res : null;
+  }
+
+  /**
+   * Returns every variable read by the instruction.
+   *
+   * @param tac - 3AC instruction.
+   *
+   * @return LinkedList of the variables used, possibly empty.
+   */
+  public static LinkedList<String> getUsedAddresses(LinkedList<String> tac) {
+    LinkedList<String> uses = new LinkedList<>();
+    if (isLabel(tac) || isJump(tac) || isCall(tac) || tac.get(3).startsWith("setsize")) {
+      return uses;
+    }
+
+    // The address-of operator reads the location, not the value.
+    if (!tac.get(3).equals("&") || !tac.get(2).isEmpty()) {
+      addIfVariable(uses, tac.get(1));
+    }
+    addIfVariable(uses, tac.get(2));
+
+    // Indexed stores read the array reference held in the result.
+    if (tac.get(3).contains("stidx")) {
+      addIfVariable(uses, tac.get(0));
+    }
+
+    return uses;
+  }
+
+  /**
+   * Adds the address to the list if it names a variable.
+   *
+   * @param uses - list of used variables.
+   * @param addr - address to check.
+   */
+  private static void addIfVariable(LinkedList<String> uses, String addr) {
+    if (isVariable(addr)) {
+      uses.add(addr);
+    }
+  }
+}
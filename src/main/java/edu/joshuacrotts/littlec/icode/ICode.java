@@ -1,7 +1,6 @@
 package edu.joshuacrotts.littlec.icode;
 
-import java.util.Stack;
-
+import edu.joshuacrotts.littlec.main.CompilationContext;
 import edu.joshuacrotts.littlec.syntaxtree.LCSyntaxTree;
 
 /**
@@ -13,11 +12,8 @@ import edu.joshuacrotts.littlec.syntaxtree.LCSyntaxTree;
  */
 public class ICode {
 
-  /* Quadruple of program 3 address code statements. */
-  public static Quadruple quad = new Quadruple();
-
-  /* Stack of activation records. */
-  private static Stack<ActivationRecord> arStack = new Stack<>();
+  /* Compilation this code belongs to; it holds the quadruple and AR stack. */
+  private final CompilationContext CONTEXT;
 
   /**
    * The constructor takes a syntax tree, and creates some internal representation
@@ -29,8 +25,72 @@ public class ICode {
    * @param tree the syntax tree for the input program
    */
   public ICode(LCSyntaxTree tree) {
-    arStack.push(new ActivationRecord());
-    this.traverse(tree);
+    this(tree, CompilationContext.current());
+  }
+
+  /**
+   * Generates the intermediate code for a tree inside the given compilation,
+   * binding it to this thread while the code is generated and optimized.
+   *
+   * @param tree    the syntax tree for the input program
+   * @param context compilation the tree was built in
+   */
+  public ICode(LCSyntaxTree tree, CompilationContext context) {
+    this(tree, context, true);
+  }
+
+  /**
+   * Generates the intermediate code for a tree inside the given compilation,
+   * optimizing it only if asked to. Code that isn't optimized here can be
+   * optimized later with optimize().
+   *
+   * @param tree         the syntax tree for the input program
+   * @param context      compilation the tree was built in
+   * @param isOptimizing optimize the code once it's generated?
+   */
+  public ICode(LCSyntaxTree tree, CompilationContext context, boolean isOptimizing) {
+    this.CONTEXT = context;
+    CompilationContext.Binding binding = context.bind();
+    try {
+      context.getARStack().push(new ActivationRecord());
+      this.traverse(tree);
+    } finally {
+      binding.unbind();
+    }
+
+    if (isOptimizing) {
+      this.optimize();
+    }
+  }
+
+  /**
+   * Runs the optimizer over the code at the compilation's optimization level.
+   *
+   * @param void.
+   *
+   * @return void.
+   */
+  public void optimize() {
+    CompilationContext.Binding binding = this.CONTEXT.bind();
+    try {
+      ICOptimizer.optimize(this.CONTEXT.getQuad());
+    } finally {
+      binding.unbind();
+    }
+  }
+
+  /**
+   * @return the compilation this code belongs to.
+   */
+  public CompilationContext getContext() {
+    return this.CONTEXT;
+  }
+
+  /**
+   * @return the three-address code of the current compilation.
+   */
+  public static Quadruple getQuad() {
+    return CompilationContext.current().getQuad();
   }
 
   /**
@@ -38,7 +98,7 @@ public class ICode {
    * @param ar
    */
   public static void addAR(ActivationRecord ar) {
-    arStack.add(ar);
+    CompilationContext.current().getARStack().add(ar);
   }
 
   /**
@@ -46,14 +106,14 @@ public class ICode {
    * @return
    */
   public static ActivationRecord getTopAR() {
-    return arStack.peek();
+    return CompilationContext.current().getARStack().peek();
   }
 
   /**
    * 
    */
   public static void removeTopAR() {
-    arStack.pop();
+    CompilationContext.current().getARStack().pop();
   }
 
   /**
@@ -61,15 +121,17 @@ public class ICode {
    * @return
    */
   public static int getARStackSize() {
-    return arStack.size();
+    return CompilationContext.current().getARStack().size();
   }
 
   /**
-   * 
+   * Clears the three-address code and activation records of the current
+   * compilation.
    */
   public static void cleanup() {
-    arStack.clear();
-    quad.cleanup();
+    CompilationContext context = CompilationContext.current();
+    context.getARStack().clear();
+    context.getQuad().cleanup();
   }
 
   /**
@@ -87,8 +149,8 @@ public class ICode {
   private void preOrderGenCodeHelper(LCSyntaxTree tree) {
     tree.genCode(new ICInhAttr());
 
-    for (LCSyntaxTree child : tree.getChildren()) {
-      this.preOrderGenCodeHelper(child);
+    for (int i = 0; i < tree.getChildCount(); i++) {
+      this.preOrderGenCodeHelper(tree.getChild(i));
     }
   }
 
@@ -100,6 +162,11 @@ public class ICode {
    */
   @Override
   public String toString() {
-    return quad.toString();
+    CompilationContext.Binding binding = this.CONTEXT.bind();
+    try {
+      return this.CONTEXT.getQuad().toString();
+    } finally {
+      binding.unbind();
+    }
   }
 }
\ No newline at end of file
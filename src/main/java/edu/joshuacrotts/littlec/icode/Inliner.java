@@ -0,0 +1,443 @@
+package edu.joshuacrotts.littlec.icode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+import edu.joshuacrotts.littlec.main.LCUtilities;
+
+/**
+ * Inlines calls to small functions into their callers. Every call pushes its
+ * arguments one by one and builds a new frame in both backends, so for a short
+ * function the call is often more work than the body.
+ *
+ * At -O1 only small leaf functions (ones that don't call any other user
+ * function) are inlined. -O2 allows larger leaves, as well as any function
+ * with a single call site in the whole program. Recursive functions (anything
+ * that can reach itself through the call graph) are never inlined.
+ *
+ * An inlined body gets its own copy of the callee's frame in the caller: each
+ * parameter becomes a new local that the argument is copied into, the callee's
+ * locals are moved past the caller's, and temporaries and labels are renamed so
+ * nothing collides. Returns become a copy into the call's result and a jump to
+ * the end of the inlined body.
+ *
+ * @author Joshua Crotts
+ */
+public class Inliner {
+
+  /** Largest leaf function (in instructions) inlined at -O1. */
+  private static final int O1_LEAF_SIZE = 12;
+
+  /** Largest leaf function (in instructions) inlined at -O2. */
+  private static final int O2_LEAF_SIZE = 40;
+
+  /** Largest single call site function (in instructions) inlined at -O2. */
+  private static final int O2_SINGLE_CALL_SIZE = 200;
+
+  /** Caller size (in instructions) after which nothing else is inlined into it. */
+  private static final int MAX_CALLER_SIZE = 2000;
+
+  /**
+   * Program rows split up into functions and the global rows between them, in
+   * their original order. A function segment begins with its .fnStart row and
+   * ends with its .fnEnd row.
+   */
+  private final ArrayList<ArrayList<LinkedList<String>>> SEGMENTS;
+
+  /** Function name -> its segment. */
+  private final Map<String, ArrayList<LinkedList<String>>> FUNCTIONS;
+
+  /** Function name -> number of call sites in the original program. */
+  private final Map<String, Integer> CALL_SITES;
+
+  /** Functions that can call themselves, directly or not. */
+  private final Set<String> RECURSIVE_FUNCTIONS;
+
+  /** Optimization level that picks the heuristic. */
+  private final int LEVEL;
+
+  private Inliner(ArrayList<LinkedList<String>> instructions, int level) {
+    this.SEGMENTS = new ArrayList<>();
+    this.FUNCTIONS = new LinkedHashMap<>();
+    this.CALL_SITES = new HashMap<>();
+    this.RECURSIVE_FUNCTIONS = new HashSet<>();
+    this.LEVEL = level;
+
+    for (int i = 0; i < instructions.size(); i++) {
+      ArrayList<LinkedList<String>> segment = new ArrayList<>();
+      segment.add(instructions.get(i));
+      if (instructions.get(i).get(1).equals(".fnStart")) {
+        while (++i < instructions.size() && !instructions.get(i).get(0).equals(".fnEnd")) {
+          segment.add(instructions.get(i));
+        }
+        if (i < instructions.size()) {
+          segment.add(instructions.get(i));
+        }
+        this.FUNCTIONS.put(segment.get(0).get(0), segment);
+      }
+      this.SEGMENTS.add(segment);
+    }
+
+    for (ArrayList<LinkedList<String>> function : this.FUNCTIONS.values()) {
+      for (LinkedList<String> tac : function) {
+        if (ICUtilities.isCall(tac)) {
+          this.CALL_SITES.merge(tac.get(1), 1, Integer::sum);
+        }
+      }
+    }
+    for (String name : this.FUNCTIONS.keySet()) {
+      if (this.getReachableFunctions(name).contains(name)) {
+        this.RECURSIVE_FUNCTIONS.add(name);
+      }
+    }
+  }
+
+  /**
+   * Inlines function calls across the whole program. Callees are processed
+   * before their callers, so a function has already had its own calls inlined
+   * by the time it's copied somewhere else. Functions that can no longer be
+   * reached from main are dropped afterwards.
+   *
+   * @param instructions - every 3AC instruction in the program.
+   * @param level        - optimization level.
+   *
+   * @return true if any call was inlined, false otherwise.
+   */
+  public static boolean inline(ArrayList<LinkedList<String>> instructions, int level) {
+    Inliner inliner = new Inliner(instructions, level);
+    boolean changed = false;
+    for (String caller : inliner.getBottomUpOrder()) {
+      changed |= inliner.inlineCalls(caller);
+    }
+
+    if (!changed) {
+      return false;
+    }
+
+    inliner.removeUnreachableFunctions();
+    instructions.clear();
+    for (ArrayList<LinkedList<String>> segment : inliner.SEGMENTS) {
+      instructions.addAll(segment);
+    }
+
+    return true;
+  }
+
+  /**
+   * Inlines every eligible call in a function.
+   *
+   * @param caller - name of the calling function.
+   *
+   * @return true if any call was inlined, false otherwise.
+   */
+  private boolean inlineCalls(String caller) {
+    ArrayList<LinkedList<String>> function = FUNCTIONS.get(caller);
+
+    // Match each call with the params that were pushed for it. Nested calls
+    // push and pop their own params in between, so a stack pairs them up.
+    Map<Integer, LinkedList<Integer>> callParams = new HashMap<>();
+    Stack<Integer> pushed = new Stack<>();
+    for (int i = 1; i < function.size() - 1; i++) {
+      LinkedList<String> tac = function.get(i);
+      if (tac.get(3).startsWith("param")) {
+        pushed.push(i);
+      } else if (ICUtilities.isCall(tac)) {
+        LinkedList<Integer> params = new LinkedList<>();
+        for (int n = Integer.parseInt(tac.get(2)); n > 0 && !pushed.isEmpty(); n--) {
+          params.add(pushed.pop());
+        }
+        callParams.put(i, params);
+      }
+    }
+
+    // Param rows of an inlined call become copies into the callee's parameter
+    // slots, and the call itself becomes the body.
+    int frameSize = Integer.parseInt(function.get(0).get(2));
+    int lastTemp = ICUtilities.getLastTemp(function);
+    int callerSize = function.size();
+    Map<Integer, LinkedList<String>> paramCopies = new HashMap<>();
+    Map<Integer, ArrayList<LinkedList<String>>> inlinedBodies = new HashMap<>();
+
+    for (int i = 1; i < function.size() - 1; i++) {
+      LinkedList<String> call = function.get(i);
+      if (!ICUtilities.isCall(call) || !this.shouldInline(caller, call.get(1), callerSize)) {
+        continue;
+      }
+
+      ArrayList<LinkedList<String>> callee = FUNCTIONS.get(call.get(1));
+      LinkedList<Integer> params = callParams.get(i);
+      if (params.size() != Integer.parseInt(callee.get(0).get(3))) {
+        continue;
+      }
+
+      int paramBase = LCUtilities.getNextAddress(frameSize);
+      int localBase = paramBase + 4 * params.size();
+      Map<String, String> labels = new HashMap<>();
+      for (int j = 0; j < params.size(); j++) {
+        String slot = getParameterName(callee, 4 * j);
+        LinkedList<String> param = function.get(params.get(j));
+        if (slot != null) {
+          String local = "l" + ICUtilities.getWidth(slot) + "@" + (paramBase + 4 * j);
+          int width = Character.getNumericValue(param.get(3).charAt(5));
+          paramCopies.put(params.get(j), newCopy(local, param.get(1), width));
+        } else {
+          paramCopies.put(params.get(j), null);
+        }
+      }
+
+      ArrayList<LinkedList<String>> body = new ArrayList<>();
+      String endLabel = ActivationRecord.newLabel();
+      for (int j = 1; j < callee.size() - 1; j++) {
+        LinkedList<String> tac = new LinkedList<>();
+        for (String field : callee.get(j)) {
+          tac.add(renameAddress(field, paramBase, localBase, lastTemp, labels));
+        }
+
+        if (ICUtilities.isReturn(tac)) {
+          if (!call.get(0).isEmpty() && !tac.get(1).isEmpty()) {
+            body.add(newCopy(call.get(0), tac.get(1), Character.getNumericValue(tac.get(3).charAt(6))));
+          }
+          body.add(ICUtilities.newInstruction("goto " + endLabel, "", "", ""));
+        } else {
+          body.add(tac);
+        }
+      }
+      body.add(ICUtilities.newInstruction(endLabel + ":", "", "", ""));
+
+      inlinedBodies.put(i, body);
+      frameSize = localBase + Integer.parseInt(callee.get(0).get(2));
+      lastTemp = Math.max(lastTemp, ICUtilities.getLastTemp(body));
+      callerSize += body.size();
+    }
+
+    if (inlinedBodies.isEmpty()) {
+      return false;
+    }
+
+    ArrayList<LinkedList<String>> inlined = new ArrayList<>();
+    LinkedList<String> header = new LinkedList<>(function.get(0));
+    header.set(2, Integer.toString(frameSize));
+    inlined.add(header);
+    for (int i = 1; i < function.size(); i++) {
+      if (inlinedBodies.containsKey(i)) {
+        inlined.addAll(inlinedBodies.get(i));
+      } else if (paramCopies.containsKey(i)) {
+        if (paramCopies.get(i) != null) {
+          inlined.add(paramCopies.get(i));
+        }
+      } else {
+        inlined.add(function.get(i));
+      }
+    }
+
+    function.clear();
+    function.addAll(inlined);
+    return true;
+  }
+
+  /**
+   * Decides whether a call should be inlined.
+   *
+   * @param caller     - name of the calling function.
+   * @param callee     - name of the called function.
+   * @param callerSize - current size of the caller, counting earlier inlining.
+   *
+   * @return true if the call should be replaced by the callee's body.
+   */
+  private boolean shouldInline(String caller, String callee, int callerSize) {
+    ArrayList<LinkedList<String>> function = FUNCTIONS.get(callee);
+    if (function == null || callee.equals(caller) || callee.equals("gf_main")
+        || RECURSIVE_FUNCTIONS.contains(callee)) {
+      return false;
+    }
+
+    // Local arrays rely on a fresh frame for their contents, so leave them be.
+    boolean isLeaf = true;
+    int size = 0;
+    for (LinkedList<String> tac : function) {
+      if (tac.get(3).startsWith("setsize")) {
+        return false;
+      }
+      isLeaf &= !ICUtilities.isCall(tac) || !FUNCTIONS.containsKey(tac.get(1));
+      size += ICUtilities.isLabel(tac) ? 0 : 1;
+    }
+    size -= 2;
+
+    if (callerSize + size > MAX_CALLER_SIZE) {
+      return false;
+    }
+
+    switch (LEVEL) {
+    case 0:
+      return false;
+    case 1:
+      return isLeaf && size <= O1_LEAF_SIZE;
+    default:
+      return (isLeaf && size <= O2_LEAF_SIZE)
+          || (CALL_SITES.getOrDefault(callee, 0) == 1 && size <= O2_SINGLE_CALL_SIZE);
+    }
+  }
+
+  /**
+   * Renames one field of a callee instruction into the caller's frame.
+   *
+   * @param field     - field of the callee instruction.
+   * @param paramBase - offset of the callee's parameters in the caller's frame.
+   * @param localBase - offset of the callee's locals in the caller's frame.
+   * @param lastTemp  - last temporary number used by the caller.
+   * @param labels    - callee label -> caller label, filled in on demand.
+   *
+   * @return field as it should appear in the caller.
+   */
+  private static String renameAddress(String field, int paramBase, int localBase, int lastTemp,
+      Map<String, String> labels) {
+    if (ICUtilities.isTemp(field)) {
+      return field.substring(0, 3) + (Integer.parseInt(field.substring(3)) + lastTemp);
+    } else if (field.matches("p\\d@\\d+")) {
+      return "l" + field.charAt(1) + "@" + (Integer.parseInt(field.substring(3)) + paramBase);
+    } else if (field.matches("l\\d@\\d+")) {
+      return "l" + field.charAt(1) + "@" + (Integer.parseInt(field.substring(3)) + localBase);
+    } else if (field.matches("L\\d+:")) {
+      return labels.computeIfAbsent(field.substring(0, field.length() - 1), k -> ActivationRecord.newLabel()) + ":";
+    } else if (field.matches("goto L\\d+")) {
+      return "goto " + labels.computeIfAbsent(field.substring(5), k -> ActivationRecord.newLabel());
+    }
+
+    return field;
+  }
+
+  /**
+   * Builds a copy of a value into a variable, widening or narrowing it when the
+   * two widths differ. Strings and arrays are passed by address, so copying one
+   * takes its address instead.
+   *
+   * @param res   - variable to copy into.
+   * @param src   - value to copy.
+   * @param width - width of the value.
+   *
+   * @return copy instruction.
+   */
+  private static LinkedList<String> newCopy(String res, String src, int width) {
+    if (src.matches("S0_\\d+") || (ICUtilities.isVariable(src) && ICUtilities.getWidth(src) == 0)) {
+      return ICUtilities.newInstruction(res, src, "", "&");
+    } else if (ICUtilities.isLiteral(src) || ICUtilities.getWidth(res) == width) {
+      return ICUtilities.newInstruction(res, src, "", "=");
+    }
+
+    return ICUtilities.newInstruction(res, src, "", ICUtilities.getWidth(res) == 4 ? "widen" : "narrow");
+  }
+
+  /**
+   * Finds how the callee refers to the parameter at the given offset.
+   *
+   * @param callee - callee rows.
+   * @param offset - parameter offset.
+   *
+   * @return parameter address (e.g. p4@8), or null if the callee never uses it.
+   */
+  private static String getParameterName(ArrayList<LinkedList<String>> callee, int offset) {
+    for (LinkedList<String> tac : callee) {
+      for (String field : tac) {
+        if (field.matches("p\\d@" + offset)) {
+          return field;
+        }
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Orders the functions so that every callee comes before its callers (apart
+   * from recursive ones, which can't be ordered and are never inlined anyway).
+   *
+   * @return function names, callees first.
+   */
+  private LinkedList<String> getBottomUpOrder() {
+    LinkedList<String> order = new LinkedList<>();
+    Set<String> visited = new HashSet<>();
+    for (String name : FUNCTIONS.keySet()) {
+      this.addBottomUp(name, visited, order);
+    }
+
+    return order;
+  }
+
+  /**
+   * Adds a function to the order after everything it calls.
+   *
+   * @param name    - function name.
+   * @param visited - functions already visited.
+   * @param order   - order being built.
+   */
+  private void addBottomUp(String name, Set<String> visited, LinkedList<String> order) {
+    if (!visited.add(name)) {
+      return;
+    }
+
+    for (String callee : this.getCallees(name)) {
+      this.addBottomUp(callee, visited, order);
+    }
+    order.add(name);
+  }
+
+  /**
+   * Drops every function that main can no longer call. If the program has no
+   * main, everything is kept.
+   */
+  private void removeUnreachableFunctions() {
+    if (!FUNCTIONS.containsKey("gf_main")) {
+      return;
+    }
+
+    Set<String> reachable = this.getReachableFunctions("gf_main");
+    reachable.add("gf_main");
+    for (Map.Entry<String, ArrayList<LinkedList<String>>> function : FUNCTIONS.entrySet()) {
+      if (!reachable.contains(function.getKey())) {
+        SEGMENTS.remove(function.getValue());
+      }
+    }
+  }
+
+  /**
+   * @param name - function name.
+   *
+   * @return every user function that can be called, directly or not, from the
+   *         function.
+   */
+  private Set<String> getReachableFunctions(String name) {
+    Set<String> reachable = new HashSet<>();
+    Stack<String> worklist = new Stack<>();
+    worklist.addAll(this.getCallees(name));
+    while (!worklist.isEmpty()) {
+      String curr = worklist.pop();
+      if (reachable.add(curr)) {
+        worklist.addAll(this.getCallees(curr));
+      }
+    }
+
+    return reachable;
+  }
+
+  /**
+   * @param name - function name.
+   *
+   * @return user functions called directly by the function.
+   */
+  private Set<String> getCallees(String name) {
+    Set<String> callees = new HashSet<>();
+    for (LinkedList<String> tac : FUNCTIONS.get(name)) {
+      if (ICUtilities.isCall(tac) && FUNCTIONS.containsKey(tac.get(1))) {
+        callees.add(tac.get(1));
+      }
+    }
+
+    return callees;
+  }
+}
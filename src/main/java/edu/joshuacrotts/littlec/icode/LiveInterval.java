@@ -0,0 +1,63 @@
+package edu.joshuacrotts.littlec.icode;
+
+/**
+ * The range of lines in a function body over which a variable holds a value
+ * that may still be read. Lines are numbered in layout order, so an interval
+ * covers every line from the first definition or use to the last line the
+ * variable is live at, including any holes in between.
+ *
+ * @author Joshua Crotts
+ */
+public class LiveInterval {
+
+  /** Variable that the interval belongs to. */
+  private final String NAME;
+
+  /** First line that the variable is live at or defined on. */
+  private int start;
+
+  /** Last line that the variable is live at or defined on. */
+  private int end;
+
+  public LiveInterval(String name, int line) {
+    this.NAME = name;
+    this.start = line;
+    this.end = line;
+  }
+
+  /**
+   * Grows the interval so that it covers the line.
+   *
+   * @param line - line in the function body.
+   */
+  public void addLine(int line) {
+    this.start = Math.min(this.start, line);
+    this.end = Math.max(this.end, line);
+  }
+
+  /**
+   * @param other - interval to compare against.
+   *
+   * @return true if the two intervals share at least one line.
+   */
+  public boolean overlaps(LiveInterval other) {
+    return this.start <= other.end && other.start <= this.end;
+  }
+
+  public String getName() {
+    return this.NAME;
+  }
+
+  public int getStart() {
+    return this.start;
+  }
+
+  public int getEnd() {
+    return this.end;
+  }
+
+  @Override
+  public String toString() {
+    return this.NAME + "[" + this.start + ", " + this.end + "]";
+  }
+}
@@ -0,0 +1,219 @@
+package edu.joshuacrotts.littlec.icode;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes which variables are live at each line of a function body with the
+ * usual backwards data-flow equations over the control flow graph. A variable
+ * is live at a line if some path from that line reads it before writing it.
+ *
+ * Variables are numbered in order of first appearance so the sets can be kept
+ * as BitSets.
+ *
+ * @author Joshua Crotts
+ */
+public class LivenessAnalysis {
+
+  /** Function body that the analysis was run over. */
+  private final List<LinkedList<String>> INSTRUCTIONS;
+
+  /** Control flow graph over the instructions. */
+  private final ControlFlowGraph CFG;
+
+  /** Every variable read or written in the function, by number. */
+  private final ArrayList<String> VARIABLES;
+
+  /** Number of each variable. */
+  private final Map<String, Integer> VARIABLE_NUMBERS;
+
+  /** Variables live on entry to each line. */
+  private final BitSet[] LIVE_IN;
+
+  /** Variables live on exit from each line. */
+  private final BitSet[] LIVE_OUT;
+
+  public LivenessAnalysis(List<LinkedList<String>> instructions) {
+    this.INSTRUCTIONS = instructions;
+    this.CFG = new ControlFlowGraph(instructions);
+    this.VARIABLES = new ArrayList<>();
+    this.VARIABLE_NUMBERS = new HashMap<>();
+    this.LIVE_IN = new BitSet[instructions.size()];
+    this.LIVE_OUT = new BitSet[instructions.size()];
+
+    for (LinkedList<String> tac : instructions) {
+      for (String addr : tac) {
+        if (ICUtilities.isVariable(addr) && !VARIABLE_NUMBERS.containsKey(addr)) {
+          VARIABLE_NUMBERS.put(addr, VARIABLES.size());
+          VARIABLES.add(addr);
+        }
+      }
+    }
+
+    this.generateLiveness();
+  }
+
+  /**
+   * Solves for the live-out set of every block, then walks each block backwards
+   * once more to fill in the per-line sets.
+   */
+  private void generateLiveness() {
+    int n = CFG.getBlockCount();
+    BitSet[] blockUses = new BitSet[n];
+    BitSet[] blockDefs = new BitSet[n];
+    BitSet[] blockIn = new BitSet[n];
+    BitSet[] blockOut = new BitSet[n];
+
+    for (int b = 0; b < n; b++) {
+      blockUses[b] = new BitSet();
+      blockDefs[b] = new BitSet();
+      blockIn[b] = new BitSet();
+      blockOut[b] = new BitSet();
+      for (int i = CFG.getBlockEnd(b) - 1; i >= CFG.getBlockStart(b); i--) {
+        this.transfer(INSTRUCTIONS.get(i), blockUses[b], blockDefs[b]);
+      }
+    }
+
+    boolean changed;
+    do {
+      changed = false;
+      for (int b = n - 1; b >= 0; b--) {
+        BitSet out = new BitSet();
+        for (int s : CFG.getSuccessors(b)) {
+          out.or(blockIn[s]);
+        }
+
+        BitSet in = (BitSet) out.clone();
+        in.andNot(blockDefs[b]);
+        in.or(blockUses[b]);
+
+        if (!in.equals(blockIn[b]) || !out.equals(blockOut[b])) {
+          blockIn[b] = in;
+          blockOut[b] = out;
+          changed = true;
+        }
+      }
+    } while (changed);
+
+    for (int b = 0; b < n; b++) {
+      BitSet live = (BitSet) blockOut[b].clone();
+      for (int i = CFG.getBlockEnd(b) - 1; i >= CFG.getBlockStart(b); i--) {
+        LIVE_OUT[i] = (BitSet) live.clone();
+        this.transfer(INSTRUCTIONS.get(i), live, new BitSet());
+        LIVE_IN[i] = (BitSet) live.clone();
+      }
+    }
+  }
+
+  /**
+   * Applies one instruction to a live set while walking backwards: the variable
+   * it writes dies, and the variables it reads become live.
+   *
+   * @param tac  - 3AC instruction.
+   * @param live - set of live variables, updated in place.
+   * @param defs - set that the written variable is added to.
+   */
+  private void transfer(LinkedList<String> tac, BitSet live, BitSet defs) {
+    String def = ICUtilities.getDefinedAddress(tac);
+    if (def != null) {
+      live.clear(VARIABLE_NUMBERS.get(def));
+      defs.set(VARIABLE_NUMBERS.get(def));
+    }
+
+    for (String use : ICUtilities.getUsedAddresses(tac)) {
+      live.set(VARIABLE_NUMBERS.get(use));
+      defs.clear(VARIABLE_NUMBERS.get(use));
+    }
+  }
+
+  /**
+   * Builds the live interval of every variable. A variable's interval covers
+   * each line that it's live on entry to or defined on, so two variables whose
+   * intervals don't overlap never hold a value at the same time.
+   *
+   * @return intervals sorted by start line.
+   */
+  public List<LiveInterval> getLiveIntervals() {
+    Map<String, LiveInterval> intervals = new LinkedHashMap<>();
+    for (int i = 0; i < INSTRUCTIONS.size(); i++) {
+      for (int v = LIVE_IN[i].nextSetBit(0); v >= 0; v = LIVE_IN[i].nextSetBit(v + 1)) {
+        this.addLine(intervals, VARIABLES.get(v), i);
+      }
+
+      String def = ICUtilities.getDefinedAddress(INSTRUCTIONS.get(i));
+      if (def != null) {
+        this.addLine(intervals, def, i);
+      }
+    }
+
+    List<LiveInterval> sortedIntervals = new ArrayList<>(intervals.values());
+    sortedIntervals.sort(Comparator.comparingInt(LiveInterval::getStart));
+    return sortedIntervals;
+  }
+
+  /**
+   * Extends a variable's interval to cover the line, creating it if needed.
+   *
+   * @param intervals - intervals built so far, by variable.
+   * @param name      - variable.
+   * @param line      - line in the function body.
+   */
+  private void addLine(Map<String, LiveInterval> intervals, String name, int line) {
+    LiveInterval interval = intervals.get(name);
+    if (interval == null) {
+      intervals.put(name, new LiveInterval(name, line));
+    } else {
+      interval.addLine(line);
+    }
+  }
+
+  /**
+   * @param line - line in the function body.
+   * @param addr - variable.
+   *
+   * @return true if the variable is live on entry to the line.
+   */
+  public boolean isLiveIn(int line, String addr) {
+    Integer v = VARIABLE_NUMBERS.get(addr);
+    return v != null && LIVE_IN[line].get(v);
+  }
+
+  /**
+   * @param line - line in the function body.
+   * @param addr - variable.
+   *
+   * @return true if the variable is live on exit from the line.
+   */
+  public boolean isLiveOut(int line, String addr) {
+    Integer v = VARIABLE_NUMBERS.get(addr);
+    return v != null && LIVE_OUT[line].get(v);
+  }
+
+  /**
+   * @param line - line in the function body.
+   *
+   * @return every variable live on exit from the line.
+   */
+  public List<String> getLiveOut(int line) {
+    List<String> live = new ArrayList<>();
+    for (int v = LIVE_OUT[line].nextSetBit(0); v >= 0; v = LIVE_OUT[line].nextSetBit(v + 1)) {
+      live.add(VARIABLES.get(v));
+    }
+
+    return live;
+  }
+
+  public ControlFlowGraph getControlFlowGraph() {
+    return this.CFG;
+  }
+
+  public List<LinkedList<String>> getInstructions() {
+    return this.INSTRUCTIONS;
+  }
+}
@@ -0,0 +1,666 @@
+package edu.joshuacrotts.littlec.icode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Loop optimizations over the intermediate code of a single function. Loops are
+ * found with a ControlFlowGraph, so this works on whatever the while/for
+ * lowering (and jump threading) produced rather than on the syntax tree.
+ *
+ * @author Joshua Crotts
+ */
+public class LoopOptimizer {
+
+  /** Operators that always compute the same result from the same operands. */
+  private static final Set<String> PURE_OPS = new HashSet<>(Arrays.asList("=", "+", "-", "*", "**", "^", "&", "|",
+      "<<", ">>", "<<<", ">>>", "<", "<=", ">", ">=", "==", "!=", "<>", "->", "~", "!", "@", "widen", "narrow"));
+
+  /** Function body being optimized. */
+  private final ArrayList<LinkedList<String>> BODY;
+
+  /**
+   * Instructions of the body that read each variable. Instructions are kept by
+   * identity, so moving one around the body doesn't change the map; rewriting
+   * one does, and updates it.
+   */
+  private final Map<String, Set<LinkedList<String>>> USES;
+
+  /** Variables that have their address taken somewhere in the body. */
+  private final Set<String> ADDRESS_TAKEN;
+
+  /** Number of the last temporary in use. */
+  private int lastTemp;
+
+  /*
+   * State of the current pass over the loops. Line numbers are positions in
+   * the body as it was when the pass started; nothing moves until the pass
+   * ends.
+   */
+
+  /** Control flow graph of the body at the start of the pass. */
+  private ControlFlowGraph cfg;
+
+  /** Line of each instruction in the body. */
+  private Map<LinkedList<String>, Integer> lines;
+
+  /** Lines of the gotos and conditional gotos to each label. */
+  private Map<String, List<Integer>> jumpLines;
+
+  /** Preheaders to add, by the first line of their loop header. */
+  private TreeMap<Integer, Preheader> preheaders;
+
+  /** Lines to drop from the body. */
+  private Set<Integer> removedLines;
+
+  /** Instructions to add after a given line. */
+  private Map<Integer, List<LinkedList<String>>> insertions;
+
+  private LoopOptimizer(ArrayList<LinkedList<String>> body) {
+    this.BODY = body;
+    this.USES = new HashMap<>();
+    this.ADDRESS_TAKEN = new HashSet<>();
+    this.lastTemp = ICUtilities.getLastTemp(body);
+
+    for (LinkedList<String> tac : body) {
+      this.addUses(tac);
+      if (tac.get(3).equals("&") && tac.get(2).isEmpty()) {
+        this.ADDRESS_TAKEN.add(tac.get(1));
+      }
+    }
+  }
+
+  /**
+   * Runs every loop optimization over a function body: loop-invariant code
+   * motion, then induction variable strength reduction. The function is only
+   * indexed once for both.
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return true if the body changed, false otherwise.
+   */
+  public static boolean optimizeLoops(ArrayList<LinkedList<String>> body) {
+    LoopOptimizer optimizer = new LoopOptimizer(body);
+    boolean changed = optimizer.transformLoops(optimizer::hoistLoop);
+    changed |= optimizer.transformLoops(optimizer::reduceLoop);
+    return changed;
+  }
+
+  /**
+   * Hoists loop-invariant computations out of every loop in the function body
+   * and into a preheader that runs once before the loop is entered. Inner loops
+   * are handled first, so an invariant can move out through several levels of
+   * nesting.
+   *
+   * Only writes to compiler temporaries are moved. A temporary is hoisted when
+   * every definition of it in the loop sits in one block and is itself
+   * invariant, and nothing in the loop reads it before those definitions. Its
+   * operands must be literals, variables that the loop never writes, or other
+   * hoisted temporaries. Globals count as written by any call to a user
+   * function.
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return true if the body changed, false otherwise.
+   */
+  public static boolean hoistLoopInvariants(ArrayList<LinkedList<String>> body) {
+    LoopOptimizer optimizer = new LoopOptimizer(body);
+    return optimizer.transformLoops(optimizer::hoistLoop);
+  }
+
+  /**
+   * Replaces multiplications of an induction variable by a constant with an
+   * addition. If a local or parameter v changes only by v = v + c in the loop,
+   * then v * k changes only by c * k, so a new temporary s = v * k is set up in
+   * the preheader and bumped by c * k right after each step of v. The multiply
+   * itself becomes a copy of s. This is what turns the address and offset math
+   * of an indexed loop into a running sum.
+   *
+   * Variables that have their address taken are left alone, since a store
+   * through the pointer would step them behind our back.
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return true if the body changed, false otherwise.
+   */
+  public static boolean reduceInductionVariables(ArrayList<LinkedList<String>> body) {
+    LoopOptimizer optimizer = new LoopOptimizer(body);
+    return optimizer.transformLoops(optimizer::reduceLoop);
+  }
+
+  /**
+   * Applies a transformation to every loop of the function once, innermost
+   * first. Each pass builds one control flow graph and transforms every loop it
+   * can against it, then rewrites the body once. A loop around one that
+   * changed in this pass would see stale lines, so it waits for the next pass,
+   * by which point whatever the inner loop hoisted is part of its body.
+   *
+   * @param transform - transformation to apply to each loop.
+   *
+   * @return true if the body changed, false otherwise.
+   */
+  private boolean transformLoops(LoopTransform transform) {
+    Set<String> visitedHeaders = new HashSet<>();
+    boolean changed = false;
+
+    boolean deferred;
+    do {
+      deferred = false;
+      this.startPass();
+      BitSet changedBlocks = new BitSet();
+      for (NaturalLoop loop : this.cfg.getLoops()) {
+        LinkedList<String> headerLabel = BODY.get(this.cfg.getBlockStart(loop.getHeader()));
+        if (!ICUtilities.isLabel(headerLabel) || visitedHeaders.contains(headerLabel.get(0))) {
+          continue;
+        } else if (loop.getBlocks().intersects(changedBlocks)) {
+          deferred = true;
+          continue;
+        }
+
+        visitedHeaders.add(headerLabel.get(0));
+        if (transform.apply(loop)) {
+          changedBlocks.or(loop.getBlocks());
+          changed = true;
+        }
+      }
+      this.finishPass();
+    } while (deferred);
+
+    return changed;
+  }
+
+  /**
+   * Builds the control flow graph and line tables for a pass over the loops.
+   *
+   * @param void.
+   *
+   * @return void.
+   */
+  private void startPass() {
+    this.cfg = new ControlFlowGraph(BODY);
+    this.lines = new IdentityHashMap<>();
+    this.jumpLines = new HashMap<>();
+    this.preheaders = new TreeMap<>();
+    this.removedLines = new HashSet<>();
+    this.insertions = new HashMap<>();
+
+    for (int i = 0; i < BODY.size(); i++) {
+      LinkedList<String> tac = BODY.get(i);
+      this.lines.put(tac, i);
+      if (ICUtilities.isJump(tac) || ICUtilities.isBranch(tac)) {
+        this.jumpLines.computeIfAbsent(ICUtilities.getJumpTarget(tac), k -> new ArrayList<>()).add(i);
+      }
+    }
+  }
+
+  /**
+   * Rebuilds the function body with the preheaders, removals and insertions of
+   * the pass. Jumps from outside a loop into its header are sent to a new label
+   * on the preheader, while the loop's own back edges still skip it.
+   *
+   * @param void.
+   *
+   * @return void.
+   */
+  private void finishPass() {
+    if (this.preheaders.isEmpty()) {
+      return;
+    }
+
+    for (Map.Entry<Integer, Preheader> entry : this.preheaders.entrySet()) {
+      Preheader preheader = entry.getValue();
+      for (int i = entry.getKey(); i < BODY.size() && ICUtilities.isLabel(BODY.get(i)); i++) {
+        List<Integer> jumps = this.jumpLines.getOrDefault(ICUtilities.getLabelName(BODY.get(i)),
+            Collections.emptyList());
+        for (int jump : jumps) {
+          if (!preheader.LOOP.containsLine(jump)) {
+            if (preheader.label == null) {
+              preheader.label = ActivationRecord.newLabel();
+            }
+            BODY.get(jump).set(0, "goto " + preheader.label);
+          }
+        }
+      }
+    }
+
+    int added = 0;
+    for (Preheader preheader : this.preheaders.values()) {
+      added += preheader.CODE.size() + 1;
+    }
+    for (List<LinkedList<String>> code : this.insertions.values()) {
+      added += code.size();
+    }
+
+    ArrayList<LinkedList<String>> rebuilt = new ArrayList<>(BODY.size() + added);
+    for (int i = 0; i < BODY.size(); i++) {
+      Preheader preheader = this.preheaders.get(i);
+      if (preheader != null) {
+        if (preheader.label != null) {
+          rebuilt.add(ICUtilities.newInstruction(preheader.label + ":", "", "", ""));
+        }
+        rebuilt.addAll(preheader.CODE);
+      }
+
+      if (!this.removedLines.contains(i)) {
+        rebuilt.add(BODY.get(i));
+      }
+      if (this.insertions.containsKey(i)) {
+        rebuilt.addAll(this.insertions.get(i));
+      }
+    }
+
+    BODY.clear();
+    BODY.addAll(rebuilt);
+  }
+
+  /**
+   * @param loop - loop of the current pass.
+   *
+   * @return every line of the loop, in order.
+   */
+  private List<Integer> getLines(NaturalLoop loop) {
+    List<Integer> loopLines = new ArrayList<>();
+    BitSet blocks = loop.getBlocks();
+    for (int b = blocks.nextSetBit(0); b >= 0; b = blocks.nextSetBit(b + 1)) {
+      for (int i = this.cfg.getBlockStart(b); i < this.cfg.getBlockEnd(b); i++) {
+        loopLines.add(i);
+      }
+    }
+
+    return loopLines;
+  }
+
+  /**
+   * Hoists the invariant computations of a single loop.
+   *
+   * @param loop - loop to hoist from.
+   *
+   * @return true if anything will be hoisted, false otherwise.
+   */
+  private boolean hoistLoop(NaturalLoop loop) {
+    if (!this.hasPreheaderSlot(loop)) {
+      return false;
+    }
+
+    // Gather where every variable is written and read in the loop.
+    List<Integer> loopLines = this.getLines(loop);
+    Map<String, TreeSet<Integer>> loopDefs = new HashMap<>();
+    Map<String, TreeSet<Integer>> loopUses = new HashMap<>();
+    boolean writesGlobals = false;
+
+    for (int i : loopLines) {
+      LinkedList<String> tac = BODY.get(i);
+      String def = ICUtilities.getDefinedAddress(tac);
+      if (def != null) {
+        loopDefs.computeIfAbsent(def, k -> new TreeSet<>()).add(i);
+      }
+      for (String use : ICUtilities.getUsedAddresses(tac)) {
+        loopUses.computeIfAbsent(use, k -> new TreeSet<>()).add(i);
+      }
+      writesGlobals |= ICUtilities.isCall(tac) && ICUtilities.callWritesGlobals(tac);
+    }
+
+    // Start with everything that could move on its own, then keep removing
+    // instructions that depend on something staying in the loop.
+    TreeSet<Integer> invariants = new TreeSet<>();
+    for (int i : loopLines) {
+      if (this.isHoistCandidate(loop, i, loopDefs, loopUses)) {
+        invariants.add(i);
+      }
+    }
+
+    boolean removed;
+    do {
+      removed = false;
+      for (int i : new TreeSet<>(invariants)) {
+        if (!this.hasInvariantOperands(i, invariants, loopDefs, writesGlobals)
+            || !invariants.containsAll(loopDefs.get(ICUtilities.getDefinedAddress(BODY.get(i))))) {
+          invariants.remove(i);
+          removed = true;
+        }
+      }
+    } while (removed);
+
+    if (invariants.isEmpty()) {
+      return false;
+    }
+
+    ArrayList<LinkedList<String>> preheader = new ArrayList<>();
+    for (int i : invariants) {
+      preheader.add(BODY.get(i));
+    }
+    this.addPreheader(loop, preheader);
+    this.removedLines.addAll(invariants);
+
+    return true;
+  }
+
+  /**
+   * Determines if an instruction could be hoisted, ignoring whether its operands
+   * are invariant.
+   *
+   * @param loop     - loop containing the instruction.
+   * @param line     - line of the instruction.
+   * @param loopDefs - lines in the loop that write each variable.
+   * @param loopUses - lines in the loop that read each variable.
+   *
+   * @return true if the instruction is a candidate for hoisting.
+   */
+  private boolean isHoistCandidate(NaturalLoop loop, int line, Map<String, TreeSet<Integer>> loopDefs,
+      Map<String, TreeSet<Integer>> loopUses) {
+    LinkedList<String> tac = BODY.get(line);
+    String res = ICUtilities.getDefinedAddress(tac);
+    if (res == null || !ICUtilities.isTemp(res) || ICUtilities.isCall(tac)) {
+      return false;
+    }
+
+    int block = this.cfg.getBlock(line);
+    String op = tac.get(3);
+    String op2 = tac.get(2);
+    if (op.equals("#")) {
+      // Reading the size dereferences the array, so only do it if the loop was
+      // going to do it anyways.
+      if (!loop.dominatesLatches(block)) {
+        return false;
+      }
+    } else if (op.equals("/") || op.equals("%")) {
+      // Division can only move if it can't trap.
+      if (!ICUtilities.isLiteral(op2) || Integer.parseInt(op2) == 0) {
+        return false;
+      }
+    } else if (!PURE_OPS.contains(op)) {
+      return false;
+    }
+
+    // Every write to the temporary has to be in this block...
+    TreeSet<Integer> defs = loopDefs.get(res);
+    for (int def : defs) {
+      if (this.cfg.getBlock(def) != block) {
+        return false;
+      }
+    }
+
+    // ...and nothing in the loop can read it before the last write, except for
+    // the writes themselves.
+    TreeSet<Integer> uses = loopUses.get(res);
+    if (uses != null) {
+      for (int use : uses) {
+        boolean afterDefs = use > defs.last() || (defs.contains(use) && use > defs.first());
+        if (this.cfg.getBlock(use) != block || !afterDefs) {
+          return false;
+        }
+      }
+    }
+
+    // If the header doesn't compute it, the loop might never have, so the old
+    // value can't be needed afterwards.
+    return block == loop.getHeader() || !this.isUsedOutside(res, loop);
+  }
+
+  /**
+   * @param var  - variable address.
+   * @param loop - loop of the current pass.
+   *
+   * @return true if anything outside of the loop reads the variable.
+   */
+  private boolean isUsedOutside(String var, NaturalLoop loop) {
+    for (LinkedList<String> use : this.USES.getOrDefault(var, Collections.emptySet())) {
+      Integer line = this.lines.get(use);
+      // Instructions added earlier in this pass aren't laid out yet.
+      if (line == null || !loop.containsLine(line)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Determines if the operands of an instruction have the same value on every
+   * iteration of the loop.
+   *
+   * @param line          - line of the instruction.
+   * @param invariants    - lines currently considered invariant.
+   * @param loopDefs      - lines in the loop that write each variable.
+   * @param writesGlobals - true if the loop calls a function that may write
+   *                      globals.
+   *
+   * @return true if every operand is invariant.
+   */
+  private boolean hasInvariantOperands(int line, TreeSet<Integer> invariants, Map<String, TreeSet<Integer>> loopDefs,
+      boolean writesGlobals) {
+    for (String use : ICUtilities.getUsedAddresses(BODY.get(line))) {
+      TreeSet<Integer> defs = loopDefs.get(use);
+      if (defs == null) {
+        if (writesGlobals && ICUtilities.isGlobal(use)) {
+          return false;
+        }
+        continue;
+      }
+
+      // A temporary computed by earlier invariants in the same block is fine.
+      if (!ICUtilities.isTemp(use) || !invariants.containsAll(defs) || defs.last() > line) {
+        return false;
+      }
+      for (int def : defs) {
+        if (this.cfg.getBlock(def) != this.cfg.getBlock(line)) {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Strength-reduces the induction variable multiplies of a single loop. The
+   * multiplies are rewritten in place; the running products are set up and
+   * stepped when the pass ends.
+   *
+   * @param loop - loop to reduce.
+   *
+   * @return true if anything was reduced, false otherwise.
+   */
+  private boolean reduceLoop(NaturalLoop loop) {
+    if (!this.hasPreheaderSlot(loop)) {
+      return false;
+    }
+
+    List<Integer> loopLines = this.getLines(loop);
+    Map<String, TreeSet<Integer>> loopDefs = new HashMap<>();
+    for (int i : loopLines) {
+      String def = ICUtilities.getDefinedAddress(BODY.get(i));
+      if (def != null) {
+        loopDefs.computeIfAbsent(def, k -> new TreeSet<>()).add(i);
+      }
+    }
+
+    // Each (variable, factor) pair gets one running product, no matter how many
+    // times the loop computes it.
+    Map<String, String> products = new HashMap<>();
+    ArrayList<LinkedList<String>> preheader = new ArrayList<>();
+
+    for (int i : loopLines) {
+      LinkedList<String> tac = BODY.get(i);
+      String res = tac.get(0);
+      if (!tac.get(3).equals("*") || !ICUtilities.isTemp(res) || ICUtilities.getWidth(res) != 4) {
+        continue;
+      }
+
+      String var = ICUtilities.isLiteral(tac.get(2)) ? tac.get(1) : tac.get(2);
+      String factor = ICUtilities.isLiteral(tac.get(2)) ? tac.get(2) : tac.get(1);
+      if (!ICUtilities.isLiteral(factor) || !(var.startsWith("l4@") || var.startsWith("p4@"))
+          || this.ADDRESS_TAKEN.contains(var)) {
+        continue;
+      }
+
+      TreeSet<Integer> varDefs = loopDefs.get(var);
+      if (varDefs == null || varDefs.size() != 1) {
+        continue;
+      }
+      int stepLine = varDefs.first();
+      Integer step = this.getInductionStep(stepLine, var, loopDefs);
+      if (step == null) {
+        continue;
+      }
+
+      String product = products.get(var + "*" + factor);
+      if (product == null) {
+        product = "t4_" + (++this.lastTemp);
+        products.put(var + "*" + factor, product);
+        LinkedList<String> start = ICUtilities.newInstruction(product, var, factor, "*");
+        preheader.add(start);
+        this.addUses(start);
+
+        int increment = step * Integer.parseInt(factor);
+        String op = increment < 0 && increment != Integer.MIN_VALUE ? "-" : "+";
+        String amount = Integer.toString(op.equals("-") ? -increment : increment);
+        LinkedList<String> bump = ICUtilities.newInstruction(product, product, amount, op);
+        this.insertions.computeIfAbsent(stepLine, k -> new ArrayList<>()).add(bump);
+        this.addUses(bump);
+      }
+
+      this.replace(i, ICUtilities.newInstruction(res, product, "", "="));
+    }
+
+    if (products.isEmpty()) {
+      return false;
+    }
+
+    this.addPreheader(loop, preheader);
+    return true;
+  }
+
+  /**
+   * Finds how much an induction variable changes by at its only definition in
+   * the loop. The definition is either v = v + c (or v - c), or the v = t copy
+   * of a t = v + c on the line right before it, which is how i++ is lowered.
+   *
+   * @param line     - line of the definition.
+   * @param var      - induction variable.
+   * @param loopDefs - lines in the loop that write each variable.
+   *
+   * @return signed step of the variable, or null if it isn't a constant step.
+   */
+  private Integer getInductionStep(int line, String var, Map<String, TreeSet<Integer>> loopDefs) {
+    LinkedList<String> def = BODY.get(line);
+    if (def.get(3).equals("=") && ICUtilities.isTemp(def.get(1)) && line > 0
+        && this.cfg.getBlock(line - 1) == this.cfg.getBlock(line)) {
+      LinkedList<String> prev = BODY.get(line - 1);
+      TreeSet<Integer> tempDefs = loopDefs.get(def.get(1));
+      if (!prev.get(0).equals(def.get(1)) || tempDefs == null || tempDefs.size() != 1) {
+        return null;
+      }
+      def = prev;
+    }
+
+    String op = def.get(3);
+    if (!def.get(1).equals(var) || !ICUtilities.isLiteral(def.get(2)) || !(op.equals("+") || op.equals("-"))) {
+      return null;
+    }
+
+    int step = Integer.parseInt(def.get(2));
+    return op.equals("+") ? step : -step;
+  }
+
+  /**
+   * Determines if a preheader can be placed right in front of the loop header.
+   * If the loop falls into its own header from the block laid out before it,
+   * there's nowhere to put one.
+   *
+   * @param loop - loop to check.
+   *
+   * @return true if a preheader can be inserted.
+   */
+  private boolean hasPreheaderSlot(NaturalLoop loop) {
+    int header = loop.getHeader();
+    if (header > 0 && loop.containsBlock(header - 1)) {
+      LinkedList<String> last = BODY.get(this.cfg.getBlockEnd(header - 1) - 1);
+      return ICUtilities.isJump(last) || ICUtilities.isReturn(last);
+    }
+
+    return true;
+  }
+
+  /**
+   * Puts instructions in front of a loop's header when the pass ends.
+   *
+   * @param loop - loop of the current pass.
+   * @param code - instructions to run once before the loop.
+   *
+   * @return void.
+   */
+  private void addPreheader(NaturalLoop loop, List<LinkedList<String>> code) {
+    this.preheaders.put(this.cfg.getBlockStart(loop.getHeader()), new Preheader(loop, code));
+  }
+
+  /**
+   * Replaces the instruction on a line, keeping the use table up to date.
+   *
+   * @param line - line of the current pass.
+   * @param tac  - new instruction.
+   *
+   * @return void.
+   */
+  private void replace(int line, LinkedList<String> tac) {
+    LinkedList<String> old = BODY.set(line, tac);
+    this.removeUses(old);
+    this.lines.remove(old);
+    this.addUses(tac);
+    this.lines.put(tac, line);
+  }
+
+  private void addUses(LinkedList<String> tac) {
+    for (String use : ICUtilities.getUsedAddresses(tac)) {
+      this.USES.computeIfAbsent(use, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(tac);
+    }
+  }
+
+  private void removeUses(LinkedList<String> tac) {
+    for (String use : ICUtilities.getUsedAddresses(tac)) {
+      this.USES.get(use).remove(tac);
+    }
+  }
+
+  /**
+   * Instructions to run once before a loop, and the label that jumps from
+   * outside the loop are sent to if there are any.
+   */
+  private static final class Preheader {
+
+    private final NaturalLoop LOOP;
+
+    private final List<LinkedList<String>> CODE;
+
+    private String label;
+
+    private Preheader(NaturalLoop loop, List<LinkedList<String>> code) {
+      this.LOOP = loop;
+      this.CODE = code;
+    }
+  }
+
+  /**
+   * A transformation over a single loop of a function.
+   */
+  private interface LoopTransform {
+
+    /**
+     * @param loop - loop of the current pass to transform.
+     *
+     * @return true if the body will change, false otherwise.
+     */
+    boolean apply(NaturalLoop loop);
+  }
+}
@@ -0,0 +1,105 @@
+package edu.joshuacrotts.littlec.icode;
+
+import java.util.BitSet;
+import java.util.TreeSet;
+
+/**
+ * A natural loop in a control flow graph: a header block that dominates every
+ * block of the loop, plus one or more latches that jump back to the header.
+ *
+ * @author Joshua Crotts
+ */
+public class NaturalLoop {
+
+  /** Graph that this loop belongs to. */
+  private final ControlFlowGraph CFG;
+
+  /** Block that every iteration begins at. */
+  private final int HEADER;
+
+  /** Blocks that belong to the loop, including the header. */
+  private final BitSet BLOCKS;
+
+  /** Blocks with a back edge to the header. */
+  private final TreeSet<Integer> LATCHES;
+
+  public NaturalLoop(ControlFlowGraph cfg, int header) {
+    this.CFG = cfg;
+    this.HEADER = header;
+    this.BLOCKS = new BitSet();
+    this.LATCHES = new TreeSet<>();
+    this.BLOCKS.set(header);
+  }
+
+  /**
+   * Adds a block to the loop.
+   *
+   * @param b - block number.
+   *
+   * @return true if the block was not already part of the loop.
+   */
+  public boolean addBlock(int b) {
+    if (this.BLOCKS.get(b)) {
+      return false;
+    }
+
+    this.BLOCKS.set(b);
+    return true;
+  }
+
+  public void addLatch(int b) {
+    this.LATCHES.add(b);
+  }
+
+  /**
+   * @param b - block number.
+   *
+   * @return true if the block is part of the loop.
+   */
+  public boolean containsBlock(int b) {
+    return this.BLOCKS.get(b);
+  }
+
+  /**
+   * @param line - line in the function body.
+   *
+   * @return true if the line is part of the loop.
+   */
+  public boolean containsLine(int line) {
+    return this.BLOCKS.get(this.CFG.getBlock(line));
+  }
+
+  /**
+   * Determines whether a block runs on every complete iteration, i.e. it
+   * dominates every latch.
+   *
+   * @param b - block number.
+   *
+   * @return true if every path around the loop goes through b.
+   */
+  public boolean dominatesLatches(int b) {
+    for (int latch : this.LATCHES) {
+      if (!this.CFG.dominates(b, latch)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  public int getHeader() {
+    return this.HEADER;
+  }
+
+  public BitSet getBlocks() {
+    return this.BLOCKS;
+  }
+
+  public TreeSet<Integer> getLatches() {
+    return this.LATCHES;
+  }
+
+  public int getBlockCount() {
+    return this.BLOCKS.cardinality();
+  }
+}
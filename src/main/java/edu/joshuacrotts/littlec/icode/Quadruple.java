@@ -1,8 +1,10 @@
 package edu.joshuacrotts.littlec.icode;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -188,6 +190,44 @@ public class Quadruple {
     return this.RES_LIST.size();
   }
 
+  /**
+   * Returns a copy of every instruction in the quadruple, in program order. Each
+   * inner LinkedList is a 3AC row of the form (res, op1, op2, op), which is the
+   * same layout used by the basic and function blocks.
+   * 
+   * @param void.
+   * 
+   * @return ArrayList of LinkedList of String instructions.
+   */
+  public ArrayList<LinkedList<String>> getInstructions() {
+    ArrayList<LinkedList<String>> instructions = new ArrayList<>(RES_LIST.size());
+    for (int i = 0; i < RES_LIST.size(); i++) {
+      LinkedList<String> tac = new LinkedList<>();
+      tac.add(RES_LIST.get(i));
+      tac.add(OPERAND1_LIST.get(i));
+      tac.add(OPERAND2_LIST.get(i));
+      tac.add(OPERATOR_LIST.get(i));
+      instructions.add(tac);
+    }
+
+    return instructions;
+  }
+
+  /**
+   * Replaces the contents of the quadruple with the instructions passed. This is
+   * used by the IC optimizer once it has rewritten the program.
+   * 
+   * @param instructions - list of 3AC rows of the form (res, op1, op2, op).
+   * 
+   * @return void.
+   */
+  public void setInstructions(List<LinkedList<String>> instructions) {
+    this.cleanup();
+    for (LinkedList<String> tac : instructions) {
+      this.addLine(tac.get(0), tac.get(1), tac.get(2), tac.get(3));
+    }
+  }
+
   /**
    * Clears the operators and operands and results in the table. This is generally
    * used for JUnit tests...
@@ -204,15 +244,17 @@ public class Quadruple {
    * 
    * The columns printed are line number, resulting address, operand 1, operand 2,
    * and operator.
+   *
+   * @param out - stream to print to.
    */
-  public void printTable() {
-    System.out.printf("%10s | %30s | %30s | %30s | %30s |\n", "Line #", "Res. Addr.", "Op1. Addr.", "Op2. Addr.", "Op");
-    System.out.printf(
+  public void printTable(PrintStream out) {
+    out.printf("%10s | %30s | %30s | %30s | %30s |\n", "Line #", "Res. Addr.", "Op1. Addr.", "Op2. Addr.", "Op");
+    out.printf(
         "------------------------------------------------------------------------------------------------------------------------------------------------\n");
     for (int i = 0; i < RES_LIST.size(); i++) {
-      System.out.printf("%10d | %30s | %30s | %30s | %30s |\n", (i + 1), RES_LIST.get(i), OPERAND1_LIST.get(i),
+      out.printf("%10d | %30s | %30s | %30s | %30s |\n", (i + 1), RES_LIST.get(i), OPERAND1_LIST.get(i),
           OPERAND2_LIST.get(i), OPERATOR_LIST.get(i));
-      System.out.printf(
+      out.printf(
           "------------------------------------------------------------------------------------------------------------------------------------------------\n");
     }
   }
@@ -305,14 +347,15 @@ public class Quadruple {
    * Prints out the function blocks in the list parameter. Each function block has
    * a number associated, along with the instructions.
    * 
-   * @param LinkedList of function blocks.
+   * @param out            - stream to print to.
+   * @param functionBlocks - LinkedList of function blocks.
    * 
    * @return void.
    */
-  public void printFunctionBlocks(LinkedList<FunctionBlock> functionBlocks) {
+  public void printFunctionBlocks(PrintStream out, LinkedList<FunctionBlock> functionBlocks) {
     for (int i = 0; i < functionBlocks.size(); i++) {
-      System.out.printf("Function Block %d:\n", i + 1);
-      System.out.println(functionBlocks.get(i));
+      out.printf("Function Block %d:\n", i + 1);
+      out.println(functionBlocks.get(i));
     }
   }
 
@@ -376,14 +419,15 @@ public class Quadruple {
    * Prints out the basic blocks in the list parameter. Each basic block has a
    * number associated, along with the instructions.
    * 
-   * @param LinkedList of basic blocks.
+   * @param out         - stream to print to.
+   * @param basicBlocks - LinkedList of basic blocks.
    * 
    * @return void.
    */
-  public void printBasicBlocks(LinkedList<BasicBlock> basicBlocks) {
+  public void printBasicBlocks(PrintStream out, LinkedList<BasicBlock> basicBlocks) {
     for (int i = 0; i < basicBlocks.size(); i++) {
-      System.out.printf("Basic Block %d:\n", i + 1);
-      System.out.println(basicBlocks.get(i));
+      out.printf("Basic Block %d:\n", i + 1);
+      out.println(basicBlocks.get(i));
     }
   }
 
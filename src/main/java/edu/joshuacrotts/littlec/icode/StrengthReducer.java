@@ -0,0 +1,304 @@
+package edu.joshuacrotts.littlec.icode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Replaces expensive arithmetic with cheaper equivalents when one operand is a
+ * literal. Powers with a constant exponent become multiply chains, and
+ * multiplication, division, and modulo by a power of two become shifts and
+ * masks. Induction variable multiplies are handled by LoopOptimizer since they
+ * need the loop structure.
+ *
+ * @author Joshua Crotts
+ */
+public class StrengthReducer {
+
+  /** Largest exponent we'll expand into a multiply chain. */
+  private static final int MAX_POWER_EXPONENT = 64;
+
+  /** Function body being reduced. */
+  private final ArrayList<LinkedList<String>> BODY;
+
+  /** Single definition of each variable that's written exactly once. */
+  private final Map<String, LinkedList<String>> SINGLE_DEFS;
+
+  /** Number of the last temporary in use. */
+  private int lastTemp;
+
+  private StrengthReducer(ArrayList<LinkedList<String>> body) {
+    this.BODY = body;
+    this.SINGLE_DEFS = new HashMap<>();
+    this.lastTemp = ICUtilities.getLastTemp(body);
+
+    Map<String, Integer> defCounts = new HashMap<>();
+    for (LinkedList<String> tac : body) {
+      String def = ICUtilities.getDefinedAddress(tac);
+      if (def != null && defCounts.merge(def, 1, Integer::sum) == 1) {
+        this.SINGLE_DEFS.put(def, tac);
+      } else if (def != null) {
+        this.SINGLE_DEFS.remove(def);
+      }
+    }
+  }
+
+  /**
+   * Runs strength reduction over a function body.
+   *
+   * @param body - list of 3AC instructions in the function.
+   *
+   * @return true if the body changed, false otherwise.
+   */
+  public static boolean reduce(ArrayList<LinkedList<String>> body) {
+    return new StrengthReducer(body).reduce();
+  }
+
+  /**
+   * Replaces each reducible instruction with its cheaper sequence.
+   *
+   * @return true if the body changed, false otherwise.
+   */
+  private boolean reduce() {
+    ArrayList<LinkedList<String>> reduced = new ArrayList<>(BODY.size());
+    boolean changed = false;
+
+    for (LinkedList<String> tac : BODY) {
+      LinkedList<LinkedList<String>> replacement = this.reduceInstruction(tac);
+      if (replacement == null) {
+        reduced.add(tac);
+      } else {
+        reduced.addAll(replacement);
+        changed = true;
+      }
+    }
+
+    BODY.clear();
+    BODY.addAll(reduced);
+    return changed;
+  }
+
+  /**
+   * @param tac - 3AC instruction.
+   *
+   * @return the replacement instructions, or null if tac can't be reduced.
+   */
+  private LinkedList<LinkedList<String>> reduceInstruction(LinkedList<String> tac) {
+    String res = tac.get(0);
+    String op1 = tac.get(1);
+    String op2 = tac.get(2);
+    String op = tac.get(3);
+    if (!ICUtilities.isVariable(res) || op2.isEmpty()) {
+      return null;
+    }
+
+    switch (op) {
+    case "**":
+      return this.reducePower(res, op1, op2);
+    case "*":
+      if (getPowerOfTwo(op2) >= 0) {
+        return this.reduceMultiply(res, op1, getPowerOfTwo(op2));
+      } else if (getPowerOfTwo(op1) >= 0) {
+        return this.reduceMultiply(res, op2, getPowerOfTwo(op1));
+      }
+      return null;
+    case "/":
+      return getPowerOfTwo(op2) > 0 ? this.reduceDivide(res, op1, getPowerOfTwo(op2)) : null;
+    case "%":
+      return getPowerOfTwo(op2) > 0 ? this.reduceModulo(res, op1, getPowerOfTwo(op2)) : null;
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * Expands x ** k into a square-and-multiply chain. x ** 2 is just x * x.
+   *
+   * @param res - destination of the power.
+   * @param x   - base.
+   * @param k   - exponent.
+   *
+   * @return the replacement instructions, or null if k isn't a small literal.
+   */
+  private LinkedList<LinkedList<String>> reducePower(String res, String x, String k) {
+    if (!ICUtilities.isLiteral(k) || Integer.parseInt(k) < 0 || Integer.parseInt(k) > MAX_POWER_EXPONENT) {
+      return null;
+    }
+
+    LinkedList<LinkedList<String>> code = new LinkedList<>();
+    int exponent = Integer.parseInt(k);
+    if (exponent == 0) {
+      code.add(ICUtilities.newInstruction(res, "1", "", "="));
+      return code;
+    } else if (exponent == 1) {
+      code.add(ICUtilities.newInstruction(res, x, "", "="));
+      return code;
+    }
+
+    // Walk the bits after the leading one: square for each, multiply by x for
+    // each set bit. Only the last step writes to res, since res may be x.
+    int width = ICUtilities.getWidth(res);
+    String acc = x;
+    for (int bit = Integer.highestOneBit(exponent) >> 1; bit > 0; bit >>= 1) {
+      boolean multiplies = (exponent & bit) != 0;
+      String square = bit == 1 && !multiplies ? res : this.newTemp(width);
+      code.add(ICUtilities.newInstruction(square, acc, acc, "*"));
+      acc = square;
+
+      if (multiplies) {
+        String product = bit == 1 ? res : this.newTemp(width);
+        code.add(ICUtilities.newInstruction(product, acc, x, "*"));
+        acc = product;
+      }
+    }
+
+    return code;
+  }
+
+  /**
+   * Rewrites x * 2^k as x << k.
+   *
+   * @param res   - destination of the multiply.
+   * @param x     - non-literal operand.
+   * @param shift - k.
+   *
+   * @return the replacement instructions.
+   */
+  private LinkedList<LinkedList<String>> reduceMultiply(String res, String x, int shift) {
+    LinkedList<LinkedList<String>> code = new LinkedList<>();
+    if (shift == 0) {
+      code.add(ICUtilities.newInstruction(res, x, "", "="));
+    } else {
+      code.add(ICUtilities.newInstruction(res, x, Integer.toString(shift), "<<"));
+    }
+
+    return code;
+  }
+
+  /**
+   * Rewrites x / 2^k with shifts. Division rounds toward zero while an
+   * arithmetic shift rounds down, so a negative x is first biased by 2^k - 1.
+   * If x can't be negative, the bias is skipped.
+   *
+   * @param res   - destination of the division.
+   * @param x     - dividend.
+   * @param shift - k.
+   *
+   * @return the replacement instructions, or null if the widths don't allow it.
+   */
+  private LinkedList<LinkedList<String>> reduceDivide(String res, String x, int shift) {
+    if (ICUtilities.getWidth(res) != 4 || !ICUtilities.isVariable(x)) {
+      return null;
+    }
+
+    LinkedList<LinkedList<String>> code = new LinkedList<>();
+    if (this.isNonNegative(x)) {
+      code.add(ICUtilities.newInstruction(res, x, Integer.toString(shift), ">>"));
+      return code;
+    }
+
+    String biased = this.addBias(code, x, shift);
+    code.add(ICUtilities.newInstruction(res, biased, Integer.toString(shift), ">>"));
+    return code;
+  }
+
+  /**
+   * Rewrites x % 2^k with a mask. When x may be negative, the remainder has to
+   * take the sign of x, so we compute x - ((x / 2^k) * 2^k) with the same bias
+   * as division.
+   *
+   * @param res   - destination of the modulo.
+   * @param x     - dividend.
+   * @param shift - k.
+   *
+   * @return the replacement instructions, or null if the widths don't allow it.
+   */
+  private LinkedList<LinkedList<String>> reduceModulo(String res, String x, int shift) {
+    if (ICUtilities.getWidth(res) != 4 || !ICUtilities.isVariable(x)) {
+      return null;
+    }
+
+    LinkedList<LinkedList<String>> code = new LinkedList<>();
+    if (this.isNonNegative(x)) {
+      code.add(ICUtilities.newInstruction(res, x, Integer.toString((1 << shift) - 1), "&"));
+      return code;
+    }
+
+    String biased = this.addBias(code, x, shift);
+    String truncated = this.newTemp(4);
+    code.add(ICUtilities.newInstruction(truncated, biased, Integer.toString(-(1 << shift)), "&"));
+    code.add(ICUtilities.newInstruction(res, x, truncated, "-"));
+    return code;
+  }
+
+  /**
+   * Emits x + ((x >> 31) & (2^k - 1)), which is x when x is non-negative and
+   * x + 2^k - 1 when it's negative.
+   *
+   * @param code  - list to add the instructions to.
+   * @param x     - value to bias.
+   * @param shift - k.
+   *
+   * @return temporary holding the biased value.
+   */
+  private String addBias(LinkedList<LinkedList<String>> code, String x, int shift) {
+    String sign = this.newTemp(4);
+    String bias = this.newTemp(4);
+    String biased = this.newTemp(4);
+    code.add(ICUtilities.newInstruction(sign, x, "31", ">>"));
+    code.add(ICUtilities.newInstruction(bias, sign, Integer.toString((1 << shift) - 1), "&"));
+    code.add(ICUtilities.newInstruction(biased, x, bias, "+"));
+    return biased;
+  }
+
+  /**
+   * Determines whether a value can never be negative. We only know this for
+   * array sizes and for values masked with a non-negative literal.
+   *
+   * @param x - address to check.
+   *
+   * @return true if x is known to be non-negative.
+   */
+  private boolean isNonNegative(String x) {
+    LinkedList<String> def = SINGLE_DEFS.get(x);
+    if (def == null || !ICUtilities.isTemp(x)) {
+      return false;
+    }
+
+    String op = def.get(3);
+    if (op.equals("#")) {
+      return true;
+    }
+
+    return op.equals("&") && ((ICUtilities.isLiteral(def.get(1)) && Integer.parseInt(def.get(1)) >= 0)
+        || (ICUtilities.isLiteral(def.get(2)) && Integer.parseInt(def.get(2)) >= 0));
+  }
+
+  /**
+   * @param width - width of the temporary.
+   *
+   * @return a temporary that isn't used anywhere else in the function.
+   */
+  private String newTemp(int width) {
+    return "t" + width + "_" + (++this.lastTemp);
+  }
+
+  /**
+   * @param addr - address string.
+   *
+   * @return k if addr is the literal 2^k for 0 <= k <= 30, -1 otherwise.
+   */
+  private static int getPowerOfTwo(String addr) {
+    if (!ICUtilities.isLiteral(addr) || addr.length() > 10) {
+      return -1;
+    }
+
+    int value = Integer.parseInt(addr);
+    if (value <= 0 || Integer.bitCount(value) != 1 || value > (1 << 30)) {
+      return -1;
+    }
+
+    return Integer.numberOfTrailingZeros(value);
+  }
+}
@@ -58,18 +58,18 @@ public class StringEntry {
   }
 
   /**
-   * Generates the MIPS code for this particular string. We first need to remove
-   * the .db and .dw type directives and replace them with the MIPS equivalents -
-   * namely .byte and .word respectively.
+   * Generates the MIPS code for this particular string. The length becomes a
+   * .word, and the characters become an .asciiz directive when SPIM can take
+   * them as a string literal (or a .byte list when it can't).
    * 
    * @param void.
    * 
-   * @return void.
+   * @return MIPS data declaration of the string.
    */
   public String getMIPSCode() {
-    String charValuesFiltered = this.charValues.replaceAll(".db", ".byte");
-    charValuesFiltered = charValuesFiltered.replaceAll(".dw", ".word");
-    return this.compilerID + ":\t" + charValuesFiltered;
+    String[] decls = this.charValues.split("\n");
+    String length = decls[0].substring(decls[0].indexOf(' ') + 1);
+    return this.compilerID + ":\t.word " + length + "\n" + LCUtilities.getMIPSByteDirective(decls[1]);
   }
 
   public String getID() {
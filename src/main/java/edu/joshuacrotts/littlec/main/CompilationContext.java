@@ -0,0 +1,285 @@
+package edu.joshuacrotts.littlec.main;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Stack;
+
+import edu.joshuacrotts.littlec.icode.ActivationRecord;
+import edu.joshuacrotts.littlec.icode.ICOptimizer;
+import edu.joshuacrotts.littlec.icode.Quadruple;
+import edu.joshuacrotts.littlec.icode.StringEntry;
+import edu.joshuacrotts.littlec.mipsgen.MIPSGen;
+
+/**
+ * Everything one compilation mutates: the error listener, the syntax tree
+ * flags, the three-address code and its activation records, the string and
+ * global tables, and every counter used to make up fresh names. It also holds
+ * the standard streams of the compilation: where the program's source comes
+ * from when there's no file, where errors and listings are printed, and what a
+ * program run by -rc or -rm reads and writes. Two programs compiled with
+ * different contexts can't see each other, so any number of compilations can
+ * run at once in the same JVM as long as each one has its own.
+ *
+ * A context is handed explicitly to whatever starts a compilation: the
+ * CompilerPipeline, the Launcher modes, ICode and MIPSGen. They bind it to the
+ * running thread while they work, and the code underneath them (the syntax
+ * tree nodes, the optimizers, the code generator) reaches it through
+ * current(). Asking for the current context on a thread that hasn't bound one
+ * is an error rather than a quiet fresh start, since whatever that thread did
+ * would otherwise be lost with its throwaway context.
+ *
+ * Settings that are fixed for the whole run, such as the register allocator's
+ * graph size limit, are not part of the context. The optimization level is a
+ * run-wide setting too, but a context can override it for its own compilation.
+ * How many functions the code generator works on at once belongs to the
+ * context alone.
+ *
+ * @author Joshua Crotts
+ */
+public final class CompilationContext {
+
+  /** Context bound to each thread, or null if the thread hasn't bound one. */
+  private static final ThreadLocal<CompilationContext> CURRENT = new ThreadLocal<>();
+
+  /** Errors and warnings found while compiling. */
+  private final LCErrorListener ERROR_LISTENER;
+
+  /** Three-address code for the whole program. */
+  private final Quadruple QUAD;
+
+  /** Activation records of the functions being generated. */
+  private final Stack<ActivationRecord> AR_STACK;
+
+  /** Compiler string-generated ID to string array of bytes. */
+  private final ArrayList<StringEntry> STRING_VARS;
+
+  /** ID -> Global variable ID. */
+  private final HashMap<String, String> GLOBAL_VARS;
+
+  /** Standard input of the compilation. */
+  private InputStream in = System.in;
+
+  /** Standard output and error of the compilation. */
+  private PrintStream out = System.out, err = System.err;
+
+  /** Flags shared by every node of the syntax tree. */
+  private int syntaxTreeFlags = 0;
+
+  /**
+   * Optimization level of this compilation, or -1 to use the run-wide level in
+   * ICOptimizer.
+   */
+  private int optimizationLevel = -1;
+
+  /**
+   * Number of functions generated at once; 1 generates them one after the other
+   * on the calling thread.
+   */
+  private int parallelism = MIPSGen.DEFAULT_PARALLELISM;
+
+  /** Label a break statement jumps to. */
+  private String loopSuccessor = "";
+
+  /** Number of intermediate code labels made so far. */
+  private int labelCount = 0;
+
+  /** Next temporary, module and string numbers handed out by ICAddress. */
+  private int nextTemp = 1, nextModule = 1, nextString = 1;
+
+  public CompilationContext() {
+    this.ERROR_LISTENER = new LCErrorListener();
+    this.QUAD = new Quadruple();
+    this.AR_STACK = new Stack<>();
+    this.STRING_VARS = new ArrayList<>();
+    this.GLOBAL_VARS = new HashMap<>();
+  }
+
+  /**
+   * @throws IllegalStateException if the calling thread hasn't bound a context.
+   *
+   * @return the context bound to the calling thread.
+   */
+  public static CompilationContext current() {
+    CompilationContext context = CURRENT.get();
+    if (context == null) {
+      throw new IllegalStateException("No compilation context is bound to thread " + Thread.currentThread().getName());
+    }
+    return context;
+  }
+
+  /**
+   * Makes this the calling thread's context until the returned binding is
+   * unbound, at which point the previous one is put back. Callers unbind it in
+   * a finally block right after the work that needs the context.
+   *
+   * @return binding that restores the previous context when unbound.
+   */
+  public Binding bind() {
+    CompilationContext previous = CURRENT.get();
+    CURRENT.set(this);
+    return () -> {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    };
+  }
+
+  /**
+   * Points the compilation's standard streams somewhere other than the JVM's.
+   * Nothing else in the JVM is affected.
+   *
+   * @param in  - standard input.
+   * @param out - standard output.
+   * @param err - standard error; may be the same stream as out.
+   *
+   * @return void.
+   */
+  public void setStreams(InputStream in, PrintStream out, PrintStream err) {
+    this.in = in;
+    this.out = out;
+    this.err = err;
+  }
+
+  public InputStream getIn() {
+    return this.in;
+  }
+
+  public PrintStream getOut() {
+    return this.out;
+  }
+
+  public PrintStream getErr() {
+    return this.err;
+  }
+
+  public LCErrorListener getErrorListener() {
+    return this.ERROR_LISTENER;
+  }
+
+  public Quadruple getQuad() {
+    return this.QUAD;
+  }
+
+  public Stack<ActivationRecord> getARStack() {
+    return this.AR_STACK;
+  }
+
+  public ArrayList<StringEntry> getStringTable() {
+    return this.STRING_VARS;
+  }
+
+  public HashMap<String, String> getGlobalVariables() {
+    return this.GLOBAL_VARS;
+  }
+
+  public int getSyntaxTreeFlags() {
+    return this.syntaxTreeFlags;
+  }
+
+  public void setSyntaxTreeFlags(int flags) {
+    this.syntaxTreeFlags = flags;
+  }
+
+  public int getOptimizationLevel() {
+    return this.optimizationLevel;
+  }
+
+  /**
+   * Overrides the run-wide optimization level for this compilation.
+   *
+   * @param level - level from 0 to ICOptimizer.MAX_OPTIMIZATION_LEVEL, or -1 to
+   *              go back to the run-wide level.
+   *
+   * @throws IllegalArgumentException if the level is out of range.
+   *
+   * @return void.
+   */
+  public void setOptimizationLevel(int level) {
+    if (level < -1 || level > ICOptimizer.MAX_OPTIMIZATION_LEVEL) {
+      throw new IllegalArgumentException("optimization level must be between 0 and "
+          + ICOptimizer.MAX_OPTIMIZATION_LEVEL + ".");
+    }
+
+    this.optimizationLevel = level;
+  }
+
+  public int getParallelism() {
+    return this.parallelism;
+  }
+
+  /**
+   * Sets how many of this compilation's functions are generated at once.
+   *
+   * @param threads - number of functions; 1 turns parallel generation off.
+   *
+   * @throws IllegalArgumentException if the number isn't positive.
+   *
+   * @return void.
+   */
+  public void setParallelism(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("number of code generation threads must be positive.");
+    }
+
+    this.parallelism = threads;
+  }
+
+  public String getLoopSuccessor() {
+    return this.loopSuccessor;
+  }
+
+  public void setLoopSuccessor(String label) {
+    this.loopSuccessor = label;
+  }
+
+  /**
+   * @return the next intermediate code label number.
+   */
+  public int nextLabel() {
+    return ++this.labelCount;
+  }
+
+  /**
+   * Restarts intermediate code label numbering.
+   *
+   * @param void.
+   *
+   * @return void.
+   */
+  public void resetLabels() {
+    this.labelCount = 0;
+  }
+
+  public int nextTemp() {
+    return this.nextTemp++;
+  }
+
+  public int nextModule() {
+    return this.nextModule++;
+  }
+
+  public int nextString() {
+    return this.nextString++;
+  }
+
+  /**
+   * A context bound to a thread by bind().
+   */
+  @FunctionalInterface
+  public interface Binding {
+
+    /**
+     * Puts back whatever context was bound before, leaving the thread with
+     * none if there wasn't one.
+     *
+     * @param void.
+     *
+     * @return void.
+     */
+    void unbind();
+  }
+}
@@ -0,0 +1,566 @@
+package edu.joshuacrotts.littlec.main;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import edu.joshuacrotts.littlec.antlr4.LittleCLexer;
+import edu.joshuacrotts.littlec.antlr4.LittleCParser;
+import edu.joshuacrotts.littlec.icode.ICode;
+import edu.joshuacrotts.littlec.mipsgen.MIPSGen;
+import edu.joshuacrotts.littlec.syntaxtree.LCSyntaxTree;
+
+/**
+ * Takes a LittleC program through the compiler one phase at a time: lexing,
+ * parsing, building the syntax tree, generating intermediate code, optimizing
+ * it and setting up the MIPS generator. Every Launcher mode runs the pipeline
+ * as far as it needs to and then does its own thing with what the last phase
+ * made. What each phase makes is kept in a Unit that's handed from one phase to
+ * the next.
+ *
+ * Hooks added to a pipeline are told before and after every phase. That's how
+ * phases are timed (PhaseTimer), skipped when their result is already known
+ * (ParseCache) or stopped part way through a compilation (cancel(), or a hook
+ * throwing a CancellationException).
+ *
+ * Parsing takes two tries. The first uses SLL prediction, which never looks at
+ * the full parser call stack and so is much cheaper on the deep, left-recursive
+ * expression rule, and gives up at the first syntax error. SLL gives the same
+ * tree as full LL whenever it succeeds. It can reject a program that LL would
+ * accept, though, and it can't report errors, so if it gives up the tokens are
+ * rewound and the program is parsed again with full LL prediction and the usual
+ * error reporting and recovery. Correct programs only pay for the first try.
+ *
+ * @author Joshua Crotts
+ */
+public final class CompilerPipeline {
+
+  /**
+   * The phases of the compiler, in the order they run.
+   */
+  public enum Phase {
+
+    /** Turns the source into tokens. */
+    LEX {
+      @Override
+      void run(Unit unit) {
+        LittleCLexer lexer = new LittleCLexer(unit.SOURCE);
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(unit.CONTEXT.getErrorListener());
+        unit.tokens = new CommonTokenStream(lexer);
+        unit.tokens.fill();
+      }
+    },
+
+    /** Parses the tokens into a parse tree. */
+    PARSE {
+      @Override
+      void run(Unit unit) {
+        unit.parser = new LittleCParser(unit.tokens);
+        unit.parseTree = parseProgram(unit.parser, unit.tokens, unit.CONTEXT.getErrorListener());
+      }
+    },
+
+    /** Walks the parse tree, checking it and building the syntax tree. */
+    SEMANTIC {
+      @Override
+      void run(Unit unit) {
+        unit.listener = new LCListener();
+        new ParseTreeWalker().walk(unit.listener, unit.parseTree);
+        unit.syntaxTree = LCErrorListener.sawError() ? null : unit.listener.getSyntaxTree();
+      }
+    },
+
+    /** Generates the intermediate code. */
+    ICODE {
+      @Override
+      void run(Unit unit) {
+        unit.iCode = new ICode(unit.syntaxTree, unit.CONTEXT, false);
+      }
+    },
+
+    /** Optimizes the intermediate code at the compilation's level. */
+    OPTIMIZE {
+      @Override
+      void run(Unit unit) {
+        unit.iCode.optimize();
+      }
+    },
+
+    /** Splits the intermediate code into functions for the MIPS generator. */
+    BACKEND {
+      @Override
+      void run(Unit unit) {
+        unit.mipsGen = new MIPSGen(unit.iCode);
+      }
+    };
+
+    /**
+     * Runs the phase on a unit whose earlier phases have all run.
+     *
+     * @param unit - the program being compiled.
+     *
+     * @return void.
+     */
+    abstract void run(Unit unit);
+  }
+
+  /**
+   * Something told about every phase of a pipeline. Both methods are called on
+   * the compiling thread with the compilation's context bound to it.
+   *
+   * When a hook skips LEX and PARSE, as ParseCache does, the unit only gets a
+   * parse tree: its tokens and parser stay null for the rest of the run. Hooks
+   * and phases after PARSE mustn't count on either of them.
+   */
+  public interface Hook {
+
+    /**
+     * Called before a phase runs. Throwing a CancellationException stops the
+     * compilation.
+     *
+     * @param phase - phase about to run.
+     * @param unit  - the program being compiled.
+     *
+     * @return true if the hook has already filled in the phase's result and
+     *         the phase shouldn't run.
+     */
+    default boolean before(Phase phase, Unit unit) {
+      return false;
+    }
+
+    /**
+     * Called after a phase runs. Not called for a phase that a hook skipped.
+     *
+     * @param phase   - phase that ran.
+     * @param unit    - the program being compiled.
+     * @param elapsed - nanoseconds the phase took.
+     *
+     * @return void.
+     */
+    default void after(Phase phase, Unit unit, long elapsed) {
+    }
+  }
+
+  /**
+   * A program on its way through the pipeline, and everything the phases have
+   * made of it so far. Anything a phase hasn't made yet is null.
+   */
+  public static final class Unit {
+
+    /** Source of the program. */
+    private final CharStream SOURCE;
+
+    /** Compilation the program is compiled in. */
+    private final CompilationContext CONTEXT;
+
+    private CommonTokenStream tokens;
+    private LittleCParser parser;
+    private ParseTree parseTree;
+    private LCListener listener;
+    private LCSyntaxTree syntaxTree;
+    private ICode iCode;
+    private MIPSGen mipsGen;
+
+    /** Last phase that ran or was skipped, or null before the first. */
+    private Phase lastPhase;
+
+    private Unit(CharStream source, CompilationContext context) {
+      this.SOURCE = source;
+      this.CONTEXT = context;
+    }
+
+    public CharStream getSource() {
+      return this.SOURCE;
+    }
+
+    /**
+     * @return the text of the whole program.
+     */
+    public String getSourceText() {
+      return this.SOURCE.getText(Interval.of(0, this.SOURCE.size() - 1));
+    }
+
+    public CompilationContext getContext() {
+      return this.CONTEXT;
+    }
+
+    /**
+     * @return the tokens, or null if LEX hasn't run or was skipped.
+     */
+    public CommonTokenStream getTokens() {
+      return this.tokens;
+    }
+
+    /**
+     * @return the parser, or null if PARSE hasn't run or was skipped.
+     */
+    public LittleCParser getParser() {
+      return this.parser;
+    }
+
+    public ParseTree getParseTree() {
+      return this.parseTree;
+    }
+
+    /**
+     * Gives the unit a parse tree made elsewhere, for a hook that skips LEX and
+     * PARSE. The tree isn't changed by the later phases, so it can be shared
+     * with other units.
+     *
+     * @param parseTree - parse tree of this unit's source.
+     *
+     * @return void.
+     */
+    public void setParseTree(ParseTree parseTree) {
+      this.parseTree = parseTree;
+    }
+
+    public LCListener getListener() {
+      return this.listener;
+    }
+
+    /**
+     * @return the syntax tree, or null if SEMANTIC hasn't run or found errors.
+     */
+    public LCSyntaxTree getSyntaxTree() {
+      return this.syntaxTree;
+    }
+
+    public ICode getICode() {
+      return this.iCode;
+    }
+
+    public MIPSGen getMIPSGen() {
+      return this.mipsGen;
+    }
+
+    public Phase getLastPhase() {
+      return this.lastPhase;
+    }
+  }
+
+  /**
+   * Hook that adds up how long each phase takes. One timer can be shared by
+   * several runs, one after the other, to get totals.
+   */
+  public static final class PhaseTimer implements Hook {
+
+    private final Map<Phase, Long> TIMES = new EnumMap<>(Phase.class);
+
+    @Override
+    public void after(Phase phase, Unit unit, long elapsed) {
+      this.TIMES.merge(phase, elapsed, Long::sum);
+    }
+
+    /**
+     * @param phases - phases to add up.
+     *
+     * @return nanoseconds spent in those phases.
+     */
+    public long getTime(Phase... phases) {
+      long total = 0;
+      for (Phase phase : phases) {
+        total += this.TIMES.getOrDefault(phase, 0L);
+      }
+      return total;
+    }
+  }
+
+  /**
+   * Hook that remembers the parse trees of programs it's seen, so compiling
+   * the same source again skips LEX and PARSE. Trees of programs with syntax
+   * errors aren't kept, so their errors are reported every time. Only the most
+   * recently used trees are kept. One cache can be shared by any number of
+   * pipelines on any number of threads.
+   */
+  public static final class ParseCache implements Hook {
+
+    private final Map<String, ParseTree> TREES;
+
+    /**
+     * @param capacity - number of parse trees to keep.
+     */
+    public ParseCache(int capacity) {
+      if (capacity < 1) {
+        throw new IllegalArgumentException("Parse cache needs room for at least one tree, not " + capacity);
+      }
+      this.TREES = new LinkedHashMap<String, ParseTree>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ParseTree> eldest) {
+          return this.size() > capacity;
+        }
+      };
+    }
+
+    @Override
+    public boolean before(Phase phase, Unit unit) {
+      if (phase != Phase.LEX && phase != Phase.PARSE) {
+        return false;
+      } else if (unit.getParseTree() != null) {
+        return true;
+      }
+
+      ParseTree tree;
+      synchronized (this.TREES) {
+        tree = this.TREES.get(unit.getSourceText());
+      }
+      if (tree != null) {
+        unit.setParseTree(tree);
+      }
+      return tree != null;
+    }
+
+    @Override
+    public void after(Phase phase, Unit unit, long elapsed) {
+      if (phase == Phase.PARSE && !LCErrorListener.sawError()) {
+        synchronized (this.TREES) {
+          this.TREES.put(unit.getSourceText(), unit.getParseTree());
+        }
+      }
+    }
+
+    /**
+     * @return number of parse trees kept.
+     */
+    public int size() {
+      synchronized (this.TREES) {
+        return this.TREES.size();
+      }
+    }
+  }
+
+  /** Compilation the pipeline compiles in. */
+  private final CompilationContext CONTEXT;
+
+  /** Hooks in the order they were added. */
+  private final List<Hook> HOOKS = new ArrayList<>();
+
+  /** Should the errors be printed when SEMANTIC finds any? */
+  private boolean isReportingErrors = true;
+
+  /** Has cancel() been called? */
+  private volatile boolean isCancelled = false;
+
+  /**
+   * Makes a pipeline that compiles in a context of its own.
+   */
+  public CompilerPipeline() {
+    this(new CompilationContext());
+  }
+
+  /**
+   * Makes a pipeline that compiles in the given context, whichever thread runs
+   * it.
+   *
+   * @param context - compilation to compile in.
+   */
+  public CompilerPipeline(CompilationContext context) {
+    this.CONTEXT = context;
+  }
+
+  /**
+   * Adds a hook. Hooks are called in the order they were added.
+   *
+   * @param hook - hook to add.
+   *
+   * @return this pipeline.
+   */
+  public CompilerPipeline addHook(Hook hook) {
+    this.HOOKS.add(hook);
+    return this;
+  }
+
+  /**
+   * Sets whether the errors found by the front end are printed to the
+   * compilation's standard error when the pipeline stops because of them.
+   * They're printed unless this is turned off; either way LCErrorListener still
+   * has them.
+   *
+   * @param isReportingErrors - print the errors?
+   *
+   * @return this pipeline.
+   */
+  public CompilerPipeline setReportingErrors(boolean isReportingErrors) {
+    this.isReportingErrors = isReportingErrors;
+    return this;
+  }
+
+  /**
+   * Stops the pipeline before its next phase, from any thread. The run then
+   * throws a CancellationException. A phase that's already running is
+   * finished first.
+   *
+   * @param void.
+   *
+   * @return void.
+   */
+  public void cancel() {
+    this.isCancelled = true;
+  }
+
+  /**
+   * Runs the phases from LEX up to and including the last one. The run stops
+   * early, after SEMANTIC, if the program has errors.
+   *
+   * @param input - source of the program.
+   * @param last  - last phase to run.
+   *
+   * @throws CancellationException if the pipeline is cancelled.
+   *
+   * @return the unit, holding whatever the phases that ran made.
+   */
+  public Unit run(CharStream input, Phase last) {
+    Unit unit = new Unit(input, this.CONTEXT);
+    CompilationContext.Binding binding = this.CONTEXT.bind();
+    try {
+      for (Phase phase : Phase.values()) {
+        if (phase.compareTo(last) > 0) {
+          break;
+        }
+
+        this.runPhase(phase, unit);
+        if (phase == Phase.SEMANTIC && unit.syntaxTree == null) {
+          if (this.isReportingErrors && LCErrorListener.sawError()) {
+            LCErrorListener.printErrors();
+          }
+          break;
+        }
+      }
+    } finally {
+      binding.unbind();
+    }
+    return unit;
+  }
+
+  /**
+   * Runs the pipeline on a file.
+   *
+   * @param fileName - LittleC source file.
+   * @param last     - last phase to run.
+   *
+   * @return the unit, or null if the file couldn't be read.
+   */
+  public Unit runFile(String fileName, Phase last) {
+    try {
+      return this.run(CharStreams.fromFileName(fileName), last);
+    } catch (IOException e) {
+      if (e instanceof NoSuchFileException) {
+        this.CONTEXT.getErr().println("Could not open file " + fileName);
+      } else {
+        e.printStackTrace(this.CONTEXT.getErr());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Runs the pipeline on the compilation's standard input.
+   *
+   * @param last - last phase to run.
+   *
+   * @return the unit, or null if standard input couldn't be read.
+   */
+  public Unit runStdin(Phase last) {
+    try {
+      return this.run(CharStreams.fromStream(this.CONTEXT.getIn()), last);
+    } catch (IOException e) {
+      e.printStackTrace(this.CONTEXT.getErr());
+    }
+    return null;
+  }
+
+  /**
+   * Runs the pipeline on the input a Launcher mode was given: the file named by
+   * its only argument, or standard input if it has none.
+   *
+   * @param argv - arguments of the mode.
+   * @param last - last phase to run.
+   *
+   * @return the unit, or null if there's more than one argument or the input
+   *         couldn't be read.
+   */
+  public Unit runArgs(String[] argv, Phase last) {
+    if (argv.length > 1) {
+      this.CONTEXT.getErr().println("Can provide at most one command line argument (an input filename)");
+      return null;
+    }
+    return argv.length == 1 ? this.runFile(argv[0], last) : this.runStdin(last);
+  }
+
+  /**
+   * Runs one phase, unless a hook skips it, and tells the hooks about it.
+   *
+   * @param phase - phase to run.
+   * @param unit  - the program being compiled.
+   *
+   * @throws CancellationException if the pipeline is cancelled.
+   *
+   * @return void.
+   */
+  private void runPhase(Phase phase, Unit unit) {
+    if (this.isCancelled) {
+      throw new CancellationException("Compilation was cancelled before " + phase);
+    }
+
+    boolean isSkipped = false;
+    for (Hook hook : this.HOOKS) {
+      isSkipped |= hook.before(phase, unit);
+    }
+
+    if (!isSkipped) {
+      long start = System.nanoTime();
+      phase.run(unit);
+      long elapsed = System.nanoTime() - start;
+      for (Hook hook : this.HOOKS) {
+        hook.after(phase, unit, elapsed);
+      }
+    }
+    unit.lastPhase = phase;
+  }
+
+  /**
+   * Parses a program, first with SLL prediction and then, if that fails, with
+   * full LL prediction.
+   *
+   * @param parser    - parser connected to tokens.
+   * @param tokens    - token stream of the program.
+   * @param catchErrs - listener for syntax errors.
+   *
+   * @return the parse tree.
+   */
+  private static ParseTree parseProgram(LittleCParser parser, CommonTokenStream tokens, LCErrorListener catchErrs) {
+    parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+    parser.removeErrorListeners();
+    parser.setErrorHandler(new BailErrorStrategy());
+    try {
+      return parser.program();
+    } catch (ParseCancellationException e) {
+      // Either a real syntax error or something only full LL can sort out.
+      tokens.seek(0);
+      parser.reset();
+      parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+      parser.addErrorListener(catchErrs);
+      parser.setErrorHandler(new DefaultErrorStrategy());
+      return parser.program();
+    }
+  }
+}
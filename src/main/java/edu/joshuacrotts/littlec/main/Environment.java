@@ -4,9 +4,8 @@ import java.util.TreeMap;
 
 /**
  * An Environment is a TreeMap of identifiers with SymbolEntry values mapped
- * together. Environments are used to keep track of variables as new scopes are
- * generated in the code (i.e. when new blocks are made, as well as the start
- * and end of functions).
+ * together. It's a set of symbols built up ahead of time (a function's
+ * parameters, say) that the symbol table opens a new scope with.
  * 
  * @author Joshua Crotts
  */
@@ -20,8 +19,7 @@ public class Environment {
   /**
    * Creates the HashMap in a new Environment. An Environment is a block of code
    * with the exception of statements like if, else, for, and while. Blocks,
-   * therefore, are function declarations, and the global scope. These are added
-   * and popped from the Environment stack in the symbol table.
+   * therefore, are function declarations, and the global scope.
    */
   public Environment() {
     this.symbols = new TreeMap<>();
@@ -16,6 +16,10 @@ import org.antlr.v4.runtime.Recognizer;
  * chains (or both). All it does is keep track of whether an error was detected,
  * so after parsing you can call sawError() to see if there was a problem.
  *
+ * Each CompilationContext owns one of these. The static methods report to,
+ * and ask about, the listener of the context that's current on the calling
+ * thread.
+ *
  * @author Joshua Crotts
  */
 public class LCErrorListener extends BaseErrorListener {
@@ -23,22 +27,22 @@ public class LCErrorListener extends BaseErrorListener {
   /**
    * Set of all compiler errors generated while parsing.
    */
-  private static Set<Message> errors = new HashSet<>();
+  private final Set<Message> errors = new HashSet<>();
   
   /**
    * Set of all warning errors generated while parsing.
    */
-  private static Set<Message> warnings = new HashSet<>();
+  private final Set<Message> warnings = new HashSet<>();
 
   /**
    * Keeps track of whether we have encountered an error or not.
    */
-  private static boolean gotError = false;
+  private boolean gotError = false;
  
   /**
    * Keeps track of whether we have encountered a warning or not.
    */
-  private static boolean gotWarning = false;
+  private boolean gotWarning = false;
 
   public LCErrorListener() {
     super();
@@ -52,7 +56,8 @@ public class LCErrorListener extends BaseErrorListener {
    * @param errorMsg
    */
   public static void syntaxError(ParserRuleContext ctx, String errorMsg) {
-    LCErrorListener.gotError = true;
+    LCErrorListener listener = CompilationContext.current().getErrorListener();
+    listener.gotError = true;
     int lineNo = -1;
     int colNo = -1;
 
@@ -64,7 +69,7 @@ public class LCErrorListener extends BaseErrorListener {
           "Internal compiler error - ParserRuleContext cannot be null in ErrorListener.");
     }
 
-    LCErrorListener.errors.add(new Message(errorMsg, lineNo, colNo));
+    listener.errors.add(new Message(errorMsg, lineNo, colNo));
   }
 
   /**
@@ -77,7 +82,8 @@ public class LCErrorListener extends BaseErrorListener {
    * @return void.
    */
   public static void syntaxWarning(ParserRuleContext ctx, String warningMsg) {
-    LCErrorListener.gotWarning = true;
+    LCErrorListener listener = CompilationContext.current().getErrorListener();
+    listener.gotWarning = true;
     int lineNo = -1;
     int colNo = -1;
 
@@ -89,40 +95,56 @@ public class LCErrorListener extends BaseErrorListener {
           "Internal compiler error - ParserRuleContext cannot be null in ErrorListener.");
     }
 
-    LCErrorListener.warnings.add(new Message(warningMsg, lineNo, colNo));
+    listener.warnings.add(new Message(warningMsg, lineNo, colNo));
   }
 
   /**
-   * Prints error messages generated through parsing the syntax tree to standard
-   * error.
+   * Prints error messages generated through parsing the syntax tree to the
+   * current compilation's standard error.
    * 
    * @param void.
    * 
    * @return void.
    */
   public static void printErrors() {
-    List<Message> errorList = new ArrayList<Message>(LCErrorListener.errors);
+    CompilationContext.current().getErr().print(getErrorReport());
+  }
+
+  /**
+   * Builds the error report that printErrors prints: a count, then one error
+   * per line sorted by position.
+   * 
+   * @param void.
+   * 
+   * @return the report.
+   */
+  public static String getErrorReport() {
+    LCErrorListener listener = CompilationContext.current().getErrorListener();
+    List<Message> errorList = new ArrayList<Message>(listener.errors);
     errorList.sort(Comparator.comparing(Message::getLineNo).thenComparing(Message::getColNo));
-    System.err.print("ERRORS(" + LCErrorListener.errors.size() + "):\n");
+    StringBuilder report = new StringBuilder("ERRORS(" + listener.errors.size() + "):\n");
     for (Message error : errorList) {
-      System.err.println(error);
+      report.append(error).append(System.lineSeparator());
     }
+    return report.toString();
   }
 
   /**
-   * Prints warning messages generated through parsing the syntax tree to standard
-   * out.
+   * Prints warning messages generated through parsing the syntax tree to the
+   * current compilation's standard output.
    * 
    * @param void.
    * 
    * @return void.
    */
   public static void printWarnings() {
-    List<Message> warningList = new ArrayList<Message>(LCErrorListener.warnings);
+    CompilationContext context = CompilationContext.current();
+    LCErrorListener listener = context.getErrorListener();
+    List<Message> warningList = new ArrayList<Message>(listener.warnings);
     warningList.sort(Comparator.comparing(Message::getLineNo).thenComparing(Message::getColNo));
-    System.out.print("WARNINGS(" + LCErrorListener.warnings.size() + "):\n");
+    context.getOut().print("WARNINGS(" + listener.warnings.size() + "):\n");
     for (Message warning : warningList) {
-      System.out.println(warning);
+      context.getOut().println(warning);
     }
   }
 
@@ -132,7 +154,14 @@ public class LCErrorListener extends BaseErrorListener {
    * @return true if an error was seen.
    */
   public static boolean sawError() {
-    return gotError;
+    return CompilationContext.current().getErrorListener().gotError;
+  }
+
+  /**
+   * @return true if this listener has seen an error.
+   */
+  public boolean hasError() {
+    return this.gotError;
   }
 
   /**
@@ -141,19 +170,20 @@ public class LCErrorListener extends BaseErrorListener {
    * @return true if a warning was seen.
    */
   public static boolean sawWarning() {
-    return gotWarning;
+    return CompilationContext.current().getErrorListener().gotWarning;
   }
 
   /**
-   * Since this is a static error listener, we need to reset the warnings and
-   * errors each time we use this in a unit testing environment or we'll have
-   * false positives.
+   * Resets the warnings and errors of the current context's listener. Tests
+   * that reuse one thread's default context need this between cases or they'll
+   * see false positives.
    */
   public static void reset() {
-    LCErrorListener.warnings.clear();
-    LCErrorListener.errors.clear();
-    LCErrorListener.gotError = false;
-    LCErrorListener.gotWarning = false;
+    LCErrorListener listener = CompilationContext.current().getErrorListener();
+    listener.warnings.clear();
+    listener.errors.clear();
+    listener.gotError = false;
+    listener.gotWarning = false;
   }
 
   /**
@@ -164,8 +194,8 @@ public class LCErrorListener extends BaseErrorListener {
   @Override
   public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int col, String errorMsg,
       RecognitionException e) {
-    gotError = true;
-    LCErrorListener.errors.add(new Message(errorMsg, line, col));
+    this.gotError = true;
+    this.errors.add(new Message(errorMsg, line, col));
   }
 
   /**
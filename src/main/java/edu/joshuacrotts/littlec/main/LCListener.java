@@ -46,11 +46,6 @@ public class LCListener extends LittleCBaseListener {
    */
   private final ParseTreeProperty<LCSyntaxTree> values;
 
-  /**
-   * Default LittleCParser object generated by ANTLR.
-   */
-  private LittleCParser parser;
-
   /**
    * Symbol table for the IDs and types of all variables and functions.
    */
@@ -71,7 +66,7 @@ public class LCListener extends LittleCBaseListener {
   /**
    * Keeps track of the current function's return type.
    */
-  private String functionReturnType;
+  private LCType functionReturnType;
 
   /**
    * Keeps track of the current number of nested functions we have.
@@ -89,13 +84,19 @@ public class LCListener extends LittleCBaseListener {
   private int assignScopeCount = 0;
 
   /**
-   * This constructor is expected by ParserTest, and so needs to be defined.
+   * Compilation this listener reports errors to and builds its tree in. It's
+   * the context current when the listener is made, so the tree must be walked
+   * on a thread bound to it.
+   */
+  private final CompilationContext context;
+
+  /**
    * Initializes the syntax tree node, the scopes stack, and the symbol table.
-   * 
-   * @param parser - the parser class generated from ANTLR.
+   * The listener only needs the parse tree it walks, not the parser that made
+   * it, so it works the same on a tree from a ParseCache.
    */
-  public LCListener(LittleCParser parser) {
-    this.parser = parser;
+  public LCListener() {
+    this.context = CompilationContext.current();
     this.syntaxTree = new LCSyntaxTree();
     this.syntaxTreeScopes = new Stack<>();
     this.symbolTable = new SymbolTable();
@@ -153,7 +154,7 @@ public class LCListener extends LittleCBaseListener {
     if (LCErrorListener.sawError())
       return;
     LCSyntaxTree condPortion = this.values.get(ctx.ruleIfStatementCond());
-    LCSyntaxTree thenPortion = this.syntaxTree.getChildren().remove(this.syntaxTree.getChildren().size() - 1);
+    LCSyntaxTree thenPortion = this.syntaxTree.removeLastChild();
     LCSyntaxTree elsePortion = this.values.get(ctx.ruleElseStatement());
 
     this.syntaxTree.addChild(new LCIfStatementNode(ctx, condPortion, thenPortion, elsePortion));
@@ -193,11 +194,11 @@ public class LCListener extends LittleCBaseListener {
    */
   @Override
   public void exitElseStatement(LittleCParser.ElseStatementContext ctx) {
-    if (this.syntaxTree.getChildren().isEmpty()) {
+    if (this.syntaxTree.getChildCount() == 0) {
       return;
     }
 
-    LCSyntaxTree lastChild = this.syntaxTree.getChildren().remove(this.syntaxTree.getChildren().size() - 1);
+    LCSyntaxTree lastChild = this.syntaxTree.removeLastChild();
     this.values.put(ctx, lastChild);
   }
 
@@ -217,13 +218,13 @@ public class LCListener extends LittleCBaseListener {
    */
   @Override
   public void exitWhileStatement(LittleCParser.WhileStatementContext ctx) {
-    if (this.syntaxTree.getChildren().isEmpty()) {
+    if (this.syntaxTree.getChildCount() == 0) {
       return;
     }
 
     // The last-added child is whatever comes directly after the while cond part so
     // we can just remove it from the main tree and add it to the cond tree.
-    LCSyntaxTree loopBody = this.syntaxTree.getChildren().remove(this.syntaxTree.getChildren().size() - 1);
+    LCSyntaxTree loopBody = this.syntaxTree.removeLastChild();
     LCSyntaxTree condPortion = this.values.get(ctx.ruleWhileStatementCond());
     this.syntaxTree.addChild(new LCLoopStatementNode(ctx, condPortion, loopBody));
 
@@ -270,7 +271,7 @@ public class LCListener extends LittleCBaseListener {
   public void exitForStatement(LittleCParser.ForStatementContext ctx) {
     // The last-added child is whatever comes directly after the while cond part so
     // we can just remove it from the main tree and add it to the cond tree.
-    LCSyntaxTree loopBody = this.syntaxTree.getChildren().remove(this.syntaxTree.getChildren().size() - 1);
+    LCSyntaxTree loopBody = this.syntaxTree.removeLastChild();
 
     // First, we grab the saved expression.
     LCSyntaxTree loopInitializeExpression = this.values.get(ctx.expr(0));
@@ -283,7 +284,7 @@ public class LCListener extends LittleCBaseListener {
 
     // Remove the update expression from the current tree since we need to place it
     // in the new body.
-    this.syntaxTree.getChildren().remove(loopUpdateExpression);
+    this.syntaxTree.removeChild(loopUpdateExpression);
 
     // The outer body of the loop has the inner body as a seq and the update expr.
     LCSyntaxTree outerLoopBody = new LCSyntaxTree();
@@ -350,21 +351,21 @@ public class LCListener extends LittleCBaseListener {
     String id = ctx.ID().getText();
     StorageClass storageClass = LCUtilities.getStorageClassType(ctx.optStorageClass());
     int tokType = storageClass == StorageClass.DEFAULT ? 0 : 1;
-    String retType = ctx.getChild(tokType).getText();
+    LCType retType = LCType.of(ctx.getChild(tokType).getText());
 
-    if (!retType.equals("int") && !retType.equals("float") && !retType.equals("void") && !retType.equals("char")) {
+    if (retType != LCType.INT && retType != LCType.FLOAT && retType != LCType.VOID && retType != LCType.CHAR) {
       LCErrorListener.syntaxError(ctx, "return type is unspecified.");
       return;
     }
 
     // We pull in the ID and the datatype of the parameter in the prototype, and
     // store it in a HashMap.
-    LinkedHashMap<String, String> args = new LinkedHashMap<String, String>();
+    LinkedHashMap<String, LCType> args = new LinkedHashMap<String, LCType>();
     RuleFunctionDeclarationParametersContext p = ctx.ruleFunctionDeclarationParameters(0);
     final int SPACE_PER_ARG = 3; // Number of tokens in between arguments.
     if (p != null) {
       for (int i = 0; i < p.getChildCount(); i += SPACE_PER_ARG) {
-        String varDatatype = p.getChild(i).getText();
+        LCType varDatatype = LCType.of(p.getChild(i).getText());
         String varID = p.getChild(i + 1).getText();
         args.put(varID, varDatatype);
       }
@@ -404,9 +405,9 @@ public class LCListener extends LittleCBaseListener {
     String id = ctx.ID().getText();
     StorageClass storageClass = LCUtilities.getStorageClassType(ctx.optStorageClass());
     int tokType = storageClass == StorageClass.DEFAULT ? 0 : 1;
-    String retType = ctx.getChild(tokType).getText();
+    LCType retType = LCType.of(ctx.getChild(tokType).getText());
 
-    if (!retType.equals("int") && !retType.equals("float") && !retType.equals("void") && !retType.equals("char")) {
+    if (retType != LCType.INT && retType != LCType.FLOAT && retType != LCType.VOID && retType != LCType.CHAR) {
       LCErrorListener.syntaxError(ctx, "return type is unspecified.");
       return;
     }
@@ -415,12 +416,12 @@ public class LCListener extends LittleCBaseListener {
     // about the data type (but we have to store the IDs for the parse tree), and
     // the IDs must be unique, IDs are the key, and data types are the value. We use
     // a LinkedHashMap so the IDs are stored the same as they are entered.
-    LinkedHashMap<String, String> args = new LinkedHashMap<String, String>();
+    LinkedHashMap<String, LCType> args = new LinkedHashMap<String, LCType>();
     RuleFunctionDeclarationParametersContext p = ctx.ruleFunctionDeclarationParameters(0);
     final int SPACE_PER_ARG = 3; // Number of tokens in between arguments.
     if (p != null) {
       for (int i = 0; i < p.getChildCount(); i += SPACE_PER_ARG) {
-        String varDatatype = p.getChild(i).getText();
+        LCType varDatatype = LCType.of(p.getChild(i).getText());
         String varID = p.getChild(i + 1).getText();
         args.put(varID, varDatatype);
       }
@@ -458,22 +459,22 @@ public class LCListener extends LittleCBaseListener {
 
     // Check the return type and verify that it exists if we have a non-void
     // function.
-    if (!this.functionReturnType.equals("void")) {
-      int seqSize = this.syntaxTree.getChildren().size();
+    if (this.functionReturnType != LCType.VOID) {
+      int seqSize = this.syntaxTree.getChildCount();
 
       // If we don't have any children in the tree and we have a return type,
       // we throw an error.
-      if (this.syntaxTree.getChildren().isEmpty()) {
+      if (this.syntaxTree.getChildCount() == 0) {
         LCErrorListener.syntaxError(ctx, "missing required return statement at end of function " + ctx.ID() + ".");
         return;
       }
 
-      LCSyntaxTree lastChild = this.syntaxTree.getChildren().get(seqSize - 1);
+      LCSyntaxTree lastChild = this.syntaxTree.getChild(seqSize - 1);
 
       // Case 1: If our last child is an if/else if chain, then BOTH have to have
       // returns.
       if (lastChild.getLabel().equals("IF")) {
-        int ifSize = lastChild.getChildren().size();
+        int ifSize = lastChild.getChildCount();
 
         // If it's two then we have no else chain and we're already screwed.
         if (ifSize == 2) {
@@ -484,10 +485,10 @@ public class LCListener extends LittleCBaseListener {
 
         // Grab the children making the if/else chain.
         // This is ALWAYS only the if statement.
-        LCSyntaxTree ifChild = lastChild.getChildren().get(1);
+        LCSyntaxTree ifChild = lastChild.getChild(1);
 
         // This can be the single else, or a giant chain of else/ifs.
-        LCSyntaxTree elseChild = lastChild.getChildren().get(2);
+        LCSyntaxTree elseChild = lastChild.getChild(2);
 
         // Now we can check if BOTH the if and else bodies have returns everywhere.
         boolean hasReturn = LCUtilities.hasReturn(ifChild) && LCUtilities.hasReturn(elseChild);
@@ -524,7 +525,7 @@ public class LCListener extends LittleCBaseListener {
     }
 
     // If the symbol itself is defined but it's a variable then we can't use it.
-    else if (symbolTable.hasSymbol(id) && symbolTable.getSymbolEntry(id).getType().equals("VAR")) {
+    else if (symbolTable.hasSymbol(id) && symbolTable.getSymbolEntry(id).getType() == SymbolType.VAR) {
       LCErrorListener.syntaxError(ctx, id + " is a variable and cannot be used as a function identifier.");
       return;
     }
@@ -581,14 +582,14 @@ public class LCListener extends LittleCBaseListener {
       return;
     }
     LCSyntaxTree retExpr = this.values.get(ctx.expr());
-    String fnRetType = this.functionReturnType;
+    LCType fnRetType = this.functionReturnType;
 
     // If we have an expression, then we need to check the types. If they match, we
     // create the correct node and send its on its way. Otherwise, we print a type
     // mismatch error. If we're in a void fn, we print the appropriate error.
     if (ctx.expr() != null) {
-      if (!retExpr.getType().equals(fnRetType)) {
-        if (!fnRetType.equals("void")) {
+      if (retExpr.getType() != fnRetType) {
+        if (fnRetType != LCType.VOID) {
           LCErrorListener.syntaxError(ctx,
               "function expects return type of " + fnRetType + " but got " + retExpr.getType() + ".");
           return;
@@ -601,7 +602,7 @@ public class LCListener extends LittleCBaseListener {
     // If the expression is null, then we should be in a void method. If not, we
     // throw an error.
     else {
-      if (!fnRetType.equals("void")) {
+      if (fnRetType != LCType.VOID) {
         LCErrorListener.syntaxError(ctx, "cannot have a blank return expression in non-void function.");
         return;
       }
@@ -645,7 +646,7 @@ public class LCListener extends LittleCBaseListener {
       return;
     }
 
-    String lvalueType = this.symbolTable.getSymbolEntry(id).getVarType();
+    LCType lvalueType = this.symbolTable.getSymbolEntry(id).getVarType();
 
     // If there are two expressions, this means an array was created (or we tried to
     // use a non-array as an array). The second expression is the one we want to
@@ -654,14 +655,14 @@ public class LCListener extends LittleCBaseListener {
       // If we dereference the array, then it has a "pseudotype" of whatever type of
       // array it is. This suggests that we can't do something like int x[5]; x = 5;
       // But we can do x[0] = 5;
-      if (!LCUtilities.isTypeArray(this.symbolTable.getSymbolEntry(id).getVarType())) {
+      if (!this.symbolTable.getSymbolEntry(id).getVarType().isArray()) {
         LCErrorListener.syntaxError(ctx, "cannot treat non-array " + id + " as array.");
         return;
       }
 
       // When we're in here, this means that we HAVE to use an array; that's our
       // invariant.
-      String arrType = LCUtilities.getArrayType(lvalueType);
+      LCType arrType = lvalueType.getElementType();
 
       // We're assigning either a term or an expression.
       if (ctx.expr() != null) {
@@ -713,7 +714,7 @@ public class LCListener extends LittleCBaseListener {
     if (ctx.term().ID() != null) {
       String id = ctx.term().ID().getText();
       if (this.symbolTable.hasSymbol(id)) {
-        String varType = this.symbolTable.getSymbolEntry(id).getVarType();
+        LCType varType = this.symbolTable.getSymbolEntry(id).getVarType();
         LCVariableIdentifierNode varIdentifier = new LCVariableIdentifierNode(ctx, symbolTable, id, varType);
         this.values.put(ctx, varIdentifier);
       } else {
@@ -734,12 +735,12 @@ public class LCListener extends LittleCBaseListener {
           LCErrorListener.syntaxError(ctx, "cannot create an int literal.");
           return;
         }
-        constantLiteral = new LCConstantLiteralNode(ctx, intLit, "int");
+        constantLiteral = new LCConstantLiteralNode(ctx, intLit, LCType.INT);
       } else if (literalType == LittleCLexer.CHARLIT) {
         String literalValue = String.valueOf((int) LCUtilities.getCharFromString(literalNode.getText()));
-        constantLiteral = new LCConstantLiteralNode(ctx, literalValue, "char");
+        constantLiteral = new LCConstantLiteralNode(ctx, literalValue, LCType.CHAR);
       } else if (literalType == LittleCLexer.STRINGLIT) {
-        constantLiteral = new LCConstantLiteralNode(ctx, literalNode.getText(), "char[]");
+        constantLiteral = new LCConstantLiteralNode(ctx, literalNode.getText(), LCType.CHAR_ARRAY);
       }
 
       this.values.put(ctx, constantLiteral);
@@ -766,7 +767,7 @@ public class LCListener extends LittleCBaseListener {
   public void exitExprPreOp(LittleCParser.ExprPreOpContext ctx) {
     // First check if the symbol exists.
     String id = ctx.ID().getText();
-    String idType = this.symbolTable.getSymbolEntry(id).getVarType();
+    LCType idType = this.symbolTable.getSymbolEntry(id).getVarType();
     String op = "";
     if (!this.symbolTable.hasSymbol(id)) {
       LCErrorListener.syntaxError(ctx, "variable " + id + " was not previously declared.");
@@ -788,8 +789,8 @@ public class LCListener extends LittleCBaseListener {
     // If we have an expression that means we're using an array. Arrays are
     // l-values!
     if (ctx.expr() != null) {
-      if (LCUtilities.isTypeArray(idType)) {
-        idType = LCUtilities.getArrayType(idType);
+      if (idType.isArray()) {
+        idType = idType.getElementType();
         lvar = new LCArrayIndexNode(ctx, idType, lvar, this.values.get(ctx.expr()));
       }
     } else {
@@ -827,7 +828,7 @@ public class LCListener extends LittleCBaseListener {
       return;
     }
     
-    String idType = this.symbolTable.getSymbolEntry(id).getVarType();
+    LCType idType = this.symbolTable.getSymbolEntry(id).getVarType();
     String op = "";
 
     // Find the post operator symbol that we're using.
@@ -845,8 +846,8 @@ public class LCListener extends LittleCBaseListener {
     // If we have an expression that means we're using an array. Arrays are
     // l-values!
     if (ctx.expr() != null) {
-      if (LCUtilities.isTypeArray(idType)) {
-        idType = LCUtilities.getArrayType(idType);
+      if (idType.isArray()) {
+        idType = idType.getElementType();
         lvar = new LCArrayIndexNode(ctx, idType, lvar, this.values.get(ctx.expr()));
       }
     } else {
@@ -880,7 +881,7 @@ public class LCListener extends LittleCBaseListener {
     LCSyntaxTree rexpr = this.values.get(ctx.expr());
     int tokenOp = ((TerminalNode) ctx.getChild(0)).getSymbol().getType();
     String op = ((TerminalNode) ctx.getChild(0)).getSymbol().getText();
-    String varType = rexpr.getType();
+    LCType varType = rexpr.getType();
 
     // Check the expression type and make sure we're using the right op on the right
     // r-value.
@@ -888,7 +889,7 @@ public class LCListener extends LittleCBaseListener {
       if (tokenOp != LittleCLexer.SIZE_OP) {
         LCErrorListener.syntaxError(ctx, "invalid unary operator for r-value expression of type " + varType + ".");
       } else {
-        varType = "int";
+        varType = LCType.INT;
       }
     } else if (tokenOp == LittleCLexer.SIZE_OP) {
       LCErrorListener.syntaxError(ctx, "invalid unary operator for r-value expression of type " + varType + ".");
@@ -944,7 +945,7 @@ public class LCListener extends LittleCBaseListener {
     if (ctx.ID() != null) {
       String id = ctx.ID().getText();
       if (this.symbolTable.hasSymbol(id)) {
-        String varType = this.symbolTable.getSymbolEntry(id).getVarType();
+        LCType varType = this.symbolTable.getSymbolEntry(id).getVarType();
         LCVariableIdentifierNode varIdentifier = new LCVariableIdentifierNode(ctx, symbolTable, ctx.ID().getText(),
             varType);
         this.values.put(ctx, varIdentifier);
@@ -964,13 +965,13 @@ public class LCListener extends LittleCBaseListener {
           LCErrorListener.syntaxError(ctx, "cannot create an int literal.");
           return;
         }
-        constantLiteral = new LCConstantLiteralNode(ctx, intLit, "int");
+        constantLiteral = new LCConstantLiteralNode(ctx, intLit, LCType.INT);
       } else if (ctx.CHARLIT() != null) {
         String characterStr = ctx.CHARLIT().getText();
         String literalValue = String.valueOf((byte) LCUtilities.getCharFromString(characterStr));
-        constantLiteral = new LCConstantLiteralNode(ctx, literalValue, "char");
+        constantLiteral = new LCConstantLiteralNode(ctx, literalValue, LCType.CHAR);
       } else if (ctx.STRINGLIT() != null) {
-        constantLiteral = new LCConstantLiteralNode(ctx, ctx.STRINGLIT().getText(), "char[]");
+        constantLiteral = new LCConstantLiteralNode(ctx, ctx.STRINGLIT().getText(), LCType.CHAR_ARRAY);
       }
       this.values.put(ctx, constantLiteral);
     }
@@ -1003,8 +1004,8 @@ public class LCListener extends LittleCBaseListener {
     }
 
     // Gets the array type and then extracts the type of array.
-    String arrayType = this.symbolTable.getSymbolEntry(id).getVarType();
-    String elementType = LCUtilities.getArrayType(arrayType);
+    LCType arrayType = this.symbolTable.getSymbolEntry(id).getVarType();
+    LCType elementType = arrayType.getElementType();
 
     // Create the nodes for the identifier, the index expression, and the node
     // itself. Note that the array identifier is ONLY FOR SHOW.
@@ -1059,7 +1060,7 @@ public class LCListener extends LittleCBaseListener {
       LCErrorListener.syntaxWarning(ctx, "int " + lValue + " may not have been initialized.");
     }
 
-    LCVariableDeclarationNode intDeclarationNode = new LCVariableDeclarationNode(ctx, this.symbolTable, lValue, "int",
+    LCVariableDeclarationNode intDeclarationNode = new LCVariableDeclarationNode(ctx, this.symbolTable, lValue, LCType.INT,
         LCUtilities.getStorageClassType(ctx.optStorageClass()), literalValue);
 
     this.syntaxTree.addChild(intDeclarationNode);
@@ -1072,7 +1073,7 @@ public class LCListener extends LittleCBaseListener {
   @Override
   public void exitIntArrayDeclaration(LittleCParser.IntArrayDeclarationContext ctx) {
     String lValue = ctx.ID().getText();
-    String type = "int[" + ctx.INTLIT().getText() + "]";
+    LCType type = LCType.of("int[" + ctx.INTLIT().getText() + "]");
     Object literalValue = null;
 
     // We need to test to see if the size is valid or not. It doesn't matter where
@@ -1095,7 +1096,7 @@ public class LCListener extends LittleCBaseListener {
   @Override
   public void exitIntArrayRefDeclaration(LittleCParser.IntArrayRefDeclarationContext ctx) {
     String lValue = ctx.ID().getText();
-    String type = "int[]";
+    LCType type = LCType.INT_ARRAY;
     Object literalValue = null;
 
     LCVariableDeclarationNode intArrayRef = new LCVariableDeclarationNode(ctx, this.symbolTable, lValue, type,
@@ -1127,7 +1128,7 @@ public class LCListener extends LittleCBaseListener {
       LCErrorListener.syntaxWarning(ctx, "char " + lValue + " may not have been initialized.");
     }
 
-    LCVariableDeclarationNode charDeclarationNode = new LCVariableDeclarationNode(ctx, this.symbolTable, lValue, "char",
+    LCVariableDeclarationNode charDeclarationNode = new LCVariableDeclarationNode(ctx, this.symbolTable, lValue, LCType.CHAR,
         LCUtilities.getStorageClassType(ctx.optStorageClass()), literalValue);
 
     this.syntaxTree.addChild(charDeclarationNode);
@@ -1140,7 +1141,7 @@ public class LCListener extends LittleCBaseListener {
   @Override
   public void exitStringDeclaration(LittleCParser.StringDeclarationContext ctx) {
     String lValue = ctx.ID().getText();
-    String type = "char[" + ctx.INTLIT().getText() + "]";
+    LCType type = LCType.of("char[" + ctx.INTLIT().getText() + "]");
     Object literalValue = null;
 
     // If we're assigning to something, grab the literal value.
@@ -1168,7 +1169,7 @@ public class LCListener extends LittleCBaseListener {
   @Override
   public void exitStringRefDeclaration(LittleCParser.StringRefDeclarationContext ctx) {
     String lValue = ctx.ID().getText();
-    String type = "char[]";
+    LCType type = LCType.CHAR_ARRAY;
     Object literalValue = null;
 
     LCVariableDeclarationNode stringRef = new LCVariableDeclarationNode(ctx, this.symbolTable, lValue, type,
@@ -1186,14 +1187,26 @@ public class LCListener extends LittleCBaseListener {
    * @return a syntax tree, or null if an error was detected.
    */
   public LCSyntaxTree getSyntaxTree() {
-    if (LCErrorListener.sawError()) {
-      LCErrorListener.printErrors();
-      return null;
+    CompilationContext.Binding binding = this.context.bind();
+    try {
+      if (LCErrorListener.sawError()) {
+        LCErrorListener.printErrors();
+        return null;
+      }
+    } finally {
+      binding.unbind();
     }
 
     return this.syntaxTree;
   }
 
+  /**
+   * @return the compilation this listener belongs to.
+   */
+  public CompilationContext getContext() {
+    return this.context;
+  }
+
   /**
    * Returns the symbol table. Can be called at any time, but generally this will
    * be called after all parsing is complete to get the final symbol table
@@ -1211,40 +1224,40 @@ public class LCListener extends LittleCBaseListener {
   private void addDefaultGlobalFunctions() {
     /* Adds the prints function. */
     LinkedList<LCSyntaxTree> args = new LinkedList<>();
-    args.add(new LCVariableIdentifierNode(null, symbolTable, "str", "char[]"));
-    this.symbolTable.addSymbol("prints", new SymbolEntry(SymbolType.FNDEF, "void", StorageClass.EXTERN, args));
+    args.add(new LCVariableIdentifierNode(null, symbolTable, "str", LCType.CHAR_ARRAY));
+    this.symbolTable.addSymbol("prints", new SymbolEntry(SymbolType.FNDEF, LCType.VOID, StorageClass.EXTERN, args));
     args = new LinkedList<>();
 
     /* Adds the printd function. */
-    args.add(new LCVariableIdentifierNode(null, symbolTable, "n", "int"));
-    this.symbolTable.addSymbol("printd", new SymbolEntry(SymbolType.FNDEF, "void", StorageClass.EXTERN, args));
+    args.add(new LCVariableIdentifierNode(null, symbolTable, "n", LCType.INT));
+    this.symbolTable.addSymbol("printd", new SymbolEntry(SymbolType.FNDEF, LCType.VOID, StorageClass.EXTERN, args));
     args = new LinkedList<>();
 
     /* Adds the printc function. */
-    args.add(new LCVariableIdentifierNode(null, symbolTable, "n", "char"));
-    this.symbolTable.addSymbol("printc", new SymbolEntry(SymbolType.FNDEF, "void", StorageClass.EXTERN, args));
+    args.add(new LCVariableIdentifierNode(null, symbolTable, "n", LCType.CHAR));
+    this.symbolTable.addSymbol("printc", new SymbolEntry(SymbolType.FNDEF, LCType.VOID, StorageClass.EXTERN, args));
     args = new LinkedList<>();
 
     /* Adds the printf function. */
-    args.add(new LCVariableIdentifierNode(null, symbolTable, "n", "float"));
-    this.symbolTable.addSymbol("printf", new SymbolEntry(SymbolType.FNDEF, "void", StorageClass.EXTERN, args));
+    args.add(new LCVariableIdentifierNode(null, symbolTable, "n", LCType.FLOAT));
+    this.symbolTable.addSymbol("printf", new SymbolEntry(SymbolType.FNDEF, LCType.VOID, StorageClass.EXTERN, args));
     args = new LinkedList<>();
 
     /* Adds the read() function. */
-    this.symbolTable.addSymbol("read", new SymbolEntry(SymbolType.FNDEF, "int", StorageClass.EXTERN, args));
+    this.symbolTable.addSymbol("read", new SymbolEntry(SymbolType.FNDEF, LCType.INT, StorageClass.EXTERN, args));
     args = new LinkedList<>();
 
     /* Adds the readc() function. */
-    this.symbolTable.addSymbol("readc", new SymbolEntry(SymbolType.FNDEF, "char", StorageClass.EXTERN, args));
+    this.symbolTable.addSymbol("readc", new SymbolEntry(SymbolType.FNDEF, LCType.CHAR, StorageClass.EXTERN, args));
     args = new LinkedList<>();
 
     /* Adds the readf() function. */
-    this.symbolTable.addSymbol("readf", new SymbolEntry(SymbolType.FNDEF, "float", StorageClass.EXTERN, args));
+    this.symbolTable.addSymbol("readf", new SymbolEntry(SymbolType.FNDEF, LCType.FLOAT, StorageClass.EXTERN, args));
     args = new LinkedList<>();
 
     /* Add the readline() function. */
-    args.add(new LCVariableIdentifierNode(null, symbolTable, "str", "char[]"));
-    this.symbolTable.addSymbol("readline", new SymbolEntry(SymbolType.FNDEF, "void", StorageClass.EXTERN, args));
+    args.add(new LCVariableIdentifierNode(null, symbolTable, "str", LCType.CHAR_ARRAY));
+    this.symbolTable.addSymbol("readline", new SymbolEntry(SymbolType.FNDEF, LCType.VOID, StorageClass.EXTERN, args));
   }
 }
 //Why is Dr. Tate so evilllllllllllllllllllllllll
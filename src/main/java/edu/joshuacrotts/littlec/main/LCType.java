@@ -0,0 +1,279 @@
+package edu.joshuacrotts.littlec.main;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A LittleC data type: a primitive (int, char, float, void), an array
+ * reference such as int[], or an array declaration such as int[10]. Types are
+ * interned, so there's exactly one LCType per spelling and two types are the
+ * same type exactly when they're the same object. Everything about a type
+ * that the compiler asks for (its width, its element type, its array size) is
+ * worked out once, when the type is first made.
+ *
+ * The primitives and the two array references are kept for good. Every other
+ * type, such as int[10], is only held weakly, so a long-running process that
+ * compiles program after program doesn't keep every array size it has ever
+ * seen. A type nobody holds can't be compared with anything, so remaking it
+ * later doesn't break the one-object-per-spelling rule.
+ *
+ * A type keeps the spelling it was written with, and that's what toString
+ * gives back, so printed syntax trees and symbol tables look the way they did
+ * when types were plain strings.
+ *
+ * @author Joshua Crotts
+ */
+public final class LCType {
+
+  /** Types that are never dropped, by spelling. Only written while the class is initialized. */
+  private static final Map<String, LCType> FIXED_TYPES = new HashMap<>();
+
+  /** Every other type that's still in use, by spelling. Shared by all compilations. */
+  private static final ConcurrentHashMap<String, TypeReference> TYPES = new ConcurrentHashMap<>();
+
+  /** Where references to types that were collected turn up. */
+  private static final ReferenceQueue<LCType> COLLECTED = new ReferenceQueue<>();
+
+  public static final LCType VOID = LCType.fixed("void");
+  public static final LCType INT = LCType.fixed("int");
+  public static final LCType CHAR = LCType.fixed("char");
+  public static final LCType FLOAT = LCType.fixed("float");
+  public static final LCType INT_ARRAY = LCType.fixed("int[]");
+  public static final LCType CHAR_ARRAY = LCType.fixed("char[]");
+
+  /** Spelling of the type, e.g. "int", "char[]" or "int[10]". */
+  private final String NAME;
+
+  /** Type of the elements if this is an array, null otherwise. */
+  private final LCType ELEMENT_TYPE;
+
+  /**
+   * Number of elements if this is an array declaration with a decimal size,
+   * -1 otherwise.
+   */
+  private final int ARRAY_SIZE;
+
+  /** Is this an array declaration, with a decimal size in the brackets? */
+  private final boolean IS_ARRAY_DECLARATION;
+
+  /** Size in bytes, or -1 if the type has none. */
+  private final int WIDTH;
+
+  private LCType(String name) {
+    this.NAME = name;
+    int lBracketPos = name.indexOf('[');
+    int rBracketPos = name.indexOf(']');
+    if (lBracketPos < 0 || rBracketPos < lBracketPos) {
+      this.ELEMENT_TYPE = null;
+      this.ARRAY_SIZE = -1;
+      this.IS_ARRAY_DECLARATION = false;
+      this.WIDTH = name.equals("int") ? 4 : name.equals("char") ? 1 : -1;
+      return;
+    }
+
+    this.ELEMENT_TYPE = LCType.of(name.substring(0, lBracketPos));
+    String size = name.substring(lBracketPos + 1, rBracketPos);
+    this.IS_ARRAY_DECLARATION = lBracketPos > 0 && rBracketPos == name.length() - 1 && size.matches("[0-9]+");
+
+    int arraySize = -1;
+    try {
+      arraySize = Integer.parseInt(size);
+    } catch (NumberFormatException e) {
+      // References (int[]) and sizes that aren't decimal have no size.
+    }
+    this.ARRAY_SIZE = arraySize;
+
+    // References are pointers; declarations hold their elements. Anything
+    // that isn't an int array is laid out with char-sized elements.
+    if (name.equals("int[]") || name.equals("char[]")) {
+      this.WIDTH = 4;
+    } else if (arraySize >= 0) {
+      this.WIDTH = arraySize * (name.contains("int") ? 4 : 1);
+    } else {
+      this.WIDTH = -1;
+    }
+  }
+
+  /**
+   * Returns the type with the given spelling, making it the first time it's
+   * asked for.
+   *
+   * @param name - spelling of the type, e.g. "int", "char[]" or "int[10]".
+   *
+   * @return the one LCType with that spelling.
+   */
+  public static LCType of(String name) {
+    LCType type = FIXED_TYPES.get(name);
+    if (type != null) {
+      return type;
+    }
+
+    removeCollected();
+    while (true) {
+      TypeReference ref = TYPES.get(name);
+      type = ref == null ? null : ref.get();
+      if (type != null) {
+        return type;
+      }
+
+      // Made outside computeIfAbsent, since an array type makes its element
+      // type first. Whichever thread stores its type first wins.
+      LCType made = new LCType(name);
+      TypeReference madeRef = new TypeReference(made);
+      if (ref == null ? TYPES.putIfAbsent(name, madeRef) == null : TYPES.replace(name, ref, madeRef)) {
+        return made;
+      }
+    }
+  }
+
+  /**
+   * Makes one of the types that are kept for good.
+   *
+   * @param name - spelling of the type.
+   *
+   * @return the type.
+   */
+  private static LCType fixed(String name) {
+    LCType type = new LCType(name);
+    FIXED_TYPES.put(name, type);
+    return type;
+  }
+
+  /**
+   * Drops the entries of types that have been collected.
+   *
+   * @param void.
+   *
+   * @return void.
+   */
+  private static void removeCollected() {
+    TypeReference ref;
+    while ((ref = (TypeReference) COLLECTED.poll()) != null) {
+      TYPES.remove(ref.NAME, ref);
+    }
+  }
+
+  /**
+   * Weak reference to a type that remembers its spelling, so its entry can be
+   * found once the type is gone.
+   */
+  private static final class TypeReference extends WeakReference<LCType> {
+
+    private final String NAME;
+
+    private TypeReference(LCType type) {
+      super(type, COLLECTED);
+      this.NAME = type.NAME;
+    }
+  }
+
+  /**
+   * @return true if this is an array reference or declaration.
+   */
+  public boolean isArray() {
+    return this.ELEMENT_TYPE != null;
+  }
+
+  /**
+   * @return true if this is an array reference (int[], char[]).
+   */
+  public boolean isArrayReference() {
+    return this.NAME.endsWith("[]");
+  }
+
+  /**
+   * @return true if this is an array declaration with a decimal size (int[10]).
+   */
+  public boolean isArrayDeclaration() {
+    return this.IS_ARRAY_DECLARATION;
+  }
+
+  /**
+   * @throws IllegalArgumentException if this isn't an array type.
+   *
+   * @return type of the elements of this array type.
+   */
+  public LCType getElementType() {
+    if (this.ELEMENT_TYPE == null) {
+      throw new IllegalArgumentException(this.NAME + " is not an array type.");
+    }
+    return this.ELEMENT_TYPE;
+  }
+
+  /**
+   * @throws IllegalArgumentException if this isn't an array declaration.
+   *
+   * @return number of elements that an array declaration (int a[5]) can store.
+   */
+  public int getArraySize() {
+    if (this.ARRAY_SIZE < 0) {
+      throw new IllegalArgumentException("Cannot use " + this.NAME + " as an array declaration.");
+    }
+    return this.ARRAY_SIZE;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the type has no size, like void.
+   *
+   * @return size of the type in bytes.
+   */
+  public int getWidth() {
+    if (this.WIDTH < 0) {
+      throw new IllegalArgumentException(this.NAME + " has no data width.");
+    }
+    return this.WIDTH;
+  }
+
+  /**
+   * Determines the "castability" between two data types. Chars, ints and
+   * floats are interchangeable, and array types can go from a declaration to a
+   * reference, but not the other way around. A type isn't castable to itself.
+   *
+   * @param to - type to cast to.
+   *
+   * @return true if we can cast from this type to "to" type, false otherwise.
+   */
+  public boolean isCastableTo(LCType to) {
+    if (this.isNumeric() && to.isNumeric()) {
+      return this != to;
+    }
+
+    // Array declaration (int a[20]) to array reference (int[]).
+    return this.IS_ARRAY_DECLARATION && to.isArrayReference() && this.ELEMENT_TYPE == to.ELEMENT_TYPE;
+  }
+
+  /**
+   * @param to - type to cast to.
+   *
+   * @return true if casting to "to" widens a number (char to int or float, int
+   *         to float).
+   */
+  public boolean isUpCastableTo(LCType to) {
+    return (this == CHAR && (to == INT || to == FLOAT)) || (this == INT && to == FLOAT);
+  }
+
+  /**
+   * @param to - type to cast to.
+   *
+   * @return true if casting to "to" narrows a number (float to int or char,
+   *         int to char).
+   */
+  public boolean isDownCastableTo(LCType to) {
+    return (this == FLOAT && (to == INT || to == CHAR)) || (this == INT && to == CHAR);
+  }
+
+  /**
+   * @return true for the number types: char, int and float.
+   */
+  private boolean isNumeric() {
+    return this == CHAR || this == INT || this == FLOAT;
+  }
+
+  @Override
+  public String toString() {
+    return this.NAME;
+  }
+}
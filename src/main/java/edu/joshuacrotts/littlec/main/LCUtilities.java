@@ -51,73 +51,6 @@ public class LCUtilities {
     return str;
   }
 
-  /**
-   * Determines the "castability" between two data types. Chars and ints are
-   * interchangable, and array types can go from a declaration to a reference, but
-   * not the other way around.
-   * 
-   * @param from
-   * @param to
-   * @return true if we can cast from type to "to" type, false otherwise.
-   */
-  public static boolean isCastable(String from, String to) {
-    if ((from.equals("char") && to.equals("int")) || (from.equals("int") && to.equals("char"))
-        || (from.equals("char") && to.equals("float")) || (from.equals("float") && to.equals("char"))
-        || (from.equals("int") && to.equals("float")) || (from.equals("float") && to.equals("int"))) {
-      return true;
-    }
-
-    // Array declaration (int a[20]) to array reference (int[]).
-    if (from.matches(".+\\[[0-9]+\\]") && to.endsWith("[]")) {
-      String arrType1 = LCUtilities.getArrayType(from);
-      String arrType2 = LCUtilities.getArrayType(to);
-
-      return arrType1.equals(arrType2);
-    }
-
-    return false;
-  }
-
-  /**
-   * 
-   * @param from
-   * @param to
-   * @return
-   */
-  public static boolean isUpCastable(String from, String to) {
-    return LCUtilities.isCastable(from, to) && 
-        ((from.equals("char") && to.equals("int"))
-        || from.equals("char") && to.equals("float") 
-        || (from.equals("int") && to.equals("float")));
-  }
-  
-  /**
-   * 
-   * @param from
-   * @param to
-   * @return
-   */
-  public static boolean isDownCastable(String from, String to) {
-    return LCUtilities.isCastable(from, to) && 
-        ((from.equals("float") && to.equals("int"))
-        || from.equals("float") && to.equals("char") 
-        || (from.equals("int") && to.equals("char")));
-  }
-
-  /**
-   * Determines if a String variable type (stored in the symbol table) is an array
-   * or not. This does not differentiate between array refs and array
-   * declarations.
-   * 
-   * @param varType - string variable type.
-   * 
-   * @return true if varType is an array reference or declaration; false
-   *         otherwise.
-   */
-  public static boolean isTypeArray(String varType) {
-    return varType.contains("[]") || varType.indexOf("[") < varType.indexOf("]");
-  }
-
   /**
    * Returns the integer representation of a string in hex, binary, or decimal
    * form.
@@ -240,58 +173,6 @@ public class LCUtilities {
     }
   }
 
-  /**
-   * Calculates the size in bytes of a data type.
-   * 
-   * @param type
-   * @return
-   */
-  public static int getDataWidth(String type) {
-    switch (type) {
-    case "int[]":
-    case "char[]":
-    case "int":
-      return 4;
-    case "char":
-      return 1;
-    }
-
-    /* If we're at this point, the type has to be an array declaration. */
-    int lBracketPos = type.indexOf("[");
-    int rBracketPos = type.indexOf("]");
-    int arraySize = Integer.parseInt(type.substring(lBracketPos + 1, rBracketPos));
-
-    // Kind of a sloppy way to do it since I'm not using enums... maybe optimize for
-    // last
-    // stage.
-    String coreType = type.contains("int") ? "int" : "char";
-
-    return arraySize * getDataWidth(coreType);
-  }
-
-  /**
-   * Given an array declaration (int a[5]), returns the number of elements that
-   * the array can store. Note that this *does* assume a valid "type" is passed.
-   * If this is not the case, an exception will be thrown.
-   * 
-   * @param arrayDeclaration - string of form (int/char id[num]).
-   * 
-   * @return number of elements in the array.
-   */
-  public static int getArraySize(String type) {
-    int lBracketPos = type.indexOf("[");
-    int rBracketPos = type.indexOf("]");
-    int arraySize = 0;
-    // If we're in an array reference, the logical size will be 0.
-    try {
-      arraySize = Integer.parseInt(type.substring(lBracketPos + 1, rBracketPos));
-    } catch (Exception e) {
-      throw new IllegalArgumentException("Cannot use " + type + " as an array declaration.");
-    }
-
-    return arraySize;
-  }
-
   /**
    * Returns the byte string representation of an ASCII string. A byte string in
    * this context is the "assembly initialization" of the string, meaning that
@@ -319,14 +200,37 @@ public class LCUtilities {
   }
 
   /**
-   * Returns the data type used for an array reference. This assumes that the call
-   * is being used on a valid string.
+   * Returns the MIPS data directive for a byte string made by getByteString. If
+   * the string has no embedded null and every character can be written in a
+   * SPIM string literal, this is an .asciiz directive, which is a lot shorter
+   * than listing every byte. Otherwise, it's a .byte list of the same values.
+   * 
+   * @param byteString - ".db" declaration of a null-terminated string.
    * 
-   * @param arr - string declaration of array type (int[], char[]).
-   * @return type used for array ref.
+   * @return .asciiz or .byte directive.
    */
-  public static String getArrayType(String arr) {
-    return arr.substring(0, arr.indexOf("["));
+  public static String getMIPSByteDirective(String byteString) {
+    String[] values = byteString.substring(byteString.indexOf(' ') + 1).split(",");
+    StringBuilder sb = new StringBuilder(".asciiz \"");
+    for (int i = 0; i < values.length; i++) {
+      int c = Integer.parseInt(values[i].trim());
+      boolean isLast = i == values.length - 1;
+      if (isLast && c == 0) {
+        return sb.append('"').toString();
+      } else if (c == '\n') {
+        sb.append("\\n");
+      } else if (c == '\t') {
+        sb.append("\\t");
+      } else if (c == '"' || c == '\\') {
+        sb.append('\\').append((char) c);
+      } else if (c >= ' ' && c <= '~') {
+        sb.append((char) c);
+      } else {
+        break;
+      }
+    }
+
+    return ".byte " + byteString.substring(byteString.indexOf(' ') + 1).trim();
   }
 
   /**
@@ -407,7 +311,7 @@ public class LCUtilities {
    * @return true if all blocks have returns, false otherwise.
    */
   public static boolean hasReturn(LCSyntaxTree lastChild) {
-    int size = lastChild.getChildren().size();
+    int size = lastChild.getChildCount();
 
     // One base case is if we start with ONLY an if.
     // If we do, we check for the existence of a return. If there are only two
@@ -416,8 +320,8 @@ public class LCUtilities {
     //
     // The only other case where we immediately return false is if we have no
     // children.
-    if ((lastChild.getLabel().equals("IF") && !lastChild.getChildren().get(size - 1).getLabel().equals("RETURN")
-        && size == 2) || lastChild.getChildren().isEmpty()) {
+    if ((lastChild.getLabel().equals("IF") && !lastChild.getChild(size - 1).getLabel().equals("RETURN")
+        && size == 2) || lastChild.getChildCount() == 0) {
       return false;
     } else {
       // Check if the current last child IS a return statement, or if its last child
@@ -428,7 +332,7 @@ public class LCUtilities {
       } else {
         if (size != 3) {
           // If we have more than three children, just recurse on the last child.
-          return hasReturn(lastChild.getChildren().get(size - 1));
+          return hasReturn(lastChild.getChild(size - 1));
         } else {
           // Two possible times this could be here:
           // 1. When we're in an if, else block.
@@ -439,12 +343,12 @@ public class LCUtilities {
           // We check if the second block is a sequence for this very reason.
           // The first child is a void when we're not in a comparison (i.e. we're
           // in a block, so we only need to check the last statement.
-          if (lastChild.getChildren().get(size - 1).getLabel().equals("RETURN")
-              && isValidSecondChild(lastChild.getChildren().get(size - 2).getLabel())
-              && lastChild.getChildren().get(size - 3).getType().equals("void")) {
+          if (lastChild.getChild(size - 1).getLabel().equals("RETURN")
+              && isValidSecondChild(lastChild.getChild(size - 2).getLabel())
+              && lastChild.getChild(size - 3).getType() == LCType.VOID) {
             return true;
           } else {
-            return hasReturn(lastChild.getChildren().get(size - 1)) && hasReturn(lastChild.getChildren().get(size - 2));
+            return hasReturn(lastChild.getChild(size - 1)) && hasReturn(lastChild.getChild(size - 2));
           }
         }
       }
@@ -1,38 +1,59 @@
 package edu.joshuacrotts.littlec.main;
 
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Stack;
-import java.util.TreeMap;
+import java.util.Map;
 
 import edu.joshuacrotts.littlec.syntaxtree.LCSyntaxTree;
 
 /**
  * Symbol Table class for the LittleC compiler project.
  * 
+ * Every name maps, through one hash table, to its innermost visible
+ * declaration, and each declaration links to the one it shadows, if any. Each
+ * open scope remembers the names declared in it, so closing a scope only has to
+ * put back what those names shadowed. Looking a name up, opening a scope and
+ * declaring a name all take constant time, no matter how many symbols are in
+ * scope.
+ * 
  * @author Joshua Crotts
  */
 public class SymbolTable {
 
   /**
-   * Stack of environment objects to represent the call-stack/scope for variables
-   * and functions. Each time a variable or function is referenced, it is checked
-   * against this table. Variables are checked in the top-most stack for existence
-   * and it traverses to the bottom until they are either found or not. Functions
-   * are simply checked for existence but if they are declared twice, then we
-   * throw an error (this does not happen yet).
+   * Innermost visible declaration of each identifier. Each time a variable or
+   * function is referenced, it is looked up here. Functions are simply checked
+   * for existence but if they are declared twice, then we throw an error (this
+   * does not happen yet).
    */
-  private Stack<Environment> environmentTable = new Stack<Environment>();
+  private final HashMap<String, Declaration> declarations = new HashMap<>();
 
   /**
-   * Given an identifier and a SymbolEntry object, we push it to the top-most
-   * environment in the stack.
+   * Identifiers declared in each open scope, from the global scope inward.
+   */
+  private final ArrayList<ArrayList<String>> scopes = new ArrayList<>();
+
+  /**
+   * Given an identifier and a SymbolEntry object, we declare it in the
+   * innermost scope. Declaring the same identifier twice in one scope replaces
+   * the first declaration.
    * 
    * @param id   - identification of the symbol.
    * @param type - SymbolEntry object with the TYPE of object (fn, variable), and
    *             the datatype associated with is symbol.
    */
   public void addSymbol(String id, SymbolEntry type) {
-    this.environmentTable.peek().addSymbol(id, type);
+    int depth = this.scopes.size() - 1;
+    Declaration visible = this.declarations.get(id);
+    if (visible != null && visible.DEPTH == depth) {
+      visible.entry = type;
+    } else {
+      this.declarations.put(id, new Declaration(type, depth, visible));
+      this.scopes.get(depth).add(id);
+    }
   }
 
   /**
@@ -42,10 +63,11 @@ public class SymbolTable {
    * 
    * @param id - identifier of symbol.
    * @return true if the identifier was found in the current environment (defined
-   *         as the top-most environment on the stack), false otherwise.
+   *         as the innermost open scope), false otherwise.
    */
   public boolean hasSymbolInCurrentEnvironment(String id) {
-    return this.environmentTable.peek().hasSymbol(id);
+    Declaration visible = this.declarations.get(id);
+    return visible != null && visible.DEPTH == this.scopes.size() - 1;
   }
 
   /**
@@ -54,93 +76,77 @@ public class SymbolTable {
    * 
    * @param id - identifier of symbol.
    * 
-   * @return true if the symbol is in any environment stack, false otherwise.
+   * @return true if the symbol is in any open scope, false otherwise.
    */
   public boolean hasSymbol(String id) {
-    boolean found = false;
-
-    // We have to use a for loop to traverse backwards since iterators are broken
-    // with stacks...
-    for (int i = this.environmentTable.size() - 1; i >= 0; i--) {
-      Environment curr = this.environmentTable.get(i);
-      found = hasSymbolInEnvironment(id, curr);
-
-      if (found) {
-        return true;
-      }
-    }
-
-    return false;
+    return this.declarations.containsKey(id);
   }
 
   /**
-   * Given a symbol ID, returns the SymbolEntry object. This is useful for
-   * comparing datatypes of a variable, function, etc.
+   * Given a symbol ID, returns the SymbolEntry object of its innermost
+   * declaration. This is useful for comparing datatypes of a variable,
+   * function, etc.
    * 
    * @param id - identifier of symbol.
    * 
-   * @return SymbolEntry value for identifier key.
+   * @return SymbolEntry value for identifier key, or null if it isn't declared.
    */
   public SymbolEntry getSymbolEntry(String id) {
-    for (int i = this.environmentTable.size() - 1; i >= 0; i--) {
-      Environment curr = this.environmentTable.get(i);
-
-      for (String key : curr.getTreeMap().keySet()) {
-        if (id.equals(key)) {
-          return curr.getTreeMap().get(key);
-        }
-      }
-    }
-
-    return null;
+    Declaration visible = this.declarations.get(id);
+    return visible != null ? visible.entry : null;
   }
 
   /**
-   * Adds a new environment to the stack. This is really only useful for functions
-   * since variable declaration isn't allowed in an if statement or while loop.
+   * Opens a new, empty scope. This is really only useful for functions and
+   * blocks since variable declaration isn't allowed in an if statement or while
+   * loop.
    */
   public void addEnvironment() {
-    this.environmentTable.push(new Environment());
+    this.scopes.add(new ArrayList<>());
   }
 
   /**
-   * Adds a new, previously-defined environment to the stack. This is useful for
-   * if the function being defined has parameters. Otherwise, the previous method
-   * works just as well.
+   * Opens a new scope holding the symbols of a previously-defined environment.
+   * This is useful for if the function being defined has parameters. Otherwise,
+   * the previous method works just as well.
    * 
    * @param env
    */
   public void addEnvironment(Environment env) {
-    this.environmentTable.push(env);
+    this.addEnvironment();
+    for (Map.Entry<String, SymbolEntry> symbol : env.getTreeMap().entrySet()) {
+      this.addSymbol(symbol.getKey(), symbol.getValue());
+    }
   }
 
   /**
-   * Removes the top-most environment from the stack. This is useful for going out
-   * of scope of a function, for instance (really, this is the ONLY place it is
-   * used).
+   * Closes the innermost scope, so whatever its declarations shadowed is
+   * visible again. This is useful for going out of scope of a function or a
+   * block, for instance.
    */
   public void popEnvironment() {
-    this.environmentTable.pop();
+    for (String id : this.scopes.remove(this.scopes.size() - 1)) {
+      Declaration shadowed = this.declarations.get(id).SHADOWED;
+      if (shadowed != null) {
+        this.declarations.put(id, shadowed);
+      } else {
+        this.declarations.remove(id);
+      }
+    }
   }
 
   /**
    * This method should print out all of the global variables. It can be called
    * after parsing in order to see what global variables were seen. Names should
    * be output in alphabetical order.
+   *
+   * @param out - stream to print to.
    */
-  public void printGlobalVars() {
-    int stackSize = this.environmentTable.size();
-    // Retrieve the bottom of the stack (which is the global block).
-    Environment globalEnvironment = this.environmentTable.get(stackSize - 1);
-
-    // Return the set of keys.
-    TreeMap<String, SymbolEntry> map = globalEnvironment.getTreeMap();
-
-    // Now iterate through the map and find all vars.
-    for (String key : map.keySet()) {
-      if (map.get(key).getType() == SymbolType.VAR) {
-        String type = this.getSymbolEntry(key).getVarType();
-        System.out.println(key + ": " + type);
+  public void printGlobalVars(PrintStream out) {
+    for (String key : this.getGlobalIDs()) {
+      SymbolEntry entry = this.getGlobalEntry(key);
+      if (entry.getType() == SymbolType.VAR) {
+        out.println(key + ": " + entry.getVarType());
       }
     }
   }
@@ -151,22 +157,17 @@ public class SymbolTable {
    * parsing in order to see what functions were defined. This will probably
    * include the standard functions (prints, printd, read, and readline) as well.
    * Names should be printed in alphabetical order.
+   *
+   * @param out - stream to print to.
    */
-  public void printGlobalFns() {
-    int stackSize = this.environmentTable.size();
-    // Retrieve the bottom of the stack which is the global block.
-    Environment globalEnvironment = this.environmentTable.get(stackSize - 1);
-
-    // Return the set of keys.
-    TreeMap<String, SymbolEntry> map = globalEnvironment.getTreeMap();
-
-    // Now iterate through the map and find all vars.
-    for (String key : map.keySet()) {
-      if (map.get(key).getType() == SymbolType.FNDEF) {
+  public void printGlobalFns(PrintStream out) {
+    for (String key : this.getGlobalIDs()) {
+      SymbolEntry entry = this.getGlobalEntry(key);
+      if (entry.getType() == SymbolType.FNDEF) {
 
         // Grab the parameters and return type.
-        List<LCSyntaxTree> params = this.getSymbolEntry(key).getInfoList();
-        String returnType = this.getSymbolEntry(key).getVarType();
+        List<LCSyntaxTree> params = entry.getInfoList();
+        LCType returnType = entry.getVarType();
         StringBuilder paramStr = new StringBuilder();
 
         // Procedurally build the parameter types in parenthesis.
@@ -181,25 +182,56 @@ public class SymbolTable {
           paramStr.setLength(paramStr.length() - 1);
         }
 
-        System.out.println(key + ": FUNCTION " + returnType + " (" + paramStr + ")");
+        out.println(key + ": FUNCTION " + returnType + " (" + paramStr + ")");
       }
     }
   }
 
   /**
-   * Given an identifier, we return if the symbol is declared inside an arbitrary
-   * environment.
+   * @return identifiers declared in the global (outermost) scope, in
+   *         alphabetical order.
+   */
+  private List<String> getGlobalIDs() {
+    List<String> ids = new ArrayList<>(this.scopes.get(0));
+    Collections.sort(ids);
+    return ids;
+  }
+
+  /**
+   * Given a global identifier, returns its global declaration, even if a local
+   * declaration currently shadows it.
+   * 
+   * @param id - identifier declared in the global scope.
    * 
-   * @param id
-   * @param environment
-   * @return
+   * @return SymbolEntry of the global declaration.
    */
-  private boolean hasSymbolInEnvironment(String id, Environment environment) {
-    int idx = this.environmentTable.indexOf(environment);
-    if (idx < 0 || idx >= this.environmentTable.size()) {
-      throw new IndexOutOfBoundsException("idx " + idx + " is out of bounds.");
+  private SymbolEntry getGlobalEntry(String id) {
+    Declaration declaration = this.declarations.get(id);
+    while (declaration.DEPTH > 0) {
+      declaration = declaration.SHADOWED;
     }
+    return declaration.entry;
+  }
+
+  /**
+   * One declaration of an identifier, tagged with the depth of the scope it was
+   * declared in.
+   */
+  private static final class Declaration {
 
-    return this.environmentTable.get(idx).hasSymbol(id);
+    /** Depth of the declaring scope; the global scope is 0. */
+    private final int DEPTH;
+
+    /** Declaration of the same identifier in an outer scope, or null. */
+    private final Declaration SHADOWED;
+
+    /** What was declared; a redeclaration in the same scope replaces it. */
+    private SymbolEntry entry;
+
+    private Declaration(SymbolEntry entry, int depth, Declaration shadowed) {
+      this.entry = entry;
+      this.DEPTH = depth;
+      this.SHADOWED = shadowed;
+    }
   }
 }
@@ -8,57 +8,55 @@ public class CodeGeneration {
    * Generates the MIPS instruction for the supplied three-address-code
    * instruction.
    * 
+   * @param code      - stream to append to.
    * @param progState - ProgState object.
    * @param res       - destination to store.
    * @param op1       - first operand.
    * @param op2       - second operand.
    * @param op        - operator.
    * 
-   * @return String MIPS representation.
+   * @return void.
    */
-  public static String genInstruction(MIPSFunction function, ProgState progState, String res, String op1, String op2,
-      String op) {
-    StringBuilder sb = new StringBuilder();
+  public static void genInstruction(MIPSCode code, MIPSFunction function, ProgState progState, String res, String op1,
+      String op2, String op) {
     if (op1.contains(".fn") || res.contains(".fn")) { // FN END OR START
-      return sb.toString();
+      return;
     } else if (op.contains("widen") || op.contains("narrow")) { // CAST
-      sb.append(emitCast(progState, new ICAddress(res), new ICAddress(op1)));
+      emitCast(code, progState, new ICAddress(res), new ICAddress(op1));
     } else if (op.contains("setsize")) { // ARRAY DECL
       int dataSize = Integer.parseInt(op.substring(7));
-      sb.append(emitArrayDecl(progState, new ICAddress(res, dataSize), new ICAddress(op1)));
+      emitArrayDecl(code, progState, new ICAddress(res, dataSize), new ICAddress(op1));
     } else if (op.contains("stidx")) { // ARRAY STIDX
-      sb.append(emitArrayStore(progState, new ICAddress(res), new ICAddress(op1), new ICAddress(op2)));
+      emitArrayStore(code, progState, new ICAddress(res), new ICAddress(op1), new ICAddress(op2));
     } else if (op.contains("ldidx")) { // ARRAY LDIDX
-      sb.append(emitArrayLoad(progState, new ICAddress(res), new ICAddress(op1), new ICAddress(op2)));
+      emitArrayLoad(code, progState, new ICAddress(res), new ICAddress(op1), new ICAddress(op2));
     } else if (op.contains("#")) { // ARRAY SIZE OF
-      sb.append(emitSizeOf(progState, new ICAddress(res), new ICAddress(op1)));
+      emitSizeOf(code, progState, new ICAddress(res), new ICAddress(op1));
     } else if (op.contains("param")) { // PARAM
       int size = Integer.parseInt(op.substring(5, 6));
-      sb.append(emitParam(function, progState, new ICAddress(op1, size)));
+      emitParam(code, function, progState, new ICAddress(op1, size));
     } else if (op.contains("call") && res.isEmpty()) { // VOID FUNCTION CALL
-      sb.append(emitVoidFunctionCall(function, progState, op1, op2));
+      emitVoidFunctionCall(code, function, progState, op1, op2);
     } else if (op.contains("call")) { // NON-VOID FUNCTION CALL
-      sb.append(emitNonVoidFunctionCall(function, progState, new ICAddress(res), op1, op2));
+      emitNonVoidFunctionCall(code, function, progState, new ICAddress(res), op1, op2);
     } else if (op.equals("=")) { // ASN
-      sb.append(emitAssignment(progState, new ICAddress(res), new ICAddress(op1)));
+      emitAssignment(code, progState, new ICAddress(res), new ICAddress(op1));
     } else if (op.contains("if")) { // IF
-      sb.append(emitIf(progState, res, new ICAddress(op1), new ICAddress(op2), op));
+      emitIf(code, progState, res, new ICAddress(op1), new ICAddress(op2), op);
     } else if (!op2.isEmpty()) { // BINOP
-      sb.append(emitBinaryOp(progState, new ICAddress(res), new ICAddress(op1), new ICAddress(op2), op));
+      emitBinaryOp(code, progState, new ICAddress(res), new ICAddress(op1), new ICAddress(op2), op);
     } else if (op.contains("return") && !op1.isEmpty()) { // RETURN IN NON-VOID FUNCTION STATEMENT
       int size = Integer.parseInt(op.substring(6, 7));
-      sb.append(emitReturn(function, progState, new ICAddress(op1, size)));
+      emitReturn(code, function, progState, new ICAddress(op1, size));
     } else if (op.contains("return")) { // RETURN IN VOID FUNCTION STATEMENT
-      sb.append(emitReturn(function, progState));
+      emitReturn(code, function, progState);
     } else if (op2.isEmpty() && !op.isEmpty()) { // UNARYOP
-      sb.append(emitUnaryOp(progState, new ICAddress(res), new ICAddress(op1), op));
+      emitUnaryOp(code, progState, new ICAddress(res), new ICAddress(op1), op);
     } else if (res.contains("goto") && op.isEmpty()) { // GOTO
-      sb.append(emitLabel(progState, res));
+      emitLabel(code, progState, res);
     } else { // LBL
-      sb.append(emitLabel(progState, res));
+      emitLabel(code, progState, res);
     }
-
-    return sb.toString();
   }
 
   /**
@@ -66,21 +64,21 @@ public class CodeGeneration {
    * a register that's "wider", so to speak. I don't really think I got this one
    * to work well...
    * 
+   * @param code      - stream to append to.
    * @param progState - ProgState object.
    * @param res       - value to store casted object in.
    * @param op1       - value to cast.
    * 
-   * @return MIPS instructions resulted from cast.
+   * @return void.
    */
-  public static String emitCast(ProgState progState, ICAddress res, ICAddress op1) {
-    StringBuilder sb = new StringBuilder();
+  public static void emitCast(MIPSCode code, ProgState progState, ICAddress res, ICAddress op1) {
     boolean needToStore = false;
 
     // Load in the value to be cast.
     MIPSReg op1Reg = progState.getCurrReg(op1);
     if (op1Reg == null) {
       op1Reg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(op1), op1Reg, progState.getCanonicalMIPS(op1)));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(op1), op1Reg, progState.getCanonicalMIPS(op1));
     }
     progState.copyVal(op1Reg, op1);
 
@@ -88,145 +86,140 @@ public class CodeGeneration {
     MIPSReg resReg = progState.getCurrReg(res);
     if (resReg == null) {
       resReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(res), resReg, progState.getCanonicalMIPS(res)));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(res), resReg, progState.getCanonicalMIPS(res));
       needToStore = true;
     }
     progState.copyVal(resReg, res);
 
     // Move the src into dest.
     progState.copyVal(resReg, op1Reg);
-    sb.append(MIPSInstruction.genMove(resReg, op1Reg));
+    MIPSInstruction.genMove(code, resReg, op1Reg);
 
     // Store the result in the destination.
     if (needToStore) {
       progState.copyVal(op1, resReg);
-      sb.append(MIPSInstruction.genStore(getMIPSStoreOp(op1), resReg, progState.getCanonicalMIPS(res)));
+      MIPSInstruction.genStore(code, getMIPSStoreOp(res), resReg, progState.getCanonicalMIPS(res));
     }
 
     progState.invalidate(op1Reg);
     progState.invalidate(resReg);
-
-    return sb.toString();
   }
 
   /**
-   * Emits a parameter. In MIPS, we have to push these onto the stack, then
-   * immediately pop them off, storing the first four into the $a registers. This
-   * step decrements four bytes from the stack, then stores the result on the
-   * stack.
+   * Emits a parameter. The first four arguments of a call go straight into the
+   * $a registers, and the rest go into the outgoing argument area at the bottom
+   * of the frame, where the callee reads them from. A param with a nested call
+   * between it and its own call is held in a slot of its own instead, and
+   * moved into place when its call is emitted.
    * 
+   * @param code      - stream to append to.
    * @param function  - MIPSFunction object.
    * @param progState - ProgState object.
    * @param param     - parameter to store.
    * 
-   * @return MIPS representation of storing param on stack.
+   * @return void.
    */
-  public static String emitParam(MIPSFunction function, ProgState progState, ICAddress param) {
-    StringBuilder sb = new StringBuilder();
+  public static void emitParam(MIPSCode code, MIPSFunction function, ProgState progState, ICAddress param) {
+    int paramNum = function.emittedParamCount++;
+    int depth = function.pendingParams.size();
+    int argIdx = function.getParamArgIndex(paramNum);
+    function.pendingParams.push(paramNum);
 
-    // Load param into tmp
     MIPSReg paramReg = progState.getCurrReg(param);
+
+    // Arguments in registers don't need a scratch register.
+    if (!function.isParamHeld(paramNum) && argIdx < MIPSReg.NUM_AREG) {
+      MIPSReg argReg = MIPSReg.aReg(argIdx);
+      if (paramReg == null) {
+        MIPSInstruction.genLoad(code, getMIPSLoadOp(param), argReg, progState.getCanonicalMIPS(param));
+      } else {
+        MIPSInstruction.genMove(code, argReg, paramReg);
+      }
+      return;
+    }
+
+    // Load param into tmp
     if (paramReg == null) {
       paramReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(param), paramReg, progState.getCanonicalMIPS(param)));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(param), paramReg, progState.getCanonicalMIPS(param));
     }
 
-    sb.append(MIPSInstruction.genBinaryOp("subu", "$sp", "$sp", "4"));
-    sb.append(MIPSInstruction.genStore("sw", paramReg, "0($sp)"));
+    MIPSOperand slot = function.isParamHeld(paramNum) ? function.getHeldArgSlot(depth)
+        : function.getOutgoingArgSlot(argIdx);
+    MIPSInstruction.genStore(code, MIPSOpcode.SW, paramReg, slot);
     progState.invalidate(paramReg);
-    function.currentParamCount++;
-
-    return sb.toString();
   }
 
   /**
-   * Calls a void function. The fist four parameters are popped off the stack and
-   * inserted into the $a registers. The rest remain on the stack. Once the
-   * function is complete, we remove the remaining registers by applying a byte
-   * offset to the top of the stack.
+   * Takes the arguments of a call off the pending param stack. Most of them are
+   * already in place; the ones that were held across a nested call are moved
+   * into their $a register or outgoing argument slot now.
    * 
-   * There may be instances when functions must remain on the stack because of a
-   * complicated chain of calls (see test3x). In this case, we may have more
-   * parameters on the stack than are needed for the function. In this event, we
-   * only pop the parameters that we need. The rest remain on the stack until they
-   * are used.
+   * @param code      - stream to append to.
+   * @param function  - MIPSFunction object.
+   * @param progState - ProgState object.
+   * @param argCount  - number of arguments the call takes.
    * 
+   * @return void.
+   */
+  private static void emitHeldArguments(MIPSCode code, MIPSFunction function, ProgState progState, int argCount) {
+    for (int argIdx = 0; argIdx < argCount; argIdx++) {
+      int paramNum = function.pendingParams.pop();
+      if (!function.isParamHeld(paramNum)) {
+        continue;
+      }
+
+      MIPSOperand slot = function.getHeldArgSlot(function.pendingParams.size());
+      if (argIdx < MIPSReg.NUM_AREG) {
+        MIPSInstruction.genLoad(code, MIPSOpcode.LW, MIPSReg.aReg(argIdx), slot);
+      } else {
+        MIPSReg tmpReg = progState.getNextAvailableRegister();
+        MIPSInstruction.genLoad(code, MIPSOpcode.LW, tmpReg, slot);
+        MIPSInstruction.genStore(code, MIPSOpcode.SW, tmpReg, function.getOutgoingArgSlot(argIdx));
+        progState.invalidate(tmpReg);
+      }
+    }
+  }
+
+  /**
+   * Calls a void function. The arguments were put in place by the params before
+   * it, except for any that were held across a nested call.
+   * 
+   * @param code      - stream to append to.
    * @param function  - MIPSFunction object.
    * @param progState - ProgState object.
    * @param fnName    - name of function we're calling.
+   * @param argCount  - number of arguments the function takes.
    * 
-   * @return MIPS representation of called function.
+   * @return void.
    */
-  public static String emitVoidFunctionCall(MIPSFunction function, ProgState progState, String fnName,
+  public static void emitVoidFunctionCall(MIPSCode code, MIPSFunction function, ProgState progState, String fnName,
       String argCount) {
-    StringBuilder sb = new StringBuilder();
-
-    int idx = 0;
-    // Load the parameters off the stack and push them into their respective
-    // registers.
-    for (idx = 0; idx < Integer.parseInt(argCount) && idx < MIPSReg.NUM_AREG; idx++) {
-      MIPSReg argReg = MIPSReg.aReg(idx);
-
-      sb.append(MIPSInstruction.genLoad("lw", argReg, "0($sp)"));
-      sb.append(MIPSInstruction.genBinaryOp("addu", "$sp", "$sp", "4"));
-    }
+    emitHeldArguments(code, function, progState, Integer.parseInt(argCount));
 
     // Call the function.
-    sb.append(MIPSInstruction.genFunctionCall(fnName));
-
-    // Remove the other parameters from the stack, if they exist (AND we no longer
-    // need them).
-    if (idx >= MIPSReg.NUM_AREG && idx < function.currentParamCount) {
-      String remParams = "" + ((function.currentParamCount - MIPSReg.NUM_AREG) * MIPSReg.NUM_AREG);
-      sb.append(MIPSInstruction.genBinaryOp("addu", "$sp", "$sp", remParams));
-    }
-
-    function.currentParamCount = 0;
-    return sb.toString();
+    MIPSInstruction.genFunctionCall(code, fnName);
   }
 
   /**
-   * Calls a non-void function. The fist four parameters are popped off the stack
-   * and inserted into the $a registers. The rest remain on the stack. Once the
-   * function is complete, we remove the remaining registers by applying a byte
-   * offset to the top of the stack. The return value is moved from the $v0
-   * register into wherever it should be.
-   * 
-   * There may be instances when functions must remain on the stack because of a
-   * complicated chain of calls (see test3x). In this case, we may have more
-   * parameters on the stack than are needed for the function. In this event, we
-   * only pop the parameters that we need. The rest remain on the stack until they
-   * are used.
+   * Calls a non-void function. The arguments were put in place by the params
+   * before it, except for any that were held across a nested call. The return
+   * value is moved from the $v0 register into wherever it should be.
    * 
+   * @param code      - stream to append to.
    * @param function  - MIPSFunction object.
    * @param progState - ProgState object.
    * @param fnName    - name of function we're calling.
+   * @param argCount  - number of arguments the function takes.
    * 
-   * @return MIPS representation of called function.
+   * @return void.
    */
-  public static String emitNonVoidFunctionCall(MIPSFunction function, ProgState progState, ICAddress res, String fnName,
+  public static void emitNonVoidFunctionCall(MIPSCode code, MIPSFunction function, ProgState progState, ICAddress res, String fnName,
       String argCount) {
-    StringBuilder sb = new StringBuilder();
-    int idx = 0;
-
-    // Load the parameters off the stack and push them into their respective
-    // registers.
-    for (idx = 0; idx < Integer.parseInt(argCount) && idx < MIPSReg.NUM_AREG; idx++) {
-      MIPSReg argReg = MIPSReg.aReg(idx);
-
-      sb.append(MIPSInstruction.genLoad("lw", argReg, "0($sp)"));
-      sb.append(MIPSInstruction.genBinaryOp("addu", "$sp", "$sp", "4"));
-    }
+    emitHeldArguments(code, function, progState, Integer.parseInt(argCount));
 
     // Call the function.
-    sb.append(MIPSInstruction.genFunctionCall(fnName));
-
-    // Remove the other parameters from the stack, if they exist (AND we no longer
-    // need them).
-    if (idx >= MIPSReg.NUM_AREG && idx < function.currentParamCount) {
-      String remParams = "" + ((function.currentParamCount - MIPSReg.NUM_AREG) * MIPSReg.NUM_AREG);
-      sb.append(MIPSInstruction.genBinaryOp("addu", "$sp", "$sp", remParams));
-    }
+    MIPSInstruction.genFunctionCall(code, fnName);
 
     // Get a temporary register for the return value.
     MIPSReg retReg = progState.getCurrReg(res);
@@ -237,67 +230,57 @@ public class CodeGeneration {
     }
 
     // Copy v0 into this register
-    sb.append(MIPSInstruction.genMove(retReg, MIPSReg.vReg(0)));
+    MIPSInstruction.genMove(code, retReg, MIPSReg.vReg(0));
     progState.copyVal(retReg, MIPSReg.vReg(0));
 
     // Now store the value in res ICAddress.
     if (needToStore) {
-      sb.append(MIPSInstruction.genStore(getMIPSStoreOp(res), retReg, progState.getCanonicalMIPS(res)));
+      MIPSInstruction.genStore(code, getMIPSStoreOp(res), retReg, progState.getCanonicalMIPS(res));
     }
-    
-    function.currentParamCount = 0;
-    return sb.toString();
   }
 
   /**
    * Emits a return statement for a void function. This is equivalent to just
-   * jumping to the epilogue. We also reset the number of parameters used by the
-   * MIPSFunction object.
+   * jumping to the epilogue.
    * 
+   * @param code      - stream to append to.
    * @param function  - MIPSFunction object.
    * @param progState - ProgState object.
    * 
-   * @return MIPS representation of return stmt.
+   * @return void.
    */
-  public static String emitReturn(MIPSFunction function, ProgState progState) {
-    StringBuilder sb = new StringBuilder();
+  public static void emitReturn(MIPSCode code, MIPSFunction function, ProgState progState) {
 
     // Now branch to the epilogue.
-    sb.append(MIPSInstruction.genBranch("xf_" + function.getFunctionBlock().getFunctionName()));
-
-    function.currentParamCount = 0;
-    return sb.toString();
+    MIPSInstruction.genBranch(code, "xf_" + function.getFunctionBlock().getFunctionName());
   }
 
   /**
    * Emits a return statement for non-void functions. The return value is placed
    * into the $v0 register, and we immediately jump to the epilogue after that.
    * 
+   * @param code      - stream to append to.
    * @param function  - MIPSFunction object.
    * @param progState - ProgState object.
    * 
-   * @return MIPS representation of return stmt.
+   * @return void.
    */
-  public static String emitReturn(MIPSFunction function, ProgState progState, ICAddress ret) {
-    StringBuilder sb = new StringBuilder();
+  public static void emitReturn(MIPSCode code, MIPSFunction function, ProgState progState, ICAddress ret) {
 
     // Generate load for return value.
     MIPSReg retReg = progState.getCurrReg(ret);
     if (retReg == null) {
       retReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(ret), retReg, progState.getCanonicalMIPS(ret)));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(ret), retReg, progState.getCanonicalMIPS(ret));
     }
     progState.copyVal(retReg, ret);
 
     // Move the value into the return register.
     progState.copyVal(MIPSReg.vReg(0), retReg);
-    sb.append(MIPSInstruction.genMove(MIPSReg.vReg(0), retReg));
+    MIPSInstruction.genMove(code, MIPSReg.vReg(0), retReg);
 
     // Now branch to the epilogue.
-    sb.append(MIPSInstruction.genBranch("xf_" + function.getFunctionBlock().getFunctionName()));
-
-    function.currentParamCount = 0;
-    return sb.toString();
+    MIPSInstruction.genBranch(code, "xf_" + function.getFunctionBlock().getFunctionName());
   }
 
   /**
@@ -305,38 +288,36 @@ public class CodeGeneration {
    * the size. Then, we grab the pointer to the 0th index, and set the size at
    * that index.
    * 
+   * @param code      - stream to append to.
    * @param progState - ProgState object.
    * @param res       - local variable for array decl.
    * @param size      - size of array; must be a literal.
    * 
-   * @return MIPS string representation of array declaration.
+   * @return void.
    */
-  public static String emitArrayDecl(ProgState progState, ICAddress res, ICAddress size) {
-    StringBuilder sb = new StringBuilder();
+  public static void emitArrayDecl(MIPSCode code, ProgState progState, ICAddress res, ICAddress size) {
 
     // Load the address of the array if it exists (it WON'T, but just for the hell
     // of it.
     MIPSReg resReg = progState.getCurrReg(res);
     if (resReg == null) {
       resReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad("la", resReg, progState.getCanonicalMIPS(res)));
+      MIPSInstruction.genLoad(code, MIPSOpcode.LA, resReg, progState.getCanonicalMIPS(res));
     }
     progState.copyVal(resReg, res);
 
     // Now, load the size of the array into a register.
     MIPSReg sizeReg = progState.getNextAvailableRegister();
-    sb.append(MIPSInstruction.genLoad("li", sizeReg, progState.getCanonicalMIPS(size)));
+    MIPSInstruction.genLoad(code, MIPSOpcode.LI, sizeReg, progState.getCanonicalMIPS(size));
     progState.copyVal(sizeReg, res);
 
     // Now, store the size in the first element of the array AT that array
     // 0($resReg).
-    sb.append(MIPSInstruction.genStore("sw", sizeReg, "0(" + resReg + ")"));
+    MIPSInstruction.genStore(code, MIPSOpcode.SW, sizeReg, MIPSOperand.address(0, resReg));
 
     // Invalidate the registers we used.
     progState.invalidate(resReg);
     progState.invalidate(sizeReg);
-
-    return sb.toString();
   }
 
   /**
@@ -345,29 +326,46 @@ public class CodeGeneration {
    * 
    * Emits a store operation into an array.
    * 
+   * @param code      - stream to append to.
    * @param progState - ProgState object.
    * @param res       - variable representing address of array.
    * @param val       - value to store in array.
    * @param idx       - index to store.
    * 
-   * @return MIPS representation of store operation.
+   * @return void.
    */
-  public static String emitArrayStore(ProgState progState, ICAddress res, ICAddress idx, ICAddress val) {
-    StringBuilder sb = new StringBuilder();
+  public static void emitArrayStore(MIPSCode code, ProgState progState, ICAddress res, ICAddress idx, ICAddress val) {
     // Load the address of the array if it exists (it WON'T, but just for the hell
     // of it.
     MIPSReg resReg = progState.getCurrReg(res);
     if (resReg == null) {
       resReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad("lw", resReg, progState.getCanonicalMIPS(res)));
+      MIPSInstruction.genLoad(code, MIPSOpcode.LW, resReg, progState.getCanonicalMIPS(res));
     }
     progState.copyVal(resReg, res);
 
+    // A literal index folds into the offset of the store.
+    Integer litOffset = getLiteralArrayOffset(idx, res.getWidth());
+    if (litOffset != null) {
+      MIPSReg valReg = progState.getCurrReg(val);
+      if (valReg == null) {
+        valReg = progState.getNextAvailableRegister();
+        MIPSInstruction.genLoad(code, getMIPSLoadOp(val), valReg, progState.getCanonicalMIPS(val));
+      }
+      progState.copyVal(valReg, val);
+
+      MIPSInstruction.genStore(code, getMIPSStoreOp(res), valReg, MIPSOperand.address(litOffset, resReg));
+
+      progState.invalidate(resReg);
+      progState.invalidate(valReg);
+      return;
+    }
+
     // Load the idx into a temp.
     MIPSReg idxReg = progState.getCurrReg(idx);
     if (idxReg == null) {
       idxReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(idx), idxReg, progState.getCanonicalMIPS(idx)));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(idx), idxReg, progState.getCanonicalMIPS(idx));
     }
     progState.copyVal(idxReg, idx);
 
@@ -375,55 +373,53 @@ public class CodeGeneration {
     MIPSReg valReg = progState.getCurrReg(val);
     if (valReg == null) {
       valReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(val), valReg, progState.getCanonicalMIPS(val)));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(val), valReg, progState.getCanonicalMIPS(val));
     }
     progState.copyVal(valReg, val);
 
     // Create a temp idx register.
     MIPSReg modIdxReg = progState.getNextAvailableRegister();
     progState.copyVal(modIdxReg, idxReg);
-    sb.append(MIPSInstruction.genMove(modIdxReg, idxReg));
+    MIPSInstruction.genMove(code, modIdxReg, idxReg);
     progState.invalidate(idxReg);
     idxReg = modIdxReg;
 
     // If the array is an int array, then we apply a 4byte offset.
     if (res.getWidth() == 4) {
-      sb.append(MIPSInstruction.genBinaryOp("sll", "" + idxReg, "" + idxReg, "" + 2));
+      MIPSInstruction.genBinaryOp(code, MIPSOpcode.SLL, idxReg, idxReg, 2);
     }
 
     // Apply idx offset.
-    sb.append(MIPSInstruction.genBinaryOp("addu", "" + idxReg, "" + resReg, "" + idxReg));
+    MIPSInstruction.genBinaryOp(code, MIPSOpcode.ADDU, idxReg, resReg, idxReg);
 
     // Store value in array.
-    sb.append(MIPSInstruction.genStore(getMIPSStoreOp(res), valReg, "4(" + idxReg + ")"));
+    MIPSInstruction.genStore(code, getMIPSStoreOp(res), valReg, MIPSOperand.address(4, idxReg));
 
     progState.invalidate(modIdxReg);
     progState.invalidate(resReg);
     progState.invalidate(idxReg);
     progState.invalidate(valReg);
-
-    return sb.toString();
   }
 
   /**
    * Emits a load operation into an array. The value pulled from the array is
    * stored into res.
    * 
+   * @param code      - stream to append to.
    * @param progState - ProgState object.
    * @param res       - location to store value loaded from array.
    * @param arr       - variable representing address of array.
    * @param idx       - index to load from.
    * 
-   * @return MIPS representation of store operation.
+   * @return void.
    */
-  public static String emitArrayLoad(ProgState progState, ICAddress res, ICAddress arr, ICAddress idx) {
-    StringBuilder sb = new StringBuilder();
+  public static void emitArrayLoad(MIPSCode code, ProgState progState, ICAddress res, ICAddress arr, ICAddress idx) {
 
     // Load the destination.
     MIPSReg resReg = progState.getCurrReg(res);
     if (resReg == null) {
       resReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad("lw", resReg, progState.getCanonicalMIPS(res)));
+      MIPSInstruction.genLoad(code, MIPSOpcode.LW, resReg, progState.getCanonicalMIPS(res));
     }
     progState.copyVal(resReg, res);
 
@@ -431,63 +427,77 @@ public class CodeGeneration {
     MIPSReg arrReg = progState.getCurrReg(arr);
     if (arrReg == null) {
       arrReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad("lw", arrReg, progState.getCanonicalMIPS(arr)));
+      MIPSInstruction.genLoad(code, MIPSOpcode.LW, arrReg, progState.getCanonicalMIPS(arr));
     }
     progState.copyVal(arrReg, arr);
 
+    // A literal index folds into the offset of the load.
+    Integer litOffset = getLiteralArrayOffset(idx, res.getWidth());
+    if (litOffset != null) {
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(res), resReg, MIPSOperand.address(litOffset, arrReg));
+
+      if (!progState.getCanonicalMIPS(res).isRegister(resReg)) {
+        MIPSInstruction.genStore(code, MIPSOpcode.SW, resReg, progState.getCanonicalMIPS(res));
+        progState.copyVal(res, resReg);
+      }
+
+      progState.invalidate(resReg);
+      progState.invalidate(arrReg);
+      return;
+    }
+
     // Now load the idx reg.
     MIPSReg idxReg = progState.getCurrReg(idx);
     if (idxReg == null) {
       idxReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(idx), idxReg, progState.getCanonicalMIPS(idx)));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(idx), idxReg, progState.getCanonicalMIPS(idx));
     }
     progState.copyVal(arrReg, arr);
 
     // Create a temp idx register.
     MIPSReg modIdxReg = progState.getNextAvailableRegister();
     progState.copyVal(modIdxReg, idxReg);
-    sb.append(MIPSInstruction.genMove(modIdxReg, idxReg));
+    MIPSInstruction.genMove(code, modIdxReg, idxReg);
     progState.invalidate(idxReg);
     idxReg = modIdxReg;
 
     // If the array is an int array, then we apply a 4byte offset.
     if (res.getWidth() == 4) {
-      sb.append(MIPSInstruction.genBinaryOp("sll", "" + idxReg, "" + idxReg, "2"));
+      MIPSInstruction.genBinaryOp(code, MIPSOpcode.SLL, idxReg, idxReg, 2);
     }
 
     // Add the idx offset.
-    sb.append(MIPSInstruction.genBinaryOp("addu", "" + idxReg, "" + arrReg, "" + idxReg));
+    MIPSInstruction.genBinaryOp(code, MIPSOpcode.ADDU, idxReg, arrReg, idxReg);
 
     // Load the value into the register.
-    sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(res), resReg, "4(" + idxReg + ")"));
+    MIPSInstruction.genLoad(code, getMIPSLoadOp(res), resReg, MIPSOperand.address(4, idxReg));
 
-    // Store the value into the dest memory.
-    sb.append(MIPSInstruction.genLoad("sw", resReg, progState.getCanonicalMIPS(res)));
-
-    progState.copyVal(res, resReg);
+    // Store the value into the dest memory, unless the dest lives in a register.
+    if (!progState.getCanonicalMIPS(res).isRegister(resReg)) {
+      MIPSInstruction.genStore(code, MIPSOpcode.SW, resReg, progState.getCanonicalMIPS(res));
+      progState.copyVal(res, resReg);
+    }
 
     progState.invalidate(modIdxReg);
     progState.invalidate(resReg);
     progState.invalidate(arrReg);
     progState.invalidate(idxReg);
-
-    return sb.toString();
   }
 
   /**
    * Emits an if conditional - can be a while or for loop as well, or just a
    * logical operator.
    * 
+   * @param code      - stream to append to.
    * @param progState - ProgState object.
    * @param res       - location to jump to if condition is true.
    * @param op1       - first operand of if.
    * @param op2       - second operand of if.
    * @param op        - logical comparison operator.
    * 
-   * @return MIPS string representation of if.
+   * @return void.
    */
-  public static String emitIf(ProgState progState, String res, ICAddress op1, ICAddress op2, String op) {
-    StringBuilder sb = new StringBuilder();
+  public static void emitIf(MIPSCode code, ProgState progState, String res, ICAddress op1, ICAddress op2, String op) {
 
     String logOp = op.substring(2); // ifOP
     String jmpLabel = res.substring(5); // goto L
@@ -496,45 +506,47 @@ public class CodeGeneration {
     MIPSReg op1Reg = progState.getCurrReg(op1);
     MIPSReg op2Reg = progState.getCurrReg(op2);
 
-    String cOp1 = progState.getCanonicalMIPS(op1);
-    String cOp2 = progState.getCanonicalMIPS(op2);
+    MIPSOperand cOp1 = progState.getCanonicalMIPS(op1);
+    MIPSOperand cOp2 = progState.getCanonicalMIPS(op2);
 
-    // Load the op1 register.
-    if (op1Reg == null) {
+    // Load the op1 register. Comparisons against zero use $zero instead.
+    if (op1Reg == null && isLiteralZero(op1)) {
+      op1Reg = MIPSReg.zeroReg();
+    } else if (op1Reg == null) {
       op1Reg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(op1), op1Reg, cOp1));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(op1), op1Reg, cOp1);
     }
     progState.copyVal(op1Reg, op1);
 
     // Load the op2 register.
-    if (op2Reg == null) {
+    if (op2Reg == null && isLiteralZero(op2)) {
+      op2Reg = MIPSReg.zeroReg();
+    } else if (op2Reg == null) {
       op2Reg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(op2), op2Reg, cOp2));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(op2), op2Reg, cOp2);
     }
     progState.copyVal(op2Reg, op2);
 
     // Emit the stmt.
-    sb.append(MIPSInstruction.genBinaryOp(getMIPSLogicalOp(logOp), "" + op1Reg, "" + op2Reg, jmpLabel));
+    MIPSInstruction.genConditionalBranch(code, getMIPSLogicalOp(logOp), op1Reg, op2Reg, jmpLabel);
 
     progState.invalidate(op1Reg);
     progState.invalidate(op2Reg);
-
-    return sb.toString();
   }
 
   /**
    * Emits a binary operator.
    * 
+   * @param code      - stream to append to.
    * @param progState - ProgState object.
    * @param res       - location to store value of binary op.
    * @param op1       - first operand of binop.
    * @param op2       - second operand of binop.
    * @param op        - binary operator to use.
    * 
-   * @return MIPS string representation of if.
+   * @return void.
    */
-  public static String emitBinaryOp(ProgState progState, ICAddress res, ICAddress op1, ICAddress op2, String op) {
-    StringBuilder sb = new StringBuilder();
+  public static void emitBinaryOp(MIPSCode code, ProgState progState, ICAddress res, ICAddress op1, ICAddress op2, String op) {
     boolean needToStore = false;
 
     // If the operands are literals, we need to fix their widths.
@@ -546,54 +558,98 @@ public class CodeGeneration {
       op2.setWidth(res.getWidth());
     }
 
+    // A literal operand of a commutative op goes second, where the immediate
+    // form of the instruction can take it.
+    if (op1.isLiteral() && !op2.isLiteral() && isCommutativeOp(op)) {
+      ICAddress tmp = op1;
+      op1 = op2;
+      op2 = tmp;
+    }
+
+    // Subtracting a literal is the same as adding its negation, since there's
+    // no immediate form of subu.
+    MIPSOpcode immOp = null;
+    int imm = 0;
+    if (op2.isLiteral()) {
+      imm = Integer.parseInt(op2.getName());
+      if (op.equals("-")) {
+        imm = -imm;
+        immOp = getMIPSImmediateOp("+", imm);
+      } else {
+        immOp = getMIPSImmediateOp(op, imm);
+      }
+    }
+
     // Load the res register.
     MIPSReg resReg = progState.getCurrReg(res);
-    String cRes = progState.getCanonicalMIPS(res);
+    MIPSOperand cRes = progState.getCanonicalMIPS(res);
     if (resReg == null) {
       resReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(res), resReg, cRes));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(res), resReg, cRes);
       needToStore = true;
     }
     progState.copyVal(resReg, res);
 
     // Load the op1 register.
     MIPSReg op1Reg = progState.getCurrReg(op1);
-    String cOp1 = progState.getCanonicalMIPS(op1);
+    MIPSOperand cOp1 = progState.getCanonicalMIPS(op1);
     if (op1Reg == null) {
       op1Reg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(op1), op1Reg, cOp1));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(op1), op1Reg, cOp1);
     }
     progState.copyVal(op1Reg, op1);
 
+    // An immediate second operand never needs a register.
+    if (immOp != null) {
+      MIPSInstruction.genBinaryOp(code, immOp, resReg, op1Reg, imm);
+
+      if (needToStore) {
+        MIPSInstruction.genStore(code, getMIPSStoreOp(res), resReg, cRes);
+        progState.copyVal(res, resReg);
+      }
+
+      progState.invalidate(resReg);
+      progState.invalidate(op1Reg);
+      return;
+    }
+
     // Load the op2 register.
     MIPSReg op2Reg = progState.getCurrReg(op2);
-    String cOp2 = progState.getCanonicalMIPS(op2);
+    MIPSOperand cOp2 = progState.getCanonicalMIPS(op2);
     if (op2Reg == null) {
       op2Reg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(op2), op2Reg, cOp2));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(op2), op2Reg, cOp2);
     }
     progState.copyVal(op2Reg, op2);
 
-    // Perform the binary op (power op uses different code).
+    // Perform the binary op (power op uses different code). The power loop
+    // writes the destination before it's done reading the operands, so if they
+    // share a register we build the result in a scratch register instead.
     if (op.equals("**")){
       MIPSReg op3Reg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genPowerBinaryOp("" + resReg, "" + op1Reg, "" + op2Reg, "" + op3Reg));
+      if (resReg.equals(op1Reg) || resReg.equals(op2Reg)) {
+        MIPSReg powReg = progState.getNextAvailableRegister(op3Reg, null);
+        MIPSInstruction.genPowerBinaryOp(code, progState.getFunction(), powReg, op1Reg, op2Reg, op3Reg);
+        MIPSInstruction.genMove(code, resReg, powReg);
+      } else {
+        MIPSInstruction.genPowerBinaryOp(code, progState.getFunction(), resReg, op1Reg, op2Reg, op3Reg);
+      }
       progState.invalidate(op3Reg);
     } else if (op.equals("<>")) {
       MIPSReg op3Reg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genBiconditionalBinaryOp("" + resReg, "" + op1Reg, "" + op2Reg, "" + op3Reg));
+      MIPSInstruction.genBiconditionalBinaryOp(code, resReg, op1Reg, op2Reg, op3Reg);
       progState.invalidate(op3Reg);
     } else if (op.equals("->")) {
       MIPSReg op3Reg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genImplicationBinaryOp("" + resReg, "" + op1Reg, "" + op2Reg, "" + op3Reg));
+      MIPSInstruction.genImplicationBinaryOp(code, resReg, op1Reg, op2Reg, op3Reg);
       progState.invalidate(op3Reg);
     } else {
-      sb.append(MIPSInstruction.genBinaryOp(getMIPSBinaryOp(op), "" + resReg, "" + op1Reg, "" + op2Reg));
+      MIPSInstruction.genBinaryOp(code, getMIPSBinaryOp(op), resReg, op1Reg, op2Reg);
     }
     
     // Store the result if we loaded in a new temporary for the destination.
     if (needToStore) {
-      sb.append(MIPSInstruction.genStore(getMIPSStoreOp(res), resReg, cRes));
+      MIPSInstruction.genStore(code, getMIPSStoreOp(res), resReg, cRes);
       progState.copyVal(res, resReg);
     }
 
@@ -601,67 +657,65 @@ public class CodeGeneration {
     progState.invalidate(resReg);
     progState.invalidate(op1Reg);
     progState.invalidate(op2Reg);
-
-    return sb.toString();
   }
 
   /**
    * Emits a size of operator. Since we always use array references, we first get
    * the address of the array, then load the 0th index value at the pointer.
    * 
+   * @param code      - stream to append to.
    * @param progState - ProgState object.
    * @param res       - location to store size of array.
    * @param src       - address of array.
    * 
-   * @return MIPS representation of size of.
+   * @return void.
    */
-  public static String emitSizeOf(ProgState progState, ICAddress res, ICAddress src) {
-    StringBuilder sb = new StringBuilder();
+  public static void emitSizeOf(MIPSCode code, ProgState progState, ICAddress res, ICAddress src) {
 
     // Load the res register.
     MIPSReg resReg = progState.getCurrReg(res);
-    String cRes = progState.getCanonicalMIPS(res);
+    MIPSOperand cRes = progState.getCanonicalMIPS(res);
     if (resReg == null) {
       resReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad("lw", resReg, cRes));
+      MIPSInstruction.genLoad(code, MIPSOpcode.LW, resReg, cRes);
     }
     progState.copyVal(resReg, res);
 
     // Load the source reg.
     MIPSReg srcReg = progState.getCurrReg(src);
-    String cSrc = progState.getCanonicalMIPS(src);
+    MIPSOperand cSrc = progState.getCanonicalMIPS(src);
     if (srcReg == null) {
       srcReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad("lw", srcReg, cSrc));
+      MIPSInstruction.genLoad(code, MIPSOpcode.LW, srcReg, cSrc);
     }
     progState.copyVal(srcReg, src);
 
     // Perform the sizeof op.
-    sb.append(MIPSInstruction.genLoad("lw", resReg, "0(" + srcReg + ")"));
+    MIPSInstruction.genLoad(code, MIPSOpcode.LW, resReg, MIPSOperand.address(0, srcReg));
 
-    // Store result.
-    sb.append(MIPSInstruction.genStore("sw", resReg, progState.getCanonicalMIPS(res)));
-    progState.copyVal(res, resReg);
+    // Store result, unless it lives in a register.
+    if (!cRes.isRegister(resReg)) {
+      MIPSInstruction.genStore(code, MIPSOpcode.SW, resReg, cRes);
+      progState.copyVal(res, resReg);
+    }
 
     progState.invalidate(resReg);
     progState.invalidate(srcReg);
-
-    return sb.toString();
   }
 
   /**
    * Emits a unary operator. This excludes the size of operator which has its own
    * method.
    * 
+   * @param code      - stream to append to.
    * @param progState - ProgState object.
    * @param res       - location to store value of op.
    * @param op1       - operand.
    * @param op        - operator to perform.
    * 
-   * @return MIPS representation.
+   * @return void.
    */
-  public static String emitUnaryOp(ProgState progState, ICAddress res, ICAddress op1, String op) {
-    StringBuilder sb = new StringBuilder();
+  public static void emitUnaryOp(MIPSCode code, ProgState progState, ICAddress res, ICAddress op1, String op) {
     boolean needToStore = false;
     
     // Check to make sure that if the operand is a literal,
@@ -672,50 +726,48 @@ public class CodeGeneration {
 
     // Load the res register.
     MIPSReg resReg = progState.getCurrReg(res);
-    String cRes = progState.getCanonicalMIPS(res);
+    MIPSOperand cRes = progState.getCanonicalMIPS(res);
     if (resReg == null) {
       resReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(res), resReg, cRes));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(res), resReg, cRes);
       needToStore = true;
     }
     progState.copyVal(resReg, res);
 
     // Load the op1 register.
     MIPSReg op1Reg = progState.getCurrReg(op1);
-    String cOp1 = progState.getCanonicalMIPS(op1);
+    MIPSOperand cOp1 = progState.getCanonicalMIPS(op1);
     if (op1Reg == null) {
       op1Reg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(op1), op1Reg, cOp1));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(op1), op1Reg, cOp1);
     }
     progState.copyVal(op1Reg, op1);
 
     // Perform the unary op.
-    sb.append(MIPSInstruction.genUnaryOp(getMIPSUnaryOp(op), "" + resReg, "" + op1Reg));
+    MIPSInstruction.genUnaryOp(code, getMIPSUnaryOp(op), resReg, op1Reg);
 
     // Store the result if we loaded in a new temporary for the destination.
     if (needToStore) {
       progState.copyVal(res, resReg);
-      sb.append(MIPSInstruction.genStore("sw", resReg, cRes));
+      MIPSInstruction.genStore(code, MIPSOpcode.SW, resReg, cRes);
     }
 
     // Invalidate the registers.
     progState.invalidate(resReg);
     progState.invalidate(op1Reg);
-
-    return sb.toString();
   }
 
   /**
    * Emits an assignment operator.
    * 
+   * @param code      - stream to append to.
    * @param progState - ProgState object.
    * @param res       - location to store src.
    * @param src       - value to copy into res.
    * 
-   * @return MIPS string representation of assignment.
+   * @return void.
    */
-  public static String emitAssignment(ProgState progState, ICAddress res, ICAddress src) {
-    StringBuilder sb = new StringBuilder();
+  public static void emitAssignment(MIPSCode code, ProgState progState, ICAddress res, ICAddress src) {
     boolean needToStore = false;
 
     // Check to set the width of the src if it's a literal to match
@@ -726,63 +778,60 @@ public class CodeGeneration {
 
     // Load the res register.
     MIPSReg resReg = progState.getCurrReg(res);
-    String cRes = progState.getCanonicalMIPS(res);
+    MIPSOperand cRes = progState.getCanonicalMIPS(res);
     if (resReg == null) {
       resReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(res), resReg, cRes));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(res), resReg, cRes);
       needToStore = true;
     }
     progState.copyVal(resReg, res);
 
     // Load the source register.
     MIPSReg srcReg = progState.getCurrReg(src);
-    String cSrc = progState.getCanonicalMIPS(src);
+    MIPSOperand cSrc = progState.getCanonicalMIPS(src);
     if (srcReg == null) {
       srcReg = progState.getNextAvailableRegister();
-      sb.append(MIPSInstruction.genLoad(getMIPSLoadOp(src), srcReg, cSrc));
+      MIPSInstruction.genLoad(code, getMIPSLoadOp(src), srcReg, cSrc);
       needToStore = true;
     }
     progState.copyVal(srcReg, src);
 
     // Move src into dest.
-    sb.append(MIPSInstruction.genMove(resReg, srcReg));
+    MIPSInstruction.genMove(code, resReg, srcReg);
     progState.copyVal(resReg, srcReg);
 
     // We can't store a register in a register so make sure
     // we're not doing that.
-    if (needToStore && !resReg.toString().equals(cRes)) {
-      sb.append(MIPSInstruction.genStore(getMIPSStoreOp(src), resReg, cRes));
+    if (needToStore && !cRes.isRegister(resReg)) {
+      MIPSInstruction.genStore(code, getMIPSStoreOp(src), resReg, cRes);
       progState.copyVal(src, srcReg);
     }
 
     // Invalidate the registers.
     progState.invalidate(resReg);
     progState.invalidate(srcReg);
-
-    return sb.toString();
   }
 
   /**
    * Emits a label. This can be in the form of a goto or just a plain destination
    * label. It handles both.
    * 
+   * @param code      - stream to append to.
    * @param progState - ProgState object.
    * @param label     - label in the form of "goto LX" or "LX:".
    * 
-   * @return MIPS string representation of label.
+   * @return void.
    */
-  public static String emitLabel(ProgState progState, String label) {
-    StringBuilder sb = new StringBuilder();
+  public static void emitLabel(MIPSCode code, ProgState progState, String label) {
 
     // If the label is a goto dest label then print that out.
     if (label.contains("goto")) {
       String jmpLabel = label.substring(5);
-      sb.append(MIPSInstruction.genJump(jmpLabel));
+      MIPSInstruction.genJump(code, jmpLabel);
     } else {
-      // Otherwise, just print the label.
-      sb.append(MIPSInstruction.genLabel(label));
+      // Otherwise, just print the label (without its colon).
+      MIPSInstruction.genLabel(code, label.substring(0, label.length() - 1));
     }
-    return sb.toString();
   }
 
   /**
@@ -794,12 +843,12 @@ public class CodeGeneration {
    * 
    * @return "sw" if width == 4, "sb" if width == 1.
    */
-  private static String getMIPSStoreOp(ICAddress src) {
+  private static MIPSOpcode getMIPSStoreOp(ICAddress src) {
     switch (src.getWidth()) {
     case 4:
-      return "sw";
+      return MIPSOpcode.SW;
     case 1:
-      return "sb";
+      return MIPSOpcode.SB;
     default:
       throw new IllegalArgumentException("width " + src.getWidth() + " is invalid.");
     }
@@ -816,21 +865,21 @@ public class CodeGeneration {
    * @return "sw" if width == 4, "sb" if width == 1, "la" if string or array, "li"
    *         for lit.
    */
-  private static String getMIPSLoadOp(ICAddress src) {
+  private static MIPSOpcode getMIPSLoadOp(ICAddress src) {
     // If we're a string or an array, we load the address of the array.
     // Literals use "li".
     if (src.isLiteral()) {
-      return "li";
+      return MIPSOpcode.LI;
     } else if (src.isString() || src.isArray() || src.getWidth() == 0) {
-      return "la";
+      return MIPSOpcode.LA;
     }
 
     // Otherwise, we use lw or lb.
     switch (src.getWidth()) {
     case 4:
-      return "lw";
+      return MIPSOpcode.LW;
     case 1:
-      return "lb";
+      return MIPSOpcode.LB;
     default:
       throw new IllegalArgumentException("width " + src.getWidth() + " is invalid.");
     }
@@ -845,39 +894,120 @@ public class CodeGeneration {
    * 
    * @return MIPS representation of binary op.
    */
-  private static String getMIPSBinaryOp(String op) {
+  private static MIPSOpcode getMIPSBinaryOp(String op) {
     switch (op) {
     case "+":
-      return "addu";
+      return MIPSOpcode.ADDU;
     case "-":
-      return "subu";
+      return MIPSOpcode.SUBU;
     case "*":
-      return "mul";
+      return MIPSOpcode.MUL;
     case "/":
-      return "div";
+      return MIPSOpcode.DIV;
     case "&&":
     case "&":
-      return "and";
+      return MIPSOpcode.AND;
     case "||":
     case "|":
-      return "or";
+      return MIPSOpcode.OR;
     case "%":
-      return "rem";
+      return MIPSOpcode.REM;
     case "<<":
-      return "sll";
+      return MIPSOpcode.SLL;
     case ">>":
-      return "sra";
+      return MIPSOpcode.SRA;
     case "<<<":
-      return "rol";
+      return MIPSOpcode.ROL;
     case ">>>":
-      return "ror";
+      return MIPSOpcode.ROR;
     case "^":
-      return "xor";
+      return MIPSOpcode.XOR;
     default:
       throw new IllegalArgumentException("Invalid MIPS binary operator " + op);
     }
   }
 
+  /**
+   * Returns the immediate form of the MIPS binary operator for the supplied 3AC
+   * binary op, if the literal second operand fits in its 16-bit immediate field.
+   * addiu sign-extends its immediate, andi/ori/xori zero-extend theirs, and
+   * shifts only take an amount from 0 to 31.
+   * 
+   * @param op    - 3AC binary op.
+   * @param value - value of the literal second operand.
+   * 
+   * @return MIPS immediate op, or null if the register form has to be used.
+   */
+  private static MIPSOpcode getMIPSImmediateOp(String op, int value) {
+    switch (op) {
+    case "+":
+      return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE ? MIPSOpcode.ADDIU : null;
+    case "&&":
+    case "&":
+      return value >= 0 && value <= 0xFFFF ? MIPSOpcode.ANDI : null;
+    case "||":
+    case "|":
+      return value >= 0 && value <= 0xFFFF ? MIPSOpcode.ORI : null;
+    case "^":
+      return value >= 0 && value <= 0xFFFF ? MIPSOpcode.XORI : null;
+    case "<<":
+      return value >= 0 && value < 32 ? MIPSOpcode.SLL : null;
+    case ">>":
+      return value >= 0 && value < 32 ? MIPSOpcode.SRA : null;
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * @param op - 3AC binary op.
+   * 
+   * @return true if the operands of op can be swapped without changing the
+   *         result.
+   */
+  private static boolean isCommutativeOp(String op) {
+    switch (op) {
+    case "+":
+    case "*":
+    case "&&":
+    case "&":
+    case "||":
+    case "|":
+    case "^":
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  /**
+   * Returns the byte offset of a literal array index from the array's address.
+   * The first word of an array holds its size, so elements start at offset 4.
+   * 
+   * @param idx   - array index.
+   * @param width - width of one element in bytes.
+   * 
+   * @return offset of the element, or null if idx isn't a literal or the offset
+   *         doesn't fit in the 16-bit offset of a load or store.
+   */
+  private static Integer getLiteralArrayOffset(ICAddress idx, int width) {
+    if (!idx.isLiteral()) {
+      return null;
+    }
+
+    long offset = 4 + (long) Integer.parseInt(idx.getName()) * (width == 4 ? 4 : 1);
+    return offset >= Short.MIN_VALUE && offset <= Short.MAX_VALUE ? (int) offset : null;
+  }
+
+  /**
+   * @param addr - ICAddress to check.
+   * 
+   * @return true if addr is the literal 0.
+   */
+  private static boolean isLiteralZero(ICAddress addr) {
+    return addr.isLiteral() && Integer.parseInt(addr.getName()) == 0;
+  }
+
   /**
    * Returns the MIPS unary operator for the supplied 3AC unary op.
    * 
@@ -887,17 +1017,17 @@ public class CodeGeneration {
    * 
    * @return MIPS representation of unary op.
    */
-  private static String getMIPSUnaryOp(String op) {
+  private static MIPSOpcode getMIPSUnaryOp(String op) {
     switch (op) {
     case "&":
-      return "move";
+      return MIPSOpcode.MOVE;
     case "~":
-      return "not";
+      return MIPSOpcode.NOT;
     case "@":
-      return "abs";
+      return MIPSOpcode.ABS;
     case "-":
     case "!":
-      return "negu";
+      return MIPSOpcode.NEGU;
     default:
       throw new IllegalArgumentException("Invalid MIPS unary operator " + op);
     }
@@ -912,20 +1042,20 @@ public class CodeGeneration {
    * 
    * @return MIPS logical op.
    */
-  private static String getMIPSLogicalOp(String logOp) {
+  private static MIPSOpcode getMIPSLogicalOp(String logOp) {
     switch (logOp) {
     case "<=":
-      return "ble";
+      return MIPSOpcode.BLE;
     case "<":
-      return "blt";
+      return MIPSOpcode.BLT;
     case ">=":
-      return "bge";
+      return MIPSOpcode.BGE;
     case ">":
-      return "bgt";
+      return MIPSOpcode.BGT;
     case "==":
-      return "beq";
+      return MIPSOpcode.BEQ;
     case "!=":
-      return "bne";
+      return MIPSOpcode.BNE;
     default:
       throw new IllegalArgumentException("Invalid MIPS logical operator " + logOp);
     }
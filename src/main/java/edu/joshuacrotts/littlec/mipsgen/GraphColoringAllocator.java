@@ -0,0 +1,366 @@
+package edu.joshuacrotts.littlec.mipsgen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+import edu.joshuacrotts.littlec.icode.ControlFlowGraph;
+import edu.joshuacrotts.littlec.icode.ICUtilities;
+import edu.joshuacrotts.littlec.icode.LivenessAnalysis;
+import edu.joshuacrotts.littlec.icode.NaturalLoop;
+
+/**
+ * Chaitin/Briggs graph-coloring register allocator. Two candidates interfere
+ * if one is defined while the other is live; the source of a copy doesn't
+ * interfere with its destination, so the two can be coalesced into one node
+ * and the move between them disappears. Coalescing is conservative (Briggs),
+ * so it never turns a colorable graph into one that spills.
+ *
+ * Nodes are simplified onto a stack and then colored optimistically. When
+ * every remaining node has too many neighbors, the one with the lowest spill
+ * cost per neighbor is pushed anyway; it only spills if no color is left for
+ * it once its neighbors are colored. A spill cost counts each definition and
+ * use, weighted by LOOP_WEIGHT to the power of the loop depth of its line.
+ *
+ * Building the graph is quadratic in the worst case, so functions whose graph
+ * grows past maxGraphSize edges fall back to linear scan.
+ *
+ * @author Joshua Crotts
+ */
+public class GraphColoringAllocator extends RegisterAllocator {
+
+  /** Default limit on the number of interference edges. */
+  public static final int DEFAULT_MAX_GRAPH_SIZE = 20000;
+
+  /** How much more a definition or use costs for each loop it's nested in. */
+  private static final int LOOP_WEIGHT = 10;
+
+  /** Largest number of interference edges we'll color before using linear scan. */
+  private static int maxGraphSize = DEFAULT_MAX_GRAPH_SIZE;
+
+  /** Candidate of each node. */
+  private final ArrayList<String> NODES;
+
+  /** Node number of each candidate. */
+  private final Map<String, Integer> NODE_NUMBERS;
+
+  /** Neighbors of each node. Only representatives of coalesced nodes have any. */
+  private final ArrayList<Set<Integer>> ADJACENT;
+
+  /** Node that each node was coalesced into, or itself. */
+  private final int[] ALIAS;
+
+  /** Registers each node can't use because a call overwrites them. */
+  private final List<Set<MIPSReg>> KILLED;
+
+  /** Spill cost of each node. */
+  private final double[] SPILL_COSTS;
+
+  /** Copies between two candidates, as pairs of node numbers. */
+  private final List<int[]> COPIES;
+
+  /** Number of edges in the graph. */
+  private int edgeCount;
+
+  /**
+   * @param liveness      - liveness of the function body.
+   * @param firstSavedReg - first $s register that isn't used for parameters.
+   */
+  public GraphColoringAllocator(LivenessAnalysis liveness, int firstSavedReg) {
+    super(liveness, firstSavedReg);
+    this.NODES = new ArrayList<>(CANDIDATES);
+    this.NODE_NUMBERS = new HashMap<>();
+    this.ADJACENT = new ArrayList<>();
+    this.ALIAS = new int[NODES.size()];
+    this.KILLED = new ArrayList<>();
+    this.SPILL_COSTS = new double[NODES.size()];
+    this.COPIES = new ArrayList<>();
+
+    for (int i = 0; i < NODES.size(); i++) {
+      NODE_NUMBERS.put(NODES.get(i), i);
+      ADJACENT.add(new HashSet<>());
+      ALIAS[i] = i;
+      KILLED.add(new HashSet<>(KILLED_BY_CALLS.getOrDefault(NODES.get(i), new HashSet<>())));
+    }
+  }
+
+  @Override
+  public Map<String, MIPSReg> allocate() {
+    if (!this.buildGraph()) {
+      return new LinearScanAllocator(LIVENESS, FIRST_SAVED_REG).allocate();
+    }
+
+    this.computeSpillCosts();
+    this.coalesce();
+    this.color();
+    return ASSIGNMENT;
+  }
+
+  /**
+   * Builds the interference graph and collects the copies that may be
+   * coalesced.
+   *
+   * @return false if the graph grew past the size limit, true otherwise.
+   */
+  private boolean buildGraph() {
+    for (int i = 0; i < INSTRUCTIONS.size(); i++) {
+      LinkedList<String> tac = INSTRUCTIONS.get(i);
+      Integer def = NODE_NUMBERS.get(ICUtilities.getDefinedAddress(tac));
+      if (def == null) {
+        continue;
+      }
+
+      Integer src = isCopy(tac) ? NODE_NUMBERS.get(tac.get(1)) : null;
+      if (src != null) {
+        COPIES.add(new int[] { def, src });
+      }
+
+      for (String name : LIVENESS.getLiveOut(i)) {
+        Integer live = NODE_NUMBERS.get(name);
+        if (live != null && !live.equals(def) && !live.equals(src)) {
+          this.addEdge(def, live);
+        }
+      }
+
+      if (this.edgeCount > maxGraphSize) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Adds up the weighted definitions and uses of every node.
+   */
+  private void computeSpillCosts() {
+    ControlFlowGraph cfg = LIVENESS.getControlFlowGraph();
+    int[] loopDepths = new int[cfg.getBlockCount()];
+    for (NaturalLoop loop : cfg.getLoops()) {
+      for (int b = 0; b < cfg.getBlockCount(); b++) {
+        if (loop.containsBlock(b)) {
+          loopDepths[b]++;
+        }
+      }
+    }
+
+    for (int i = 0; i < INSTRUCTIONS.size(); i++) {
+      LinkedList<String> tac = INSTRUCTIONS.get(i);
+      double weight = Math.pow(LOOP_WEIGHT, loopDepths[cfg.getBlock(i)]);
+
+      List<String> accessed = ICUtilities.getUsedAddresses(tac);
+      accessed.add(ICUtilities.getDefinedAddress(tac));
+      for (String name : accessed) {
+        Integer node = NODE_NUMBERS.get(name);
+        if (node != null) {
+          SPILL_COSTS[node] += weight;
+        }
+      }
+    }
+  }
+
+  /**
+   * Coalesces copies until none pass the Briggs test. Two nodes may be merged
+   * if they don't interfere and the merged node would have fewer significant
+   * neighbors (ones with at least as many neighbors as they have colors) than
+   * it has colors.
+   */
+  private void coalesce() {
+    boolean changed;
+    do {
+      changed = false;
+      for (int[] copy : COPIES) {
+        int a = this.find(copy[0]);
+        int b = this.find(copy[1]);
+        if (a == b || ADJACENT.get(a).contains(b)) {
+          continue;
+        }
+
+        Set<Integer> neighbors = new HashSet<>(ADJACENT.get(a));
+        neighbors.addAll(ADJACENT.get(b));
+        int colors = this.getColorCount(union(KILLED.get(a), KILLED.get(b)));
+        int significant = 0;
+        for (int n : neighbors) {
+          if (ADJACENT.get(n).size() >= this.getColorCount(KILLED.get(n))) {
+            significant++;
+          }
+        }
+
+        if (significant < colors) {
+          this.merge(a, b);
+          changed = true;
+        }
+      }
+    } while (changed);
+  }
+
+  /**
+   * Simplifies the graph onto a stack, then pops each node and gives it the
+   * first register its neighbors aren't using. Nodes left without one spill.
+   */
+  private void color() {
+    Set<Integer> remaining = new HashSet<>();
+    int[] degrees = new int[NODES.size()];
+    for (int i = 0; i < NODES.size(); i++) {
+      if (this.find(i) == i) {
+        remaining.add(i);
+        degrees[i] = ADJACENT.get(i).size();
+      }
+    }
+
+    Stack<Integer> stack = new Stack<>();
+    while (!remaining.isEmpty()) {
+      int next = -1;
+      for (int n : remaining) {
+        if (degrees[n] < this.getColorCount(KILLED.get(n))) {
+          next = n;
+          break;
+        }
+      }
+
+      // Everyone is significant, so push the cheapest node optimistically.
+      if (next == -1) {
+        for (int n : remaining) {
+          if (next == -1 || SPILL_COSTS[n] / degrees[n] < SPILL_COSTS[next] / degrees[next]) {
+            next = n;
+          }
+        }
+      }
+
+      remaining.remove(next);
+      stack.push(next);
+      for (int n : ADJACENT.get(next)) {
+        degrees[n]--;
+      }
+    }
+
+    MIPSReg[] colors = new MIPSReg[NODES.size()];
+    while (!stack.isEmpty()) {
+      int node = stack.pop();
+      Set<MIPSReg> taken = new HashSet<>();
+      for (int n : ADJACENT.get(node)) {
+        if (colors[n] != null) {
+          taken.add(colors[n]);
+        }
+      }
+
+      for (MIPSReg reg : this.getAllowedRegisters(KILLED.get(node))) {
+        if (!taken.contains(reg)) {
+          colors[node] = reg;
+          break;
+        }
+      }
+    }
+
+    for (int i = 0; i < NODES.size(); i++) {
+      MIPSReg reg = colors[this.find(i)];
+      if (reg != null) {
+        ASSIGNMENT.put(NODES.get(i), reg);
+      }
+    }
+  }
+
+  /**
+   * Merges node b into node a. Node a takes over b's neighbors, spill cost,
+   * and the registers it can't use.
+   *
+   * @param a - representative node that survives.
+   * @param b - representative node that's removed.
+   */
+  private void merge(int a, int b) {
+    for (int n : ADJACENT.get(b)) {
+      ADJACENT.get(n).remove(b);
+      ADJACENT.get(n).add(a);
+      ADJACENT.get(a).add(n);
+    }
+
+    ADJACENT.get(b).clear();
+    ALIAS[b] = a;
+    KILLED.get(a).addAll(KILLED.get(b));
+    SPILL_COSTS[a] += SPILL_COSTS[b];
+  }
+
+  /**
+   * @param node - node number.
+   *
+   * @return node that this node was coalesced into.
+   */
+  private int find(int node) {
+    while (ALIAS[node] != node) {
+      node = ALIAS[node];
+    }
+
+    return node;
+  }
+
+  /**
+   * Adds an undirected edge between two nodes.
+   *
+   * @param a - node number.
+   * @param b - node number.
+   */
+  private void addEdge(int a, int b) {
+    if (ADJACENT.get(a).add(b)) {
+      ADJACENT.get(b).add(a);
+      this.edgeCount++;
+    }
+  }
+
+  /**
+   * @param killed - registers the node can't use.
+   *
+   * @return number of registers available to the node.
+   */
+  private int getColorCount(Set<MIPSReg> killed) {
+    return this.getAllowedRegisters(killed).size();
+  }
+
+  /**
+   * @param a - set of registers.
+   * @param b - set of registers.
+   *
+   * @return a new set holding the registers of both.
+   */
+  private static Set<MIPSReg> union(Set<MIPSReg> a, Set<MIPSReg> b) {
+    Set<MIPSReg> regs = new HashSet<>(a);
+    regs.addAll(b);
+    return regs;
+  }
+
+  /**
+   * @param tac - 3AC instruction.
+   *
+   * @return true if the instruction just copies op1 into res.
+   */
+  private static boolean isCopy(LinkedList<String> tac) {
+    String op = tac.get(3);
+    return op.equals("=") || op.contains("widen") || op.contains("narrow");
+  }
+
+  /**
+   * Sets the largest interference graph, in edges, that is colored before
+   * falling back to linear scan.
+   *
+   * @param size - number of edges.
+   *
+   * @throws IllegalArgumentException if the size is negative.
+   *
+   * @return void.
+   */
+  public static void setMaxGraphSize(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("interference graph size must be non-negative.");
+    }
+
+    maxGraphSize = size;
+  }
+
+  public static int getMaxGraphSize() {
+    return maxGraphSize;
+  }
+}
@@ -0,0 +1,91 @@
+package edu.joshuacrotts.littlec.mipsgen;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import edu.joshuacrotts.littlec.icode.LiveInterval;
+import edu.joshuacrotts.littlec.icode.LivenessAnalysis;
+
+/**
+ * Linear-scan register allocator (Poletto and Sarkar). Live intervals are
+ * visited in order of their start line; each one takes a free register if it
+ * can. When none is free, whichever of the current interval and the active
+ * intervals ends last gives up its register and spills to its stack slot for
+ * its whole lifetime.
+ *
+ * @author Joshua Crotts
+ */
+public class LinearScanAllocator extends RegisterAllocator {
+
+  /**
+   * @param liveness      - liveness of the function body.
+   * @param firstSavedReg - first $s register that isn't used for parameters.
+   */
+  public LinearScanAllocator(LivenessAnalysis liveness, int firstSavedReg) {
+    super(liveness, firstSavedReg);
+  }
+
+  @Override
+  public Map<String, MIPSReg> allocate() {
+    PriorityQueue<LiveInterval> active = new PriorityQueue<>(Comparator.comparingInt(LiveInterval::getEnd));
+    Set<MIPSReg> busy = new HashSet<>();
+
+    for (LiveInterval interval : LIVENESS.getLiveIntervals()) {
+      String name = interval.getName();
+      if (!CANDIDATES.contains(name)) {
+        continue;
+      }
+
+      // Free the registers of every interval that ended before this one starts.
+      while (!active.isEmpty() && active.peek().getEnd() < interval.getStart()) {
+        busy.remove(ASSIGNMENT.get(active.poll().getName()));
+      }
+
+      MIPSReg reg = null;
+      for (MIPSReg r : this.getAllowedRegisters(name)) {
+        if (!busy.contains(r)) {
+          reg = r;
+          break;
+        }
+      }
+
+      if (reg != null) {
+        ASSIGNMENT.put(name, reg);
+        busy.add(reg);
+        active.add(interval);
+      } else {
+        this.spillAtInterval(interval, active);
+      }
+    }
+
+    return ASSIGNMENT;
+  }
+
+  /**
+   * Handles an interval that found no free register. The active interval that
+   * ends last and holds a register this one is allowed to use is the spill
+   * candidate; if it outlives the current interval, it spills and hands its
+   * register over. Otherwise, the current interval spills.
+   *
+   * @param interval - interval that needs a register.
+   * @param active   - intervals currently holding a register.
+   */
+  private void spillAtInterval(LiveInterval interval, PriorityQueue<LiveInterval> active) {
+    LiveInterval spill = null;
+    for (LiveInterval other : active) {
+      if (this.getAllowedRegisters(interval.getName()).contains(ASSIGNMENT.get(other.getName()))
+          && (spill == null || other.getEnd() > spill.getEnd())) {
+        spill = other;
+      }
+    }
+
+    if (spill != null && spill.getEnd() > interval.getEnd()) {
+      ASSIGNMENT.put(interval.getName(), ASSIGNMENT.remove(spill.getName()));
+      active.remove(spill);
+      active.add(interval);
+    }
+  }
+}
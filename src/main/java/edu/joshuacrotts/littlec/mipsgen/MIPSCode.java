@@ -0,0 +1,93 @@
+package edu.joshuacrotts.littlec.mipsgen;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An ordered stream of MIPS instructions. CodeGeneration emits into one of
+ * these for each function, MIPSOptimizer rewrites it in place, and MIPSGen
+ * turns it into assembly text once everything else is done.
+ *
+ * @author Joshua Crotts
+ */
+public class MIPSCode implements Iterable<MIPSInstruction> {
+
+  /** Instructions, in program order. */
+  private final ArrayList<MIPSInstruction> INSTRUCTIONS;
+
+  public MIPSCode() {
+    this.INSTRUCTIONS = new ArrayList<>();
+  }
+
+  /**
+   * Appends an instruction to the end of the stream.
+   *
+   * @param inst - instruction to append.
+   *
+   * @return void.
+   */
+  public void add(MIPSInstruction inst) {
+    this.INSTRUCTIONS.add(inst);
+  }
+
+  /**
+   * Appends every instruction of another stream to the end of this one.
+   *
+   * @param code - instructions to append.
+   *
+   * @return void.
+   */
+  public void addAll(MIPSCode code) {
+    this.INSTRUCTIONS.addAll(code.INSTRUCTIONS);
+  }
+
+  public MIPSInstruction get(int i) {
+    return this.INSTRUCTIONS.get(i);
+  }
+
+  public void set(int i, MIPSInstruction inst) {
+    this.INSTRUCTIONS.set(i, inst);
+  }
+
+  public void remove(int i) {
+    this.INSTRUCTIONS.remove(i);
+  }
+
+  public int size() {
+    return this.INSTRUCTIONS.size();
+  }
+
+  /**
+   * @return the instructions as a list that may be modified in place.
+   */
+  public List<MIPSInstruction> getInstructions() {
+    return this.INSTRUCTIONS;
+  }
+
+  @Override
+  public Iterator<MIPSInstruction> iterator() {
+    return this.INSTRUCTIONS.iterator();
+  }
+
+  /**
+   * Writes the instructions as assembly text, one per line.
+   *
+   * @param sb - StringBuilder to append to.
+   *
+   * @return void.
+   */
+  public void appendTo(StringBuilder sb) {
+    for (MIPSInstruction inst : this.INSTRUCTIONS) {
+      inst.appendTo(sb);
+      sb.append('\n');
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    this.appendTo(sb);
+    return sb.toString();
+  }
+}
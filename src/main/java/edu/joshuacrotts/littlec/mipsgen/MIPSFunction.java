@@ -1,13 +1,21 @@
 package edu.joshuacrotts.littlec.mipsgen;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.Set;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
 
 import edu.joshuacrotts.littlec.icode.BasicBlock;
 import edu.joshuacrotts.littlec.icode.FunctionBlock;
 import edu.joshuacrotts.littlec.icode.ICAddress;
+import edu.joshuacrotts.littlec.icode.ICOptimizer;
+import edu.joshuacrotts.littlec.icode.ICUtilities;
+import edu.joshuacrotts.littlec.icode.LiveInterval;
+import edu.joshuacrotts.littlec.icode.LivenessAnalysis;
 import edu.joshuacrotts.littlec.main.LCUtilities;
 
 /**
@@ -26,9 +34,43 @@ public class MIPSFunction {
   protected int numParams = 0;
 
   /**
-   * Current number of parameters being used.
+   * Params that were emitted but whose call hasn't been reached yet, most
+   * recent first. A call takes its arguments off the top, so the params of an
+   * outer call stay here while a nested call is set up (see test3x). Each entry
+   * is the number of the param instruction, counting from 0.
    */
-  protected int currentParamCount = 0;
+  protected final LinkedList<Integer> pendingParams;
+
+  /**
+   * Number of param instructions that have been emitted so far.
+   */
+  protected int emittedParamCount = 0;
+
+  /**
+   * Index of the argument that each param instruction passes, in the order the
+   * params appear in the function.
+   */
+  private final ArrayList<Integer> paramArgIndex;
+
+  /**
+   * True for each param instruction that has a nested call between it and its
+   * own call. Such a param can't go straight into an $a register or the
+   * outgoing argument area, since the nested call would overwrite it, so it's
+   * held in its own slot until its call.
+   */
+  private final ArrayList<Boolean> paramHeld;
+
+  /**
+   * Bytes at the bottom of the frame for arguments past the fourth. The callee
+   * finds them at 0($s7) and up.
+   */
+  private int outgoingArgSize;
+
+  /**
+   * Bytes above the outgoing argument area for params that are held across a
+   * nested call. There is one slot per depth of the pending param stack.
+   */
+  private int heldArgSize;
 
   /**
    * ProgState object.
@@ -43,7 +85,8 @@ public class MIPSFunction {
 
   /**
    * Track which temp variables have been allocated memory, and where they are
-   * (offsets). Note that all temp variables are 4 bytes long.
+   * (offsets). Note that all temp variables are 4 bytes long, and temps that are
+   * never live at the same time may share an offset.
    */
   private final HashMap<String, Integer> tempVarLoc;
 
@@ -53,6 +96,19 @@ public class MIPSFunction {
    */
   private final HashMap<String, Integer> localVarLoc;
 
+  /**
+   * Track which variables were given a register by the register allocator.
+   * These never get a stack slot of their own.
+   */
+  private final HashMap<String, MIPSReg> registerLoc;
+
+  /**
+   * $s registers handed out by the register allocator. Like the registers that
+   * hold parameters, these are saved in the prologue and restored in the
+   * epilogue.
+   */
+  private final LinkedList<MIPSReg> savedRegisters;
+
   /**
    * Boolean to determine if this function calls another function. If not, we can
    * optimize $ra to just store that return address.
@@ -75,31 +131,85 @@ public class MIPSFunction {
   private int maxArgRegSize;
 
   /**
-   * The size of the stack allocated for this function.
+   * The size of the stack allocated for this function. Zero if the function
+   * doesn't need a frame at all.
    */
   private int stackSpace;
 
   /**
-   * Return address for this function.
+   * Offset from $sp where $ra is saved, or -1 if this is a leaf function.
    */
   private int returnAddress;
 
   /**
-   * Previous function pointer stored in the stack.
+   * Offset from $sp where the caller's $fp is saved, or -1 if the body never
+   * uses $fp.
    */
   private int previousFunctionPointer;
 
   /**
-   * Value of s7 register saved on the stack.
+   * Offset from $sp where the caller's $s7 is saved, or -1 if the body never
+   * reads an argument off the stack.
    */
   private int s7Register;
 
-  public MIPSFunction(FunctionBlock block) {
-    this.currentParamCount = 0;
+  /**
+   * Offset from $sp that $fp points to: the top of the local and temp area.
+   */
+  private int framePointer;
+
+  /**
+   * Bytes under $fp that the body actually addresses. Locals and temps that
+   * live in registers never touch theirs, so this can be smaller than the
+   * space the intermediate code reserved.
+   */
+  private int frameDataSize;
+
+  /**
+   * Offset from $sp of the first saved $s register.
+   */
+  private int savedRegisterBase;
+
+  /**
+   * $s registers that the prologue moves parameters into. Only the ones the
+   * body actually reads are kept.
+   */
+  private final LinkedList<MIPSReg> paramRegisters;
+
+  /**
+   * Print the frame layout of every function to stderr?
+   */
+  private static boolean dumpFrameLayouts = false;
+
+  /**
+   * Start of every label this function makes up for itself. The function's
+   * position in the program keeps it apart from every other function's labels,
+   * so functions can be generated in any order and still get the same names.
+   */
+  private final String compilerLabelPrefix;
+
+  /**
+   * Number of labels this function has made up so far.
+   */
+  private int compilerLabelCount = 0;
+
+  /**
+   * @param block - three-address code of the function.
+   * @param index - position of the function in the program, which names its
+   *              compiler-generated labels.
+   */
+  public MIPSFunction(FunctionBlock block, int index) {
+    this.compilerLabelPrefix = "CL" + index + "_";
+    this.pendingParams = new LinkedList<>();
+    this.paramArgIndex = new ArrayList<>();
+    this.paramHeld = new ArrayList<>();
     this.tempVarSize = 0;
     this.localVarSize = 0;
     this.tempVarLoc = new HashMap<>();
     this.localVarLoc = new HashMap<>();
+    this.registerLoc = new HashMap<>();
+    this.savedRegisters = new LinkedList<>();
+    this.paramRegisters = new LinkedList<>();
     this.functionBlock = block;
     this.initSizes();
 
@@ -113,18 +223,17 @@ public class MIPSFunction {
    * 
    * @param void.
    * 
-   * @return String representation of instructions.
+   * @return stream of instructions, prologue through epilogue.
    */
-  public String genMIPS() {
+  public MIPSCode genMIPS() {
     // The function name is the first element in the first row of the "instruction
     // list."
     String fnName = this.functionBlock.getFunctionName();
-    StringBuilder sb = new StringBuilder();
+    MIPSCode code = new MIPSCode();
 
-    // Generate the three pieces individually so we can back-patch.
-    String prologue = "";
-    String epilogue = "";
-    StringBuilder fnBody = new StringBuilder();
+    // Generate the body first so the prologue can be back-patched with the
+    // frame size.
+    MIPSCode fnBody = new MIPSCode();
 
     // Generate the function body.
     LinkedList<BasicBlock> basicBlocks = this.functionBlock.generateFunctionBasicBlocks();
@@ -134,25 +243,24 @@ public class MIPSFunction {
       BasicBlock bb = basicBlocks.get(i);
       for (int j = 0; j < bb.getNumberOfInstructions(); j++) {
         LinkedList<String> tac = bb.getCurrentInstruction(j);
-        fnBody.append(CodeGeneration.genInstruction(this, progState, tac.get(0), tac.get(1), tac.get(2), tac.get(3)));
+        CodeGeneration.genInstruction(fnBody, this, progState, tac.get(0), tac.get(1), tac.get(2), tac.get(3));
       }
       progState.clearTempRegisters();
     }
 
-    // Generate the prologue and epilogue; we back-patch the prologue.
-    prologue = this.genPrologue(fnName);
-    epilogue = this.genEpilogue(fnName);
+    // Generate the prologue, function body, and epilogue in order.
+    this.layOutFrame(fnBody);
+    this.genPrologue(code, fnName);
+    code.addAll(fnBody);
+    this.genEpilogue(code, fnName);
 
-    // Append the prologue, function body, and epilogue to the main SB.
-    sb.append(prologue);
-    sb.append(fnBody);
-    sb.append(epilogue);
-
-    return sb.toString();
+    return code;
   }
 
   /**
-   * Adds a temporary variable to the lookup table.
+   * Adds a temporary variable to the lookup table. Temps seen by
+   * allocateTempSlots already have a slot, so this only grows the frame for temps
+   * that it skipped.
    * 
    * @param name
    * 
@@ -168,6 +276,26 @@ public class MIPSFunction {
     return loc;
   }
 
+  /**
+   * @param name - IC address.
+   * 
+   * @return register that the allocator assigned to the name, or null if it
+   *         lives in memory.
+   */
+  public MIPSReg getRegLoc(ICAddress name) {
+    return registerLoc.get(name.getName());
+  }
+
+  /**
+   * @param reg - MIPS register.
+   * 
+   * @return true if the register holds a variable of this function, meaning
+   *         it can't be used as scratch space.
+   */
+  public boolean isAllocatedRegister(MIPSReg reg) {
+    return registerLoc.containsValue(reg);
+  }
+
   /**
    * Adds a local variable to the lookup table.
    * 
@@ -186,152 +314,304 @@ public class MIPSFunction {
   }
 
   /**
-   * Generates the function prologue for the function name provided. As of now,
-   * the stack size and other offsets are computed in the initSize first pass
-   * through the function block, and it works, but arguments still need to be
-   * calculated.
+   * @param param - number of the param instruction, counting from 0.
    * 
-   * @param fnName - function name without gf_ prefix.
+   * @return index of the argument it passes.
+   */
+  public int getParamArgIndex(int param) {
+    return this.paramArgIndex.get(param);
+  }
+
+  /**
+   * @param param - number of the param instruction, counting from 0.
    * 
-   * @return String representation of instructions.
+   * @return true if a nested call comes between the param and its call.
    */
-  private String genPrologue(String fnName) {
-    // We can optimize the $ra register by omitting it if this function does
-    // *not* call another function.
-    int calleeSavedSpace = this.isCallingOtherFunction ? 12 : 8;
+  public boolean isParamHeld(int param) {
+    return this.paramHeld.get(param);
+  }
 
-    // SP saves necessary $s registers (min of 4 and however many we use), the # of
-    // temp vars generated in 3AC, and the local var size, alongside the callee
-    // saved space.
-    this.stackSpace = Math.min(4, this.maxArgRegSize) * 4 + this.tempVarSize
-        + LCUtilities.getNextAddress(this.localVarSize) + calleeSavedSpace;
+  /**
+   * @param argIdx - index of an argument past the fourth.
+   * 
+   * @return location in the outgoing argument area that the callee reads the
+   *         argument from.
+   */
+  public MIPSOperand getOutgoingArgSlot(int argIdx) {
+    return MIPSOperand.address((argIdx - MIPSReg.NUM_AREG) * 4, MIPSReg.spReg());
+  }
 
-    this.returnAddress = this.isCallingOtherFunction ? stackSpace - 4 : stackSpace;
-    this.previousFunctionPointer = this.returnAddress - 4;
-    this.s7Register = this.previousFunctionPointer - 4;
+  /**
+   * @param depth - depth of the param in the pending param stack.
+   * 
+   * @return location that holds the param across a nested call.
+   */
+  public MIPSOperand getHeldArgSlot(int depth) {
+    return MIPSOperand.address(this.outgoingArgSize + depth * 4, MIPSReg.spReg());
+  }
+
+  /**
+   * Decides what the frame of this function has to hold, now that the body has
+   * been generated. A register is only saved if the body (or a call it makes)
+   * could change it, and an area is only reserved if the body uses it:
+   * 
+   * - $ra, if the function calls another function.
+   * - $fp, if the body addresses memory off of $fp, along with as much of the
+   * local and temp area under it as the body reaches.
+   * - $s7, if the body reads an argument off the stack.
+   * - $s0-$s3, for each parameter the body reads out of its $s register.
+   * - The $s registers the register allocator handed out.
+   * - The outgoing and held argument areas, which are already sized.
+   * 
+   * From the bottom of the frame up, the layout is the outgoing arguments, held
+   * arguments, temps, locals, saved $s registers, $s7, $fp, then $ra. A leaf
+   * function whose values all fit in registers needs none of it, so it gets no
+   * frame at all.
+   * 
+   * @param body - instructions of the function body.
+   * 
+   * @return void.
+   */
+  private void layOutFrame(MIPSCode body) {
+    HashSet<MIPSReg> usedRegs = new HashSet<>();
+    int lowestFpOffset = 0;
+    for (MIPSInstruction inst : body) {
+      for (MIPSOperand operand : inst.getOperands()) {
+        if (operand.isRegister() || operand.isAddress()) {
+          usedRegs.add(operand.getRegister());
+        }
+        if (operand.isAddress() && operand.getRegister().equals(MIPSReg.fpReg())) {
+          lowestFpOffset = Math.min(lowestFpOffset, operand.getValue());
+        }
+      }
+    }
+
+    for (int i = 0; i < this.maxArgRegSize && i < MIPSReg.NUM_AREG; i++) {
+      if (usedRegs.contains(MIPSReg.sReg(i))) {
+        this.paramRegisters.add(MIPSReg.sReg(i));
+      }
+    }
+
+    boolean usesFramePointer = usedRegs.contains(MIPSReg.fpReg());
+    this.frameDataSize = LCUtilities.getNextAddress(-lowestFpOffset);
+    int offset = this.outgoingArgSize + this.heldArgSize + this.frameDataSize;
+    this.framePointer = offset;
+
+    this.savedRegisterBase = offset;
+    offset += (this.paramRegisters.size() + this.savedRegisters.size()) * 4;
+
+    this.s7Register = usedRegs.contains(MIPSReg.sReg(7)) ? offset : -1;
+    offset += this.s7Register >= 0 ? 4 : 0;
+    this.previousFunctionPointer = usesFramePointer ? offset : -1;
+    offset += usesFramePointer ? 4 : 0;
+    this.returnAddress = this.isCallingOtherFunction ? offset : -1;
+    offset += this.isCallingOtherFunction ? 4 : 0;
 
     // SP must be aligned on 8-byte boundaries.
-    this.stackSpace = LCUtilities.getNextMIPSAddress(this.stackSpace);
+    this.stackSpace = LCUtilities.getNextMIPSAddress(offset);
+  }
 
+  /**
+   * Returns a description of the frame chosen by layOutFrame: what's in it, at
+   * which offset from $sp, and how many instructions the prologue and epilogue
+   * spend on it.
+   * 
+   * @param void.
+   * 
+   * @return frame layout, one line per item.
+   */
+  public String getFrameLayout() {
+    String fnName = "gf_" + this.functionBlock.getFunctionName();
     StringBuilder sb = new StringBuilder();
-    // Append the prologue starting label.
-    sb.append("gf_");
-    sb.append(fnName);
-    sb.append(":\n");
-    sb.append("\t.globl");
-    sb.append(" ");
-    sb.append("gf_");
-    sb.append(fnName);
-    sb.append("\n");
-
-    sb.append("\tsubu $sp, $sp, " + this.stackSpace).append("\n");
-    if (this.isCallingOtherFunction) {
-      sb.append("\tsw $ra, " + this.returnAddress + "($sp)").append("\n");
+    int saved = this.paramRegisters.size() + this.savedRegisters.size() + (this.s7Register >= 0 ? 1 : 0)
+        + (this.previousFunctionPointer >= 0 ? 1 : 0) + (this.returnAddress >= 0 ? 1 : 0);
+
+    // Each saved register costs a store and a load, and the frame itself
+    // costs a subu and an addiu. $fp and $s7 each cost one more to set up,
+    // and each parameter one more to move out of its $a register.
+    int cost = 2 * saved + (this.stackSpace > 0 ? 2 : 0) + (this.previousFunctionPointer >= 0 ? 1 : 0)
+        + (this.s7Register >= 0 ? 1 : 0) + this.paramRegisters.size();
+
+    sb.append(fnName).append(": ");
+    sb.append(this.isCallingOtherFunction ? "non-leaf" : "leaf");
+    sb.append(this.stackSpace == 0 ? ", frameless" : ", " + this.stackSpace + " byte frame");
+    sb.append(", ").append(cost).append(" prologue/epilogue instructions\n");
+
+    appendFrameItem(sb, "$ra", this.returnAddress, 4);
+    appendFrameItem(sb, "$fp", this.previousFunctionPointer, 4);
+    appendFrameItem(sb, "$s7", this.s7Register, 4);
+    int offset = this.savedRegisterBase;
+    for (MIPSReg reg : this.paramRegisters) {
+      appendFrameItem(sb, reg + " (param)", offset, 4);
+      offset += 4;
+    }
+    for (MIPSReg reg : this.savedRegisters) {
+      appendFrameItem(sb, reg.toString(), offset, 4);
+      offset += 4;
     }
-    sb.append("\tsw $fp, " + this.previousFunctionPointer + "($sp)").append("\n");
-    sb.append("\tsw $s7, " + this.s7Register + "($sp)").append("\n");
-    sb.append(this.saveArgRegisters());
-    sb.append("\taddiu $fp, $sp, " + (this.s7Register - (this.maxArgRegSize * 4))).append("\n");
-    sb.append("\taddiu $s7, $sp, " + this.stackSpace).append("\n");
+    if (this.frameDataSize > 0) {
+      int reserved = LCUtilities.getNextAddress(this.localVarSize) + this.tempVarSize;
+      appendFrameItem(sb, "locals and temps (" + reserved + " reserved)", this.framePointer - this.frameDataSize,
+          this.frameDataSize);
+    }
+    appendFrameItem(sb, "held args", this.outgoingArgSize, this.heldArgSize);
+    appendFrameItem(sb, "outgoing args", 0, this.outgoingArgSize);
 
     return sb.toString();
   }
 
   /**
-   * Generates the epilogue for the function name provided.
+   * Appends one line of a frame layout, if the item takes up any space.
+   * 
+   * @param sb     - StringBuilder to append to.
+   * @param name   - what the item is.
+   * @param offset - offset of the item from $sp, or -1 if it isn't saved.
+   * @param size   - size of the item in bytes.
+   * 
+   * @return void.
+   */
+  private static void appendFrameItem(StringBuilder sb, String name, int offset, int size) {
+    if (offset < 0 || size == 0) {
+      return;
+    }
+
+    sb.append("    ").append(name).append(": ").append(offset).append("($sp), ").append(size).append(" bytes\n");
+  }
+
+  /**
+   * Generates the function prologue for the function name provided, using the
+   * frame chosen by layOutFrame. A frameless function's prologue is just its
+   * label.
    * 
+   * @param code   - stream to append to.
    * @param fnName - function name without gf_ prefix.
    * 
-   * @return String representation of instructions.
+   * @return void.
    */
-  private String genEpilogue(String fnName) {
-    StringBuilder sb = new StringBuilder();
-    // Append the epilogue starting label.
-    sb.append("xf_");
-    sb.append(fnName);
-    sb.append(":\n");
-
-    sb.append(this.loadArgRegisters());
-    sb.append("\tlw $s7, " + this.s7Register + "($sp)").append("\n");
-    sb.append("\tlw $fp, " + this.previousFunctionPointer + "($sp)").append("\n");
-    if (this.isCallingOtherFunction) {
-      sb.append("\tlw $ra, " + this.returnAddress + "($sp)").append("\n");
+  private void genPrologue(MIPSCode code, String fnName) {
+    MIPSReg sp = MIPSReg.spReg();
+    MIPSReg s7 = MIPSReg.sReg(7);
+
+    // Append the prologue starting label.
+    MIPSInstruction.genLabel(code, "gf_" + fnName);
+    MIPSInstruction.genGlobal(code, "gf_" + fnName);
+
+    if (this.stackSpace == 0) {
+      return;
     }
-    sb.append("\taddiu $sp, $sp, " + this.stackSpace).append("\n");
-    sb.append("\tjr $ra").append("\n");
 
-    return sb.toString();
+    MIPSInstruction.genBinaryOp(code, MIPSOpcode.SUBU, sp, sp, this.stackSpace);
+    if (this.returnAddress >= 0) {
+      MIPSInstruction.genStore(code, MIPSOpcode.SW, MIPSReg.raReg(), MIPSOperand.address(this.returnAddress, sp));
+    }
+    if (this.previousFunctionPointer >= 0) {
+      MIPSInstruction.genStore(code, MIPSOpcode.SW, MIPSReg.fpReg(),
+          MIPSOperand.address(this.previousFunctionPointer, sp));
+    }
+    if (this.s7Register >= 0) {
+      MIPSInstruction.genStore(code, MIPSOpcode.SW, s7, MIPSOperand.address(this.s7Register, sp));
+    }
+    this.saveArgRegisters(code);
+    if (this.previousFunctionPointer >= 0) {
+      MIPSInstruction.genBinaryOp(code, MIPSOpcode.ADDIU, MIPSReg.fpReg(), sp, this.framePointer);
+    }
+    if (this.s7Register >= 0) {
+      MIPSInstruction.genBinaryOp(code, MIPSOpcode.ADDIU, s7, sp, this.stackSpace);
+    }
   }
 
   /**
-   * Saves all necessary $s0 registers into memory. Then, all argument registers
-   * needed $a0-$an are moved into $s0-$sn. This is called during the function
-   * prologue.
+   * Generates the epilogue for the function name provided, undoing whatever
+   * the prologue set up.
    * 
-   * @param void.
+   * @param code   - stream to append to.
+   * @param fnName - function name without gf_ prefix.
    * 
-   * @return String representation of MIPS instructions.
+   * @return void.
    */
-  private String saveArgRegisters() {
-    // If we don't use any parameters then there's nothing to save, even
-    // if we call functions.
-    StringBuilder sb = new StringBuilder();
-    int offset = this.s7Register - (this.maxArgRegSize * MIPSReg.NUM_AREG);
-    for (int i = 0; i < this.maxArgRegSize && i < MIPSReg.NUM_AREG; i++, offset += MIPSReg.NUM_AREG) {
-      // Store the word into memory.
-      sb.append("\tsw");
-      sb.append(" $s");
-      sb.append(i);
-      sb.append(", ");
-      sb.append(offset);
-      sb.append("($sp)");
-      sb.append("\n");
-
-      // Move ax into sx
-      sb.append("\tmove");
-      sb.append(" $s");
-      sb.append(i);
-      sb.append(", $a");
-      sb.append(i);
-      sb.append("\n");
+  private void genEpilogue(MIPSCode code, String fnName) {
+    MIPSReg sp = MIPSReg.spReg();
+
+    // Append the epilogue starting label.
+    MIPSInstruction.genLabel(code, "xf_" + fnName);
 
+    if (this.stackSpace > 0) {
+      this.loadArgRegisters(code);
+      if (this.s7Register >= 0) {
+        MIPSInstruction.genLoad(code, MIPSOpcode.LW, MIPSReg.sReg(7), MIPSOperand.address(this.s7Register, sp));
+      }
+      if (this.previousFunctionPointer >= 0) {
+        MIPSInstruction.genLoad(code, MIPSOpcode.LW, MIPSReg.fpReg(),
+            MIPSOperand.address(this.previousFunctionPointer, sp));
+      }
+      if (this.returnAddress >= 0) {
+        MIPSInstruction.genLoad(code, MIPSOpcode.LW, MIPSReg.raReg(), MIPSOperand.address(this.returnAddress, sp));
+      }
+      MIPSInstruction.genBinaryOp(code, MIPSOpcode.ADDIU, sp, sp, this.stackSpace);
+    }
+    MIPSInstruction.genJumpRegister(code, MIPSReg.raReg());
+  }
+
+  /**
+   * Saves the $s registers that hold parameters into memory, then moves the
+   * parameters out of $a0-$an into them. The $s registers given out by the
+   * register allocator are saved after those. This is called during the
+   * function prologue.
+   * 
+   * @param code - stream to append to.
+   * 
+   * @return void.
+   */
+  private void saveArgRegisters(MIPSCode code) {
+    int offset = this.savedRegisterBase;
+    for (int i = 0; i < this.maxArgRegSize && i < MIPSReg.NUM_AREG; i++) {
       MIPSReg sReg = MIPSReg.sReg(i);
       MIPSReg aReg = MIPSReg.aReg(i);
+      if (!this.paramRegisters.contains(sReg)) {
+        continue;
+      }
+
+      // Store the word into memory, then move ax into sx.
+      MIPSInstruction.genStore(code, MIPSOpcode.SW, sReg, MIPSOperand.address(offset, MIPSReg.spReg()));
+      MIPSInstruction.genMove(code, sReg, aReg);
       this.progState.copyVal(sReg, aReg);
+      offset += 4;
     }
 
-    return sb.toString();
+    for (MIPSReg sReg : this.savedRegisters) {
+      MIPSInstruction.genStore(code, MIPSOpcode.SW, sReg, MIPSOperand.address(offset, MIPSReg.spReg()));
+      offset += 4;
+    }
   }
 
   /**
-   * Loads the data from memory back into the $s0 registers. This is called during
-   * the function epilogue.
+   * Loads the data from memory back into the $s registers, including the ones
+   * given out by the register allocator. This is called during the function
+   * epilogue.
    * 
-   * @param void.
+   * @param code - stream to append to.
    * 
-   * @return String representation of MIPS instructions.
+   * @return void.
    */
-  private String loadArgRegisters() {
-    StringBuilder sb = new StringBuilder();
-    int offset = this.s7Register - (this.maxArgRegSize * MIPSReg.NUM_AREG);
-    for (int i = 0; i < this.maxArgRegSize && i < MIPSReg.NUM_AREG; i++, offset += MIPSReg.NUM_AREG) {
-      // Load the word from memory.
-      sb.append("\tlw");
-      sb.append(" $s");
-      sb.append(i);
-      sb.append(", ");
-      sb.append(offset);
-      sb.append("($sp)");
-      sb.append("\n");
+  private void loadArgRegisters(MIPSCode code) {
+    int offset = this.savedRegisterBase;
+    for (MIPSReg sReg : this.paramRegisters) {
+      MIPSInstruction.genLoad(code, MIPSOpcode.LW, sReg, MIPSOperand.address(offset, MIPSReg.spReg()));
+      offset += 4;
     }
 
-    return sb.toString();
+    for (MIPSReg sReg : this.savedRegisters) {
+      MIPSInstruction.genLoad(code, MIPSOpcode.LW, sReg, MIPSOperand.address(offset, MIPSReg.spReg()));
+      offset += 4;
+    }
   }
 
   /**
    * Performs an initial pass through the function to set temporary variable sizes
    * and determine the max number of arguments used (when we may or may not need
-   * to save $a registers).
+   * to save $a registers). This also works out where every param instruction
+   * puts its argument, and sizes the outgoing argument area once for the whole
+   * function.
    * 
    * @param void.
    * 
@@ -340,12 +620,41 @@ public class MIPSFunction {
   private void initSizes() {
     this.localVarSize = LCUtilities
         .getNextAddress(Integer.parseInt(this.functionBlock.getInstructions().get(0).get(2)));
+
+    // Replay the pending param stack the same way codegen will. Each param
+    // remembers how many calls had been made when it was pushed; if that's
+    // changed by the time its own call pops it, a nested call came in between.
+    LinkedList<Integer> pending = new LinkedList<>();
+    ArrayList<Integer> callsAtParam = new ArrayList<>();
+    int callCount = 0;
+
     for (int i = 0; i < this.functionBlock.getInstructions().size(); i++) {
       LinkedList<String> currInst = this.functionBlock.getInstructions().get(i);
+      String op = currInst.get(3);
+      if (op.startsWith("param")) {
+        pending.push(this.paramArgIndex.size());
+        this.paramArgIndex.add(0);
+        this.paramHeld.add(false);
+        callsAtParam.add(callCount);
+      } else if (op.equals("call")) {
+        int argCount = Integer.parseInt(currInst.get(2));
+        for (int arg = 0; arg < argCount; arg++) {
+          int param = pending.pop();
+          boolean held = callsAtParam.get(param) != callCount;
+          this.paramArgIndex.set(param, arg);
+          this.paramHeld.set(param, held);
+          if (held) {
+            this.heldArgSize = Math.max(this.heldArgSize, (pending.size() + 1) * 4);
+          }
+        }
+        this.outgoingArgSize = Math.max(this.outgoingArgSize, (argCount - MIPSReg.NUM_AREG) * 4);
+        callCount++;
+      }
+
       for (int j = 0; j < currInst.size(); j++) {
         String s = currInst.get(j);
 
-        if (s.startsWith("t")) {
+        if (s.startsWith("t") && ICOptimizer.getOptimizationLevel() == 0) {
           this.getTVarLoc(new ICAddress(s));
         }
 
@@ -360,6 +669,83 @@ public class MIPSFunction {
         }
       }
     }
+
+    if (ICOptimizer.getOptimizationLevel() > 0) {
+      LivenessAnalysis liveness = new LivenessAnalysis(new ArrayList<>(this.functionBlock.getInstructions()));
+      this.allocateRegisters(liveness);
+      this.allocateTempSlots(liveness);
+    }
+  }
+
+  /**
+   * Runs the register allocator over this function. The first
+   * min(4, maxArgRegSize) $s registers hold our parameters, so the allocator
+   * only gets the ones after those. -O2 colors an interference graph, which
+   * also coalesces copies; -O1 uses the cheaper linear scan.
+   * 
+   * @param liveness - liveness of the function body.
+   * 
+   * @return void.
+   */
+  private void allocateRegisters(LivenessAnalysis liveness) {
+    int firstSavedReg = Math.min(MIPSReg.NUM_AREG, this.maxArgRegSize);
+    RegisterAllocator allocator = ICOptimizer.getOptimizationLevel() >= 2
+        ? new GraphColoringAllocator(liveness, firstSavedReg)
+        : new LinearScanAllocator(liveness, firstSavedReg);
+    this.registerLoc.putAll(allocator.allocate());
+
+    for (int i = firstSavedReg; i < MIPSReg.NUM_SREG; i++) {
+      if (this.registerLoc.containsValue(MIPSReg.sReg(i))) {
+        this.savedRegisters.add(MIPSReg.sReg(i));
+      }
+    }
+  }
+
+  /**
+   * Assigns stack slots to the temporaries of this function. Each temp needs a
+   * 4-byte slot, but two temps whose live intervals don't overlap can share one.
+   * Intervals are handed slots in order of their start line, and a slot goes
+   * back to the free list once the interval holding it has ended. Temps of
+   * different widths never share a slot, since a byte store leaves the upper
+   * bytes of the slot alone. Temps that live in a register don't need a slot.
+   * 
+   * @param liveness - liveness of the function body.
+   * 
+   * @return void.
+   */
+  private void allocateTempSlots(LivenessAnalysis liveness) {
+    PriorityQueue<LiveInterval> active = new PriorityQueue<>(Comparator.comparingInt(LiveInterval::getEnd));
+    Map<Integer, TreeSet<Integer>> freeSlots = new HashMap<>();
+
+    for (LiveInterval interval : liveness.getLiveIntervals()) {
+      String name = interval.getName();
+      if (!ICUtilities.isTemp(name) || this.registerLoc.containsKey(name)) {
+        continue;
+      }
+
+      // Release the slots of every interval that ended before this one starts.
+      while (!active.isEmpty() && active.peek().getEnd() < interval.getStart()) {
+        String expired = active.poll().getName();
+        freeSlots.computeIfAbsent(ICUtilities.getWidth(expired), w -> new TreeSet<>()).add(tempVarLoc.get(expired));
+      }
+
+      TreeSet<Integer> free = freeSlots.computeIfAbsent(ICUtilities.getWidth(name), w -> new TreeSet<>());
+      if (free.isEmpty()) {
+        this.tempVarSize += 4;
+        this.tempVarLoc.put(name, this.tempVarSize);
+      } else {
+        this.tempVarLoc.put(name, free.pollFirst());
+      }
+      active.add(interval);
+    }
+  }
+
+  /**
+   * @return a fresh label for code the generator makes up, such as the loop of
+   *         the power operator.
+   */
+  public String nextCompilerLabel() {
+    return this.compilerLabelPrefix + this.compilerLabelCount++;
   }
 
   public FunctionBlock getFunctionBlock() {
@@ -369,4 +755,20 @@ public class MIPSFunction {
   public ProgState getProgState() {
     return this.progState;
   }
+
+  /**
+   * Turns the frame layout dump on or off. While it's on, MIPSGen prints the
+   * layout of every function to stderr, in program order.
+   * 
+   * @param dump - true to print frame layouts.
+   * 
+   * @return void.
+   */
+  public static void setDumpFrameLayouts(boolean dump) {
+    dumpFrameLayouts = dump;
+  }
+
+  public static boolean isDumpingFrameLayouts() {
+    return dumpFrameLayouts;
+  }
 }
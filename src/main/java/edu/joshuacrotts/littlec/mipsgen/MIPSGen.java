@@ -1,62 +1,225 @@
 package edu.joshuacrotts.littlec.mipsgen;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import edu.joshuacrotts.littlec.icode.FunctionBlock;
 import edu.joshuacrotts.littlec.icode.ICode;
 import edu.joshuacrotts.littlec.icode.StringEntry;
+import edu.joshuacrotts.littlec.main.CompilationContext;
+import edu.joshuacrotts.littlec.main.LCUtilities;
 
 /**
  * The top-level class for generating MIPS target code from intermediate-code.
- * The constructor does all the work, and "toString" gives a string/printable
- * representation.
+ * "writeTo" generates the program one function at a time, writing each one out
+ * as soon as it's optimized, so only one function's code is held in memory at
+ * once. "toString" gives a string/printable representation; it's built once
+ * and kept. Both run inside the compilation the intermediate code came from,
+ * whichever thread calls them.
+ * 
+ * Functions don't depend on each other once the intermediate code is done, so
+ * they're generated and optimized on a pool of threads shared by every
+ * compilation and written out in program order. The compilation's context
+ * says how many of its functions may be in the pool at once. The labels a function makes up are named after its position
+ * in the program, so the output is the same no matter how many threads there
+ * are or which one finishes first.
  * 
  * @author Joshua Crotts
  */
 public class MIPSGen {
 
+  /**
+   * Number of functions generated at once unless a compilation sets a different
+   * number.
+   */
+  public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Pool every compilation generates its functions on. It's never resized or
+   * shut down, since other compilations may be submitting to it at any time;
+   * each compilation limits itself to its own number of functions at once
+   * instead.
+   */
+  private static final ForkJoinPool POOL = new ForkJoinPool(DEFAULT_PARALLELISM);
+
   /** 
    * List of function blocks generated by the intermediate code. 
    */
-  private static List<FunctionBlock> functionBlocks;
+  private final List<FunctionBlock> functionBlocks;
+
+  /**
+   * Compilation the intermediate code belongs to.
+   */
+  private final CompilationContext context;
 
   /** 
-   * String of assembly instructions for output. 
+   * String of data segment declarations for output. 
    */
   private StringBuilder mipsString;
 
+  /**
+   * Assembly text of the whole program, once toString has built it.
+   */
+  private String asmText;
+
+  /**
+   * Has writeTo generated the program yet? It can only be generated once.
+   */
+  private boolean isGenerated;
+
+  /**
+   * Does the next data declaration start on a word boundary? Byte data can
+   * leave it unaligned, in which case we need an .align before the next word.
+   */
+  private boolean isDataWordAligned;
+
   public MIPSGen(ICode iCode) {
     this.mipsString = new StringBuilder();
-    this.mipsString.append(MIPSReg.stdFunctions());
-    MIPSGen.functionBlocks = ICode.quad.generateFunctionBlocks();
+    this.context = iCode.getContext();
+    CompilationContext.Binding binding = this.context.bind();
+    try {
+      this.functionBlocks = new ArrayList<>(this.context.getQuad().generateFunctionBlocks());
+    } finally {
+      binding.unbind();
+    }
+  }
+
+  /**
+   * Generates the MIPS code for all three-address instructions, writing it out
+   * as it goes. Each function is generated, optimized, written, and then
+   * dropped; only a few more functions than there are threads are held at
+   * once. The data segment comes last.
+   * 
+   * @param out - writer to send the assembly to. It's not flushed or closed.
+   * 
+   * @throws IOException if the writer fails.
+   * @throws IllegalStateException if the program was already written by an
+   *                               earlier call.
+   * 
+   * @return void.
+   */
+  public void writeTo(Writer out) throws IOException {
+    if (this.asmText != null) {
+      out.write(this.asmText);
+      return;
+    } else if (this.isGenerated) {
+      throw new IllegalStateException("MIPS code was already written and can't be generated again.");
+    }
+    this.isGenerated = true;
 
-    this.genMIPS();
+    CompilationContext.Binding binding = this.context.bind();
+    try {
+      this.writeProgram(out);
+    } finally {
+      binding.unbind();
+    }
   }
 
   /**
-   * Generates the MIPS code for all three-address instructions.
+   * Writes the header, every function and then the data segment.
    * 
-   * @param void.
+   * @param out - writer to send the assembly to.
+   * 
+   * @throws IOException if the writer fails.
    * 
    * @return void.
    */
-  private void genMIPS() {
-    // First, we generate the function blocks. Then, we can go
-    // inside and generate the MIPS code for each individually.
-    for (int i = 0; i < functionBlocks.size(); i++) {
-      MIPSFunction mipsFunc = new MIPSFunction(functionBlocks.get(i));
-      this.mipsString.append(mipsFunc.genMIPS());
-      this.mipsString.append("\n");
+  private void writeProgram(Writer out) throws IOException {
+    out.write(MIPSReg.stdFunctions());
+
+    int size = this.functionBlocks.size();
+    int threads = Math.min(this.context.getParallelism(), size);
+    if (threads <= 1) {
+      for (int i = 0; i < size; i++) {
+        this.writeFunction(out, this.genFunction(i));
+      }
+    } else {
+      // Keep as many functions in the pool as we may generate at once, and
+      // write each one out as soon as it's next.
+      ArrayDeque<ForkJoinTask<String[]>> pending = new ArrayDeque<>();
+      int next = 0;
+      for (int i = 0; i < size; i++) {
+        while (next < size && pending.size() < threads) {
+          int index = next++;
+          pending.add(POOL.submit(() -> this.genFunction(index)));
+        }
+        this.writeFunction(out, pending.poll().join());
+      }
+    }
+
+    this.genMIPSData();
+    out.write(this.mipsString.toString());
+  }
+
+  /**
+   * Generates and optimizes one function. Safe to call from any thread, since
+   * it binds the compilation's context and only touches the function's own
+   * state.
+   * 
+   * @param index - position of the function in the program.
+   * 
+   * @return the function's frame layout (empty unless layouts are being
+   *         dumped) and its assembly text.
+   */
+  private String[] genFunction(int index) {
+    CompilationContext.Binding binding = this.context.bind();
+    try {
+      MIPSFunction mipsFunc = new MIPSFunction(this.functionBlocks.get(index), index);
+      String layout = MIPSFunction.isDumpingFrameLayouts() ? mipsFunc.getFrameLayout() : "";
+      MIPSCode code = mipsFunc.genMIPS();
+      MIPSOptimizer.optimize(code);
+
+      StringBuilder sb = new StringBuilder();
+      code.appendTo(sb);
+      sb.append("\n");
+      return new String[] { layout, sb.toString() };
+    } finally {
+      binding.unbind();
     }
+  }
+
+  /**
+   * Writes a function that genFunction generated, printing its frame layout to
+   * the compilation's standard error first.
+   * 
+   * @param out      - writer to send the assembly to.
+   * @param function - frame layout and assembly text.
+   * 
+   * @throws IOException if the writer fails.
+   * 
+   * @return void.
+   */
+  private void writeFunction(Writer out, String[] function) throws IOException {
+    this.context.getErr().print(function[0]);
+    out.write(function[1]);
+  }
 
+  /**
+   * Generates the data segment: the string table, then the global variables.
+   * 
+   * @param void.
+   * 
+   * @return void.
+   */
+  private void genMIPSData() {
     // Now append the data - start with the string table.
     this.mipsString.append("\t.data\n");
+    this.isDataWordAligned = true;
     this.genMIPSStrings();
-    this.mipsString.append("\n");
-    
+
     // Now append the global variables.
-    this.genMIPSGlobals();
+    if (!this.context.getQuad().getGlobalVariableDeclarations().isEmpty()) {
+      this.mipsString.append("\n");
+      this.genMIPSGlobals();
+    }
   }
 
   /**
@@ -68,9 +231,11 @@ public class MIPSGen {
    * @return void.
    */
   private void genMIPSStrings() {
-    for (StringEntry se : ICode.getTopAR().getStringTable()) {
+    for (StringEntry se : this.context.getStringTable()) {
+      this.alignDataToWord();
       this.mipsString.append(se.getMIPSCode());
       this.mipsString.append("\n");
+      this.isDataWordAligned = false;
     }
   }
 
@@ -79,55 +244,78 @@ public class MIPSGen {
    * We convert the .db/.dw into .byte/.word respectively, then either
    * add the value, or the size of the array. If it's an array, we then
    * populate it with the chars used (if it's a char and it's initialized)
-   * OR we pad it with zeroes.
+   * and reserve the rest with .space, which is zero-filled. That keeps the
+   * size of the assembly the same no matter how long the array is.
    * 
    * @param void.
    * 
    * @return void.
    */
   private void genMIPSGlobals() {
-    LinkedList<LinkedList<String>> globals = ICode.quad.getGlobalVariableDeclarations();
+    LinkedList<LinkedList<String>> globals = this.context.getQuad().getGlobalVariableDeclarations();
     for (LinkedList<String> globalL : globals) {
       // Get the type (.db/dw).
       String type = globalL.get(1);
       // Start of global declaration.
       if (type.contains(".dw") || type.contains(".db")) {
-        type = type.replaceAll(".db", ".byte");
-        type = type.replace(".dw", ".word");
+        boolean isWord = type.contains(".dw");
+        if (isWord) {
+          this.alignDataToWord();
+        }
+
         // Append the compiler-generated label.
         this.mipsString.append(globalL.get(0) + ":\t");
-        this.mipsString.append(type);
+        this.mipsString.append(isWord ? ".word" : ".byte");
         this.mipsString.append(" ");
         this.mipsString.append(globalL.get(2));
+        this.isDataWordAligned = isWord;
       } else {
         // Array population.
-        type = globalL.get(0);
-        type = type.replaceAll(".db", ".byte");
-        type = type.replace(".dw", ".word");
+        String decl = globalL.get(0);
 
         // Using this operator, we populate X zeroes.
-        if (type.contains("#")) {
-          this.mipsString.append(type.subSequence(0, 5));
-          this.mipsString.append(" ");
-          String szIdx = type.substring(type.indexOf("#") + 1);
-          int zeroCount = Integer.parseInt(szIdx);
-          for (int i = 0; i < zeroCount - 1; i++) {
-            this.mipsString.append("0, ");
-          }
-          this.mipsString.append("0");
+        if (decl.contains("#")) {
+          int width = decl.startsWith(".dw") ? 4 : 1;
+          int zeroBytes = Integer.parseInt(decl.substring(decl.indexOf("#") + 1).trim()) * width;
+          this.mipsString.append(".space ");
+          this.mipsString.append(zeroBytes);
+          this.isDataWordAligned = this.isDataWordAligned && zeroBytes % 4 == 0;
         } else {
-          this.mipsString.append(type);
-          this.mipsString.append(" ");
+          this.mipsString.append(LCUtilities.getMIPSByteDirective(decl));
+          this.isDataWordAligned = false;
         }
       }
       this.mipsString.append("\n");
     }
   }
 
+  /**
+   * Appends an .align directive if the byte data before it left the data
+   * segment off of a word boundary.
+   * 
+   * @param void.
+   * 
+   * @return void.
+   */
+  private void alignDataToWord() {
+    if (!this.isDataWordAligned) {
+      this.mipsString.append(".align 2\n");
+      this.isDataWordAligned = true;
+    }
+  }
+
   @Override
   public String toString() {
-    // Should convert whatever your internal MIPS-code representation is
-    // into a string that is compatible with SPIM.
-    return MIPSOptimizer.optimize(this.mipsString.toString());
+    if (this.asmText == null) {
+      StringWriter sw = new StringWriter();
+      try {
+        this.writeTo(sw);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      this.asmText = sw.toString();
+    }
+
+    return this.asmText;
   }
 }
\ No newline at end of file
@@ -1,26 +1,22 @@
 package edu.joshuacrotts.littlec.mipsgen;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
 /**
- * This class has several helper methods that generate the MIPS code for the
- * CodeGeneration class. Each instruction (except for labels) have tabs appended
- * to the front.
- * 
+ * A single MIPS instruction: an opcode and its operands. Labels and the .globl
+ * directive are instructions too, so a function is just a list of these.
+ *
+ * This class also has several helper methods that generate the MIPS code for
+ * the CodeGeneration class. Each one appends its instructions to the end of a
+ * MIPSCode stream.
+ *
  * @author Joshua Crotts
  */
 public class MIPSInstruction {
 
-  /**
-   * Enum for all supported MIPS operations. Not all are used, though.
-   */
-  private enum MIPS {
-    sw, sb, move, lw, li, lb, la, ld, sll, b, j, addu, subu, div, mul, jal, jr;
-  }
-  
-  /**
-   * 
-   */
-  private static int compilerLabelCount = 0;
-
   /**
    * Tab character.
    */
@@ -31,11 +27,6 @@ public class MIPSInstruction {
    */
   private static final char SPACE = ' ';
 
-  /**
-   * New-line character.
-   */
-  private static final char NEWLINE = '\n';
-
   /**
    * Separator for instructions with multiple operands (or a destination and an
    * operand).
@@ -43,255 +34,302 @@ public class MIPSInstruction {
   private static final String SEP = ", ";
 
   /**
-   * Generates a move instruction.
-   * 
-   * @param dest - register to store result in.
-   * @param src  - register to move result from.
-   * 
-   * @return String representation of MIPS instruction.
+   * Operation performed by this instruction.
    */
-  protected static String genMove(MIPSReg dest, MIPSReg src) {
-    StringBuilder sb = new StringBuilder();
+  private final MIPSOpcode OPCODE;
 
-    if (dest.equals(src)) {
-      return "";
+  /**
+   * Operands of this instruction, destination first.
+   */
+  private final List<MIPSOperand> OPERANDS;
+
+  public MIPSInstruction(MIPSOpcode opcode, MIPSOperand... operands) {
+    this.OPCODE = opcode;
+    this.OPERANDS = Collections.unmodifiableList(Arrays.asList(operands));
+  }
+
+  public MIPSOpcode getOpcode() {
+    return this.OPCODE;
+  }
+
+  public List<MIPSOperand> getOperands() {
+    return this.OPERANDS;
+  }
+
+  public MIPSOperand getOperand(int i) {
+    return this.OPERANDS.get(i);
+  }
+
+  /**
+   * Writes the assembly text of this instruction, without a trailing newline.
+   * Every instruction except a label is indented with a tab.
+   *
+   * @param sb - StringBuilder to append to.
+   *
+   * @return void.
+   */
+  public void appendTo(StringBuilder sb) {
+    if (this.OPCODE == MIPSOpcode.LABEL) {
+      sb.append(this.OPERANDS.get(0)).append(':');
+      return;
     }
 
     sb.append(TAB);
-    sb.append(MIPS.move);
-    sb.append(SPACE);
-    sb.append(dest);
-    sb.append(SEP);
-    sb.append(src);
-    sb.append(NEWLINE);
+    sb.append(this.OPCODE.getMnemonic());
+    for (int i = 0; i < this.OPERANDS.size(); i++) {
+      sb.append(i == 0 ? SPACE : SEP);
+      sb.append(this.OPERANDS.get(i));
+    }
+  }
 
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    this.appendTo(sb);
     return sb.toString();
   }
 
+  /**
+   * Generates a move instruction. Nothing is generated if the two registers are
+   * the same.
+   *
+   * @param code - stream to append to.
+   * @param dest - register to store result in.
+   * @param src  - register to move result from.
+   *
+   * @return void.
+   */
+  protected static void genMove(MIPSCode code, MIPSReg dest, MIPSReg src) {
+    if (dest.equals(src)) {
+      return;
+    }
+
+    code.add(new MIPSInstruction(MIPSOpcode.MOVE, MIPSOperand.reg(dest), MIPSOperand.reg(src)));
+  }
+
   /**
    * Generates a load instruction.
-   * 
+   *
+   * @param code     - stream to append to.
    * @param loadType - load instruction to use.
    * @param reg      - register to store result in.
-   * @param src      - memory location to load instruction from.
-   * 
-   * @return String representation of MIPS instruction.
+   * @param src      - memory location (or immediate) to load from.
+   *
+   * @return void.
    */
-  protected static String genLoad(String loadType, MIPSReg reg, String src) {
-    StringBuilder sb = new StringBuilder();
-
-    sb.append(TAB);
-    sb.append(loadType);
-    sb.append(SPACE);
-    sb.append(reg);
-    sb.append(SEP);
-    sb.append(src);
-    sb.append(NEWLINE);
-
-    return sb.toString();
+  protected static void genLoad(MIPSCode code, MIPSOpcode loadType, MIPSReg reg, MIPSOperand src) {
+    code.add(new MIPSInstruction(loadType, MIPSOperand.reg(reg), src));
   }
 
   /**
    * Generates a store instruction.
-   * 
+   *
+   * @param code      - stream to append to.
    * @param storeType - store instruction to use.
-   * @param reg       - register to pull result from.
-   * @param src       - memory location to store instruction in.
-   * 
-   * @return String representation of MIPS instruction.
+   * @param src       - register to pull result from.
+   * @param dest      - memory location to store instruction in.
+   *
+   * @return void.
    */
-  protected static String genStore(String storeType, MIPSReg src, String dest) {
-    StringBuilder sb = new StringBuilder();
-
-    sb.append(TAB);
-    sb.append(storeType);
-    sb.append(SPACE);
-    sb.append(src);
-    sb.append(SEP);
-    sb.append(dest);
-    sb.append(NEWLINE);
-
-    return sb.toString();
+  protected static void genStore(MIPSCode code, MIPSOpcode storeType, MIPSReg src, MIPSOperand dest) {
+    code.add(new MIPSInstruction(storeType, MIPSOperand.reg(src), dest));
   }
 
   /**
    * Generates a jump instruction ("jal").
-   * 
+   *
+   * @param code         - stream to append to.
    * @param functionName - function to jump to.
-   * 
-   * @return String representation of MIPS instruction.
+   *
+   * @return void.
    */
-  protected static String genFunctionCall(String functionName) {
-    StringBuilder sb = new StringBuilder();
-
-    sb.append(TAB);
-    sb.append(MIPS.jal);
-    sb.append(SPACE);
-    sb.append(functionName);
-    sb.append(NEWLINE);
-
-    return sb.toString();
+  protected static void genFunctionCall(MIPSCode code, String functionName) {
+    code.add(new MIPSInstruction(MIPSOpcode.JAL, MIPSOperand.label(functionName)));
   }
 
   /**
-   * Generates a binary operator in MIPS.
-   * 
+   * Generates a binary operator in MIPS with a register second operand.
+   *
+   * @param code - stream to append to.
+   * @param op   - operation to perform.
    * @param dest - destination.
    * @param op1  - first operand.
    * @param op2  - second operand.
-   * 
-   * @return String representation of MIPS instruction.
+   *
+   * @return void.
    */
-  protected static String genBinaryOp(String op, String dest, String op1, String op2) {
-    StringBuilder sb = new StringBuilder();
-
-    sb.append(TAB);
-    sb.append(op);
-    sb.append(SPACE);
-    sb.append(dest);
-    sb.append(SEP);
-    sb.append(op1);
-    sb.append(SEP);
-    sb.append(op2);
-    sb.append(NEWLINE);
+  protected static void genBinaryOp(MIPSCode code, MIPSOpcode op, MIPSReg dest, MIPSReg op1, MIPSReg op2) {
+    code.add(new MIPSInstruction(op, MIPSOperand.reg(dest), MIPSOperand.reg(op1), MIPSOperand.reg(op2)));
+  }
 
-    return sb.toString();
+  /**
+   * Generates a binary operator in MIPS with an immediate second operand.
+   *
+   * @param code - stream to append to.
+   * @param op   - operation to perform.
+   * @param dest - destination.
+   * @param op1  - first operand.
+   * @param op2  - immediate second operand.
+   *
+   * @return void.
+   */
+  protected static void genBinaryOp(MIPSCode code, MIPSOpcode op, MIPSReg dest, MIPSReg op1, int op2) {
+    code.add(new MIPSInstruction(op, MIPSOperand.reg(dest), MIPSOperand.reg(op1), MIPSOperand.imm(op2)));
   }
-  
+
   /**
    * Generates the power binary operator - since this is a separate operation,
    * requiring multiple instructions, we need to generate separate code for it.
-   * 
-   * @param dest - location of exponent result.
-   * @param op1 - first operand, base of exponent.
-   * @param op2 - second operand, power to raise to.
-   * @param tmpOp3 - counting register.
-   * 
-   * @return string representation of power instructions.
+   *
+   * @param code     - stream to append to.
+   * @param function - function the code belongs to, which names the labels.
+   * @param dest     - location of exponent result.
+   * @param op1      - first operand, base of exponent.
+   * @param op2      - second operand, power to raise to.
+   * @param tmpOp3   - counting register.
+   *
+   * @return void.
    */
-  protected static String genPowerBinaryOp(String dest, String op1, String op2, String tmpOp3) {
-    StringBuilder sb = new StringBuilder();
-    String cl1 = "CL" + compilerLabelCount++;
-    String cl2 = "CL" + compilerLabelCount++;
-    
+  protected static void genPowerBinaryOp(MIPSCode code, MIPSFunction function, MIPSReg dest, MIPSReg op1, MIPSReg op2,
+      MIPSReg tmpOp3) {
+    String cl1 = function.nextCompilerLabel();
+    String cl2 = function.nextCompilerLabel();
+
     // Move 0 into the counting register.
-    sb.append("\tmove" + " " + tmpOp3 + ", $zero\n"); 
+    genMove(code, tmpOp3, MIPSReg.zeroReg());
     // Store one into the destination register.
-    sb.append("\taddi" + " " + dest + ", " + dest + ", 1\n");
+    genLoad(code, MIPSOpcode.LI, dest, MIPSOperand.imm(1));
     // If our count >= op2, then break.
-    sb.append(cl1 + ":\n" + "\tbge" + " " + tmpOp3 + ", " + op2 + ", " + cl2 + "\n");
-    sb.append("\tmul" + " " + dest + ", " + dest + ", " + op1 + "\n");
-    sb.append("\taddi" + " " + tmpOp3 + ", " + tmpOp3 + ", 1\n");
-    sb.append(genBranch(cl1));
-    sb.append(cl2 + ":\n");
-    return sb.toString();
+    genLabel(code, cl1);
+    genConditionalBranch(code, MIPSOpcode.BGE, tmpOp3, op2, cl2);
+    genBinaryOp(code, MIPSOpcode.MUL, dest, dest, op1);
+    genBinaryOp(code, MIPSOpcode.ADDI, tmpOp3, tmpOp3, 1);
+    genBranch(code, cl1);
+    genLabel(code, cl2);
   }
-  
+
   /**
-   * 
-   * @param dest
-   * @param op1
-   * @param op2
-   * @param tmpOp3
-   * @return
+   * Generates the implication binary operator (op1 -> op2).
+   *
+   * @param code   - stream to append to.
+   * @param dest   - destination.
+   * @param op1    - antecedent.
+   * @param op2    - consequent.
+   * @param tmpOp3 - scratch register.
+   *
+   * @return void.
    */
-  protected static String genImplicationBinaryOp(String dest, String op1, String op2, String tmpOp3) {
-    StringBuilder sb = new StringBuilder();
-    sb.append(MIPSInstruction.genUnaryOp("not", tmpOp3, op1));
-    sb.append(MIPSInstruction.genBinaryOp("addi", tmpOp3, tmpOp3, "2"));
-    sb.append(MIPSInstruction.genBinaryOp("or", dest, tmpOp3, op2));
-    return sb.toString();
+  protected static void genImplicationBinaryOp(MIPSCode code, MIPSReg dest, MIPSReg op1, MIPSReg op2,
+      MIPSReg tmpOp3) {
+    genUnaryOp(code, MIPSOpcode.NOT, tmpOp3, op1);
+    genBinaryOp(code, MIPSOpcode.ADDI, tmpOp3, tmpOp3, 2);
+    genBinaryOp(code, MIPSOpcode.OR, dest, tmpOp3, op2);
   }
-  
+
   /**
-   * 
-   * @param dest
-   * @param op1
-   * @param op2
-   * @param tmpOp3
-   * @return
+   * Generates the biconditional binary operator (op1 <> op2).
+   *
+   * @param code   - stream to append to.
+   * @param dest   - destination.
+   * @param op1    - first operand.
+   * @param op2    - second operand.
+   * @param tmpOp3 - scratch register.
+   *
+   * @return void.
    */
-  protected static String genBiconditionalBinaryOp(String dest, String op1, String op2, String tmpOp3) {
-    StringBuilder sb = new StringBuilder();
-    sb.append(MIPSInstruction.genBinaryOp("xor", tmpOp3, op1, op2));
-    sb.append(MIPSInstruction.genUnaryOp("not", dest, tmpOp3));
-    sb.append(MIPSInstruction.genBinaryOp("addi", dest, dest, "2"));
-    return sb.toString();
+  protected static void genBiconditionalBinaryOp(MIPSCode code, MIPSReg dest, MIPSReg op1, MIPSReg op2,
+      MIPSReg tmpOp3) {
+    genBinaryOp(code, MIPSOpcode.XOR, tmpOp3, op1, op2);
+    genUnaryOp(code, MIPSOpcode.NOT, dest, tmpOp3);
+    genBinaryOp(code, MIPSOpcode.ADDI, dest, dest, 2);
   }
 
   /**
-   * Generates a binary operator in MIPS.
-   * 
+   * Generates a unary operator in MIPS.
+   *
+   * @param code - stream to append to.
+   * @param op   - operation to perform.
    * @param dest - destination.
    * @param op1  - first operand.
-   * 
-   * @return String representation of MIPS instruction.
+   *
+   * @return void.
    */
-  protected static String genUnaryOp(String op, String dest, String op1) {
-    StringBuilder sb = new StringBuilder();
-
-    sb.append(TAB);
-    sb.append(op);
-    sb.append(SPACE);
-    sb.append(dest);
-    sb.append(SEP);
-    sb.append(op1);
-    sb.append(NEWLINE);
+  protected static void genUnaryOp(MIPSCode code, MIPSOpcode op, MIPSReg dest, MIPSReg op1) {
+    code.add(new MIPSInstruction(op, MIPSOperand.reg(dest), MIPSOperand.reg(op1)));
+  }
 
-    return sb.toString();
+  /**
+   * Generates a conditional branch comparing two registers.
+   *
+   * @param code  - stream to append to.
+   * @param op    - branch instruction to use.
+   * @param op1   - first register to compare.
+   * @param op2   - second register to compare.
+   * @param label - location to branch to if the comparison holds.
+   *
+   * @return void.
+   */
+  protected static void genConditionalBranch(MIPSCode code, MIPSOpcode op, MIPSReg op1, MIPSReg op2, String label) {
+    code.add(new MIPSInstruction(op, MIPSOperand.reg(op1), MIPSOperand.reg(op2), MIPSOperand.label(label)));
   }
 
   /**
    * Generates a branch instruction ("b") in MIPS.
-   * 
-   * @param dest location to branch to.
-   * 
-   * @return String representation of MIPS instruction.
+   *
+   * @param code - stream to append to.
+   * @param dest - location to branch to.
+   *
+   * @return void.
    */
-  protected static String genBranch(String dest) {
-    StringBuilder sb = new StringBuilder();
-
-    sb.append(TAB);
-    sb.append(MIPS.b);
-    sb.append(SPACE);
-    sb.append(dest);
-    sb.append(NEWLINE);
-
-    return sb.toString();
+  protected static void genBranch(MIPSCode code, String dest) {
+    code.add(new MIPSInstruction(MIPSOpcode.B, MIPSOperand.label(dest)));
   }
 
   /**
    * Generates a jump instruction ("j") in MIPS.
-   * 
-   * @param dest location to jump to.
-   * 
-   * @return String representation of MIPS instruction.
+   *
+   * @param code  - stream to append to.
+   * @param label - location to jump to.
+   *
+   * @return void.
    */
-  protected static String genJump(String label) {
-    StringBuilder sb = new StringBuilder();
-
-    sb.append(TAB);
-    sb.append(MIPS.j);
-    sb.append(SPACE);
-    sb.append(label);
-    sb.append(NEWLINE);
+  protected static void genJump(MIPSCode code, String label) {
+    code.add(new MIPSInstruction(MIPSOpcode.J, MIPSOperand.label(label)));
+  }
 
-    return sb.toString();
+  /**
+   * Generates a jump to the address in a register ("jr") in MIPS.
+   *
+   * @param code - stream to append to.
+   * @param reg  - register holding the address.
+   *
+   * @return void.
+   */
+  protected static void genJumpRegister(MIPSCode code, MIPSReg reg) {
+    code.add(new MIPSInstruction(MIPSOpcode.JR, MIPSOperand.reg(reg)));
   }
 
   /**
    * Generates a label in the form LD: where D is a number.
-   * 
-   * @param label - string jump label.
-   * 
-   * @return String representation of MIPS instruction.
+   *
+   * @param code  - stream to append to.
+   * @param label - label name, without the colon.
+   *
+   * @return void.
    */
-  protected static String genLabel(String label) {
-    StringBuilder sb = new StringBuilder();
-
-    sb.append(label);
-    sb.append(NEWLINE);
+  protected static void genLabel(MIPSCode code, String label) {
+    code.add(new MIPSInstruction(MIPSOpcode.LABEL, MIPSOperand.label(label)));
+  }
 
-    return sb.toString();
+  /**
+   * Generates a .globl directive that exports a label.
+   *
+   * @param code  - stream to append to.
+   * @param label - label to export.
+   *
+   * @return void.
+   */
+  protected static void genGlobal(MIPSCode code, String label) {
+    code.add(new MIPSInstruction(MIPSOpcode.GLOBL, MIPSOperand.label(label)));
   }
 }
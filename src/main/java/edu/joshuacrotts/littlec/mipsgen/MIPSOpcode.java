@@ -0,0 +1,64 @@
+package edu.joshuacrotts.littlec.mipsgen;
+
+/**
+ * Every MIPS operation that the code generator emits, along with the two
+ * pseudo-operations that aren't really instructions: labels and the .globl
+ * directive.
+ *
+ * @author Joshua Crotts
+ */
+public enum MIPSOpcode {
+  ABS, ADDI, ADDIU, ADDU, AND, ANDI, B, BEQ, BGE, BGT, BLE, BLT, BNE, DIV, J, JAL, JR, LA, LB, LI, LW, MOVE, MUL, NEGU,
+  NOT, OR, ORI, REM, ROL, ROR, SB, SLL, SRA, SUBU, SW, XOR, XORI, LABEL, GLOBL;
+
+  /**
+   * @return the name of the operation as it's written in assembly, or null for
+   *         a label.
+   */
+  public String getMnemonic() {
+    switch (this) {
+    case LABEL:
+      return null;
+    case GLOBL:
+      return ".globl";
+    default:
+      return this.name().toLowerCase();
+    }
+  }
+
+  /**
+   * @return true if the operation writes a register to memory.
+   */
+  public boolean isStore() {
+    return this == SB || this == SW;
+  }
+
+  /**
+   * @return true if the operation reads memory into a register.
+   */
+  public boolean isLoad() {
+    return this == LB || this == LW;
+  }
+
+  /**
+   * @return true if the operation may transfer control somewhere other than
+   *         the next instruction.
+   */
+  public boolean isBranch() {
+    switch (this) {
+    case B:
+    case BEQ:
+    case BGE:
+    case BGT:
+    case BLE:
+    case BLT:
+    case BNE:
+    case J:
+    case JAL:
+    case JR:
+      return true;
+    default:
+      return false;
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package edu.joshuacrotts.littlec.mipsgen;
+
+import java.util.Objects;
+
+/**
+ * An operand of a MIPS instruction: a register, an immediate, a label, or a
+ * memory address of the form offset(base). Operands are immutable, so they can
+ * be shared between instructions and compared with equals.
+ *
+ * @author Joshua Crotts
+ */
+public final class MIPSOperand {
+
+  /**
+   * Kinds of operands.
+   */
+  private enum Kind {
+    REGISTER, IMMEDIATE, LABEL, ADDRESS;
+  }
+
+  /** Kind of this operand. */
+  private final Kind KIND;
+
+  /** Register, or base register of an address. */
+  private final MIPSReg REG;
+
+  /** Immediate value, or offset of an address. */
+  private final int VALUE;
+
+  /** Name of a label. */
+  private final String LABEL;
+
+  private MIPSOperand(Kind kind, MIPSReg reg, int value, String label) {
+    this.KIND = kind;
+    this.REG = reg;
+    this.VALUE = value;
+    this.LABEL = label;
+  }
+
+  /**
+   * @param reg - MIPS register.
+   *
+   * @return register operand.
+   */
+  public static MIPSOperand reg(MIPSReg reg) {
+    return new MIPSOperand(Kind.REGISTER, reg, 0, null);
+  }
+
+  /**
+   * @param value - integer value.
+   *
+   * @return immediate operand.
+   */
+  public static MIPSOperand imm(int value) {
+    return new MIPSOperand(Kind.IMMEDIATE, null, value, null);
+  }
+
+  /**
+   * @param label - label name, without the trailing colon.
+   *
+   * @return label operand.
+   */
+  public static MIPSOperand label(String label) {
+    return new MIPSOperand(Kind.LABEL, null, 0, label);
+  }
+
+  /**
+   * @param offset - byte offset from the base register.
+   * @param base   - register holding the base address.
+   *
+   * @return memory operand offset(base).
+   */
+  public static MIPSOperand address(int offset, MIPSReg base) {
+    return new MIPSOperand(Kind.ADDRESS, base, offset, null);
+  }
+
+  public boolean isRegister() {
+    return this.KIND == Kind.REGISTER;
+  }
+
+  /**
+   * @param reg - MIPS register.
+   *
+   * @return true if this operand is exactly the given register.
+   */
+  public boolean isRegister(MIPSReg reg) {
+    return this.isRegister() && this.REG.equals(reg);
+  }
+
+  public boolean isImmediate() {
+    return this.KIND == Kind.IMMEDIATE;
+  }
+
+  public boolean isLabel() {
+    return this.KIND == Kind.LABEL;
+  }
+
+  public boolean isAddress() {
+    return this.KIND == Kind.ADDRESS;
+  }
+
+  /**
+   * @return the register, or the base register of an address.
+   */
+  public MIPSReg getRegister() {
+    return this.REG;
+  }
+
+  /**
+   * @return the immediate value, or the offset of an address.
+   */
+  public int getValue() {
+    return this.VALUE;
+  }
+
+  public String getLabel() {
+    return this.LABEL;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof MIPSOperand)) {
+      return false;
+    }
+
+    MIPSOperand other = (MIPSOperand) o;
+    return this.KIND == other.KIND && this.VALUE == other.VALUE && Objects.equals(this.REG, other.REG)
+        && Objects.equals(this.LABEL, other.LABEL);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.KIND, this.REG == null ? null : this.REG.getName(), this.VALUE, this.LABEL);
+  }
+
+  @Override
+  public String toString() {
+    switch (this.KIND) {
+    case REGISTER:
+      return this.REG.toString();
+    case IMMEDIATE:
+      return Integer.toString(this.VALUE);
+    case LABEL:
+      return this.LABEL;
+    default:
+      return this.VALUE + "(" + this.REG + ")";
+    }
+  }
+}
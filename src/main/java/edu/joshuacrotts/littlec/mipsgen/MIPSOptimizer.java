@@ -1,183 +1,457 @@
 package edu.joshuacrotts.littlec.mipsgen;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * This class serves as secondary traversals to code generation optimization, in
  * that we generate MIPS code, then we traverse through this code to find any
- * optimizations.
- * 
+ * optimizations. Each pass rewrites a function's instruction stream in place.
+ *
+ * Most of the work is done by peephole rules. A rule looks at a small window
+ * of consecutive instructions and either leaves it alone or replaces it. The
+ * rules are run in groups, each group in a single forward pass: instructions
+ * are shifted from a worklist onto an output list one at a time, and the rules
+ * are tried on the tail of the output. When one fires, the replacement and the
+ * few instructions before it go back on the front of the worklist so that they
+ * get another look together. Every rewrite either removes an instruction or
+ * turns a memory load into a move, so the number of rewrites, and with it the
+ * whole pass, is linear in the size of the function.
+ *
  * @author Joshua
  *
  */
 public class MIPSOptimizer {
 
   /**
-   * Optimizes a MIPS string representation.
-   * 
-   * @param mipsString - toString representation of MIPS code.
-   * 
-   * @return optimized MIPS string.
+   * A rewrite of a fixed-size window of consecutive instructions.
+   */
+  private static class PeepholeRule {
+
+    /** Number of instructions the rule looks at. */
+    private final int WINDOW;
+
+    /** Returns the replacement for a window, or null if the rule doesn't apply. */
+    private final Function<List<MIPSInstruction>, List<MIPSInstruction>> REWRITE;
+
+    private PeepholeRule(int window, Function<List<MIPSInstruction>, List<MIPSInstruction>> rewrite) {
+      this.WINDOW = window;
+      this.REWRITE = rewrite;
+    }
+  }
+
+  /**
+   * Branch that's taken exactly when the key isn't.
+   */
+  private static final Map<MIPSOpcode, MIPSOpcode> INVERSE_BRANCHES = new EnumMap<>(MIPSOpcode.class);
+
+  static {
+    INVERSE_BRANCHES.put(MIPSOpcode.BEQ, MIPSOpcode.BNE);
+    INVERSE_BRANCHES.put(MIPSOpcode.BNE, MIPSOpcode.BEQ);
+    INVERSE_BRANCHES.put(MIPSOpcode.BLT, MIPSOpcode.BGE);
+    INVERSE_BRANCHES.put(MIPSOpcode.BGE, MIPSOpcode.BLT);
+    INVERSE_BRANCHES.put(MIPSOpcode.BGT, MIPSOpcode.BLE);
+    INVERSE_BRANCHES.put(MIPSOpcode.BLE, MIPSOpcode.BGT);
+  }
+
+  /**
+   * Rules that forward values between stores and loads of the same word.
+   */
+  private static final List<PeepholeRule> MEMORY_RULES = Arrays.asList(
+      new PeepholeRule(2, MIPSOptimizer::forwardStoreToLoad),
+      new PeepholeRule(2, MIPSOptimizer::forwardLoadToLoad),
+      new PeepholeRule(2, MIPSOptimizer::removeRedundantStore));
+
+  /**
+   * Rules that remove moves and jumps that don't do anything.
+   */
+  private static final List<PeepholeRule> CONTROL_RULES = Arrays.asList(
+      new PeepholeRule(1, MIPSOptimizer::removeSelfMove),
+      new PeepholeRule(2, MIPSOptimizer::removeJumpToNext),
+      new PeepholeRule(3, MIPSOptimizer::invertBranchOverJump));
+
+  /**
+   * Optimizes the instructions of a function.
+   *
+   * @param code - instructions of one function.
+   *
+   * @return void.
    */
-  public static String optimize(String mipsString) {
-    // First, pass through and remove redundant loads.
-    String formerMIPSString = new String(mipsString);
+  public static void optimize(MIPSCode code) {
+    removeDuplicateLabels(code);
+    applyRules(code, MEMORY_RULES);
+    applyRules(code, CONTROL_RULES);
+    mergeStackAdjustments(code);
+  }
 
-    // Do as many passes as it takes before we get to a point when we can
-    // say that the previous traversal removed no code.
-    do {
-      // First, remove redundant load operations.
-      String[] splitArr = mipsString.split("\n");
-      ArrayList<String> arr = new ArrayList<String>(Arrays.asList(splitArr));
-      mipsString = removeRedundantLoads(arr);
+  /**
+   * Runs one group of rules over a function in a single forward pass.
+   *
+   * @param code  - instructions of one function.
+   * @param rules - rules to try, in order of priority.
+   *
+   * @return void.
+   */
+  private static void applyRules(MIPSCode code, List<PeepholeRule> rules) {
+    int maxWindow = 0;
+    for (PeepholeRule rule : rules) {
+      maxWindow = Math.max(maxWindow, rule.WINDOW);
+    }
 
-      // Then, go back and remove all unnecessary loads.
-      splitArr = mipsString.split("\n");
-      arr = new ArrayList<String>(Arrays.asList(splitArr));
-      mipsString = removeUnnecessaryLoads(arr);
+    ArrayDeque<MIPSInstruction> worklist = new ArrayDeque<>(code.getInstructions());
+    List<MIPSInstruction> out = new ArrayList<>(code.size());
+    while (!worklist.isEmpty()) {
+      out.add(worklist.pollFirst());
+
+      for (PeepholeRule rule : rules) {
+        if (out.size() < rule.WINDOW) {
+          continue;
+        }
 
-      // Now remove the duplicate labels.
-      splitArr = mipsString.split("\n");
-      arr = new ArrayList<String>(Arrays.asList(splitArr));
-      mipsString = removeDuplicateLabels(arr);
+        List<MIPSInstruction> window = out.subList(out.size() - rule.WINDOW, out.size());
+        List<MIPSInstruction> replacement = rule.REWRITE.apply(window);
+        if (replacement == null) {
+          continue;
+        }
 
-      // Finally, reassign the string.
-      formerMIPSString = new String(mipsString);
-    } while (!mipsString.equals(formerMIPSString));
+        // Back up far enough that every window ending in the replacement is
+        // looked at again.
+        window.clear();
+        for (int i = replacement.size() - 1; i >= 0; i--) {
+          worklist.addFirst(replacement.get(i));
+        }
+        for (int i = 0; i < maxWindow - 1 && !out.isEmpty(); i++) {
+          worklist.addFirst(out.remove(out.size() - 1));
+        }
+        break;
+      }
+    }
 
-    return mipsString;
+    code.getInstructions().clear();
+    code.getInstructions().addAll(out);
   }
 
   /**
-   * Optimizes stores and loads (or loads and loads) from the same location to a
-   * store then a move.
-   * 
-   * For instance,
-   * 
+   * Replaces a load of a word that was just stored with a move from the stored
+   * register, or drops it if it's loading into that same register.
+   *
    * sw $t3, -88($fp)
    * lw $a0, -88($fp)
-   * 
-   * can be optimized to
-   * 
-   * la $t3, -60($fp) 
+   *
+   * is optimized to
+   *
+   * sw $t3, -88($fp)
    * move $a0, $t3
-   * 
-   * @param ArrayList<String> of MIPS code, delimited by newlines.
-   * 
-   * @return string with all unnecessary loads removed.
-   */
-  private static String removeUnnecessaryLoads(ArrayList<String> mipsSplitList) {
-    StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < mipsSplitList.size() - 1; i++) {
-      String inst1 = mipsSplitList.get(i);
-      String inst2 = mipsSplitList.get(i + 1);
-
-      // If our first character is a store, then a load, OR
-      // it's a store then a load...
-      if ((inst1.matches("^\ts[b|w](.*)") && inst2.matches("^\tl[b|a|i|w](.*)"))
-          || (inst1.matches("^\tl[b|a|i|w](.*)") && inst2.matches("^\ts[b|w](.*)"))) {
-
-        String inst1Loc = inst1.substring(inst1.lastIndexOf(", "));
-        String inst2Loc = inst2.substring(inst2.lastIndexOf(", "));
-
-        if (inst1Loc.equals(inst2Loc)) {
-          String reg1 = inst1.substring(inst1.indexOf("$"), inst1.indexOf(","));
-          String reg2 = inst2.substring(inst2.indexOf("$"), inst2.indexOf(","));
-          mipsSplitList.set(i + 1, "\tmove " + reg2 + ", " + reg1);
-          i = 0;
-        }
-      }
+   *
+   * Bytes are left alone, since the lb is what sign-extends the stored value.
+   *
+   * @param window - two instructions.
+   *
+   * @return replacement, or null if the rule doesn't apply.
+   */
+  private static List<MIPSInstruction> forwardStoreToLoad(List<MIPSInstruction> window) {
+    MIPSInstruction store = window.get(0);
+    MIPSInstruction load = window.get(1);
+    if (store.getOpcode() != MIPSOpcode.SW || load.getOpcode() != MIPSOpcode.LW
+        || !store.getOperand(1).equals(load.getOperand(1))) {
+      return null;
+    }
+
+    if (store.getOperand(0).equals(load.getOperand(0))) {
+      return Collections.singletonList(store);
+    }
+
+    return Arrays.asList(store, new MIPSInstruction(MIPSOpcode.MOVE, load.getOperand(0), store.getOperand(0)));
+  }
+
+  /**
+   * Replaces the second of two loads of the same word with a move from the
+   * first. This doesn't apply if the first load overwrites the register that
+   * the address is based on.
+   *
+   * @param window - two instructions.
+   *
+   * @return replacement, or null if the rule doesn't apply.
+   */
+  private static List<MIPSInstruction> forwardLoadToLoad(List<MIPSInstruction> window) {
+    MIPSInstruction first = window.get(0);
+    MIPSInstruction second = window.get(1);
+    if (first.getOpcode() != MIPSOpcode.LW || second.getOpcode() != MIPSOpcode.LW
+        || !first.getOperand(1).equals(second.getOperand(1)) || overwritesBase(first)) {
+      return null;
+    }
+
+    if (first.getOperand(0).equals(second.getOperand(0))) {
+      return Collections.singletonList(first);
+    }
+
+    return Arrays.asList(first, new MIPSInstruction(MIPSOpcode.MOVE, second.getOperand(0), first.getOperand(0)));
+  }
+
+  /**
+   * Removes a store that can't change memory: either it writes back the value
+   * that was just loaded from the same place, or the next instruction
+   * overwrites the same location anyway. A load that overwrites its own base
+   * register moves the address, so it doesn't count.
+   *
+   * lw $t0, -4($fp)      sw $t0, -4($fp)
+   * sw $t0, -4($fp)      sw $t1, -4($fp)
+   *
+   * are optimized to
+   *
+   * lw $t0, -4($fp)      sw $t1, -4($fp)
+   *
+   * @param window - two instructions.
+   *
+   * @return replacement, or null if the rule doesn't apply.
+   */
+  private static List<MIPSInstruction> removeRedundantStore(List<MIPSInstruction> window) {
+    MIPSInstruction first = window.get(0);
+    MIPSInstruction second = window.get(1);
+    if (first.getOpcode() == MIPSOpcode.LW && second.getOpcode() == MIPSOpcode.SW
+        && first.getOperands().equals(second.getOperands()) && !overwritesBase(first)) {
+      return Collections.singletonList(first);
+    } else if (first.getOpcode().isStore() && first.getOpcode() == second.getOpcode()
+        && first.getOperand(1).equals(second.getOperand(1))) {
+      return Collections.singletonList(second);
+    }
+
+    return null;
+  }
+
+  /**
+   * @param load - load instruction.
+   *
+   * @return true if the load writes the register that its address is based on.
+   */
+  private static boolean overwritesBase(MIPSInstruction load) {
+    MIPSOperand loc = load.getOperand(1);
+    return loc.isAddress() && load.getOperand(0).isRegister(loc.getRegister());
+  }
+
+  /**
+   * Removes a move of a register into itself.
+   *
+   * @param window - one instruction.
+   *
+   * @return replacement, or null if the rule doesn't apply.
+   */
+  private static List<MIPSInstruction> removeSelfMove(List<MIPSInstruction> window) {
+    MIPSInstruction inst = window.get(0);
+    if (inst.getOpcode() == MIPSOpcode.MOVE && inst.getOperand(0).equals(inst.getOperand(1))) {
+      return Collections.emptyList();
     }
 
-    // Second traversal to build str.
-    for (int i = 0; i < mipsSplitList.size(); i++) {
-      sb.append(mipsSplitList.get(i));
-      sb.append("\n");
+    return null;
+  }
+
+  /**
+   * Removes an unconditional jump to the label right after it, which is what a
+   * return at the end of a function turns into.
+   *
+   * @param window - two instructions.
+   *
+   * @return replacement, or null if the rule doesn't apply.
+   */
+  private static List<MIPSInstruction> removeJumpToNext(List<MIPSInstruction> window) {
+    MIPSInstruction jump = window.get(0);
+    MIPSInstruction label = window.get(1);
+    if ((jump.getOpcode() == MIPSOpcode.J || jump.getOpcode() == MIPSOpcode.B)
+        && label.getOpcode() == MIPSOpcode.LABEL && jump.getOperand(0).equals(label.getOperand(0))) {
+      return Collections.singletonList(label);
     }
 
-    return sb.toString();
+    return null;
   }
 
   /**
-   * Removes redundant load statements. For instance, if we store a value from a
-   * register into memory, then load that value immediately back out to the same
-   * register, we can just get rid of that.
-   * 
-   * Example:
-   * sw $t0, -4($fp)
-   * lw $t0, -4($fp)
-   * 
+   * Folds a conditional branch over an unconditional jump into one branch with
+   * the opposite condition.
+   *
+   * blt $t0, $t1, L1
+   * j L2
+   * L1:
+   *
    * is optimized to
-   * 
-   * sw $t0, -4($fp)
-   * 
-   * @param ArrayList<String> of MIPS code, delimited by newlines.
-   * 
-   * @return string with all redundant loads removed.
-   */
-  private static String removeRedundantLoads(ArrayList<String> mipsSplitList) {
-    StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < mipsSplitList.size() - 1; i++) {
-      String inst1 = mipsSplitList.get(i);
-      String inst2 = mipsSplitList.get(i + 1);
-
-      if ((inst1.matches("^\ts[b|w](.*)") && inst2.matches("^\tl[b|a|i|w](.*)"))) {
-
-        inst1 = inst1.substring(3);
-        inst2 = inst2.substring(3);
-
-        if (inst1.equals(inst2)) {
-          mipsSplitList.remove(i + 1);
-          i = 0;
-        }
+   *
+   * bge $t0, $t1, L2
+   * L1:
+   *
+   * The label stays, since something else may still branch to it.
+   *
+   * @param window - three instructions.
+   *
+   * @return replacement, or null if the rule doesn't apply.
+   */
+  private static List<MIPSInstruction> invertBranchOverJump(List<MIPSInstruction> window) {
+    MIPSInstruction branch = window.get(0);
+    MIPSInstruction jump = window.get(1);
+    MIPSInstruction label = window.get(2);
+    MIPSOpcode inverse = INVERSE_BRANCHES.get(branch.getOpcode());
+    if (inverse == null || (jump.getOpcode() != MIPSOpcode.J && jump.getOpcode() != MIPSOpcode.B)
+        || label.getOpcode() != MIPSOpcode.LABEL || !branch.getOperand(2).equals(label.getOperand(0))) {
+      return null;
+    }
+
+    return Arrays.asList(
+        new MIPSInstruction(inverse, branch.getOperand(0), branch.getOperand(1), jump.getOperand(0)), label);
+  }
+
+  /**
+   * Merges the adjustments to $sp that come from pushing and popping call
+   * arguments. A pop ("addu $sp, $sp, k") is held back and sunk past the
+   * instructions after it, adding k to the offset of anything addressed off
+   * $sp along the way, until something else needs $sp to be exact: a label,
+   * a branch or call, or any other use of $sp as a register. Pops that meet
+   * along the way, and pushes that immediately follow them, are folded into
+   * one adjustment.
+   *
+   * lw $a0, 0($sp)
+   * addu $sp, $sp, 4
+   * lw $a1, 0($sp)
+   * addu $sp, $sp, 4
+   *
+   * is optimized to
+   *
+   * lw $a0, 0($sp)
+   * lw $a1, 4($sp)
+   * addu $sp, $sp, 8
+   *
+   * Pushes are never sunk, so nothing is ever stored below $sp.
+   *
+   * @param code - instructions of one function.
+   *
+   * @return void.
+   */
+  private static void mergeStackAdjustments(MIPSCode code) {
+    List<MIPSInstruction> out = new ArrayList<>(code.size());
+    int pending = 0;
+    for (MIPSInstruction inst : code) {
+      int adjustment = getStackAdjustment(inst);
+      if (adjustment != 0) {
+        pending += adjustment;
+        continue;
+      }
+
+      // Pushes can't move past anything, and pops can't move past anything
+      // that needs to know where $sp really is.
+      if (pending < 0 || (pending > 0 && isStackBarrier(inst))) {
+        addStackAdjustment(out, pending);
+        pending = 0;
       }
+
+      out.add(pending == 0 ? inst : rebaseStackAccess(inst, pending));
     }
+    addStackAdjustment(out, pending);
 
-    // Second traversal to build str.
-    for (int i = 0; i < mipsSplitList.size(); i++) {
-      sb.append(mipsSplitList.get(i));
-      sb.append("\n");
+    code.getInstructions().clear();
+    code.getInstructions().addAll(out);
+  }
+
+  /**
+   * @param inst - instruction.
+   *
+   * @return number of bytes the instruction adds to $sp if it's an addu or
+   *         subu of $sp and an immediate, or zero otherwise.
+   */
+  private static int getStackAdjustment(MIPSInstruction inst) {
+    MIPSOpcode op = inst.getOpcode();
+    if ((op != MIPSOpcode.ADDU && op != MIPSOpcode.SUBU) || !inst.getOperand(0).isRegister(MIPSReg.spReg())
+        || !inst.getOperand(1).isRegister(MIPSReg.spReg()) || !inst.getOperand(2).isImmediate()) {
+      return 0;
     }
 
-    return sb.toString();
+    int bytes = inst.getOperand(2).getValue();
+    return op == MIPSOpcode.ADDU ? bytes : -bytes;
   }
 
   /**
-   * Due to how my IC generation works, duplicate labels are a possibility with
-   * complex SC evaluation. This method traverses the code generation backwards,
-   * and removes duplicate labels once they've been seen.
-   * 
-   * @param ArrayList<String> of MIPS code, delimited by newlines.
-   * 
-   * @return string with all duplicate (erroneous) labels removed.
+   * @param inst - instruction.
+   *
+   * @return true if a pending pop can't be moved past the instruction.
    */
-  private static String removeDuplicateLabels(ArrayList<String> mipsSplitList) {
-    StringBuilder sb = new StringBuilder();
-    Set<String> visitedLabels = new HashSet<>();
+  private static boolean isStackBarrier(MIPSInstruction inst) {
+    if (inst.getOpcode() == MIPSOpcode.LABEL || inst.getOpcode().isBranch()) {
+      return true;
+    }
 
-    for (int i = mipsSplitList.size() - 1; i >= 0; i--) {
-      String inst1 = mipsSplitList.get(i);
+    for (MIPSOperand operand : inst.getOperands()) {
+      if (operand.isRegister(MIPSReg.spReg())) {
+        return true;
+      }
+    }
 
-      if (inst1.matches("^L[\\d]+:")) {
-        if (visitedLabels.contains(inst1)) {
-          mipsSplitList.remove(i);
-          continue;
-        }
+    return false;
+  }
 
-        visitedLabels.add(inst1);
+  /**
+   * @param inst  - instruction that may address memory off $sp.
+   * @param bytes - pending adjustment to $sp.
+   *
+   * @return the instruction with bytes added to any offset from $sp.
+   */
+  private static MIPSInstruction rebaseStackAccess(MIPSInstruction inst, int bytes) {
+    MIPSOperand[] operands = inst.getOperands().toArray(new MIPSOperand[0]);
+    boolean changed = false;
+    for (int i = 0; i < operands.length; i++) {
+      if (operands[i].isAddress() && operands[i].getRegister().equals(MIPSReg.spReg())) {
+        operands[i] = MIPSOperand.address(operands[i].getValue() + bytes, MIPSReg.spReg());
+        changed = true;
       }
     }
 
-    // Second traversal to build str.
-    for (int i = 0; i < mipsSplitList.size(); i++) {
-      sb.append(mipsSplitList.get(i));
-      sb.append("\n");
+    return changed ? new MIPSInstruction(inst.getOpcode(), operands) : inst;
+  }
+
+  /**
+   * Appends an adjustment of $sp, if there's anything to adjust.
+   *
+   * @param out   - instructions to append to.
+   * @param bytes - number of bytes to add to $sp.
+   *
+   * @return void.
+   */
+  private static void addStackAdjustment(List<MIPSInstruction> out, int bytes) {
+    if (bytes == 0) {
+      return;
     }
 
-    return sb.toString();
+    MIPSOpcode op = bytes > 0 ? MIPSOpcode.ADDU : MIPSOpcode.SUBU;
+    out.add(new MIPSInstruction(op, MIPSOperand.reg(MIPSReg.spReg()), MIPSOperand.reg(MIPSReg.spReg()),
+        MIPSOperand.imm(Math.abs(bytes))));
+  }
+
+  /**
+   * Due to how my IC generation works, duplicate labels are a possibility with
+   * complex SC evaluation. This method traverses the code generation backwards,
+   * and removes duplicate labels once they've been seen.
+   *
+   * @param code - instructions of one function.
+   *
+   * @return void.
+   */
+  private static void removeDuplicateLabels(MIPSCode code) {
+    Set<String> visitedLabels = new HashSet<>();
+    List<MIPSInstruction> instructions = code.getInstructions();
+    List<MIPSInstruction> kept = new ArrayList<>(instructions.size());
+
+    for (int i = instructions.size() - 1; i >= 0; i--) {
+      MIPSInstruction inst = instructions.get(i);
+      if (inst.getOpcode() != MIPSOpcode.LABEL || visitedLabels.add(inst.getOperand(0).getLabel())) {
+        kept.add(inst);
+      }
+    }
 
+    Collections.reverse(kept);
+    instructions.clear();
+    instructions.addAll(kept);
   }
 }
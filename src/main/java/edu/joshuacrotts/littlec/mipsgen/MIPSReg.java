@@ -1,7 +1,14 @@
 package edu.joshuacrotts.littlec.mipsgen;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * MIPS register model. Since there is a fixed set of registers, using a static
@@ -144,6 +151,42 @@ public class MIPSReg {
       return null;
   }
 
+  /**
+   * Gets the register object for the constant zero register ($zero).
+   * 
+   * @return the register object
+   */
+  public static MIPSReg zeroReg() {
+    return regObj[0];
+  }
+
+  /**
+   * Gets the register object for the stack pointer ($sp).
+   * 
+   * @return the register object
+   */
+  public static MIPSReg spReg() {
+    return regObj[29];
+  }
+
+  /**
+   * Gets the register object for the frame pointer ($fp).
+   * 
+   * @return the register object
+   */
+  public static MIPSReg fpReg() {
+    return regObj[30];
+  }
+
+  /**
+   * Gets the register object for the return address ($ra).
+   * 
+   * @return the register object
+   */
+  public static MIPSReg raReg() {
+    return regObj[31];
+  }
+
   /**
    * Gives an iterable list of temporary registers. Useful for flushing all
    * temporary variables when the end of a basic block is reached.
@@ -197,4 +240,97 @@ public class MIPSReg {
   public static String stdFunctions() {
     return fileHeader;
   }
+
+  /** Instructions in the header that don't write their first operand. */
+  private static final Set<String> NO_DESTINATION = new HashSet<>(Arrays.asList("beqz", "bgtz", "j", "jr", "sb",
+      "sw", "syscall"));
+
+  /** Registers each routine in the header writes, read off the header itself. */
+  private static final Map<String, Set<MIPSReg>> RUNTIME_CLOBBERS = findRuntimeClobbers();
+
+  /**
+   * Registers a call to a function defined in the program may overwrite: the
+   * $t, $a and $v registers, $at, and $ra.
+   *
+   * @return the caller-saved registers.
+   */
+  public static Set<MIPSReg> callerSaved() {
+    Set<MIPSReg> regs = new LinkedHashSet<>(tRegList);
+    for (int i = 0; i < NUM_AREG; i++) {
+      regs.add(aReg(i));
+    }
+    regs.add(regObj[1]);
+    regs.add(vReg(0));
+    regs.add(vReg(1));
+    regs.add(raReg());
+    return Collections.unmodifiableSet(regs);
+  }
+
+  /**
+   * @param function - name of the function being called, e.g. gf_prints.
+   *
+   * @return every register the call may overwrite. For a routine in the
+   *         runtime header, that's the registers it writes plus $ra; for
+   *         anything else, every caller-saved register.
+   */
+  public static Set<MIPSReg> getCallClobbers(String function) {
+    Set<MIPSReg> regs = RUNTIME_CLOBBERS.get(function);
+    return regs != null ? regs : callerSaved();
+  }
+
+  /**
+   * Walks the header one routine at a time and collects the registers each
+   * routine writes, so the set can't drift from the code. A routine starts at
+   * a gf_ label and owns every line up to the next one. Each instruction
+   * writes its first operand unless it's a branch, a jump, a store or a
+   * syscall; ld writes a pair of registers. Syscalls may return a value in
+   * $v0, and the jal that reaches a routine writes $ra.
+   *
+   * @return map from routine name to the registers it writes.
+   */
+  private static Map<String, Set<MIPSReg>> findRuntimeClobbers() {
+    Map<String, MIPSReg> byName = new HashMap<>();
+    for (MIPSReg reg : regObj) {
+      byName.put(reg.getName(), reg);
+    }
+
+    Map<String, Set<MIPSReg>> clobbers = new HashMap<>();
+    Set<MIPSReg> current = null;
+    for (String line : fileHeader.split("\n")) {
+      line = line.trim();
+      int colon = line.indexOf(':');
+      if (colon >= 0) {
+        String label = line.substring(0, colon);
+        line = line.substring(colon + 1).trim();
+        if (label.startsWith("gf_")) {
+          current = new LinkedHashSet<>();
+          current.add(raReg());
+          clobbers.put(label, current);
+        } else if (label.equals("main")) {
+          current = null;
+        }
+      }
+
+      String[] fields = line.split("[\\s,]+");
+      if (current == null || line.isEmpty() || line.startsWith(".")) {
+        continue;
+      } else if (fields[0].equals("syscall")) {
+        current.add(vReg(0));
+      } else if (!NO_DESTINATION.contains(fields[0])) {
+        MIPSReg dest = byName.get(fields[1]);
+        if (dest == null) {
+          throw new IllegalStateException("Unknown register " + fields[1] + " in the runtime header");
+        }
+        current.add(dest);
+        if (fields[0].equals("ld")) {
+          current.add(regObj[dest.regNum + 1]);
+        }
+      }
+    }
+
+    for (Map.Entry<String, Set<MIPSReg>> e : clobbers.entrySet()) {
+      e.setValue(Collections.unmodifiableSet(e.getValue()));
+    }
+    return clobbers;
+  }
 }
@@ -40,16 +40,24 @@ public class ProgState {
     }
   }
 
+  /**
+   * @return the function this state belongs to.
+   */
+  public MIPSFunction getFunction() {
+    return partOf;
+  }
+
   /**
    * If a name's canonical storage location is a register, return it. Otherwise,
-   * return null.
+   * return null. Names that the register allocator assigned a register live
+   * there for the whole function.
    *
    * @param name the name to look up
    * @return canonical register or null if none
    */
   public MIPSReg getCanonicalReg(ICAddress name) {
-    MIPSReg retVal = null;
-    if (name.isParam()) {
+    MIPSReg retVal = partOf.getRegLoc(name);
+    if (retVal == null && name.isParam()) {
       int pNum = name.getOffset() / 4;
       if (pNum < MIPSReg.NUM_AREG) {
         if (pNum < paramsUsed) {
@@ -75,23 +83,27 @@ public class ProgState {
    * temporary variables, so that the epilogue and prologue can be created.
    * 
    * @param name the name
-   * @return the canonical location for the name
+   * @return the canonical location for the name, as an instruction operand
    */
-  public String getCanonicalMIPS(ICAddress name) {
-    if (name.isLocal()) {
-      return "" + (-localVarSize + name.getOffset()) + "($fp)";
+  public MIPSOperand getCanonicalMIPS(ICAddress name) {
+    if (partOf.getRegLoc(name) != null) {
+      return MIPSOperand.reg(partOf.getRegLoc(name));
+    } else if (name.isLocal()) {
+      return MIPSOperand.address(-localVarSize + name.getOffset(), MIPSReg.fpReg());
     } else if (name.isParam()) {
       MIPSReg reg = getCanonicalReg(name);
       if (reg != null) {
-        return reg.toString();
+        return MIPSOperand.reg(reg);
       } else {
         int offset = name.getOffset() - 4 * MIPSReg.NUM_AREG;
-        return offset + "($s7)";
+        return MIPSOperand.address(offset, MIPSReg.sReg(7));
       }
     } else if (name.isTemp()) {
-      return "-" + (localVarSize + partOf.getTVarLoc(name)) + "($fp)";
+      return MIPSOperand.address(-(localVarSize + partOf.getTVarLoc(name)), MIPSReg.fpReg());
+    } else if (name.isLiteral()) {
+      return MIPSOperand.imm(Integer.parseInt(name.getName()));
     } else {
-      return name.toString();
+      return MIPSOperand.label(name.toString());
     }
   }
 
@@ -335,7 +347,8 @@ public class ProgState {
   /**
    * Get an available register, avoiding two specific registers (may be null if no
    * restrictions). Get a free register if possible, and if not just pick the
-   * first non-avoiding register.
+   * first non-avoiding register. Registers holding allocated variables are
+   * never handed out.
    * 
    * @param avoid1
    * @param avoid2
@@ -343,7 +356,7 @@ public class ProgState {
    */
   public MIPSReg getNextAvailableRegister(MIPSReg avoid1, MIPSReg avoid2) {
     for (MIPSReg tr : MIPSReg.allTReg()) {
-      if ((regDesc.get(tr).size() == 0) && (tr != avoid1) && (tr != avoid2)) {
+      if ((regDesc.get(tr).size() == 0) && (tr != avoid1) && (tr != avoid2) && !partOf.isAllocatedRegister(tr)) {
         return tr;
       }
     }
@@ -0,0 +1,164 @@
+package edu.joshuacrotts.littlec.mipsgen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.joshuacrotts.littlec.icode.ICUtilities;
+import edu.joshuacrotts.littlec.icode.LivenessAnalysis;
+
+/**
+ * Base class for the register allocators. An allocator decides which variables
+ * of a function are kept in a register for their whole lifetime instead of in
+ * their stack slot. The register then becomes the variable's canonical location
+ * in ProgState, so CodeGeneration reads and writes it directly without a load
+ * or a store.
+ *
+ * Only 4-byte temporaries and locals are candidates. Bytes stay in memory since
+ * the sb/lb pair is what truncates and sign-extends them, and parameters
+ * already have their own registers. A variable that's live on entry to the
+ * function is read before it's written, so it keeps its stack slot as well.
+ *
+ * @author Joshua Crotts
+ */
+public abstract class RegisterAllocator {
+
+  /**
+   * Caller-saved registers handed out by the allocators. $t0-$t3 are left to
+   * CodeGeneration for loading spilled operands and literals.
+   */
+  private static final List<MIPSReg> TEMP_REGISTERS = Collections.unmodifiableList(new ArrayList<>(
+      MIPSReg.allTReg().subList(4, MIPSReg.NUM_TREG)));
+
+  /** Highest $s register that can be allocated; $s7 points at the stack arguments. */
+  private static final int MAX_SAVED_REGISTER = 6;
+
+  /** Function body being allocated. */
+  protected final List<LinkedList<String>> INSTRUCTIONS;
+
+  /** Liveness of every variable in the function. */
+  protected final LivenessAnalysis LIVENESS;
+
+  /** First $s register that isn't holding a parameter. */
+  protected final int FIRST_SAVED_REG;
+
+  /** Callee-saved registers that aren't holding parameters. */
+  protected final List<MIPSReg> SAVED_REGISTERS;
+
+  /** Variables that are allowed to live in a register. */
+  protected final Set<String> CANDIDATES;
+
+  /**
+   * Registers that some call overwrites while the candidate is live, for every
+   * candidate that is live across a call.
+   */
+  protected final Map<String, Set<MIPSReg>> KILLED_BY_CALLS;
+
+  /** Register chosen for each candidate that didn't spill. */
+  protected final Map<String, MIPSReg> ASSIGNMENT;
+
+  /**
+   * @param liveness      - liveness of the function body.
+   * @param firstSavedReg - first $s register that isn't used for parameters.
+   */
+  protected RegisterAllocator(LivenessAnalysis liveness, int firstSavedReg) {
+    this.INSTRUCTIONS = liveness.getInstructions();
+    this.LIVENESS = liveness;
+    this.FIRST_SAVED_REG = firstSavedReg;
+    this.SAVED_REGISTERS = new ArrayList<>();
+    this.CANDIDATES = new HashSet<>();
+    this.KILLED_BY_CALLS = new HashMap<>();
+    this.ASSIGNMENT = new HashMap<>();
+
+    for (int i = firstSavedReg; i <= MAX_SAVED_REGISTER; i++) {
+      this.SAVED_REGISTERS.add(MIPSReg.sReg(i));
+    }
+
+    this.findCandidates();
+  }
+
+  /**
+   * Assigns registers to as many candidates as possible.
+   *
+   * @return map from variable name to its register. Variables that aren't in
+   *         the map stay in memory.
+   */
+  public abstract Map<String, MIPSReg> allocate();
+
+  /**
+   * Collects the variables that may live in a register, and the registers
+   * each one can't use because a call it's live across overwrites them. A
+   * user function may overwrite every caller-saved register. A runtime
+   * routine overwrites the registers MIPSReg reads off the runtime header:
+   * $ra and $v0 for all of them, plus $a0/$a1 in gf_readline and $a0 and
+   * $t0-$t2 in gf_prints.
+   */
+  private void findCandidates() {
+    Set<String> addressTaken = new HashSet<>();
+    for (LinkedList<String> tac : INSTRUCTIONS) {
+      if (tac.get(3).equals("&") && tac.get(2).isEmpty()) {
+        addressTaken.add(tac.get(1));
+      }
+    }
+
+    for (LinkedList<String> tac : INSTRUCTIONS) {
+      for (String addr : tac) {
+        if ((ICUtilities.isTemp(addr) || addr.startsWith("l")) && ICUtilities.isVariable(addr)
+            && ICUtilities.getWidth(addr) == 4 && !addressTaken.contains(addr) && !LIVENESS.isLiveIn(0, addr)) {
+          CANDIDATES.add(addr);
+        }
+      }
+    }
+
+    for (int i = 0; i < INSTRUCTIONS.size(); i++) {
+      LinkedList<String> tac = INSTRUCTIONS.get(i);
+      if (!ICUtilities.isCall(tac)) {
+        continue;
+      }
+
+      // The result of the call is written after the callee returns.
+      Set<MIPSReg> clobbers = MIPSReg.getCallClobbers(tac.get(1));
+      for (String name : CANDIDATES) {
+        if (LIVENESS.isLiveOut(i, name) && !name.equals(tac.get(0))) {
+          KILLED_BY_CALLS.computeIfAbsent(name, n -> new HashSet<>()).addAll(clobbers);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param name - candidate variable.
+   *
+   * @return registers the variable may be assigned, in order of preference.
+   */
+  protected List<MIPSReg> getAllowedRegisters(String name) {
+    return this.getAllowedRegisters(KILLED_BY_CALLS.getOrDefault(name, Collections.emptySet()));
+  }
+
+  /**
+   * @param killed - registers overwritten by calls the variable is live
+   *               across.
+   *
+   * @return registers such a variable may be assigned, in order of preference.
+   */
+  protected List<MIPSReg> getAllowedRegisters(Set<MIPSReg> killed) {
+    List<MIPSReg> registers = new ArrayList<>();
+    for (MIPSReg reg : TEMP_REGISTERS) {
+      if (!killed.contains(reg)) {
+        registers.add(reg);
+      }
+    }
+
+    for (MIPSReg reg : SAVED_REGISTERS) {
+      if (!killed.contains(reg)) {
+        registers.add(reg);
+      }
+    }
+    return registers;
+  }
+}
@@ -0,0 +1,60 @@
+package edu.joshuacrotts.littlec.mipsinterp;
+
+/**
+ * One pre-decoded MIPS instruction. MIPSAssembler resolves registers, labels
+ * and immediates once, so MIPSInterp never looks at the assembly text again
+ * while it runs.
+ *
+ * Operand fields that an operation does not use are zero. Branches keep the
+ * index of their target instruction in TARGET.
+ *
+ * @author Joshua Crotts
+ */
+final class DecodedInstruction {
+
+  /**
+   * Operations the interpreter knows how to execute. Several mnemonics share
+   * one operation (addi, addiu, add and addu are all ADD, beqz is BEQ against
+   * an immediate zero, and so on).
+   */
+  enum Op {
+    ADD, SUB, MUL, DIV, REM, DIVHL, MFHI, MFLO, AND, OR, XOR, NOR, SLL, SRL, SRA, ROL, ROR, SLT, SLTU, SEQ, SNE,
+    SGE, SGT, SLE, MOVE, NEG, NOT, ABS, LI, LA, LW, LB, LBU, LD, SW, SB, BEQ, BNE, BLT, BGT, BLE, BGE, J, JAL, JR,
+    JALR, SYSCALL, NOP
+  }
+
+  /** Operation to perform. */
+  final Op OP;
+
+  /** Destination register. */
+  final int RD;
+
+  /** First source register, or the base register of a memory access. */
+  final int RS;
+
+  /** Second source register, or the register a store writes out. */
+  final int RT;
+
+  /** Immediate operand or memory offset. */
+  final int IMM;
+
+  /** Whether the second source is IMM rather than RT. */
+  final boolean USES_IMM;
+
+  /** Instruction index a branch or jump goes to. */
+  final int TARGET;
+
+  /** Source line, for runtime error messages. */
+  final int LINE;
+
+  DecodedInstruction(Op op, int rd, int rs, int rt, int imm, boolean usesImm, int target, int line) {
+    this.OP = op;
+    this.RD = rd;
+    this.RS = rs;
+    this.RT = rt;
+    this.IMM = imm;
+    this.USES_IMM = usesImm;
+    this.TARGET = target;
+    this.LINE = line;
+  }
+}
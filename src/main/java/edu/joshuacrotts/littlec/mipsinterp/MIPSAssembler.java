@@ -0,0 +1,620 @@
+package edu.joshuacrotts.littlec.mipsinterp;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.joshuacrotts.littlec.mipsinterp.DecodedInstruction.Op;
+
+/**
+ * Two-pass assembler for the subset of SPIM assembly that MIPSGen emits. The
+ * first pass lays out the data segment and records where every label lands;
+ * the second decodes each instruction into a DecodedInstruction with its
+ * registers, immediates and branch targets already resolved.
+ *
+ * Pseudo-instructions (li, la, move, the branch comparisons, three-operand
+ * div/rem and so on) are decoded as single operations instead of being
+ * expanded the way SPIM does, since nothing here depends on the expansion.
+ *
+ * @author Joshua Crotts
+ */
+public final class MIPSAssembler {
+
+  /** A label at the start of a line, with or without an instruction after it. */
+  private static final Pattern LABEL = Pattern.compile("^([A-Za-z_.$][A-Za-z0-9_.$]*)\\s*:");
+
+  /** A memory operand with a base register, such as "-8($fp)" or "($t0)". */
+  private static final Pattern BASE_OFFSET = Pattern.compile("^(.*)\\((\\$\\w+)\\)$");
+
+  /** Register names, by number. */
+  private static final String[] REG_NAMES = { "zero", "at", "v0", "v1", "a0", "a1", "a2", "a3", "t0", "t1", "t2",
+      "t3", "t4", "t5", "t6", "t7", "s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7", "t8", "t9", "k0", "k1", "gp",
+      "sp", "fp", "ra" };
+
+  /** Register numbers, by name (without the dollar sign). */
+  private static final Map<String, Integer> REGISTERS = new HashMap<>();
+
+  /** Mnemonics that take a destination and two sources, the second of which may be an immediate. */
+  private static final Map<String, Op> THREE_OPERAND_OPS = new HashMap<>();
+
+  /** Mnemonics that take a destination and one source register. */
+  private static final Map<String, Op> TWO_OPERAND_OPS = new HashMap<>();
+
+  /** Branches that compare two operands. */
+  private static final Map<String, Op> COMPARE_BRANCHES = new HashMap<>();
+
+  /** Branches that compare one register against zero. */
+  private static final Map<String, Op> ZERO_BRANCHES = new HashMap<>();
+
+  /** Loads and stores of the form "op $r, address". */
+  private static final Map<String, Op> MEMORY_OPS = new HashMap<>();
+
+  static {
+    for (int i = 0; i < REG_NAMES.length; i++) {
+      REGISTERS.put(REG_NAMES[i], i);
+      REGISTERS.put(Integer.toString(i), i);
+    }
+    REGISTERS.put("s8", 30);
+
+    putAll(THREE_OPERAND_OPS, Op.ADD, "add", "addu", "addi", "addiu");
+    putAll(THREE_OPERAND_OPS, Op.SUB, "sub", "subu", "subi", "subiu");
+    putAll(THREE_OPERAND_OPS, Op.MUL, "mul", "mulo", "mulou");
+    putAll(THREE_OPERAND_OPS, Op.DIV, "div", "divu");
+    putAll(THREE_OPERAND_OPS, Op.REM, "rem", "remu");
+    putAll(THREE_OPERAND_OPS, Op.AND, "and", "andi");
+    putAll(THREE_OPERAND_OPS, Op.OR, "or", "ori");
+    putAll(THREE_OPERAND_OPS, Op.XOR, "xor", "xori");
+    putAll(THREE_OPERAND_OPS, Op.NOR, "nor");
+    putAll(THREE_OPERAND_OPS, Op.SLL, "sll", "sllv");
+    putAll(THREE_OPERAND_OPS, Op.SRL, "srl", "srlv");
+    putAll(THREE_OPERAND_OPS, Op.SRA, "sra", "srav");
+    putAll(THREE_OPERAND_OPS, Op.ROL, "rol");
+    putAll(THREE_OPERAND_OPS, Op.ROR, "ror");
+    putAll(THREE_OPERAND_OPS, Op.SLT, "slt", "slti");
+    putAll(THREE_OPERAND_OPS, Op.SLTU, "sltu", "sltiu");
+    putAll(THREE_OPERAND_OPS, Op.SEQ, "seq");
+    putAll(THREE_OPERAND_OPS, Op.SNE, "sne");
+    putAll(THREE_OPERAND_OPS, Op.SGE, "sge");
+    putAll(THREE_OPERAND_OPS, Op.SGT, "sgt");
+    putAll(THREE_OPERAND_OPS, Op.SLE, "sle");
+
+    putAll(TWO_OPERAND_OPS, Op.MOVE, "move");
+    putAll(TWO_OPERAND_OPS, Op.NEG, "neg", "negu");
+    putAll(TWO_OPERAND_OPS, Op.NOT, "not");
+    putAll(TWO_OPERAND_OPS, Op.ABS, "abs");
+
+    putAll(COMPARE_BRANCHES, Op.BEQ, "beq");
+    putAll(COMPARE_BRANCHES, Op.BNE, "bne");
+    putAll(COMPARE_BRANCHES, Op.BLT, "blt");
+    putAll(COMPARE_BRANCHES, Op.BGT, "bgt");
+    putAll(COMPARE_BRANCHES, Op.BLE, "ble");
+    putAll(COMPARE_BRANCHES, Op.BGE, "bge");
+
+    putAll(ZERO_BRANCHES, Op.BEQ, "beqz");
+    putAll(ZERO_BRANCHES, Op.BNE, "bnez");
+    putAll(ZERO_BRANCHES, Op.BLT, "bltz");
+    putAll(ZERO_BRANCHES, Op.BGT, "bgtz");
+    putAll(ZERO_BRANCHES, Op.BLE, "blez");
+    putAll(ZERO_BRANCHES, Op.BGE, "bgez");
+
+    putAll(MEMORY_OPS, Op.LW, "lw");
+    putAll(MEMORY_OPS, Op.LB, "lb");
+    putAll(MEMORY_OPS, Op.LBU, "lbu");
+    putAll(MEMORY_OPS, Op.LD, "ld");
+    putAll(MEMORY_OPS, Op.SW, "sw");
+    putAll(MEMORY_OPS, Op.SB, "sb");
+    putAll(MEMORY_OPS, Op.LA, "la");
+  }
+
+  /**
+   * Instruction lines collected by the first pass, with their labels already
+   * stripped.
+   */
+  private final List<String> TEXT_LINES = new ArrayList<>();
+
+  /** Source line numbers of TEXT_LINES. */
+  private final List<Integer> TEXT_LINE_NUMBERS = new ArrayList<>();
+
+  /** Address of every label, in either segment. */
+  private final Map<String, Integer> LABELS = new HashMap<>();
+
+  /** Data segment contents. */
+  private final ByteArrayOutputStream DATA = new ByteArrayOutputStream();
+
+  /** Labels seen since the last instruction or data item. */
+  private final List<String> PENDING_LABELS = new ArrayList<>();
+
+  /** Line currently being assembled, for error messages. */
+  private int lineNumber;
+
+  private MIPSAssembler() {
+  }
+
+  /**
+   * Assembles a program.
+   *
+   * @param asm - assembly text, as produced by MIPSGen.
+   *
+   * @return the assembled program.
+   *
+   * @throws IllegalArgumentException if the text uses something this assembler
+   *                                  does not understand or has no main label.
+   */
+  public static MIPSProgram assemble(String asm) {
+    MIPSAssembler assembler = new MIPSAssembler();
+    assembler.layOut(asm);
+    return assembler.decode();
+  }
+
+  /**
+   * First pass: builds the data segment and binds every label to an address.
+   * Instruction lines are only collected here.
+   *
+   * @param asm - assembly text.
+   *
+   * @return void.
+   */
+  private void layOut(String asm) {
+    boolean inText = true;
+    String[] lines = asm.split("\n");
+    for (this.lineNumber = 1; this.lineNumber <= lines.length; this.lineNumber++) {
+      String line = stripComment(lines[this.lineNumber - 1]).trim();
+
+      // Peel off any labels in front of the line.
+      Matcher m;
+      while ((m = LABEL.matcher(line)).find()) {
+        this.PENDING_LABELS.add(m.group(1));
+        line = line.substring(m.end()).trim();
+      }
+
+      if (line.isEmpty()) {
+        continue;
+      }
+
+      if (line.charAt(0) == '.') {
+        String directive = firstToken(line);
+        String args = line.substring(directive.length()).trim();
+        switch (directive) {
+          case ".text":
+            inText = true;
+            break;
+          case ".data":
+            inText = false;
+            break;
+          case ".globl":
+          case ".extern":
+            break;
+          default:
+            if (inText) {
+              throw error("data directive " + directive + " in the text segment");
+            }
+            this.layOutData(directive, args);
+            break;
+        }
+      } else {
+        if (!inText) {
+          throw error("instruction in the data segment");
+        }
+        this.bindPendingLabels(MIPSProgram.TEXT_BASE + 4 * this.TEXT_LINES.size());
+        this.TEXT_LINES.add(line);
+        this.TEXT_LINE_NUMBERS.add(this.lineNumber);
+      }
+    }
+  }
+
+  /**
+   * Appends one data directive to the data segment. Words are aligned to four
+   * bytes first, and any labels waiting on this line are bound after the
+   * alignment, as SPIM does.
+   *
+   * @param directive - directive name, including the dot.
+   * @param args      - everything after the directive name.
+   *
+   * @return void.
+   */
+  private void layOutData(String directive, String args) {
+    switch (directive) {
+      case ".align":
+        this.alignData(1 << this.parseNumber(args));
+        break;
+      case ".word":
+        this.alignData(4);
+        this.bindPendingLabels(this.dataAddress());
+        this.layOutValues(args, 4);
+        break;
+      case ".half":
+        this.alignData(2);
+        this.bindPendingLabels(this.dataAddress());
+        this.layOutValues(args, 2);
+        break;
+      case ".byte":
+        this.bindPendingLabels(this.dataAddress());
+        this.layOutValues(args, 1);
+        break;
+      case ".space":
+        this.bindPendingLabels(this.dataAddress());
+        for (int n = this.parseNumber(args); n > 0; n--) {
+          this.DATA.write(0);
+        }
+        break;
+      case ".ascii":
+      case ".asciiz":
+        this.bindPendingLabels(this.dataAddress());
+        byte[] bytes = this.parseString(args);
+        this.DATA.write(bytes, 0, bytes.length);
+        if (directive.equals(".asciiz")) {
+          this.DATA.write(0);
+        }
+        break;
+      default:
+        throw error("unsupported directive " + directive);
+    }
+  }
+
+  /**
+   * Writes a comma-separated list of values, each of which may be repeated
+   * with the "value:count" form.
+   *
+   * @param args  - list of values.
+   * @param width - size of each value in bytes.
+   *
+   * @return void.
+   */
+  private void layOutValues(String args, int width) {
+    for (String item : args.split(",")) {
+      item = item.trim();
+      int count = 1;
+      int colon = item.indexOf(':');
+      if (colon >= 0) {
+        count = this.parseNumber(item.substring(colon + 1).trim());
+        item = item.substring(0, colon).trim();
+      }
+
+      int value = this.parseNumber(item);
+      for (int i = 0; i < count; i++) {
+        for (int b = 0; b < width; b++) {
+          this.DATA.write(value >> (8 * b));
+        }
+      }
+    }
+  }
+
+  /**
+   * Pads the data segment with zeros up to a multiple of alignment.
+   *
+   * @param alignment - alignment in bytes.
+   *
+   * @return void.
+   */
+  private void alignData(int alignment) {
+    while (this.DATA.size() % alignment != 0) {
+      this.DATA.write(0);
+    }
+  }
+
+  private int dataAddress() {
+    return MIPSProgram.DATA_BASE + this.DATA.size();
+  }
+
+  /**
+   * Binds every label seen since the last instruction or data item to an
+   * address.
+   *
+   * @param address - address of the item the labels name.
+   *
+   * @return void.
+   */
+  private void bindPendingLabels(int address) {
+    for (String label : this.PENDING_LABELS) {
+      if (this.LABELS.put(label, address) != null) {
+        throw error("label " + label + " is defined more than once");
+      }
+    }
+    this.PENDING_LABELS.clear();
+  }
+
+  /**
+   * Second pass: decodes every instruction line now that all labels are known.
+   *
+   * @return the assembled program.
+   */
+  private MIPSProgram decode() {
+    Integer main = this.LABELS.get("main");
+    if (main == null) {
+      throw new IllegalArgumentException("Program has no main label");
+    }
+
+    DecodedInstruction[] text = new DecodedInstruction[this.TEXT_LINES.size()];
+    for (int i = 0; i < text.length; i++) {
+      this.lineNumber = this.TEXT_LINE_NUMBERS.get(i);
+      text[i] = this.decodeInstruction(this.TEXT_LINES.get(i));
+    }
+
+    return new MIPSProgram(text, this.DATA.toByteArray(), this.textIndex(main));
+  }
+
+  /**
+   * Decodes a single instruction.
+   *
+   * @param line - instruction text, without labels or comments.
+   *
+   * @return the decoded instruction.
+   */
+  private DecodedInstruction decodeInstruction(String line) {
+    String mnemonic = firstToken(line);
+    String rest = line.substring(mnemonic.length()).trim();
+    String[] ops = rest.isEmpty() ? new String[0] : rest.split("\\s*,\\s*");
+
+    Op op;
+    if ((op = THREE_OPERAND_OPS.get(mnemonic)) != null) {
+      if (op == Op.DIV && ops.length == 2) {
+        this.expectOperands(ops, 2);
+        return this.instruction(Op.DIVHL, 0, this.parseRegister(ops[0]), this.parseRegister(ops[1]), 0, false, 0);
+      }
+      this.expectOperands(ops, 3);
+      return this.aluInstruction(op, this.parseRegister(ops[0]), this.parseRegister(ops[1]), ops[2]);
+    } else if ((op = TWO_OPERAND_OPS.get(mnemonic)) != null) {
+      this.expectOperands(ops, 2);
+      return this.instruction(op, this.parseRegister(ops[0]), this.parseRegister(ops[1]), 0, 0, false, 0);
+    } else if ((op = COMPARE_BRANCHES.get(mnemonic)) != null) {
+      this.expectOperands(ops, 3);
+      boolean usesImm = !isRegister(ops[1]);
+      int rt = usesImm ? 0 : this.parseRegister(ops[1]);
+      int imm = usesImm ? this.parseNumber(ops[1]) : 0;
+      return this.instruction(op, 0, this.parseRegister(ops[0]), rt, imm, usesImm, this.branchTarget(ops[2]));
+    } else if ((op = ZERO_BRANCHES.get(mnemonic)) != null) {
+      this.expectOperands(ops, 2);
+      return this.instruction(op, 0, this.parseRegister(ops[0]), 0, 0, true, this.branchTarget(ops[1]));
+    } else if ((op = MEMORY_OPS.get(mnemonic)) != null) {
+      this.expectOperands(ops, 2);
+      int reg = this.parseRegister(ops[0]);
+      int[] address = this.parseAddress(ops[1]);
+      boolean isStore = op == Op.SW || op == Op.SB;
+      return this.instruction(op, isStore ? 0 : reg, address[0], isStore ? reg : 0, address[1], true, 0);
+    }
+
+    switch (mnemonic) {
+      case "li":
+        this.expectOperands(ops, 2);
+        return this.instruction(Op.LI, this.parseRegister(ops[0]), 0, 0, this.parseNumber(ops[1]), true, 0);
+      case "mfhi":
+      case "mflo":
+        this.expectOperands(ops, 1);
+        return this.instruction(mnemonic.equals("mfhi") ? Op.MFHI : Op.MFLO, this.parseRegister(ops[0]), 0, 0, 0,
+            false, 0);
+      case "b":
+      case "j":
+        this.expectOperands(ops, 1);
+        return this.instruction(Op.J, 0, 0, 0, 0, false, this.branchTarget(ops[0]));
+      case "jal":
+        this.expectOperands(ops, 1);
+        return this.instruction(Op.JAL, 0, 0, 0, 0, false, this.branchTarget(ops[0]));
+      case "jr":
+        this.expectOperands(ops, 1);
+        return this.instruction(Op.JR, 0, this.parseRegister(ops[0]), 0, 0, false, 0);
+      case "jalr":
+        this.expectOperands(ops, 1);
+        return this.instruction(Op.JALR, 0, this.parseRegister(ops[0]), 0, 0, false, 0);
+      case "syscall":
+        this.expectOperands(ops, 0);
+        return this.instruction(Op.SYSCALL, 0, 0, 0, 0, false, 0);
+      case "nop":
+        this.expectOperands(ops, 0);
+        return this.instruction(Op.NOP, 0, 0, 0, 0, false, 0);
+      default:
+        throw error("unsupported instruction " + mnemonic);
+    }
+  }
+
+  /**
+   * Decodes an instruction of the form "op $rd, $rs, src" where src is either
+   * a register or an immediate.
+   *
+   * @param op  - operation.
+   * @param rd  - destination register.
+   * @param rs  - first source register.
+   * @param src - second source operand text.
+   *
+   * @return the decoded instruction.
+   */
+  private DecodedInstruction aluInstruction(Op op, int rd, int rs, String src) {
+    if (isRegister(src)) {
+      return this.instruction(op, rd, rs, this.parseRegister(src), 0, false, 0);
+    }
+    return this.instruction(op, rd, rs, 0, this.parseNumber(src), true, 0);
+  }
+
+  private DecodedInstruction instruction(Op op, int rd, int rs, int rt, int imm, boolean usesImm, int target) {
+    return new DecodedInstruction(op, rd, rs, rt, imm, usesImm, target, this.lineNumber);
+  }
+
+  /**
+   * Parses a memory operand: "offset($base)", "($base)", "label",
+   * "label+offset", "label($base)" or a bare address.
+   *
+   * @param operand - operand text.
+   *
+   * @return a two-element array holding the base register and the offset.
+   */
+  private int[] parseAddress(String operand) {
+    Matcher m = BASE_OFFSET.matcher(operand);
+    if (m.matches()) {
+      String offset = m.group(1).trim();
+      return new int[] { this.parseRegister(m.group(2)), offset.isEmpty() ? 0 : this.parseValue(offset) };
+    }
+    return new int[] { 0, this.parseValue(operand) };
+  }
+
+  /**
+   * Parses a number, a label or "label+number"/"label-number".
+   *
+   * @param operand - operand text.
+   *
+   * @return the value it stands for.
+   */
+  private int parseValue(String operand) {
+    char c = operand.charAt(0);
+    if (Character.isDigit(c) || c == '-' || c == '+' || c == '\'') {
+      return this.parseNumber(operand);
+    }
+
+    int split = Math.max(operand.indexOf('+'), operand.indexOf('-'));
+    String label = split < 0 ? operand : operand.substring(0, split).trim();
+    Integer address = this.LABELS.get(label);
+    if (address == null) {
+      throw error("undefined label " + label);
+    }
+    return split < 0 ? address : address + this.parseNumber(operand.substring(split).trim());
+  }
+
+  /**
+   * Resolves a label used as a branch or jump target to an instruction index.
+   *
+   * @param label - label text.
+   *
+   * @return index of the instruction the label names.
+   */
+  private int branchTarget(String label) {
+    Integer address = this.LABELS.get(label);
+    if (address == null) {
+      throw error("undefined label " + label);
+    }
+    return this.textIndex(address);
+  }
+
+  private int textIndex(int address) {
+    int index = (address - MIPSProgram.TEXT_BASE) / 4;
+    if (address < MIPSProgram.TEXT_BASE || index >= this.TEXT_LINES.size()) {
+      throw error("label does not name an instruction");
+    }
+    return index;
+  }
+
+  private int parseRegister(String operand) {
+    Integer reg = isRegister(operand) ? REGISTERS.get(operand.substring(1)) : null;
+    if (reg == null) {
+      throw error("bad register " + operand);
+    }
+    return reg;
+  }
+
+  /**
+   * Parses a decimal, hexadecimal or character literal.
+   *
+   * @param operand - literal text.
+   *
+   * @return its value, truncated to 32 bits.
+   */
+  private int parseNumber(String operand) {
+    try {
+      if (operand.length() >= 3 && operand.charAt(0) == '\'') {
+        return this.parseString(operand)[0];
+      }
+      return (int) (long) Long.decode(operand);
+    } catch (NumberFormatException e) {
+      throw error("bad number " + operand);
+    }
+  }
+
+  /**
+   * Parses a quoted string literal, handling the usual escapes.
+   *
+   * @param literal - literal text including its quotes.
+   *
+   * @return the bytes of the string, without a terminator.
+   */
+  private byte[] parseString(String literal) {
+    char quote = literal.charAt(0);
+    if ((quote != '"' && quote != '\'') || literal.length() < 2 || literal.charAt(literal.length() - 1) != quote) {
+      throw error("bad string literal " + literal);
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for (int i = 1; i < literal.length() - 1; i++) {
+      char c = literal.charAt(i);
+      if (c == '\\' && i + 1 < literal.length() - 1) {
+        c = literal.charAt(++i);
+        switch (c) {
+          case 'n':
+            c = '\n';
+            break;
+          case 't':
+            c = '\t';
+            break;
+          case 'r':
+            c = '\r';
+            break;
+          case '0':
+            c = '\0';
+            break;
+          default:
+            break;
+        }
+      }
+      bytes.write(c);
+    }
+    return bytes.toByteArray();
+  }
+
+  private void expectOperands(String[] ops, int count) {
+    if (ops.length != count) {
+      throw error("expected " + count + " operands but found " + ops.length);
+    }
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException("Assembly error on line " + this.lineNumber + ": " + message);
+  }
+
+  private static boolean isRegister(String operand) {
+    return !operand.isEmpty() && operand.charAt(0) == '$';
+  }
+
+  /**
+   * @return the text up to the first whitespace character.
+   */
+  private static String firstToken(String line) {
+    int i = 0;
+    while (i < line.length() && !Character.isWhitespace(line.charAt(i))) {
+      i++;
+    }
+    return line.substring(0, i);
+  }
+
+  /**
+   * Removes a trailing "#" comment, ignoring any "#" inside a string or
+   * character literal.
+   *
+   * @param line - source line.
+   *
+   * @return the line without its comment.
+   */
+  private static String stripComment(String line) {
+    char quote = 0;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quote != 0) {
+        if (c == '\\') {
+          i++;
+        } else if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '"' || c == '\'') {
+        quote = c;
+      } else if (c == '#') {
+        return line.substring(0, i);
+      }
+    }
+    return line;
+  }
+
+  private static void putAll(Map<String, Op> map, Op op, String... mnemonics) {
+    for (String mnemonic : mnemonics) {
+      map.put(mnemonic, op);
+    }
+  }
+}
@@ -0,0 +1,566 @@
+package edu.joshuacrotts.littlec.mipsinterp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Interpreter for the MIPS assembly MIPSGen emits, so compiled programs can be
+ * run without SPIM. The program is assembled once into an array of decoded
+ * instructions and then executed directly from that array.
+ *
+ * Memory follows SPIM's layout: the data segment starts at 0x10010000 and the
+ * stack grows down from just below 0x80000000. The stack is allocated lazily
+ * as the program touches it. Only the syscalls the runtime header uses are
+ * supported (1, 2, 4, 5, 8, 10, 11 and 12).
+ *
+ * @author Joshua Crotts
+ */
+public class MIPSInterp {
+
+  /** Initial stack pointer, as SPIM sets it. */
+  private static final int STACK_POINTER = 0x7fffeffc;
+
+  /** Initial global pointer, as SPIM sets it. */
+  private static final int GLOBAL_POINTER = 0x10008000;
+
+  /** One past the highest stack address. */
+  private static final long STACK_END = 0x80000000L;
+
+  /** Largest the stack may grow to before we report an overflow. */
+  private static final int MAX_STACK_SIZE = 64 << 20;
+
+  /** Stack bytes allocated up front. */
+  private static final int INITIAL_STACK_SIZE = 64 << 10;
+
+  /**
+   * Return address main starts with. Returning to it ends the program, the
+   * same as SPIM's startup code calling exit.
+   */
+  private static final int EXIT_ADDRESS = 0;
+
+  /** Output is flushed once this many characters are buffered. */
+  private static final int OUTPUT_BUFFER_SIZE = 8192;
+
+  /** Index of $v0. */
+  private static final int V0 = 2;
+
+  /** Index of $a0. */
+  private static final int A0 = 4;
+
+  /** Index of $a1. */
+  private static final int A1 = 5;
+
+  /** Index of $gp. */
+  private static final int GP = 28;
+
+  /** Index of $sp. */
+  private static final int SP = 29;
+
+  /** Index of $ra. */
+  private static final int RA = 31;
+
+  /** Program being run. */
+  private final MIPSProgram PROGRAM;
+
+  /** General-purpose registers. */
+  private final int[] regs = new int[32];
+
+  /**
+   * Floating-point registers. The compiler never emits coprocessor 1
+   * instructions, so these only exist for the print float syscall.
+   */
+  private final float[] fregs = new float[32];
+
+  /** Data segment. */
+  private byte[] data;
+
+  /** Stack segment; index 0 is at address stackBase. */
+  private byte[] stack;
+
+  /** Lowest address currently backed by the stack array. */
+  private int stackBase;
+
+  /** Results of the last two-operand div. */
+  private int hi, lo;
+
+  /** Number of instructions executed by the last run. */
+  private long steps;
+
+  /** Program input. */
+  private BufferedReader in;
+
+  /** Program output. */
+  private PrintStream out;
+
+  /** Output not yet written to out. */
+  private final StringBuilder outBuffer = new StringBuilder();
+
+  /**
+   * Assembles a program so it can be run.
+   *
+   * @param asm - assembly text, as produced by MIPSGen.
+   */
+  public MIPSInterp(String asm) {
+    this(MIPSAssembler.assemble(asm));
+  }
+
+  public MIPSInterp(MIPSProgram program) {
+    this.PROGRAM = program;
+  }
+
+  public long getSteps() {
+    return this.steps;
+  }
+
+  /**
+   * Runs the program from main until it returns or makes the exit syscall.
+   * Everything written before a runtime error is still flushed to out.
+   *
+   * @param input  - stream the read syscalls take input from.
+   * @param output - stream the print syscalls write to.
+   *
+   * @throws IllegalStateException if the program faults (bad address,
+   *                               division by zero, stack overflow, ...).
+   *
+   * @return void.
+   */
+  public void run(InputStream input, PrintStream output) {
+    this.in = new BufferedReader(new InputStreamReader(input));
+    this.out = output;
+    this.data = this.PROGRAM.copyData();
+    this.stack = new byte[INITIAL_STACK_SIZE];
+    this.stackBase = (int) (STACK_END - INITIAL_STACK_SIZE);
+    this.steps = 0;
+    Arrays.fill(this.regs, 0);
+    this.regs[SP] = STACK_POINTER;
+    this.regs[GP] = GLOBAL_POINTER;
+    this.regs[RA] = EXIT_ADDRESS;
+
+    try {
+      this.execute();
+    } finally {
+      this.flushOutput();
+    }
+  }
+
+  /**
+   * The fetch-execute loop.
+   *
+   * @return void.
+   */
+  private void execute() {
+    final DecodedInstruction[] text = this.PROGRAM.getText();
+    final int[] r = this.regs;
+    int pc = this.PROGRAM.getEntry();
+    long count = 0;
+
+    try {
+      while (true) {
+        DecodedInstruction inst = text[pc++];
+        count++;
+        int b = inst.USES_IMM ? inst.IMM : r[inst.RT];
+
+        switch (inst.OP) {
+          case ADD:
+            r[inst.RD] = r[inst.RS] + b;
+            break;
+          case SUB:
+            r[inst.RD] = r[inst.RS] - b;
+            break;
+          case MUL:
+            r[inst.RD] = r[inst.RS] * b;
+            break;
+          case DIV:
+            r[inst.RD] = r[inst.RS] / this.divisor(b, inst);
+            break;
+          case REM:
+            r[inst.RD] = r[inst.RS] % this.divisor(b, inst);
+            break;
+          case DIVHL:
+            // The hardware divide leaves hi/lo undefined on a zero divisor.
+            this.lo = b == 0 ? 0 : r[inst.RS] / b;
+            this.hi = b == 0 ? 0 : r[inst.RS] % b;
+            break;
+          case MFHI:
+            r[inst.RD] = this.hi;
+            break;
+          case MFLO:
+            r[inst.RD] = this.lo;
+            break;
+          case AND:
+            r[inst.RD] = r[inst.RS] & b;
+            break;
+          case OR:
+            r[inst.RD] = r[inst.RS] | b;
+            break;
+          case XOR:
+            r[inst.RD] = r[inst.RS] ^ b;
+            break;
+          case NOR:
+            r[inst.RD] = ~(r[inst.RS] | b);
+            break;
+          case SLL:
+            r[inst.RD] = r[inst.RS] << b;
+            break;
+          case SRL:
+            r[inst.RD] = r[inst.RS] >>> b;
+            break;
+          case SRA:
+            r[inst.RD] = r[inst.RS] >> b;
+            break;
+          case ROL:
+            r[inst.RD] = Integer.rotateLeft(r[inst.RS], b);
+            break;
+          case ROR:
+            r[inst.RD] = Integer.rotateRight(r[inst.RS], b);
+            break;
+          case SLT:
+            r[inst.RD] = r[inst.RS] < b ? 1 : 0;
+            break;
+          case SLTU:
+            r[inst.RD] = Integer.compareUnsigned(r[inst.RS], b) < 0 ? 1 : 0;
+            break;
+          case SEQ:
+            r[inst.RD] = r[inst.RS] == b ? 1 : 0;
+            break;
+          case SNE:
+            r[inst.RD] = r[inst.RS] != b ? 1 : 0;
+            break;
+          case SGE:
+            r[inst.RD] = r[inst.RS] >= b ? 1 : 0;
+            break;
+          case SGT:
+            r[inst.RD] = r[inst.RS] > b ? 1 : 0;
+            break;
+          case SLE:
+            r[inst.RD] = r[inst.RS] <= b ? 1 : 0;
+            break;
+          case MOVE:
+            r[inst.RD] = r[inst.RS];
+            break;
+          case NEG:
+            r[inst.RD] = -r[inst.RS];
+            break;
+          case NOT:
+            r[inst.RD] = ~r[inst.RS];
+            break;
+          case ABS:
+            r[inst.RD] = Math.abs(r[inst.RS]);
+            break;
+          case LI:
+            r[inst.RD] = inst.IMM;
+            break;
+          case LA:
+            r[inst.RD] = r[inst.RS] + inst.IMM;
+            break;
+          case LW:
+            r[inst.RD] = this.loadWord(r[inst.RS] + inst.IMM, inst);
+            break;
+          case LD:
+            r[inst.RD] = this.loadWord(r[inst.RS] + inst.IMM, inst);
+            r[(inst.RD + 1) & 31] = this.loadWord(r[inst.RS] + inst.IMM + 4, inst);
+            break;
+          case LB:
+            r[inst.RD] = this.loadByte(r[inst.RS] + inst.IMM, inst);
+            break;
+          case LBU:
+            r[inst.RD] = this.loadByte(r[inst.RS] + inst.IMM, inst) & 0xff;
+            break;
+          case SW:
+            this.storeWord(r[inst.RS] + inst.IMM, r[inst.RT], inst);
+            break;
+          case SB:
+            this.storeByte(r[inst.RS] + inst.IMM, r[inst.RT], inst);
+            break;
+          case BEQ:
+            if (r[inst.RS] == b) {
+              pc = inst.TARGET;
+            }
+            break;
+          case BNE:
+            if (r[inst.RS] != b) {
+              pc = inst.TARGET;
+            }
+            break;
+          case BLT:
+            if (r[inst.RS] < b) {
+              pc = inst.TARGET;
+            }
+            break;
+          case BGT:
+            if (r[inst.RS] > b) {
+              pc = inst.TARGET;
+            }
+            break;
+          case BLE:
+            if (r[inst.RS] <= b) {
+              pc = inst.TARGET;
+            }
+            break;
+          case BGE:
+            if (r[inst.RS] >= b) {
+              pc = inst.TARGET;
+            }
+            break;
+          case J:
+            pc = inst.TARGET;
+            break;
+          case JAL:
+            r[RA] = MIPSProgram.TEXT_BASE + 4 * pc;
+            pc = inst.TARGET;
+            break;
+          case JR:
+            if (r[inst.RS] == EXIT_ADDRESS) {
+              return;
+            }
+            pc = this.textIndex(r[inst.RS], inst);
+            break;
+          case JALR: {
+            int target = this.textIndex(r[inst.RS], inst);
+            r[RA] = MIPSProgram.TEXT_BASE + 4 * pc;
+            pc = target;
+            break;
+          }
+          case SYSCALL:
+            if (!this.syscall(inst)) {
+              return;
+            }
+            break;
+          case NOP:
+            break;
+          default:
+            throw this.fault("unknown operation " + inst.OP, inst);
+        }
+        r[0] = 0;
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IllegalStateException("Runtime error: execution ran off the end of the text segment");
+    } finally {
+      this.steps = count;
+    }
+  }
+
+  /**
+   * Performs the syscall selected by $v0.
+   *
+   * @param inst - the syscall instruction, for error messages.
+   *
+   * @return false if the program asked to exit, true otherwise.
+   */
+  private boolean syscall(DecodedInstruction inst) {
+    final int[] r = this.regs;
+    switch (r[V0]) {
+      case 1:
+        this.outBuffer.append(r[A0]);
+        break;
+      case 2:
+        this.outBuffer.append(this.fregs[12]);
+        break;
+      case 4:
+        for (int addr = r[A0], c; (c = this.loadByte(addr, inst) & 0xff) != 0; addr++) {
+          this.outBuffer.append((char) c);
+        }
+        break;
+      case 5:
+        r[V0] = this.readInt();
+        break;
+      case 8:
+        this.readString(r[A0], r[A1], inst);
+        break;
+      case 10:
+        return false;
+      case 11:
+        this.outBuffer.append((char) (r[A0] & 0xff));
+        break;
+      case 12:
+        this.flushOutput();
+        r[V0] = this.read();
+        break;
+      default:
+        throw this.fault("unsupported syscall " + r[V0], inst);
+    }
+
+    if (this.outBuffer.length() >= OUTPUT_BUFFER_SIZE) {
+      this.flushOutput();
+    }
+    return true;
+  }
+
+  /**
+   * Reads a line and parses it as an integer. Like SPIM, anything that is not a
+   * number reads as zero.
+   *
+   * @return the integer read.
+   */
+  private int readInt() {
+    this.flushOutput();
+    try {
+      String line = this.in.readLine();
+      return line == null ? 0 : Integer.parseInt(line.trim());
+    } catch (NumberFormatException e) {
+      return 0;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Reads at most length - 1 characters, stopping after a newline, into a
+   * buffer and terminates it with a zero byte.
+   *
+   * @param addr   - address of the buffer.
+   * @param length - size of the buffer.
+   * @param inst   - the syscall instruction, for error messages.
+   *
+   * @return void.
+   */
+  private void readString(int addr, int length, DecodedInstruction inst) {
+    this.flushOutput();
+    int i = 0;
+    while (i < length - 1) {
+      int c = this.read();
+      if (c < 0) {
+        break;
+      }
+      this.storeByte(addr + i++, c, inst);
+      if (c == '\n') {
+        break;
+      }
+    }
+    if (length > 0) {
+      this.storeByte(addr + i, 0, inst);
+    }
+  }
+
+  private int read() {
+    try {
+      return this.in.read();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void flushOutput() {
+    if (this.outBuffer.length() > 0) {
+      this.out.append(this.outBuffer);
+      this.outBuffer.setLength(0);
+    }
+    this.out.flush();
+  }
+
+  private int divisor(int b, DecodedInstruction inst) {
+    if (b == 0) {
+      throw this.fault("division by zero", inst);
+    }
+    return b;
+  }
+
+  /**
+   * Converts a code address back into an instruction index.
+   *
+   * @param addr - address from a register.
+   * @param inst - the jump, for error messages.
+   *
+   * @return the instruction index.
+   */
+  private int textIndex(int addr, DecodedInstruction inst) {
+    int index = (addr - MIPSProgram.TEXT_BASE) >> 2;
+    if ((addr & 3) != 0 || index < 0 || index >= this.PROGRAM.getText().length) {
+      throw this.fault("jump to bad address 0x" + Integer.toHexString(addr), inst);
+    }
+    return index;
+  }
+
+  private int loadWord(int addr, DecodedInstruction inst) {
+    byte[] mem = this.segment(addr, 4, inst);
+    int i = this.offset(addr, mem);
+    return (mem[i] & 0xff) | (mem[i + 1] & 0xff) << 8 | (mem[i + 2] & 0xff) << 16 | mem[i + 3] << 24;
+  }
+
+  private void storeWord(int addr, int value, DecodedInstruction inst) {
+    byte[] mem = this.segment(addr, 4, inst);
+    int i = this.offset(addr, mem);
+    mem[i] = (byte) value;
+    mem[i + 1] = (byte) (value >> 8);
+    mem[i + 2] = (byte) (value >> 16);
+    mem[i + 3] = (byte) (value >> 24);
+  }
+
+  private int loadByte(int addr, DecodedInstruction inst) {
+    byte[] mem = this.segment(addr, 1, inst);
+    return mem[this.offset(addr, mem)];
+  }
+
+  private void storeByte(int addr, int value, DecodedInstruction inst) {
+    byte[] mem = this.segment(addr, 1, inst);
+    mem[this.offset(addr, mem)] = (byte) value;
+  }
+
+  private int offset(int addr, byte[] mem) {
+    return mem == this.data ? addr - MIPSProgram.DATA_BASE : addr - this.stackBase;
+  }
+
+  /**
+   * Finds the segment that holds an access, growing the stack if the access is
+   * just below it.
+   *
+   * @param addr  - address of the access.
+   * @param width - size of the access in bytes.
+   * @param inst  - the instruction making the access, for error messages.
+   *
+   * @return the data or stack array.
+   */
+  private byte[] segment(int addr, int width, DecodedInstruction inst) {
+    if ((addr & (width - 1)) != 0) {
+      throw this.fault("unaligned access to 0x" + Integer.toHexString(addr), inst);
+    }
+
+    int dataOffset = addr - MIPSProgram.DATA_BASE;
+    if (dataOffset >= 0 && dataOffset <= this.data.length - width) {
+      return this.data;
+    }
+
+    // Addresses at or above 0x80000000 are negative, so they fail here too.
+    if (addr >= this.stackBase) {
+      return this.stack;
+    }
+
+    if (addr >= (int) (STACK_END - MAX_STACK_SIZE)) {
+      this.growStack(addr);
+      return this.stack;
+    }
+
+    throw this.fault("bad address 0x" + Integer.toHexString(addr), inst);
+  }
+
+  /**
+   * Grows the stack array downward, at least doubling it, until it covers
+   * addr.
+   *
+   * @param addr - lowest address that must be backed.
+   *
+   * @return void.
+   */
+  private void growStack(int addr) {
+    long needed = STACK_END - addr;
+    long size = this.stack.length;
+    while (size < needed) {
+      size *= 2;
+    }
+    size = Math.min(size, MAX_STACK_SIZE);
+
+    byte[] grown = new byte[(int) size];
+    System.arraycopy(this.stack, 0, grown, grown.length - this.stack.length, this.stack.length);
+    this.stack = grown;
+    this.stackBase = (int) (STACK_END - size);
+  }
+
+  private IllegalStateException fault(String message, DecodedInstruction inst) {
+    return new IllegalStateException("Runtime error on line " + inst.LINE + ": " + message);
+  }
+}
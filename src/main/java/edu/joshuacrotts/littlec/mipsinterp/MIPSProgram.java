@@ -0,0 +1,64 @@
+package edu.joshuacrotts.littlec.mipsinterp;
+
+import java.util.Arrays;
+
+/**
+ * An assembled program: the decoded text segment, the initial image of the
+ * data segment and the instruction execution starts at.
+ *
+ * @author Joshua Crotts
+ */
+public final class MIPSProgram {
+
+  /** Address of the first instruction, as SPIM lays out the text segment. */
+  public static final int TEXT_BASE = 0x00400000;
+
+  /** Address of the first byte of the data segment. */
+  public static final int DATA_BASE = 0x10010000;
+
+  /**
+   * Zeroed bytes past the end of the data the program declares. SPIM's data
+   * segment is much larger than the program's data, and gf_prints relies on
+   * that when it reads a short string a word at a time.
+   */
+  private static final int DATA_SLACK = 64 << 10;
+
+  /** Decoded instructions, in program order. */
+  private final DecodedInstruction[] TEXT;
+
+  /** Initial contents of the data segment. */
+  private final byte[] DATA;
+
+  /** Index of the "main" label in TEXT. */
+  private final int ENTRY;
+
+  MIPSProgram(DecodedInstruction[] text, byte[] data, int entry) {
+    this.TEXT = text;
+    this.DATA = data;
+    this.ENTRY = entry;
+  }
+
+  DecodedInstruction[] getText() {
+    return this.TEXT;
+  }
+
+  /**
+   * @return a fresh, zero-padded copy of the data segment, so the program can
+   *         be run more than once.
+   */
+  byte[] copyData() {
+    return Arrays.copyOf(this.DATA, this.DATA.length + DATA_SLACK);
+  }
+
+  int getEntry() {
+    return this.ENTRY;
+  }
+
+  public int getInstructionCount() {
+    return this.TEXT.length;
+  }
+
+  public int getDataSize() {
+    return this.DATA.length;
+  }
+}
@@ -5,7 +5,7 @@ import org.antlr.v4.runtime.ParserRuleContext;
 import edu.joshuacrotts.littlec.icode.ICInhAttr;
 import edu.joshuacrotts.littlec.icode.ICode;
 import edu.joshuacrotts.littlec.main.LCErrorListener;
-import edu.joshuacrotts.littlec.main.LCUtilities;
+import edu.joshuacrotts.littlec.main.LCType;
 
 public class LCArrayIndexNode extends LCSyntaxTree {
 
@@ -22,14 +22,14 @@ public class LCArrayIndexNode extends LCSyntaxTree {
    * @param arrayIdentifier
    * @param indexExpr
    */
-  public LCArrayIndexNode(ParserRuleContext ctx, String arrayType, LCSyntaxTree arrayIdentifier,
+  public LCArrayIndexNode(ParserRuleContext ctx, LCType arrayType, LCSyntaxTree arrayIdentifier,
       LCSyntaxTree indexExpr) {
     super("AIDX", arrayType); // Parameter 2 is the type of one of the array elements.
                               // No third parameter.
     /* Child 1 is the array identifier (as a syntax tree). */
     super.addChild(arrayIdentifier);
 
-    if (!(indexExpr.getType().equals("int")) && !(LCUtilities.isCastable(indexExpr.getType(), "int"))) {
+    if (indexExpr.getType() != LCType.INT && !(indexExpr.getType().isCastableTo(LCType.INT))) {
       LCErrorListener.syntaxError(ctx, "array index expression is invalid.");
       return;
     }
@@ -48,7 +48,7 @@ public class LCArrayIndexNode extends LCSyntaxTree {
     super.isCalled = true;
 
     // Generate the temp var to store the address.
-    int width = LCUtilities.getDataWidth(this.getType());
+    int width = this.getType().getWidth();
     String tmpAddr = ICode.getTopAR().addTemporaryVariable(width);
     String op = "";
 
@@ -56,13 +56,13 @@ public class LCArrayIndexNode extends LCSyntaxTree {
     ICInhAttr e1 = new ICInhAttr();
     ICInhAttr e2 = new ICInhAttr();
 
-    this.getChildren().get(0).genCode(e1);
-    this.getChildren().get(1).genCode(e2);
+    this.array().genCode(e1);
+    this.index().genCode(e2);
 
     // Because arrays are *always* passed by reference, we don't need the address op
     // with a parameter.
     op = e1.ADDR.startsWith("p") ? "=" : "&";
-    ICode.quad.addLine(tmpAddr, e1.ADDR, op);
+    ICode.getQuad().addLine(tmpAddr, e1.ADDR, op);
     info.ADDR = tmpAddr;
 
     if (!info.TYPE.equals("LVAL")) {
@@ -72,12 +72,26 @@ public class LCArrayIndexNode extends LCSyntaxTree {
       info.ADDR = tmpAddr;
       info.A_ADDR = oldTmp; // Save the location and idx for lookup later.
       info.A_IDX = e2.ADDR;
-      ICode.quad.addLine(info.ADDR, oldTmp, e2.ADDR, "ldidx" + width);
+      ICode.getQuad().addLine(info.ADDR, oldTmp, e2.ADDR, "ldidx" + width);
     } else {
       info.CODE = e2.ADDR + " stidx" + width + " ";
     }
   }
 
+  /**
+   * @return the array identifier.
+   */
+  public LCSyntaxTree array() {
+    return this.getChild(0);
+  }
+
+  /**
+   * @return the index expression.
+   */
+  public LCSyntaxTree index() {
+    return this.getChild(1);
+  }
+
   @Override
   public String toString() {
     return this.getType() + " " + this.getLabel();
@@ -5,7 +5,7 @@ import org.antlr.v4.runtime.ParserRuleContext;
 import edu.joshuacrotts.littlec.icode.ICInhAttr;
 import edu.joshuacrotts.littlec.icode.ICode;
 import edu.joshuacrotts.littlec.main.LCErrorListener;
-import edu.joshuacrotts.littlec.main.LCUtilities;
+import edu.joshuacrotts.littlec.main.LCType;
 import edu.joshuacrotts.littlec.main.SymbolTable;
 
 public class LCAssignmentNode extends LCSyntaxTree {
@@ -19,7 +19,7 @@ public class LCAssignmentNode extends LCSyntaxTree {
    * @param idVarType
    * @param expr
    */
-  public LCAssignmentNode(ParserRuleContext ctx, SymbolTable symbolTable, String id, String idVarType,
+  public LCAssignmentNode(ParserRuleContext ctx, SymbolTable symbolTable, String id, LCType idVarType,
       LCSyntaxTree expr) {
     super("ASN", expr.getType());
 
@@ -28,8 +28,8 @@ public class LCAssignmentNode extends LCSyntaxTree {
 
     // If they types are not equal, we can try to cast the r-value type to match the
     // l-value.
-    if (!expr.getType().equals(idVarType)) {
-      if (!LCUtilities.isCastable(expr.getType(), idVarType)) {
+    if (expr.getType() != idVarType) {
+      if (!expr.getType().isCastableTo(idVarType)) {
         LCErrorListener.syntaxError(ctx, "cannot assign " + expr.getType() + " to " + idVarType + ".");
         return;
       } else {
@@ -56,19 +56,19 @@ public class LCAssignmentNode extends LCSyntaxTree {
    * @param expr         r-value of expression; the expression being evaluated
    *                     itself.
    */
-  public LCAssignmentNode(ParserRuleContext ctx, SymbolTable symbolTable, String id, String idVarType,
+  public LCAssignmentNode(ParserRuleContext ctx, SymbolTable symbolTable, String id, LCType idVarType,
       LCArrayIndexNode arrayIdxNode, LCSyntaxTree expr) {
     super("ASN", expr.getType());
 
     /* Get the element type of the array. */
-    String elementType = LCUtilities.getArrayType(idVarType);
+    LCType elementType = idVarType.getElementType();
 
     // Add the array index node as the l-value.
     this.addChild(arrayIdxNode);
 
     // Cast it if we can.
-    if (!expr.getType().equals(elementType)) {
-      if (!LCUtilities.isCastable(expr.getType(), arrayIdxNode.getType())) {
+    if (expr.getType() != elementType) {
+      if (!expr.getType().isCastableTo(arrayIdxNode.getType())) {
         LCErrorListener.syntaxError(ctx, "cannot assign " + expr.getType() + " to " + idVarType + ".");
       } else {
         LCTypeCastNode cast = new LCTypeCastNode(ctx, expr, arrayIdxNode.getType());
@@ -96,20 +96,34 @@ public class LCAssignmentNode extends LCSyntaxTree {
     s.TYPE = "LVAL";
     
     // S = id + E
-    this.getChildren().get(0).genCode(s);
-    this.getChildren().get(1).genCode(e);
+    this.lvalue().genCode(s);
+    this.rvalue().genCode(e);
     
     // Generate the assignment. If our lvalue is an array
     // then we append the store or load command here.
-    if (this.getChildren().get(0) instanceof LCArrayIndexNode) {
+    if (this.lvalue() instanceof LCArrayIndexNode) {
       String[] args = s.CODE.split(" ");
-      ICode.quad.addLine(s.ADDR, args[0], e.ADDR, args[1]);
+      ICode.getQuad().addLine(s.ADDR, args[0], e.ADDR, args[1]);
     } else {
-      ICode.quad.addLine(s.ADDR, e.ADDR, "=");
+      ICode.getQuad().addLine(s.ADDR, e.ADDR, "=");
     }
     info.ADDR = s.ADDR;
   }
 
+  /**
+   * @return the variable or array element being assigned.
+   */
+  public LCSyntaxTree lvalue() {
+    return this.getChild(0);
+  }
+
+  /**
+   * @return the expression being assigned.
+   */
+  public LCSyntaxTree rvalue() {
+    return this.getChild(1);
+  }
+
   @Override
   public String toString() {
     return this.getType() + " " + this.getLabel();
@@ -5,6 +5,7 @@ import org.antlr.v4.runtime.ParserRuleContext;
 import edu.joshuacrotts.littlec.icode.ActivationRecord;
 import edu.joshuacrotts.littlec.icode.ICInhAttr;
 import edu.joshuacrotts.littlec.icode.ICode;
+import edu.joshuacrotts.littlec.main.LCType;
 import edu.joshuacrotts.littlec.main.LCUtilities;
 import edu.joshuacrotts.littlec.main.SymbolTable;
 
@@ -46,20 +47,20 @@ public class LCBinaryOperatorNode extends LCSyntaxTree {
     // If one operand is a char, we promote it to an int.
     // If both are chars, the binary operator returns an int.
     // If only one is a char, then it's casted to an integer.
-    if (lOperand.getType().equals(rOperand.getType())) {
+    if (lOperand.getType() == rOperand.getType()) {
       this.setType(lOperand.getType());
     } else {
       if (lOperand.isChar()) {
-        lOperand = new LCTypeCastNode(ctx, lOperand, "int");
+        lOperand = new LCTypeCastNode(ctx, lOperand, LCType.INT);
       } else if (rOperand.isChar()) {
-        rOperand = new LCTypeCastNode(ctx, rOperand, "int");
+        rOperand = new LCTypeCastNode(ctx, rOperand, LCType.INT);
       }
-      this.setType("int");
+      this.setType(LCType.INT);
     }
 
     // Comparison operators ALWAYS, no matter WHAT, result in an integer.
     if (isComparisonOp) {
-      this.setType("int");
+      this.setType(LCType.INT);
     }
 
     this.addChild(lOperand);
@@ -88,7 +89,7 @@ public class LCBinaryOperatorNode extends LCSyntaxTree {
       // If we're not inside a conditional or loop, then we can safely
       // generate a temporary variable.
       if (e.TYPE.isEmpty()) {
-        int width = LCUtilities.getDataWidth(this.getType());
+        int width = this.getType().getWidth();
         e.ADDR = ICode.getTopAR().addTemporaryVariable(width);
         b1.ADDR = b2.ADDR = e.ADDR;
       }
@@ -100,29 +101,29 @@ public class LCBinaryOperatorNode extends LCSyntaxTree {
         b1.FALSE = e.FALSE;
         b2.TRUE = e.TRUE;
         b2.FALSE = e.FALSE;
-        this.getChildren().get(0).genCode(b1);
-        ICode.quad.addLabel(b1.TRUE + ":");
-        this.getChildren().get(1).genCode(b2);
+        this.left().genCode(b1);
+        ICode.getQuad().addLabel(b1.TRUE + ":");
+        this.right().genCode(b2);
       } else {
         b1.TRUE = e.TRUE;
         b1.FALSE = ActivationRecord.newLabel();
         b2.TRUE = e.TRUE;
         b2.FALSE = e.FALSE;
-        this.getChildren().get(0).genCode(b1);
-        ICode.quad.addLabel(b1.FALSE + ":");
-        this.getChildren().get(1).genCode(b2);
+        this.left().genCode(b1);
+        ICode.getQuad().addLabel(b1.FALSE + ":");
+        this.right().genCode(b2);
       }
 
       // If we're not in an IF then we generate the temp
       // vars.
       if (e.TYPE.isEmpty()) {
         String n = ActivationRecord.newLabel();
-        ICode.quad.addLabel(b2.TRUE + ":");
-        ICode.quad.addLine(e.ADDR, "1", "=");
-        ICode.quad.addLabel("goto " + n);
-        ICode.quad.addLabel(b2.FALSE + ":");
-        ICode.quad.addLine(e.ADDR, "0", "=");
-        ICode.quad.addLabel(n + ":");
+        ICode.getQuad().addLabel(b2.TRUE + ":");
+        ICode.getQuad().addLine(e.ADDR, "1", "=");
+        ICode.getQuad().addLabel("goto " + n);
+        ICode.getQuad().addLabel(b2.FALSE + ":");
+        ICode.getQuad().addLine(e.ADDR, "0", "=");
+        ICode.getQuad().addLabel(n + ":");
       }
     }
     /* Relops need to set up the "fall" scenario. */
@@ -130,28 +131,28 @@ public class LCBinaryOperatorNode extends LCSyntaxTree {
       ICInhAttr e1 = new ICInhAttr();
       ICInhAttr e2 = new ICInhAttr();
 
-      this.getChildren().get(0).genCode(e1);
-      this.getChildren().get(1).genCode(e2);
+      this.left().genCode(e1);
+      this.right().genCode(e2);
 
       // If we're not in an if and we have no logic operators then
       // we need to print the temp labels here.
       if (e.TYPE.isEmpty() && e.REL_TYPE.isEmpty()) {
-        int width = LCUtilities.getDataWidth(this.getType());
+        int width = this.getType().getWidth();
         e.ADDR = ICode.getTopAR().addTemporaryVariable(width);
         String t = e.TRUE.isEmpty() ? ActivationRecord.newLabel() : e.TRUE;
         String f = e.FALSE.isEmpty() ? ActivationRecord.newLabel() : e.FALSE;
         String n = ActivationRecord.newLabel();
-        ICode.quad.addLine("goto " + t, e1.ADDR, e2.ADDR, "if" + op); // TRUE
-        ICode.quad.addLabel("goto " + f); // FALSE
-        ICode.quad.addLabel(t + ":");
-        ICode.quad.addLine(e.ADDR, "1", "=");
-        ICode.quad.addLabel("goto " + n); // NEXT
-        ICode.quad.addLabel(f + ":");
-        ICode.quad.addLine(e.ADDR, "0", "=");
-        ICode.quad.addLabel(n + ":");
+        ICode.getQuad().addLine("goto " + t, e1.ADDR, e2.ADDR, "if" + op); // TRUE
+        ICode.getQuad().addLabel("goto " + f); // FALSE
+        ICode.getQuad().addLabel(t + ":");
+        ICode.getQuad().addLine(e.ADDR, "1", "=");
+        ICode.getQuad().addLabel("goto " + n); // NEXT
+        ICode.getQuad().addLabel(f + ":");
+        ICode.getQuad().addLine(e.ADDR, "0", "=");
+        ICode.getQuad().addLabel(n + ":");
       } else {
-        ICode.quad.addLine("goto " + e.TRUE, e1.ADDR, e2.ADDR, "if" + op);
-        ICode.quad.addLabel("goto " + e.FALSE);
+        ICode.getQuad().addLine("goto " + e.TRUE, e1.ADDR, e2.ADDR, "if" + op);
+        ICode.getQuad().addLabel("goto " + e.FALSE);
       }
     }
     /* Anything else is just normal. */
@@ -161,18 +162,32 @@ public class LCBinaryOperatorNode extends LCSyntaxTree {
       e2.TYPE = e1.TYPE = "RVAL";
 
       // E1 + E2
-      this.getChildren().get(0).genCode(e1);
-      this.getChildren().get(1).genCode(e2);
+      this.left().genCode(e1);
+      this.right().genCode(e2);
 
       // E.addr = new Temp();
-      int width = LCUtilities.getDataWidth(this.getType());
+      int width = this.getType().getWidth();
       e.ADDR = ICode.getTopAR().addTemporaryVariable(width);
 
       // gen(E.addr = E1.addr op E2.addr);
-      ICode.quad.addLine(e.ADDR, e1.ADDR, e2.ADDR, this.op);
+      ICode.getQuad().addLine(e.ADDR, e1.ADDR, e2.ADDR, this.op);
     }
   }
 
+  /**
+   * @return the left operand.
+   */
+  public LCSyntaxTree left() {
+    return this.getChild(0);
+  }
+
+  /**
+   * @return the right operand.
+   */
+  public LCSyntaxTree right() {
+    return this.getChild(1);
+  }
+
   @Override
   public String toString() {
     return this.getType() + " " + this.getLabel();
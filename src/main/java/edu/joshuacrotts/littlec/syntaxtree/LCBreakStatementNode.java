@@ -4,6 +4,8 @@ import org.antlr.v4.runtime.ParserRuleContext;
 
 import edu.joshuacrotts.littlec.icode.ICInhAttr;
 import edu.joshuacrotts.littlec.icode.ICode;
+import edu.joshuacrotts.littlec.main.CompilationContext;
+import edu.joshuacrotts.littlec.main.LCType;
 
 public class LCBreakStatementNode extends LCSyntaxTree {
 
@@ -13,7 +15,7 @@ public class LCBreakStatementNode extends LCSyntaxTree {
    * @param ctx
    */
   public LCBreakStatementNode(ParserRuleContext ctx) {
-    super("BREAK", "void"); // No third parameter.
+    super("BREAK", LCType.VOID); // No third parameter.
   }
 
   /**
@@ -25,7 +27,7 @@ public class LCBreakStatementNode extends LCSyntaxTree {
       return;
     super.isCalled = true;
 
-    ICode.quad.addLabel("goto " + ICInhAttr.SUCC);
+    ICode.getQuad().addLabel("goto " + CompilationContext.current().getLoopSuccessor());
   }
 
   @Override
@@ -3,6 +3,7 @@ package edu.joshuacrotts.littlec.syntaxtree;
 import java.util.LinkedList;
 import java.util.List;
 
+import edu.joshuacrotts.littlec.main.LCType;
 import edu.joshuacrotts.littlec.main.SymbolTable;
 
 public class LCFunctionArgsListNode extends LCSyntaxTree {
@@ -20,7 +21,7 @@ public class LCFunctionArgsListNode extends LCSyntaxTree {
    * @param args
    */
   public LCFunctionArgsListNode(SymbolTable symbolTable, LinkedList<LCSyntaxTree> args) {
-    super("FNARGS", "!!!UNUSED!!!");
+    super("FNARGS", LCType.VOID);
     this.args = args;
   }
 
@@ -7,7 +7,7 @@ import org.antlr.v4.runtime.ParserRuleContext;
 import edu.joshuacrotts.littlec.icode.ICInhAttr;
 import edu.joshuacrotts.littlec.icode.ICode;
 import edu.joshuacrotts.littlec.main.LCErrorListener;
-import edu.joshuacrotts.littlec.main.LCUtilities;
+import edu.joshuacrotts.littlec.main.LCType;
 import edu.joshuacrotts.littlec.main.SymbolTable;
 
 public class LCFunctionCallNode extends LCSyntaxTree {
@@ -62,12 +62,12 @@ public class LCFunctionCallNode extends LCSyntaxTree {
         return;
       }
 
-      String fnArg = fnDefArgs.get(i).getType();
-      String param = parametersList.get(i).getType();
+      LCType fnArg = fnDefArgs.get(i).getType();
+      LCType param = parametersList.get(i).getType();
 
-      if (!fnArg.equals(param)) {
+      if (fnArg != param) {
         // If we can cast from one type ot another, try to.
-        if (LCUtilities.isCastable(param, fnArg)) {
+        if (param.isCastableTo(fnArg)) {
           LCTypeCastNode castingNode = new LCTypeCastNode(ctx, parametersList.get(i), fnArg);
           parametersList.set(i, castingNode);
         } else {
@@ -103,33 +103,33 @@ public class LCFunctionCallNode extends LCSyntaxTree {
       return;
     super.isCalled = true;
 
-    int args = this.getChildren().size();
+    int args = this.getChildCount();
 
     // Push the arguments in reverse order.
     for (int i = args - 1; i >= 0; i--) {
-      LCSyntaxTree param = this.getChildren().get(i);
-      int width = LCUtilities.getDataWidth(param.getType());
+      LCSyntaxTree param = this.getChild(i);
+      int width = param.getType().getWidth();
       param.genCode(info);
       // Add the parameter to <op1> <op>
-      ICode.quad.addLine("", info.ADDR, "", "param" + width);
+      ICode.getQuad().addLine("", info.ADDR, "", "param" + width);
     }
 
     // If the return type is non-void, we need to generate a new compiler temp
     // variable.
-    if (!this.getType().equals("void")) {
-      String tempVar = ICode.getTopAR().addTemporaryVariable(LCUtilities.getDataWidth(this.getType()));
-      ICode.quad.addFunctionCall(tempVar, "gf_" + this.id, args);
+    if (this.getType() != LCType.VOID) {
+      String tempVar = ICode.getTopAR().addTemporaryVariable(this.getType().getWidth());
+      ICode.getQuad().addFunctionCall(tempVar, "gf_" + this.id, args);
       info.ADDR = tempVar;
     } else {
       // ...otherwise, we just write it on the next line.
-      ICode.quad.addVoidFunctionCall("gf_" + this.id, args);
+      ICode.getQuad().addVoidFunctionCall("gf_" + this.id, args);
     }
 
     // If the fncall is embedded in an IF we need to display that.
     // The only way we can be here is if the method is non-void.
     if (info.TYPE.equals("IF_COND")) {
-      ICode.quad.addLine("goto " + info.TRUE, info.ADDR, "1", "if==");
-      ICode.quad.addLabel("goto " + info.FALSE);
+      ICode.getQuad().addLine("goto " + info.TRUE, info.ADDR, "1", "if==");
+      ICode.getQuad().addLabel("goto " + info.FALSE);
     }
   }
 
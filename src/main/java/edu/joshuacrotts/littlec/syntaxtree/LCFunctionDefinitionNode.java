@@ -12,7 +12,7 @@ import edu.joshuacrotts.littlec.icode.ICInhAttr;
 import edu.joshuacrotts.littlec.icode.ICode;
 import edu.joshuacrotts.littlec.main.Environment;
 import edu.joshuacrotts.littlec.main.LCErrorListener;
-import edu.joshuacrotts.littlec.main.LCUtilities;
+import edu.joshuacrotts.littlec.main.LCType;
 import edu.joshuacrotts.littlec.main.StorageClass;
 import edu.joshuacrotts.littlec.main.SymbolEntry;
 import edu.joshuacrotts.littlec.main.SymbolTable;
@@ -44,8 +44,8 @@ public class LCFunctionDefinitionNode extends LCSyntaxTree {
    * @param params       - HashMap of identifier/datatype pairs.
    * @param newScope     - Scope of this function call, the current LCSyntaxTree
    */
-  public LCFunctionDefinitionNode(ParserRuleContext ctx, SymbolTable symbolTable, String id, String retType,
-      StorageClass storageClass, LinkedHashMap<String, String> args, LCSyntaxTree newScope) {
+  public LCFunctionDefinitionNode(ParserRuleContext ctx, SymbolTable symbolTable, String id, LCType retType,
+      StorageClass storageClass, LinkedHashMap<String, LCType> args, LCSyntaxTree newScope) {
     super("FNDEF", retType, id);
     super.addChild(newScope);
 
@@ -86,19 +86,19 @@ public class LCFunctionDefinitionNode extends LCSyntaxTree {
 
     // Add the parameters to the AR stack.
     for (LCSyntaxTree params : this.argsList) {
-      int width = LCUtilities.getDataWidth(params.getType());
+      int width = params.getType().getWidth();
       String id = params.getInfo();
       ICode.getTopAR().addParameterVariable(id, width);
     }
 
     // Get the line for where we need to insert the function definition
     // with the stack space later.
-    int fnDefLineNo = ICode.quad.getNextAvailableLine();
+    int fnDefLineNo = ICode.getQuad().getNextAvailableLine();
 
     // Generate the code for the body of the fn.
-    this.getChildren().get(0).genCode(info);
+    this.body().genCode(info);
     String fnEndLabel = ".fnEnd";
-    ICode.quad.addLabel(fnEndLabel);
+    ICode.getQuad().addLabel(fnEndLabel);
 
     // Get the amount of local stack space needed by this function.
     int fnDataSize = ICode.getTopAR().getLocalSpace();
@@ -110,7 +110,7 @@ public class LCFunctionDefinitionNode extends LCSyntaxTree {
     // of the function.
     String fnLabel = "gf_" + this.id;
     String fnStartLabel = ".fnStart";
-    ICode.quad.addLine(fnDefLineNo, fnLabel, fnStartLabel, Integer.toString(fnDataSize),
+    ICode.getQuad().addLine(fnDefLineNo, fnLabel, fnStartLabel, Integer.toString(fnDataSize),
         Integer.toString(this.argsList.size()));
 
     // Remove the top AR stack.
@@ -129,11 +129,11 @@ public class LCFunctionDefinitionNode extends LCSyntaxTree {
    * @return true if parameters were matched without error, false otherwise.
    */
   private boolean checkParameterMatching(ParserRuleContext ctx, SymbolTable symbolTable, List<LCSyntaxTree> argsList,
-      String id, String retType, StorageClass storageClass) {
+      String id, LCType retType, StorageClass storageClass) {
     if (symbolTable.getSymbolEntry(id).getType() == SymbolType.FNPROTOTYPE) {
       // We first need to check if the return types match.
-      String prototypeReturnType = symbolTable.getSymbolEntry(id).getVarType();
-      if (!prototypeReturnType.equals(retType)) {
+      LCType prototypeReturnType = symbolTable.getSymbolEntry(id).getVarType();
+      if (prototypeReturnType != retType) {
         LCErrorListener.syntaxError(ctx, "prototype function " + id + " expects return type " + prototypeReturnType
             + ", but the declaration expects " + retType + ".");
         return false;
@@ -161,11 +161,11 @@ public class LCFunctionDefinitionNode extends LCSyntaxTree {
 
       // Go through one by one and compare the types.
       for (int i = 0; i < argsList.size(); i++) {
-        String fnArg = argsList.get(i).getType();
-        String param = prototypeArgs.get(i).getType();
+        LCType fnArg = argsList.get(i).getType();
+        LCType param = prototypeArgs.get(i).getType();
 
         // Here we run into a small problem with arrays but it's easily solvable.
-        if (!fnArg.equals(param)) {
+        if (fnArg != param) {
           LCErrorListener.syntaxError(ctx, "declaration for function " + id + " parameter " + (i + 1) + " expects " + fnArg
               + " but function expects " + param + ".");
           return false;
@@ -196,7 +196,7 @@ public class LCFunctionDefinitionNode extends LCSyntaxTree {
    * @param retType     - return type of function.
    */
   private void addArgsToStack(ParserRuleContext ctx, SymbolTable symbolTable, LCSyntaxTree newScope,
-      HashMap<String, String> args, String id, String retType) {
+      HashMap<String, LCType> args, String id, LCType retType) {
     Environment environment = new Environment();
 
     /* If the parameter map isn't empty, we can push them to the stack. */
@@ -205,7 +205,7 @@ public class LCFunctionDefinitionNode extends LCSyntaxTree {
       // Iterate through the arguments and declare the variables assigned onto the
       // local stack environment.
       for (String varID : args.keySet()) {
-        String varDatatype = args.get(varID); // Gets the datatype.
+        LCType varDatatype = args.get(varID); // Gets the datatype.
 
         LCParameterDeclarationNode paramNode = new LCParameterDeclarationNode(ctx, varID, varDatatype);
 
@@ -222,6 +222,13 @@ public class LCFunctionDefinitionNode extends LCSyntaxTree {
     symbolTable.addEnvironment(environment);
   }
 
+  /**
+   * @return the body of the function.
+   */
+  public LCSyntaxTree body() {
+    return this.getChild(0);
+  }
+
   @Override
   public String toString() {
     return "void FNDEF " + this.getInfo();
@@ -7,6 +7,7 @@ import java.util.List;
 import org.antlr.v4.runtime.ParserRuleContext;
 
 import edu.joshuacrotts.littlec.main.LCErrorListener;
+import edu.joshuacrotts.littlec.main.LCType;
 import edu.joshuacrotts.littlec.main.StorageClass;
 import edu.joshuacrotts.littlec.main.SymbolEntry;
 import edu.joshuacrotts.littlec.main.SymbolTable;
@@ -26,8 +27,8 @@ public class LCFunctionPrototypeNode extends LCSyntaxTree {
    * @param storageClass
    * @param args
    */
-  public LCFunctionPrototypeNode(ParserRuleContext ctx, SymbolTable symbolTable, String id, String retType,
-      StorageClass storageClass, LinkedHashMap<String, String> args) {
+  public LCFunctionPrototypeNode(ParserRuleContext ctx, SymbolTable symbolTable, String id, LCType retType,
+      StorageClass storageClass, LinkedHashMap<String, LCType> args) {
     super("FNPROTOTYPE", retType, id);
 
     // If we don't have the symbol in the table, then we're good to add it. The
@@ -6,6 +6,7 @@ import edu.joshuacrotts.littlec.icode.ActivationRecord;
 import edu.joshuacrotts.littlec.icode.ICInhAttr;
 import edu.joshuacrotts.littlec.icode.ICode;
 import edu.joshuacrotts.littlec.main.LCErrorListener;
+import edu.joshuacrotts.littlec.main.LCType;
 
 public class LCIfStatementNode extends LCSyntaxTree {
 
@@ -27,7 +28,7 @@ public class LCIfStatementNode extends LCSyntaxTree {
    * @param elsePart
    */
   public LCIfStatementNode(ParserRuleContext ctx, LCSyntaxTree ifPart, LCSyntaxTree thenPart, LCSyntaxTree elsePart) {
-    super("IF", "void");// No third parameter.
+    super("IF", LCType.VOID);// No third parameter.
 
     // Child 1 is the conditions.
     super.addChild(ifPart);
@@ -63,25 +64,25 @@ public class LCIfStatementNode extends LCSyntaxTree {
     b.TYPE = "IF_COND";
 
     // Generate the body of the conditional.
-    this.getChildren().get(0).genCode(b);
+    this.cond().genCode(b);
 
     // The label to goto if true.
-    ICode.quad.addLabel(b.TRUE + ":");
+    ICode.getQuad().addLabel(b.TRUE + ":");
 
     // Body of if.
-    this.getChildren().get(1).genCode(s1);
+    this.thenBody().genCode(s1);
 
     // Fall through to avoid else.
-    ICode.quad.addLabel("goto " + b.NEXT);
+    ICode.getQuad().addLabel("goto " + b.NEXT);
 
     // Goto if we didn't evaluate true in if.
-    ICode.quad.addLabel(b.FALSE + ":");
+    ICode.getQuad().addLabel(b.FALSE + ":");
 
     // Else condition.
-    if (this.getChildren().size() > 2) {
-      this.getChildren().get(2).genCode(s2);
+    if (this.elseBody() != null) {
+      this.elseBody().genCode(s2);
     }
-    ICode.quad.addLabel(b.NEXT + ":");
+    ICode.getQuad().addLabel(b.NEXT + ":");
   }
   
   /**
@@ -96,6 +97,27 @@ public class LCIfStatementNode extends LCSyntaxTree {
     }
   }
 
+  /**
+   * @return the condition of the if statement.
+   */
+  public LCSyntaxTree cond() {
+    return this.getChild(0);
+  }
+
+  /**
+   * @return the body that runs when the condition is true.
+   */
+  public LCSyntaxTree thenBody() {
+    return this.getChild(1);
+  }
+
+  /**
+   * @return the else portion, or null if there isn't one.
+   */
+  public LCSyntaxTree elseBody() {
+    return this.getChildCount() > 2 ? this.getChild(2) : null;
+  }
+
   @Override
   public String toString() {
     return this.getType() + " " + this.getLabel();
@@ -5,6 +5,8 @@ import org.antlr.v4.runtime.ParserRuleContext;
 import edu.joshuacrotts.littlec.icode.ActivationRecord;
 import edu.joshuacrotts.littlec.icode.ICInhAttr;
 import edu.joshuacrotts.littlec.icode.ICode;
+import edu.joshuacrotts.littlec.main.CompilationContext;
+import edu.joshuacrotts.littlec.main.LCType;
 
 public class LCLoopStatementNode extends LCSyntaxTree {
 
@@ -22,7 +24,7 @@ public class LCLoopStatementNode extends LCSyntaxTree {
    * @param loopBody
    */
   public LCLoopStatementNode(ParserRuleContext ctx, LCSyntaxTree condPart, LCSyntaxTree loopBody) {
-    super("WHILE", "void");
+    super("WHILE", LCType.VOID);
 
     /* Child 1 is the loop condition. */
     super.addChild(condPart);
@@ -50,22 +52,36 @@ public class LCLoopStatementNode extends LCSyntaxTree {
     b.TYPE = "IF_COND";
 
     // Keep track of which loop we're in so we know where to break.
-    ICInhAttr.SUCC = b.FALSE;
+    CompilationContext.current().setLoopSuccessor(b.FALSE);
 
     // Print out the start label.
-    ICode.quad.addLabel(begin + ":");
+    ICode.getQuad().addLabel(begin + ":");
 
     // ...then the conditional.
-    this.getChildren().get(0).genCode(b);
+    this.cond().genCode(b);
     
     // The label to go to if it's true.
-    ICode.quad.addLabel(b.TRUE + ":");
-    this.getChildren().get(1).genCode(s);
-    ICode.quad.addLabel("goto " + begin);
-    ICode.quad.addLabel(b.FALSE + ":");
+    ICode.getQuad().addLabel(b.TRUE + ":");
+    this.body().genCode(s);
+    ICode.getQuad().addLabel("goto " + begin);
+    ICode.getQuad().addLabel(b.FALSE + ":");
 
   }
 
+  /**
+   * @return the loop condition.
+   */
+  public LCSyntaxTree cond() {
+    return this.getChild(0);
+  }
+
+  /**
+   * @return the body of the loop.
+   */
+  public LCSyntaxTree body() {
+    return this.getChild(1);
+  }
+
   @Override
   public String toString() {
     return this.getType() + " " + this.getLabel();
@@ -2,6 +2,8 @@ package edu.joshuacrotts.littlec.syntaxtree;
 
 import org.antlr.v4.runtime.ParserRuleContext;
 
+import edu.joshuacrotts.littlec.main.LCType;
+
 public class LCParameterDeclarationNode extends LCSyntaxTree {
 
   /**
@@ -10,9 +12,9 @@ public class LCParameterDeclarationNode extends LCSyntaxTree {
    * @param id
    * @param varType
    */
-  public LCParameterDeclarationNode(ParserRuleContext ctx, String id, String varType) {
-    super("PDECL", "void", id + " (" + varType + ")"); // Name of the identifier being declared followed by its type in
-                                                       // parenthesis.
+  public LCParameterDeclarationNode(ParserRuleContext ctx, String id, LCType varType) {
+    // Name of the identifier being declared followed by its type in parenthesis.
+    super("PDECL", LCType.VOID, id + " (" + varType + ")");
   }
 
   @Override
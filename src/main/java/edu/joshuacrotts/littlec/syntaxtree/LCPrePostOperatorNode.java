@@ -4,7 +4,7 @@ import org.antlr.v4.runtime.ParserRuleContext;
 
 import edu.joshuacrotts.littlec.icode.ICInhAttr;
 import edu.joshuacrotts.littlec.icode.ICode;
-import edu.joshuacrotts.littlec.main.LCUtilities;
+import edu.joshuacrotts.littlec.main.LCType;
 import edu.joshuacrotts.littlec.main.SymbolTable;
 
 public class LCPrePostOperatorNode extends LCSyntaxTree {
@@ -23,7 +23,7 @@ public class LCPrePostOperatorNode extends LCSyntaxTree {
    * @param lvarType
    * @param lvar
    */
-  public LCPrePostOperatorNode(ParserRuleContext ctx, SymbolTable symbolTable, String type, String lvarType,
+  public LCPrePostOperatorNode(ParserRuleContext ctx, SymbolTable symbolTable, String type, LCType lvarType,
       LCSyntaxTree lvar) {
     super(type, lvarType);
 
@@ -43,26 +43,26 @@ public class LCPrePostOperatorNode extends LCSyntaxTree {
 
     // Get the width of the l-address type and
     // generate a temp variable if necessary.
-    int dataWidth = LCUtilities.getDataWidth(this.getType());
+    int dataWidth = this.getType().getWidth();
 
     // Generate the lvalue IC.
     ICInhAttr e1 = new ICInhAttr();
-    this.getChildren().get(0).genCode(e1);
+    this.lvalue().genCode(e1);
 
     // If we have a post operator, then we generate a temporary variable.
     if (this.getLabel().startsWith("POST")) {
       String tempVar = ICode.getTopAR().addTemporaryVariable(dataWidth);
-      ICode.quad.addLine(tempVar, e1.ADDR, "=");
-      ICode.quad.addLine(e1.ADDR, e1.ADDR, "1", op);
+      ICode.getQuad().addLine(tempVar, e1.ADDR, "=");
+      ICode.getQuad().addLine(e1.ADDR, e1.ADDR, "1", op);
       e.ADDR = tempVar;
     } else {
-      ICode.quad.addLine(e1.ADDR, e1.ADDR, "1", op);
+      ICode.getQuad().addLine(e1.ADDR, e1.ADDR, "1", op);
       e.ADDR = e1.ADDR;
     }
     
     // If our l-value is an array, we need to save the changed value.
-    if (this.getChildren().get(0) instanceof LCArrayIndexNode) {
-      ICode.quad.addLine(e1.A_ADDR, e1.A_IDX, e1.ADDR, "stidx" + dataWidth);
+    if (this.lvalue() instanceof LCArrayIndexNode) {
+      ICode.getQuad().addLine(e1.A_ADDR, e1.A_IDX, e1.ADDR, "stidx" + dataWidth);
     }
   }
 
@@ -83,6 +83,13 @@ public class LCPrePostOperatorNode extends LCSyntaxTree {
     }
   }
 
+  /**
+   * @return the variable or array element being incremented or decremented.
+   */
+  public LCSyntaxTree lvalue() {
+    return this.getChild(0);
+  }
+
   @Override
   public String toString() {
     return this.getType() + " " + this.getLabel();
@@ -4,7 +4,7 @@ import org.antlr.v4.runtime.ParserRuleContext;
 
 import edu.joshuacrotts.littlec.icode.ICInhAttr;
 import edu.joshuacrotts.littlec.icode.ICode;
-import edu.joshuacrotts.littlec.main.LCUtilities;
+import edu.joshuacrotts.littlec.main.LCType;
 
 public class LCReturnStatementNode extends LCSyntaxTree {
 
@@ -18,7 +18,7 @@ public class LCReturnStatementNode extends LCSyntaxTree {
    * @param returnVal
    */
   public LCReturnStatementNode(ParserRuleContext ctx, LCSyntaxTree returnVal) {
-    super("RETURN", "void");
+    super("RETURN", LCType.VOID);
 
     // Third child is the optional return value.
     if (returnVal != null) {
@@ -41,13 +41,21 @@ public class LCReturnStatementNode extends LCSyntaxTree {
     String returnStr = "return";
 
     // If there is a return expression, then we have to append a data width to it.
-    if (!this.getChildren().isEmpty()) {
-      this.getChildren().get(0).genCode(info);
-      int retWidth = LCUtilities.getDataWidth(this.getChildren().get(0).getType());
+    LCSyntaxTree value = this.value();
+    if (value != null) {
+      value.genCode(info);
+      int retWidth = value.getType().getWidth();
       returnStr += retWidth;
     }
 
-    ICode.quad.addLine("", (this.getChildren().isEmpty() ? "" : info.ADDR), "", returnStr);
+    ICode.getQuad().addLine("", (value == null ? "" : info.ADDR), "", returnStr);
+  }
+
+  /**
+   * @return the returned expression, or null in a void return.
+   */
+  public LCSyntaxTree value() {
+    return this.getChildCount() > 0 ? this.getChild(0) : null;
   }
 
   @Override
@@ -1,30 +1,30 @@
 package edu.joshuacrotts.littlec.syntaxtree;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.io.PrintStream;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.antlr.v4.runtime.ParserRuleContext;
 
 import edu.joshuacrotts.littlec.icode.Generatable;
 import edu.joshuacrotts.littlec.icode.ICInhAttr;
+import edu.joshuacrotts.littlec.main.CompilationContext;
 import edu.joshuacrotts.littlec.main.LCMasks;
+import edu.joshuacrotts.littlec.main.LCType;
 
 /**
  * Syntax tree class - the purpose of the parser is to construct a syntax tree
  * for any valid LittleC program (and detect errors for invalid programs).
  *
+ * The flags are shared across the entire syntax tree so we don't assign flags
+ * to part of the tree; if one part fails, the entire tree fails. They're kept
+ * in the CompilationContext so separate compilations don't share them.
+ *
  * @author Joshua Crotts
  */
 public class LCSyntaxTree implements Generatable {
 
-  /**
-   * Flags for the LCSyntaxTree. We share this one instance across the entire
-   * syntax tree so we don't assign flags to part of the tree. If one part fails,
-   * the entire tree fails.
-   */
-  private static int flags = 0;
-
   /**
    * Flag keeping track of when a genCode() method has been called. Once
    * generated, we shouldn't call it again in the tree traversal.
@@ -39,24 +39,37 @@ public class LCSyntaxTree implements Generatable {
   /** 
    * Type specified by the syntax tree documentation. 
    */
-  private String type;
+  private LCType type;
 
   /** 
    * Info specified by the syntax tree documentation. This may be null. 
    */
   private String info;
 
-  /** 
-   * Children of this syntax tree. 
+  /**
+   * Shared by every node that has no children, so leaves don't each carry an
+   * empty array.
+   */
+  private static final LCSyntaxTree[] NO_CHILDREN = new LCSyntaxTree[0];
+
+  /**
+   * Children of this syntax tree, in the first childCount slots. The array grows
+   * one slot at a time for the first few children, so nodes with a fixed number
+   * of children (operators, ifs, loops) hold an array of exactly that size.
+   */
+  private LCSyntaxTree[] children;
+
+  /**
+   * Number of children in the children array.
    */
-  private List<LCSyntaxTree> children;
+  private int childCount;
 
   /**
    * This is the parent node for the tree. This is the first node called. Any
    * subsequent children are appended to the list.
    */
   public LCSyntaxTree() {
-    this("SEQ", "void");
+    this("SEQ", LCType.VOID);
   }
 
   /**
@@ -66,24 +79,24 @@ public class LCSyntaxTree implements Generatable {
    * @param label - label specified by the documentation.
    * @param type  - type specified by the documentation.
    */
-  public LCSyntaxTree(String label, String type) {
+  public LCSyntaxTree(String label, LCType type) {
     this(label, type, null);
   }
 
   /**
    * Creates a new node to store in the syntax tree with extra information. The
-   * child linked list is also instantiated here.
+   * node starts with no children.
    * 
    * @param label - String label specified by the documentation (syntax tree).
-   * @param type  - String type specified by the documentation (syntax tree).
+   * @param type  - LCType specified by the documentation (syntax tree).
    * @param info  - String of extra info specified by the documentation (syntax
    *              tree).
    */
-  public LCSyntaxTree(String label, String type, String info) {
+  public LCSyntaxTree(String label, LCType type, String info) {
     this.label = label;
     this.type = type;
     this.info = info;
-    this.children = new LinkedList<>();
+    this.children = NO_CHILDREN;
   }
 
   /**
@@ -96,8 +109,8 @@ public class LCSyntaxTree implements Generatable {
     if (this.isCalled)
       return;
     this.isCalled = true;
-    for (LCSyntaxTree ch : this.getChildren()) {
-      ch.genCode(info);
+    for (int i = 0; i < this.childCount; i++) {
+      this.children[i].genCode(info);
     }
   }
 
@@ -105,53 +118,91 @@ public class LCSyntaxTree implements Generatable {
    * A method which will print this syntax tree. Since you need to print the top
    * node, it's children, their children, their children, ... this is obviously
    * going to have to be recursive, probably through a recursive helper function.
+   *
+   * @param out - stream to print to.
    */
-  public void printSyntaxTree() {
-    this.printSyntaxTreeHelper(this, 0);
+  public void printSyntaxTree(PrintStream out) {
+    this.printSyntaxTreeHelper(out, this, 0);
   }
 
   /**
    * Prints out the syntax tree recursively with spaces.
    * 
+   * @param out
    * @param tree
    * @param spacing
    */
-  public void printSyntaxTreeHelper(LCSyntaxTree tree, int spacing) {
+  public void printSyntaxTreeHelper(PrintStream out, LCSyntaxTree tree, int spacing) {
     /* Prints out pretty spacing. */
     for (int i = 0; i < spacing; i++)
-      System.out.print(" ");
-    System.out.print(tree);
-
-    /* Gets an iterator for the children. */
-    Iterator<LCSyntaxTree> it = tree.children.iterator();
+      out.print(" ");
+    out.print(tree);
 
-    if (!it.hasNext()) {
+    if (tree.childCount == 0) {
       spacing -= 2;
       return;
     }
 
     /* Prints out the next ones recursively. */
-    System.out.println(" (");
-    while (it.hasNext()) {
-      LCSyntaxTree next = it.next();
-      if (!next.getChildren().isEmpty())
+    out.println(" (");
+    for (int i = 0; i < tree.childCount; i++) {
+      LCSyntaxTree next = tree.children[i];
+      if (next.childCount != 0)
         spacing += 2;
 
-      printSyntaxTreeHelper(next, spacing);
-      if (it.hasNext()) {
-        System.out.println(", ");
+      printSyntaxTreeHelper(out, next, spacing);
+      if (i < tree.childCount - 1) {
+        out.println(", ");
       }
     }
-    System.out.print(")");
+    out.print(")");
   }
 
   /**
-   * Adds a predefined LCSyntaxTree node to the current LinkedList of children.
+   * Adds a predefined LCSyntaxTree node to the end of the children.
    * 
    * @param node
    */
   public void addChild(LCSyntaxTree node) {
-    this.children.add(node);
+    if (this.childCount == this.children.length) {
+      int capacity = this.childCount < 4 ? this.childCount + 1 : this.childCount + (this.childCount >> 1);
+      this.children = Arrays.copyOf(this.children, capacity);
+    }
+    this.children[this.childCount++] = node;
+  }
+
+  /**
+   * Removes and returns the last child of this node.
+   * 
+   * @throws IndexOutOfBoundsException if the node has no children.
+   * 
+   * @return the child that was removed.
+   */
+  public LCSyntaxTree removeLastChild() {
+    if (this.childCount == 0) {
+      throw new IndexOutOfBoundsException("Node " + this.label + " has no children to remove.");
+    }
+    LCSyntaxTree child = this.children[--this.childCount];
+    this.children[this.childCount] = null;
+    return child;
+  }
+
+  /**
+   * Removes the first occurrence of a node from the children.
+   * 
+   * @param node - child to remove.
+   * 
+   * @return true if the node was a child and was removed, false otherwise.
+   */
+  public boolean removeChild(LCSyntaxTree node) {
+    for (int i = 0; i < this.childCount; i++) {
+      if (this.children[i] == node) {
+        System.arraycopy(this.children, i + 1, this.children, i, this.childCount - i - 1);
+        this.children[--this.childCount] = null;
+        return true;
+      }
+    }
+    return false;
   }
 
   /**
@@ -160,14 +211,15 @@ public class LCSyntaxTree implements Generatable {
    * @param flag
    */
   public void turnOffFlags(int flag) {
-    LCSyntaxTree.flags &= ~flag;
+    CompilationContext context = CompilationContext.current();
+    context.setSyntaxTreeFlags(context.getSyntaxTreeFlags() & ~flag);
   }
 
   /**
    * Resets all flags to 0 except the error mask; if it's enabled, we leave it be.
    */
   public void clearFlags() {
-    LCSyntaxTree.flags = 0;
+    CompilationContext.current().setSyntaxTreeFlags(0);
   }
 
   public String getLabel() {
@@ -178,11 +230,11 @@ public class LCSyntaxTree implements Generatable {
     this.label = label;
   }
 
-  public String getType() {
+  public LCType getType() {
     return type;
   }
 
-  public void setType(String type) {
+  public void setType(LCType type) {
     this.type = type;
   }
 
@@ -195,34 +247,70 @@ public class LCSyntaxTree implements Generatable {
   }
 
   public void setFlags(int flag) {
-    LCSyntaxTree.flags |= flag;
+    CompilationContext context = CompilationContext.current();
+    context.setSyntaxTreeFlags(context.getSyntaxTreeFlags() | flag);
   }
 
   public int getFlags() {
-    return LCSyntaxTree.flags;
+    return CompilationContext.current().getSyntaxTreeFlags();
   }
 
   public boolean isInteger() {
-    return this.getType().equals("int");
+    return this.getType() == LCType.INT;
   }
 
   public boolean isChar() {
-    return this.getType().equals("char");
+    return this.getType() == LCType.CHAR;
   }
 
   public boolean isArray() {
-    return this.getType().endsWith("[]") || (this.getType().indexOf("[") < this.getType().indexOf("]"));
+    return this.getType().isArray();
+  }
+
+  /**
+   * @param index - position of the child, starting at 0.
+   * 
+   * @throws IndexOutOfBoundsException if there's no child at that position.
+   * 
+   * @return the child at the given position.
+   */
+  public LCSyntaxTree getChild(int index) {
+    if (index < 0 || index >= this.childCount) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.childCount);
+    }
+    return this.children[index];
   }
 
+  public int getChildCount() {
+    return this.childCount;
+  }
+
+  /**
+   * Returns a read-only view of the children. Code that walks the tree should
+   * prefer getChild and getChildCount, or a node's own accessors, which don't
+   * allocate.
+   * 
+   * @return the children of this node, in order.
+   */
   public List<LCSyntaxTree> getChildren() {
-    return this.children;
+    return new AbstractList<LCSyntaxTree>() {
+      @Override
+      public LCSyntaxTree get(int index) {
+        return getChild(index);
+      }
+
+      @Override
+      public int size() {
+        return childCount;
+      }
+    };
   }
 
   @Override
   public String toString() {
     if (this.info != null)
-      return this.type + " " + this.label + (this.getChildren().isEmpty() ? " ()" : "") + " " + this.info;
+      return this.type + " " + this.label + (this.childCount == 0 ? " ()" : "") + " " + this.info;
     else
-      return this.type + " " + this.label + (this.getChildren().isEmpty() ? " ()" : "");
+      return this.type + " " + this.label + (this.childCount == 0 ? " ()" : "");
   }
 }
@@ -4,20 +4,20 @@ import org.antlr.v4.runtime.ParserRuleContext;
 
 import edu.joshuacrotts.littlec.icode.ICInhAttr;
 import edu.joshuacrotts.littlec.icode.ICode;
-import edu.joshuacrotts.littlec.main.LCUtilities;
+import edu.joshuacrotts.littlec.main.LCType;
 
 public class LCTypeCastNode extends LCSyntaxTree {
 
   /**
    * Casts a node between one type to another. Type verification should be
-   * performed before this node is constructed. LCUtilities provides a method to
-   * determine if it's possible to cast between one type and another.
+   * performed before this node is constructed. LCType.isCastableTo determines
+   * if it's possible to cast between one type and another.
    * 
    * @param ctx
    * @param rvalue
    * @param targetType
    */
-  public LCTypeCastNode(ParserRuleContext ctx, LCSyntaxTree rvalue, String targetType) {
+  public LCTypeCastNode(ParserRuleContext ctx, LCSyntaxTree rvalue, LCType targetType) {
     super("CAST", targetType); // No third parameter.
 
     // One child for the value that is casted.
@@ -33,29 +33,36 @@ public class LCTypeCastNode extends LCSyntaxTree {
       return;
     }
     super.isCalled = true;
-    String rvalType = this.getChildren().get(0).getType();
+    LCType rvalType = this.operand().getType();
     String castType = "";
 
-    if (LCUtilities.isUpCastable(rvalType, this.getType())) {
+    if (rvalType.isUpCastableTo(this.getType())) {
       castType = "widen";
-    } else if (LCUtilities.isDownCastable(rvalType, this.getType())) {
+    } else if (rvalType.isDownCastableTo(this.getType())) {
       castType = "narrow";
     } else {
       castType = "&";
     }
 
     // Generate the cast variable temp.
-    int castWidth = LCUtilities.getDataWidth(this.getType());
+    int castWidth = this.getType().getWidth();
     String tmpCastVar = ICode.getTopAR().addTemporaryVariable(castWidth);
 
     // Generate the r-value that we're going to cast.
-    this.getChildren().get(0).genCode(info);
+    this.operand().genCode(info);
 
     // Actually cast the variable.
-    ICode.quad.addCast(tmpCastVar, info.ADDR, castType);
+    ICode.getQuad().addCast(tmpCastVar, info.ADDR, castType);
     info.ADDR = tmpCastVar;
   }
 
+  /**
+   * @return the value being cast.
+   */
+  public LCSyntaxTree operand() {
+    return this.getChild(0);
+  }
+
   @Override
   public String toString() {
     return this.getType() + " " + this.getLabel();
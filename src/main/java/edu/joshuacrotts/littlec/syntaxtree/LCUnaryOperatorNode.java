@@ -4,7 +4,7 @@ import org.antlr.v4.runtime.ParserRuleContext;
 
 import edu.joshuacrotts.littlec.icode.ICInhAttr;
 import edu.joshuacrotts.littlec.icode.ICode;
-import edu.joshuacrotts.littlec.main.LCUtilities;
+import edu.joshuacrotts.littlec.main.LCType;
 import edu.joshuacrotts.littlec.main.SymbolTable;
 
 public class LCUnaryOperatorNode extends LCSyntaxTree {
@@ -30,13 +30,13 @@ public class LCUnaryOperatorNode extends LCSyntaxTree {
    * @param rValType    - type of operator on the right side.
    * @param rvalue      - rvalue itself.
    */
-  public LCUnaryOperatorNode(ParserRuleContext ctx, SymbolTable symbolTable, String op, String rValType,
+  public LCUnaryOperatorNode(ParserRuleContext ctx, SymbolTable symbolTable, String op, LCType rValType,
       LCSyntaxTree rvalue) {
     super("UNARYOP(\'" + op + "\')", rValType);
     this.op = op;
     /* Handles the one operator that has to be an integer as specified above. */
-    if (LCUtilities.isCastable(rValType, "int") && op.equals("!")) {
-      LCTypeCastNode cast = new LCTypeCastNode(ctx, rvalue, "int");
+    if (rValType.isCastableTo(LCType.INT) && op.equals("!")) {
+      LCTypeCastNode cast = new LCTypeCastNode(ctx, rvalue, LCType.INT);
       this.addChild(cast);
       // Reset the type of this cast node to what we cast it to.
       this.setType(cast.getType());
@@ -57,7 +57,7 @@ public class LCUnaryOperatorNode extends LCSyntaxTree {
     super.isCalled = true;
 
     // E.addr = new Temp()
-    int dataWidth = LCUtilities.getDataWidth(this.getType());
+    int dataWidth = this.getType().getWidth();
     e.ADDR = ICode.getTopAR().addTemporaryVariable(dataWidth);
 
     // E1.
@@ -70,7 +70,7 @@ public class LCUnaryOperatorNode extends LCSyntaxTree {
       e1.FALSE = e.TRUE;
     }
 
-    this.getChildren().get(0).genCode(e1);
+    this.operand().genCode(e1);
 
     // E.code = e1.code
     e.CODE = e1.CODE;
@@ -81,7 +81,7 @@ public class LCUnaryOperatorNode extends LCSyntaxTree {
     // fine).
     if (op.equals("#")) {
       String addrOp = e1.ADDR.startsWith("p") ? "=" : "&";
-      ICode.quad.addLine(e.ADDR, e1.ADDR, addrOp);
+      ICode.getQuad().addLine(e.ADDR, e1.ADDR, addrOp);
       e1.ADDR = e.ADDR;
     }
 
@@ -90,11 +90,18 @@ public class LCUnaryOperatorNode extends LCSyntaxTree {
     //
     // However, if it's a FUNCTION CALL... we can put it.
     // This will result in a superfluous operator but it's fine.
-    if (this.getChildren().get(0) instanceof LCFunctionCallNode || !op.contains("!")) {
-      ICode.quad.addLine(e.ADDR, e1.ADDR, this.op);
+    if (this.operand() instanceof LCFunctionCallNode || !op.contains("!")) {
+      ICode.getQuad().addLine(e.ADDR, e1.ADDR, this.op);
     }
   }
 
+  /**
+   * @return the operand of the operator.
+   */
+  public LCSyntaxTree operand() {
+    return this.getChild(0);
+  }
+
   @Override
   public String toString() {
     return this.getType() + " " + this.getLabel();
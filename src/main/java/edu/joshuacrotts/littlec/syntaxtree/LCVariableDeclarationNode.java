@@ -5,6 +5,7 @@ import org.antlr.v4.runtime.ParserRuleContext;
 import edu.joshuacrotts.littlec.icode.ICInhAttr;
 import edu.joshuacrotts.littlec.icode.ICode;
 import edu.joshuacrotts.littlec.main.LCErrorListener;
+import edu.joshuacrotts.littlec.main.LCType;
 import edu.joshuacrotts.littlec.main.LCUtilities;
 import edu.joshuacrotts.littlec.main.StorageClass;
 import edu.joshuacrotts.littlec.main.SymbolEntry;
@@ -21,7 +22,7 @@ public class LCVariableDeclarationNode extends LCSyntaxTree {
   /** 
    * Type of variable that we're declaring. 
    */
-  private String varType;
+  private LCType varType;
 
   /** 
    * The literal value that we're assigning. Null if no lit. 
@@ -40,9 +41,9 @@ public class LCVariableDeclarationNode extends LCSyntaxTree {
    * @param storageClass - storage class of variable.
    * @param literalValue - object either of type int, char, or String.
    */
-  public LCVariableDeclarationNode(ParserRuleContext ctx, SymbolTable symbolTable, String id, String varType,
+  public LCVariableDeclarationNode(ParserRuleContext ctx, SymbolTable symbolTable, String id, LCType varType,
       StorageClass storageClass, Object literalValue) {
-    super("DECL", "void", id + " " + "(" + varType + ")" + (literalValue != null ? " = " + literalValue : ""));
+    super("DECL", LCType.VOID, id + " " + "(" + varType + ")" + (literalValue != null ? " = " + literalValue : ""));
     this.id = id;
     this.varType = varType;
     this.literalValue = literalValue;
@@ -81,31 +82,31 @@ public class LCVariableDeclarationNode extends LCSyntaxTree {
 
     // If we're in an array reference or declaration, we need to do something
     // different.
-    if (this.varType.endsWith("]")) {
-      String arrayType = LCUtilities.getArrayType(this.varType);
-      int arraySize = LCUtilities.getArraySize(this.varType);
-      int dataWidth = LCUtilities.getDataWidth(this.varType);
+    if (this.varType.isArray()) {
+      LCType arrayType = this.varType.getElementType();
+      int arraySize = this.varType.getArraySize();
+      int dataWidth = this.varType.getWidth();
 
       // Add array to global scope.
       if (ICode.getARStackSize() == 1) {
         String gLabel = ICode.getTopAR().addGlobalVariable(id, 0);
         String gLabelDecl = ".dw ";
         String arrayInitSizeLabel = this.getICLabel(arrayType) + " 0#" + arraySize;
-        ICode.quad.addLine(gLabel, gLabelDecl, Integer.toString(arraySize), "");
+        ICode.getQuad().addLine(gLabel, gLabelDecl, Integer.toString(arraySize), "");
 
         // If we have a char literal, then we need to add its declaration.
-        if (arrayType.equals("char") && this.literalValue != null) {
+        if (arrayType == LCType.CHAR && this.literalValue != null) {
           String lit = this.literalValue.toString();
           lit = LCUtilities.escapeString(lit.substring(1, lit.length() - 1));
           String byteChars = LCUtilities.getByteString(lit);
           int remainingChars = arraySize - lit.length() - 1;
-          ICode.quad.addLabel(byteChars);
+          ICode.getQuad().addLabel(byteChars);
           
           // If we have remaining chars, use the zero-padding operation.
           if (remainingChars > 0) 
-            ICode.quad.addLabel(".db 0#" + remainingChars);
+            ICode.getQuad().addLabel(".db 0#" + remainingChars);
         } else {
-          ICode.quad.addLabel(arrayInitSizeLabel);
+          ICode.getQuad().addLabel(arrayInitSizeLabel);
         }
 
         info.ADDR = gLabel;
@@ -113,27 +114,27 @@ public class LCVariableDeclarationNode extends LCSyntaxTree {
       // Add array to local scope.
       else {
         String lLabel = ICode.getTopAR().addLocalArray(id, 0, dataWidth);
-        int size = LCUtilities.getDataWidth(this.varType);
-        ICode.quad.addLine(lLabel, Integer.toString(arraySize), "", "setsize" + size);
+        int size = this.varType.getWidth();
+        ICode.getQuad().addLine(lLabel, Integer.toString(arraySize), "", "setsize" + size);
         info.ADDR = lLabel;
       }
     }
     // Otherwise, we insert the value as normal.
     else {
-      int dataWidth = LCUtilities.getDataWidth(this.varType);
+      int dataWidth = this.varType.getWidth();
       String lit = this.literalValue == null ? "0" : this.literalValue.toString();
 
       // Add array to global scope.
       if (ICode.getARStackSize() == 1) {
         String gLabel = ICode.getTopAR().addGlobalVariable(id, dataWidth);
         String gLabelDecl = this.getICLabel(this.varType);
-        ICode.quad.addLine(gLabel, gLabelDecl, lit.toString(), "");
+        ICode.getQuad().addLine(gLabel, gLabelDecl, lit.toString(), "");
         info.ADDR = gLabel;
       }
       // Add array to local scope.
       else {
         String lLabel = ICode.getTopAR().addLocalVariable(id, dataWidth);
-        ICode.quad.addLine(lLabel, lit, "=");
+        ICode.getQuad().addLine(lLabel, lit, "=");
         info.ADDR = lLabel;
       }
     }
@@ -144,13 +145,12 @@ public class LCVariableDeclarationNode extends LCSyntaxTree {
    * @param type
    * @return
    */
-  private String getICLabel(String type) {
-    switch (type) {
-    case "int":
+  private String getICLabel(LCType type) {
+    if (type == LCType.INT) {
       return ".dw";
-    case "float":
+    } else if (type == LCType.FLOAT) {
       return ".df";
-    case "char":
+    } else if (type == LCType.CHAR) {
       return ".db";
     }
     return null;
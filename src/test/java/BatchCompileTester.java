@@ -0,0 +1,172 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import edu.joshuacrotts.littlec.exec.BatchCompile;
+import edu.joshuacrotts.littlec.exec.Launcher;
+import edu.joshuacrotts.littlec.main.CompilationContext;
+import edu.joshuacrotts.littlec.mipsinterp.MIPSInterp;
+
+/**
+ * Runs batch mode over scratch directories of test programs and checks what
+ * it writes next to each source, what it reports, and the status it exits
+ * with.
+ *
+ * @author Joshua Crotts
+ */
+public class BatchCompileTester {
+
+  /** What a batch run printed and the status it returned. */
+  private static class Run {
+    private int status;
+    private String out;
+    private String err;
+  }
+
+  /**
+   * Runs the Launcher's batch mode with captured streams.
+   *
+   * @param args arguments after "-batch".
+   *
+   * @return what happened.
+   */
+  private static Run batch(String... args) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    CompilationContext context = new CompilationContext();
+    context.setStreams(new ByteArrayInputStream(new byte[0]), new PrintStream(out, true), new PrintStream(err, true));
+
+    String[] argv = new String[args.length + 1];
+    argv[0] = "-batch";
+    System.arraycopy(args, 0, argv, 1, args.length);
+
+    Run run = new Run();
+    run.status = Launcher.run(argv, context);
+    run.out = out.toString();
+    run.err = err.toString();
+    return run;
+  }
+
+  /**
+   * Copies a test program into a directory as a .lc file.
+   *
+   * @param testName base name of the test case in the tests directory.
+   * @param target   file to create.
+   */
+  private static void copyTest(String testName, Path target) throws IOException {
+    Files.createDirectories(target.getParent());
+    Files.copy(Paths.get("tests", testName + ".in"), target);
+  }
+
+  /**
+   * Runs an assembly file on the MIPS interpreter and checks it against a
+   * test case's expected output.
+   */
+  private static void assertRunsLike(String testName, Path asm) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new MIPSInterp(new String(Files.readAllBytes(asm))).run(new ByteArrayInputStream(new byte[0]),
+        new PrintStream(out, true));
+    String[] expected = Files.readAllLines(Paths.get("tests", testName + ".out")).toArray(new String[0]);
+    assertArrayEquals(expected, out.toString().split("\\r?\\n"), asm + " differs");
+  }
+
+  @Test
+  @ResourceLock(CompilationContextTester.SETTINGS)
+  public void failureDoesNotStopTheOthers(@TempDir Path dir) throws IOException {
+    copyTest("test3a", dir.resolve("a.lc"));
+    copyTest("bad1a", dir.resolve("b.lc"));
+    copyTest("test3b", dir.resolve("sub").resolve("c.lc"));
+
+    Run run = batch(dir.toString(), "-pa");
+    assertEquals(BatchCompile.EXIT_FAILED, run.status);
+    assertTrue(run.out.contains("3 files, 1 failed"), run.out);
+    assertTrue(run.out.contains(dir.resolve("b.lc") + ": "), run.out);
+
+    // Each file that compiled gets its own output, next to its source.
+    assertRunsLike("test3a", dir.resolve("a.s"));
+    assertRunsLike("test3b", dir.resolve("sub").resolve("c.s"));
+    assertFalse(Files.exists(dir.resolve("b.s")));
+  }
+
+  @Test
+  @ResourceLock(CompilationContextTester.SETTINGS)
+  public void intermediateCode(@TempDir Path dir) throws IOException {
+    copyTest("test3a", dir.resolve("a.lc"));
+    copyTest("test3c", dir.resolve("c.lc"));
+    Files.write(dir.resolve("notes.txt"), "not a LittleC file".getBytes());
+
+    Run run = batch("-pi", dir.toString());
+    assertEquals(BatchCompile.EXIT_OK, run.status);
+    assertTrue(run.out.contains("2 files, 0 failed"), run.out);
+    assertEquals("", run.err);
+    assertTrue(new String(Files.readAllBytes(dir.resolve("a.ic"))).contains("gf_main: .fnStart"));
+    assertTrue(new String(Files.readAllBytes(dir.resolve("c.ic"))).contains("gf_main: .fnStart"));
+    assertFalse(Files.exists(dir.resolve("a.s")));
+  }
+
+  @Test
+  @ResourceLock(CompilationContextTester.SETTINGS)
+  public void crashDoesNotStopTheOthers(@TempDir Path dir) throws IOException {
+    // Nested deeply enough that compiling it runs out of stack.
+    int depth = 50000;
+    StringBuilder nested = new StringBuilder("void main() {\n  int x;\n  x = ");
+    for (int i = 0; i < depth; i++) {
+      nested.append('(');
+    }
+    nested.append('1');
+    for (int i = 0; i < depth; i++) {
+      nested.append(')');
+    }
+    nested.append(";\n}\n");
+    Files.write(dir.resolve("deep.lc"), nested.toString().getBytes());
+    copyTest("test3a", dir.resolve("a.lc"));
+
+    // Outputs left over from an earlier run, which the failures must not keep.
+    Files.write(dir.resolve("deep.s"), "stale".getBytes());
+    copyTest("bad1a", dir.resolve("b.lc"));
+    Files.write(dir.resolve("b.s"), "stale".getBytes());
+
+    Run run = batch(dir.toString(), "-pa");
+    assertEquals(BatchCompile.EXIT_INTERNAL_ERROR, run.status);
+    assertTrue(run.out.contains("3 files, 2 failed"), run.out);
+    assertTrue(run.out.contains(dir.resolve("deep.lc") + ": internal compiler error: java.lang.StackOverflowError"),
+        run.out);
+    assertRunsLike("test3a", dir.resolve("a.s"));
+    assertFalse(Files.exists(dir.resolve("deep.s")));
+    assertFalse(Files.exists(dir.resolve("b.s")));
+  }
+
+  @Test
+  public void unusableArguments(@TempDir Path dir) {
+    Run noDir = batch("-pa");
+    assertEquals(BatchCompile.EXIT_USAGE, noDir.status);
+    assertTrue(noDir.err.contains("exactly one directory"), noDir.err);
+
+    assertEquals(BatchCompile.EXIT_USAGE, batch(dir.toString(), dir.toString()).status);
+
+    Run missing = batch(dir.resolve("missing").toString());
+    assertEquals(BatchCompile.EXIT_USAGE, missing.status);
+    assertTrue(missing.err.contains("Could not read directory"), missing.err);
+  }
+
+  @Test
+  @ResourceLock(CompilationContextTester.SETTINGS)
+  public void emptyDirectory(@TempDir Path dir) {
+    Run run = batch(dir.toString());
+    assertEquals(BatchCompile.EXIT_OK, run.status);
+    assertTrue(run.out.contains("0 files, 0 failed"), run.out);
+  }
+}
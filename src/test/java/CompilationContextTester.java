@@ -0,0 +1,191 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import edu.joshuacrotts.littlec.exec.CompilerHarness;
+import edu.joshuacrotts.littlec.icode.ICOptimizer;
+import edu.joshuacrotts.littlec.main.CompilationContext;
+import edu.joshuacrotts.littlec.main.CompilerPipeline;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.Phase;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.Unit;
+import edu.joshuacrotts.littlec.main.LCErrorListener;
+import edu.joshuacrotts.littlec.mipsgen.MIPSFunction;
+
+/**
+ * Checks that compilations in separate CompilationContexts don't interfere:
+ * the whole tests directory is compiled serially, then several times over on
+ * a pool of threads, and every parallel result must match the serial one. Also
+ * checks that generating functions in parallel gives the same assembly as
+ * generating them one at a time, and that a run's output goes to the streams
+ * it was given without the JVM's own standard streams being touched.
+ *
+ * @author Joshua Crotts
+ */
+public class CompilationContextTester {
+
+  /** Number of threads compiling at once. */
+  private static final int THREADS = 16;
+
+  /** Number of times each file is compiled in the parallel run. */
+  private static final int ROUNDS = 4;
+
+  /**
+   * Lock held by tests that change the run-wide compiler settings. Tests whose
+   * output those settings change, such as the frame layout dump, hold it for
+   * reading.
+   */
+  static final String SETTINGS = "littlec.settings";
+
+  /**
+   * Compiles one file in a fresh context.
+   *
+   * @param fileName    - LittleC source file.
+   * @param parallelism - number of functions to generate at once.
+   *
+   * @return the intermediate code followed by the assembly, or a marker if the
+   *         file has errors. A compiler crash is thrown, failing the test.
+   */
+  private static String compile(String fileName, int parallelism) {
+    CompilationContext context = new CompilationContext();
+    context.setOptimizationLevel(ICOptimizer.DEFAULT_OPTIMIZATION_LEVEL);
+    context.setParallelism(parallelism);
+    CompilationContext.Binding binding = context.bind();
+    try {
+      Unit unit = new CompilerPipeline(context).setReportingErrors(false).runFile(fileName, Phase.BACKEND);
+      if (unit == null || LCErrorListener.sawError()) {
+        return "ERRORS";
+      }
+
+      return unit.getICode().toString() + unit.getMIPSGen().toString();
+    } finally {
+      binding.unbind();
+    }
+  }
+
+  /**
+   * @return every test program, sorted by name.
+   */
+  private static List<String> getTestFiles() {
+    List<String> files = new ArrayList<>();
+    try (DirectoryStream<Path> dir = Files.newDirectoryStream(Paths.get("tests"), "*.in")) {
+      for (Path p : dir) {
+        files.add(p.toString());
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not list the tests directory", e);
+    }
+    files.sort(null);
+    assertFalse(files.isEmpty(), "No test programs found");
+    return files;
+  }
+
+  @Test
+  public void parallelCodeGenerationMatchesSerial() {
+    for (String file : getTestFiles()) {
+      assertEquals(compile(file, 1), compile(file, THREADS), "Parallel code generation differs for " + file);
+    }
+  }
+
+  @Test
+  public void parallelCompilesMatchSerial() throws Exception {
+    List<String> files = getTestFiles();
+    Map<String, String> serial = new LinkedHashMap<>();
+    for (String file : files) {
+      serial.put(file, compile(file, 1));
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<String> order = new ArrayList<>();
+      List<Future<String>> results = new ArrayList<>();
+      // Each round asks for a different number of code generation threads, so
+      // compilations sharing the code generator's pool want different numbers
+      // at the same time.
+      for (int round = 0; round < ROUNDS; round++) {
+        int parallelism = round + 1;
+        for (String file : files) {
+          order.add(file);
+          results.add(pool.submit(() -> compile(file, parallelism)));
+        }
+      }
+
+      for (int i = 0; i < results.size(); i++) {
+        String file = order.get(i);
+        assertEquals(serial.get(file), results.get(i).get(), "Parallel output differs for " + file);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  @ResourceLock(SETTINGS)
+  public void harnessKeepsToItsOwnStreams() {
+    PrintStream stdout = System.out, stderr = System.err;
+    InputStream stdin = System.in;
+    try {
+      // Functions are generated on the code generator's pool; their frame
+      // layouts still have to end up on the run's stderr.
+      MIPSFunction.setDumpFrameLayouts(true);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+      CompilerHarness.run(CompilerHarness.Mode.ASM, "tests/test3k.in", new ByteArrayInputStream(new byte[0]), out, err);
+
+      assertTrue(out.toString().contains("gf_main:"), "Assembly didn't go to the run's stdout");
+      assertTrue(err.toString().contains("gf_main: "), "Frame layouts didn't go to the run's stderr");
+      assertFalse(out.toString().contains("$ra: "), "Frame layouts went to the run's stdout");
+    } finally {
+      MIPSFunction.setDumpFrameLayouts(false);
+    }
+
+    assertSame(stdout, System.out);
+    assertSame(stderr, System.err);
+    assertSame(stdin, System.in);
+  }
+
+  @Test
+  public void unboundThreadHasNoContext() throws Exception {
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      pool.submit(() -> {
+        assertThrows(IllegalStateException.class, CompilationContext::current);
+
+        CompilationContext outer = new CompilationContext();
+        CompilationContext inner = new CompilationContext();
+        CompilationContext.Binding outerBinding = outer.bind();
+        CompilationContext.Binding innerBinding = inner.bind();
+        assertSame(inner, CompilationContext.current());
+        innerBinding.unbind();
+        assertSame(outer, CompilationContext.current());
+        outerBinding.unbind();
+
+        assertThrows(IllegalStateException.class, CompilationContext::current);
+        assertThrows(IllegalStateException.class, LCErrorListener::sawError);
+      }).get();
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,154 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import edu.joshuacrotts.littlec.exec.CompileDaemon;
+import edu.joshuacrotts.littlec.exec.DaemonClient;
+
+/**
+ * Runs the MIPS test programs through a CompileDaemon from several clients at
+ * once, at different optimization levels, and checks every result against the
+ * expected output, and checks that the daemon turns away requests without its
+ * token and never opens files for a client.
+ *
+ * @author Joshua Crotts
+ */
+public class CompileDaemonTester {
+
+  /** Number of clients talking to the daemon at once. */
+  private static final int CLIENTS = 8;
+
+  /** Optimization flags each program is run with. */
+  private static final String[] LEVELS = { "-O0", "-O1", "-O2" };
+
+  /**
+   * Runs a command on the daemon and captures stdout and stderr together, the
+   * way MIPSTester does.
+   *
+   * @param tokenDir - directory holding the token file.
+   * @param port     - daemon port.
+   * @param args     - Launcher command line.
+   *
+   * @return the output.
+   */
+  private static String send(Path tokenDir, int port, String... args) throws IOException {
+    ByteArrayOutputStream capture = new ByteArrayOutputStream();
+    DaemonClient.send(tokenDir, port, args, new ByteArrayInputStream(new byte[0]), capture, capture);
+    return capture.toString();
+  }
+
+  /**
+   * Runs one program on the daemon.
+   *
+   * @param tokenDir - directory holding the token file.
+   * @param port     - daemon port.
+   * @param level    - optimization flag.
+   * @param file     - LittleC source file.
+   *
+   * @return the output split into lines.
+   */
+  private static String[] run(Path tokenDir, int port, String level, String file) throws IOException {
+    return send(tokenDir, port, "-rm", level, file).split("\\r?\\n");
+  }
+
+  @Test
+  @ResourceLock(CompilationContextTester.SETTINGS)
+  public void concurrentRequestsMatchExpectedOutput(@TempDir Path tokenDir) throws Exception {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> dir = Files.newDirectoryStream(Paths.get("tests"), "test3*.in")) {
+      for (Path p : dir) {
+        files.add(p);
+      }
+    }
+    files.sort(null);
+    assertFalse(files.isEmpty(), "No test programs found");
+
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    try (CompileDaemon daemon = new CompileDaemon(0, System.out, tokenDir)) {
+      Thread server = new Thread(daemon::serve, "littlec-daemon");
+      server.start();
+
+      List<Path> order = new ArrayList<>();
+      List<Future<String[]>> results = new ArrayList<>();
+      for (String level : LEVELS) {
+        for (Path file : files) {
+          order.add(file);
+          results.add(clients.submit(() -> run(tokenDir, daemon.getPort(), level, file.toString())));
+        }
+      }
+
+      for (int i = 0; i < results.size(); i++) {
+        String in = order.get(i).toString();
+        Path expName = Paths.get(in.substring(0, in.length() - ".in".length()) + ".out");
+        String[] expected = Files.readAllLines(expName).toArray(new String[0]);
+        assertArrayEquals(expected, results.get(i).get(), "Daemon output differs for " + in);
+      }
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+
+  @Test
+  @ResourceLock(CompilationContextTester.SETTINGS)
+  public void tokenIsPrivateAndRequired(@TempDir Path tokenDir) throws IOException {
+    Path wrongDir = Files.createDirectory(tokenDir.resolve("wrong"));
+    try (CompileDaemon daemon = new CompileDaemon(0, System.out, tokenDir)) {
+      Thread server = new Thread(daemon::serve, "littlec-daemon");
+      server.start();
+      int port = daemon.getPort();
+
+      Path tokenFile = CompileDaemon.getTokenFile(tokenDir, port);
+      if (tokenDir.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile)));
+      }
+
+      // Neither a stop nor a compile gets through with the wrong token.
+      Files.write(CompileDaemon.getTokenFile(wrongDir, port), "not-the-token".getBytes());
+      assertTrue(send(wrongDir, port, "-stop").contains("token"));
+      String output = send(wrongDir, port, "-rm", "-o", "tests/test3a.in");
+      assertTrue(output.contains("token"), output);
+      assertFalse(output.contains("5050"), output);
+
+      assertTrue(server.isAlive(), "An unauthorized -stop stopped the daemon");
+      String[] expected = Files.readAllLines(Paths.get("tests/test3a.out")).toArray(new String[0]);
+      assertArrayEquals(expected, run(tokenDir, port, "-O1", "tests/test3a.in"));
+    }
+  }
+
+  @Test
+  @ResourceLock(CompilationContextTester.SETTINGS)
+  public void onlySourceFromTheClientIsCompiled(@TempDir Path tokenDir) throws IOException {
+    try (CompileDaemon daemon = new CompileDaemon(0, System.out, tokenDir)) {
+      Thread server = new Thread(daemon::serve, "littlec-daemon");
+      server.start();
+
+      // The client can't read this file, so only its name goes to the daemon.
+      String missing = tokenDir.resolve("missing.lc").toString();
+      String output = send(tokenDir, daemon.getPort(), "-rm", "-O1", missing);
+      assertTrue(output.contains(missing + " isn't a setting"), output);
+
+      // Nor can a second file ride along with the one that is sent.
+      output = send(tokenDir, daemon.getPort(), "-rm", "tests/test3b.in", "tests/test3a.in");
+      assertTrue(output.contains("tests/test3b.in isn't a setting"), output);
+    }
+  }
+}
@@ -0,0 +1,222 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CancellationException;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.junit.jupiter.api.Test;
+
+import edu.joshuacrotts.littlec.antlr4.LittleCLexer;
+import edu.joshuacrotts.littlec.antlr4.LittleCParser;
+import edu.joshuacrotts.littlec.icode.ICOptimizer;
+import edu.joshuacrotts.littlec.main.CompilationContext;
+import edu.joshuacrotts.littlec.main.CompilerPipeline;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.Hook;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.ParseCache;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.Phase;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.PhaseTimer;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.Unit;
+import edu.joshuacrotts.littlec.main.LCErrorListener;
+
+/**
+ * Checks that a CompilerPipeline runs the phases it's asked to, stops on
+ * errors, and calls its hooks for timing, caching and cancellation.
+ *
+ * @author Joshua Crotts
+ */
+public class CompilerPipelineTester {
+
+  /** A valid program. */
+  private static final String GOOD = "tests/good1e.in";
+
+  /** A program with errors. */
+  private static final String BAD = "tests/bad1a.in";
+
+  /**
+   * @return a quiet pipeline in a fresh context at the default optimization
+   *         level.
+   */
+  private static CompilerPipeline newPipeline() {
+    CompilationContext context = new CompilationContext();
+    context.setOptimizationLevel(ICOptimizer.DEFAULT_OPTIMIZATION_LEVEL);
+    return new CompilerPipeline(context).setReportingErrors(false);
+  }
+
+  /**
+   * Parses a file with full LL prediction only, the way every program was
+   * parsed before the SLL pass was added.
+   *
+   * @param fileName - LittleC source file.
+   * @param context  - compilation whose listener gets the syntax errors.
+   *
+   * @return the parse tree, printed in LISP form.
+   */
+  private static String parseWithFullLL(String fileName, CompilationContext context) throws IOException {
+    LittleCLexer lexer = new LittleCLexer(CharStreams.fromFileName(fileName));
+    lexer.removeErrorListeners();
+    LittleCParser parser = new LittleCParser(new CommonTokenStream(lexer));
+    parser.removeErrorListeners();
+    parser.addErrorListener(context.getErrorListener());
+    parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+    return parser.program().toStringTree(parser);
+  }
+
+  /**
+   * @param context - a finished compilation.
+   *
+   * @return the errors it saw, as printErrors would print them.
+   */
+  private static String getErrorReport(CompilationContext context) {
+    CompilationContext.Binding binding = context.bind();
+    try {
+      return LCErrorListener.getErrorReport();
+    } finally {
+      binding.unbind();
+    }
+  }
+
+  @Test
+  public void stopsAfterTheLastPhaseAskedFor() {
+    Unit unit = newPipeline().runFile(GOOD, Phase.ICODE);
+    assertEquals(Phase.ICODE, unit.getLastPhase());
+    assertNotNull(unit.getSyntaxTree());
+    assertNotNull(unit.getICode());
+    assertNull(unit.getMIPSGen());
+  }
+
+  @Test
+  public void stopsAfterSemanticOnErrors() {
+    Unit unit = newPipeline().runFile(BAD, Phase.BACKEND);
+    assertEquals(Phase.SEMANTIC, unit.getLastPhase());
+    assertNull(unit.getSyntaxTree());
+    assertNull(unit.getICode());
+  }
+
+  @Test
+  public void optimizePhaseMatchesOptimizingICode() {
+    String separate = newPipeline().runFile(GOOD, Phase.OPTIMIZE).getICode().toString();
+    Unit unoptimized = newPipeline().runFile(GOOD, Phase.ICODE);
+    unoptimized.getICode().optimize();
+    assertEquals(separate, unoptimized.getICode().toString());
+  }
+
+  @Test
+  public void timerSeesEveryPhase() {
+    PhaseTimer timer = new PhaseTimer();
+    newPipeline().addHook(timer).runFile(GOOD, Phase.BACKEND);
+    for (Phase phase : Phase.values()) {
+      assertTrue(timer.getTime(phase) > 0, phase + " wasn't timed");
+    }
+  }
+
+  @Test
+  public void cancelStopsBeforeTheNextPhase() {
+    CompilerPipeline pipeline = newPipeline();
+    pipeline.addHook(new Hook() {
+      @Override
+      public void after(Phase phase, Unit unit, long elapsed) {
+        if (phase == Phase.PARSE) {
+          pipeline.cancel();
+        }
+      }
+    });
+    assertThrows(CancellationException.class, () -> pipeline.runFile(GOOD, Phase.BACKEND));
+  }
+
+  @Test
+  public void parseCacheSkipsLexAndParse() {
+    ParseCache cache = new ParseCache(4);
+    String first = newPipeline().addHook(cache).runFile(GOOD, Phase.OPTIMIZE).getICode().toString();
+    assertEquals(1, cache.size());
+
+    PhaseTimer timer = new PhaseTimer();
+    Unit unit = newPipeline().addHook(cache).addHook(timer).runFile(GOOD, Phase.OPTIMIZE);
+    assertNull(unit.getTokens());
+    assertEquals(0, timer.getTime(Phase.LEX, Phase.PARSE));
+    assertEquals(first, unit.getICode().toString());
+  }
+
+  @Test
+  public void parseCacheHitRunsThroughHooks() {
+    ParseCache cache = new ParseCache(4);
+    String first = newPipeline().addHook(cache).runFile(GOOD, Phase.BACKEND).getMIPSGen().toString();
+
+    // A hook that looks at the unit after every phase, the way a tool built on
+    // the pipeline would, sees a parse tree but no tokens or parser.
+    StringBuilder seen = new StringBuilder();
+    Unit unit = newPipeline().addHook(cache).addHook(new Hook() {
+      @Override
+      public void after(Phase phase, Unit unit, long elapsed) {
+        assertNotNull(unit.getParseTree(), phase.toString());
+        assertNull(unit.getParser(), phase.toString());
+        assertNull(unit.getTokens(), phase.toString());
+        seen.append(phase).append(' ');
+      }
+    }).runFile(GOOD, Phase.BACKEND);
+
+    assertEquals("SEMANTIC ICODE OPTIMIZE BACKEND ", seen.toString());
+    assertNotNull(unit.getSyntaxTree());
+    assertEquals(first, unit.getMIPSGen().toString());
+  }
+
+  @Test
+  public void parseCacheSkipsProgramsWithSyntaxErrors() {
+    ParseCache cache = new ParseCache(4);
+    newPipeline().addHook(cache).runFile(BAD, Phase.BACKEND);
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void validProgramsParseWithSLLAlone() throws IOException {
+    try (DirectoryStream<Path> dir = Files.newDirectoryStream(Paths.get("tests"), "{good,test}*.in")) {
+      for (Path file : dir) {
+        Unit unit = newPipeline().runFile(file.toString(), Phase.PARSE);
+        LittleCParser parser = unit.getParser();
+        assertEquals(PredictionMode.SLL, parser.getInterpreter().getPredictionMode(), file + " fell back to LL");
+        assertFalse(unit.getContext().getErrorListener().hasError(), file + " has syntax errors");
+
+        // SLL is only worth it if it builds the same tree.
+        ParseTree tree = unit.getParseTree();
+        assertEquals(parseWithFullLL(file.toString(), new CompilationContext()), tree.toStringTree(parser),
+            file + " parsed differently");
+      }
+    }
+  }
+
+  @Test
+  public void syntaxErrorsFallBackToLL() throws IOException {
+    int fellBack = 0;
+    try (DirectoryStream<Path> dir = Files.newDirectoryStream(Paths.get("tests"), "bad*.in")) {
+      for (Path file : dir) {
+        Unit unit = newPipeline().runFile(file.toString(), Phase.PARSE);
+        if (unit.getParser().getInterpreter().getPredictionMode() != PredictionMode.LL) {
+          // Only a semantic error, which SLL parses like any valid program.
+          assertFalse(unit.getContext().getErrorListener().hasError(), file.toString());
+          continue;
+        }
+        fellBack++;
+
+        // The second try reports and recovers from errors exactly as full LL
+        // always did.
+        CompilationContext fullLL = new CompilationContext();
+        assertEquals(parseWithFullLL(file.toString(), fullLL), unit.getParseTree().toStringTree(unit.getParser()),
+            file + " recovered differently");
+        assertTrue(unit.getContext().getErrorListener().hasError(), file.toString());
+        assertEquals(getErrorReport(fullLL), getErrorReport(unit.getContext()), file + " reported differently");
+      }
+    }
+    assertTrue(fellBack > 0, "no test case has a syntax error");
+  }
+}
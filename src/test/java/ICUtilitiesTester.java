@@ -0,0 +1,49 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.joshuacrotts.littlec.icode.ICUtilities;
+
+/**
+ * Checks the address and instruction predicates against the patterns they
+ * stand for, on the kinds of fields the intermediate code is made of and on
+ * strings that almost look like them.
+ *
+ * @author Joshua Crotts
+ */
+public class ICUtilitiesTester {
+
+  /**
+   * Fields to check, including near misses of every pattern. Only ASCII digits
+   * count as digits, so some of these use an Arabic-Indic three.
+   */
+  private static final List<String> FIELDS = Arrays.asList("", "t", "t4", "t4_", "t4_1", "t4_123", "t1_7x", "tx_1",
+      "t4@1", "l4@8", "l1@0", "l4_8", "p4@12", "p0@4", "g4_count", "g1_c", "g4", "gx_c", "g4@c", "S0_1", "L1", "L1:",
+      "L12:", "L:", "Lx:", "L1:x", "goto L1", "0", "42", "-7", "-", "--1", "4-", "1a", "gf_main", "\u0663",
+      "t\u0663_1", "L\u0663:");
+
+  private static LinkedList<String> label(String res) {
+    return ICUtilities.newInstruction(res, "", "", "");
+  }
+
+  @Test
+  public void predicatesMatchTheirPatterns() {
+    for (String field : FIELDS) {
+      assertEquals(field.matches("[tlpg][0-9][_@].*"), ICUtilities.isVariable(field), "isVariable " + field);
+      assertEquals(field.matches("t[0-9]_[0-9]+"), ICUtilities.isTemp(field), "isTemp " + field);
+      assertEquals(field.matches("g[0-9]_.*"), ICUtilities.isGlobal(field), "isGlobal " + field);
+      assertEquals(field.matches("-?[0-9]+"), ICUtilities.isLiteral(field), "isLiteral " + field);
+      assertEquals(field.matches("L[0-9]+:"), ICUtilities.isLabel(label(field)), "isLabel " + field);
+    }
+  }
+
+  @Test
+  public void labelsHaveNoOperator() {
+    assertFalse(ICUtilities.isLabel(ICUtilities.newInstruction("L1:", "", "", "=")));
+  }
+}
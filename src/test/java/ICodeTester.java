@@ -1,17 +1,20 @@
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.opentest4j.AssertionFailedError;
 
-import edu.joshuacrotts.littlec.exec.RunCode;
-import edu.joshuacrotts.littlec.icode.ICode;
-import edu.joshuacrotts.littlec.main.LCErrorListener;
+import edu.joshuacrotts.littlec.exec.CompilerHarness;
+import edu.joshuacrotts.littlec.icode.ICOptimizer;
 
 /**
  * Testing file for intermediate code generation (phase 4 of the
@@ -24,33 +27,35 @@ import edu.joshuacrotts.littlec.main.LCErrorListener;
 
 public class ICodeTester {
   /**
-   * The testing engine. Compiles and runs input file using the RunCode class,
-   * capturing standard output to compare with the expected output. Non-matching
-   * (failed) tests could provide more useful output, but for now this will have
-   * to do.
+   * The testing engine. Compiles and runs input file through the RunCode mode
+   * of the CompilerHarness, capturing standard output to compare with the
+   * expected output. Each test gets its own streams and compiler state, so the
+   * tests can run in parallel. Non-matching (failed) tests could provide more
+   * useful output, but for now this will have to do.
    *
    * @param testName the base name of the test case; files are stored in the tests
    *                 project directory, with ".in" and ".out" extensions.
    */
   private static void runICTest(String testName) {
+    runICTest(testName, ICOptimizer.DEFAULT_OPTIMIZATION_LEVEL);
+  }
+
+  /**
+   * Runs a test case with the intermediate code optimized at the given level.
+   *
+   * @param testName          the base name of the test case.
+   * @param optimizationLevel level to optimize at (0 disables optimizations).
+   */
+  private static void runICTest(String testName, int optimizationLevel) {
     try {
       String inName = "tests/" + testName + ".in";
       String expName = "tests/" + testName + ".out";
 
-      PrintStream origOut = System.out;
-      PrintStream origErr = System.err;
       ByteArrayOutputStream captureOut = new ByteArrayOutputStream();
-      System.setOut(new PrintStream(captureOut));
-      System.setErr(new PrintStream(captureOut));
-      String[] args = new String[1];
-      args[0] = inName;
-      RunCode.main(args);
-      System.setErr(origErr);
-      System.setOut(origOut);
+      CompilerHarness.run(CompilerHarness.Mode.RUN_ICODE, inName, optimizationLevel,
+          new ByteArrayInputStream(new byte[0]), captureOut, captureOut);
       String[] actual = captureOut.toString().split("\\r?\\n");
       String[] expected = Files.readAllLines(Paths.get(expName)).toArray(new String[0]);
-
-      ICodeTester.cleanup();
       assertArrayEquals(expected, actual, "Files differ");
     } catch (IOException e) {
       throw new AssertionFailedError("Missing test case: " + testName);
@@ -58,15 +63,92 @@ public class ICodeTester {
   }
 
   /**
-   * Cleanup function. I originally used this with the @AfterEach tag, but because
-   * there are group tests that rely on a cleanup, I had to force this into a
-   * function and call it before the assertion in runICTest(...).
-   * 
-   * Removes the global [static] stack storage.
+   * Compiles a test case to intermediate code at the given level.
+   *
+   * @param testName          the base name of the test case.
+   * @param optimizationLevel level to optimize at (0 disables optimizations).
+   *
+   * @return the 3AC listing that follows the tables, one trimmed line per
+   *         instruction or label.
+   */
+  private static List<String> compileICode(String testName, int optimizationLevel) {
+    ByteArrayOutputStream captureOut = new ByteArrayOutputStream();
+    CompilerHarness.run(CompilerHarness.Mode.ICODE, "tests/" + testName + ".in", optimizationLevel,
+        new ByteArrayInputStream(new byte[0]), captureOut, captureOut);
+
+    List<String> listing = new ArrayList<>();
+    for (String line : captureOut.toString().split("\\r?\\n")) {
+      if (line.startsWith("---")) {
+        listing.clear();
+      } else if (!line.trim().isEmpty()) {
+        listing.add(line.trim());
+      }
+    }
+    return listing;
+  }
+
+  /**
+   * @param line 3AC line.
+   *
+   * @return the label a goto or conditional goto jumps to, or null if the line
+   *         isn't a jump.
    */
-  private static void cleanup() {
-    ICode.cleanup();
-    LCErrorListener.reset();
+  private static String jumpTarget(String line) {
+    int at = line.indexOf("goto ");
+    return at < 0 ? null : line.substring(at + 5).trim();
+  }
+
+  /**
+   * Counts the jumps whose target label is followed by an unconditional goto,
+   * so they could have jumped straight to the end of the chain.
+   */
+  private static int countChainedJumps(List<String> listing) {
+    int count = 0;
+    for (String line : listing) {
+      String target = jumpTarget(line);
+      if (target == null) {
+        continue;
+      }
+      int next = listing.indexOf(target + ":") + 1;
+      while (next < listing.size() && listing.get(next).endsWith(":")) {
+        next++;
+      }
+      if (next < listing.size() && listing.get(next).startsWith("goto ")) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Counts the conditional gotos that only skip over an unconditional goto,
+   * which could have been a single inverted branch.
+   */
+  private static int countBranchesOverJumps(List<String> listing) {
+    int count = 0;
+    for (int i = 0; i + 2 < listing.size(); i++) {
+      String line = listing.get(i);
+      if (line.startsWith("if ") && listing.get(i + 1).startsWith("goto ")
+          && listing.get(i + 2).equals(jumpTarget(line) + ":")) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Counts the instructions that directly follow a return, which nothing can
+   * reach.
+   */
+  private static int countDeadAfterReturn(List<String> listing) {
+    int count = 0;
+    for (int i = 0; i + 1 < listing.size(); i++) {
+      String next = listing.get(i + 1);
+      if (listing.get(i).startsWith("return") && !next.endsWith(":") && !next.equals(".fnEnd")) {
+        count++;
+      }
+    }
+    return count;
   }
 
   @Test
@@ -293,4 +375,104 @@ public class ICodeTester {
   public void myTest8() {
     runICTest("test_joshuacrotts_8");
   }
-}
\ No newline at end of file
+
+  @Test
+  public void myTest9() {
+    runICTest("test_joshuacrotts_9");
+  }
+
+  @Test
+  public void myTest9Unoptimized() {
+    runICTest("test_joshuacrotts_9", 0);
+  }
+
+  @Test
+  public void myTest9FullyOptimized() {
+    runICTest("test_joshuacrotts_9", 2);
+  }
+
+  @Test
+  public void myTest10() {
+    runICTest("test_joshuacrotts_10");
+  }
+
+  @Test
+  public void myTest11() {
+    runICTest("test_joshuacrotts_11");
+  }
+
+  @Test
+  public void myTest11Unoptimized() {
+    runICTest("test_joshuacrotts_11", 0);
+  }
+
+  @Test
+  public void myTest11FullyOptimized() {
+    runICTest("test_joshuacrotts_11", 2);
+  }
+
+  @Test
+  public void myTest12Unoptimized() {
+    runICTest("test_joshuacrotts_12", 0);
+  }
+
+  @Test
+  public void myTest12() {
+    runICTest("test_joshuacrotts_12");
+  }
+
+  @Test
+  public void myTest12FullyOptimized() {
+    runICTest("test_joshuacrotts_12", 2);
+  }
+
+  @Test
+  public void myTest13Unoptimized() {
+    runICTest("test_joshuacrotts_13", 0);
+  }
+
+  @Test
+  public void myTest13() {
+    runICTest("test_joshuacrotts_13");
+  }
+
+  @Test
+  public void myTest13FullyOptimized() {
+    runICTest("test_joshuacrotts_13", 2);
+  }
+
+  @Test
+  public void myTest14() {
+    runICTest("test_joshuacrotts_14");
+  }
+
+  @Test
+  public void myTest14Unoptimized() {
+    runICTest("test_joshuacrotts_14", 0);
+  }
+
+  @Test
+  public void myTest14FullyOptimized() {
+    runICTest("test_joshuacrotts_14", 2);
+  }
+
+  @Test
+  public void unoptimizedCodeHasJumpChains() {
+    // Make sure the test case has something for the optimizer to remove.
+    List<String> listing = compileICode("test_joshuacrotts_14", 0);
+    assertTrue(countChainedJumps(listing) > 0);
+    assertTrue(countBranchesOverJumps(listing) > 0);
+    assertTrue(countDeadAfterReturn(listing) > 0);
+  }
+
+  @Test
+  public void optimizedCodeHasNoJumpChains() {
+    for (int level = 1; level <= ICOptimizer.MAX_OPTIMIZATION_LEVEL; level++) {
+      List<String> listing = compileICode("test_joshuacrotts_14", level);
+      assertTrue(listing.contains(".fnEnd"), "no code at -O" + level);
+      assertEquals(0, countChainedJumps(listing), "chained jumps at -O" + level);
+      assertEquals(0, countBranchesOverJumps(listing), "branches over jumps at -O" + level);
+      assertEquals(0, countDeadAfterReturn(listing), "dead code after return at -O" + level);
+    }
+  }
+}
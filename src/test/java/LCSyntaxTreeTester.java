@@ -0,0 +1,73 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.joshuacrotts.littlec.main.LCType;
+import edu.joshuacrotts.littlec.syntaxtree.LCConstantLiteralNode;
+import edu.joshuacrotts.littlec.syntaxtree.LCIfStatementNode;
+import edu.joshuacrotts.littlec.syntaxtree.LCSyntaxTree;
+
+/**
+ * Checks that syntax tree nodes keep their children in order as they're added
+ * and removed, and that node accessors find the right children.
+ *
+ * @author Joshua Crotts
+ */
+public class LCSyntaxTreeTester {
+
+  /**
+   * @param n - number of children.
+   *
+   * @return a sequence node with n literal children, 0 through n - 1.
+   */
+  private static LCSyntaxTree newSequence(int n) {
+    LCSyntaxTree seq = new LCSyntaxTree();
+    for (int i = 0; i < n; i++) {
+      seq.addChild(new LCConstantLiteralNode(null, Integer.toString(i), LCType.INT));
+    }
+    return seq;
+  }
+
+  @Test
+  public void childrenStayInOrder() {
+    LCSyntaxTree seq = newSequence(100);
+    assertEquals(100, seq.getChildCount());
+    assertEquals(100, seq.getChildren().size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals(Integer.toString(i), seq.getChild(i).getInfo());
+    }
+    assertThrows(IndexOutOfBoundsException.class, () -> seq.getChild(100));
+  }
+
+  @Test
+  public void removeChildren() {
+    LCSyntaxTree seq = newSequence(5);
+    LCSyntaxTree middle = seq.getChild(2);
+    assertTrue(seq.removeChild(middle));
+    assertFalse(seq.removeChild(middle));
+    assertFalse(seq.removeChild(null));
+    assertEquals("3", seq.getChild(2).getInfo());
+
+    assertEquals("4", seq.removeLastChild().getInfo());
+    assertEquals(3, seq.getChildCount());
+    assertThrows(IndexOutOfBoundsException.class, () -> new LCSyntaxTree().removeLastChild());
+  }
+
+  @Test
+  public void ifAccessors() {
+    LCSyntaxTree cond = new LCSyntaxTree();
+    LCSyntaxTree thenBody = new LCSyntaxTree();
+    LCSyntaxTree elseBody = new LCSyntaxTree();
+
+    LCIfStatementNode ifElse = new LCIfStatementNode(null, cond, thenBody, elseBody);
+    assertSame(cond, ifElse.cond());
+    assertSame(thenBody, ifElse.thenBody());
+    assertSame(elseBody, ifElse.elseBody());
+    assertNull(new LCIfStatementNode(null, cond, thenBody, null).elseBody());
+  }
+}
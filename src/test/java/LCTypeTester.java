@@ -0,0 +1,84 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.jupiter.api.Test;
+
+import edu.joshuacrotts.littlec.main.LCType;
+
+/**
+ * Checks that LCTypes are interned, that array types nobody uses are let go,
+ * and that their widths, element types and casting rules match what the
+ * compiler expects of each spelling.
+ *
+ * @author Joshua Crotts
+ */
+public class LCTypeTester {
+
+  @Test
+  public void typesAreInterned() {
+    assertSame(LCType.INT, LCType.of("int"));
+    assertSame(LCType.CHAR_ARRAY, LCType.of("char[]"));
+    assertSame(LCType.of("int[10]"), LCType.of("int" + "[" + 10 + "]"));
+    assertSame(LCType.INT, LCType.of("int[10]").getElementType());
+  }
+
+  @Test
+  public void unusedArrayTypesAreCollected() throws InterruptedException {
+    WeakReference<LCType> array = new WeakReference<>(LCType.of("char[98765]"));
+    for (int i = 0; i < 100 && array.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(array.get(), "char[98765] is still held after it went out of use");
+
+    // The type is made again when it's next asked for, and the fixed types
+    // stay the same objects.
+    assertEquals(98765, LCType.of("char[98765]").getWidth());
+    assertSame(LCType.CHAR, LCType.of("char[98765]").getElementType());
+    assertSame(LCType.CHAR_ARRAY, LCType.of("char[]"));
+  }
+
+  @Test
+  public void widths() {
+    assertEquals(4, LCType.INT.getWidth());
+    assertEquals(1, LCType.CHAR.getWidth());
+    assertEquals(4, LCType.INT_ARRAY.getWidth());
+    assertEquals(4, LCType.CHAR_ARRAY.getWidth());
+    assertEquals(40, LCType.of("int[10]").getWidth());
+    assertEquals(10, LCType.of("char[10]").getWidth());
+    assertThrows(IllegalArgumentException.class, () -> LCType.VOID.getWidth());
+    assertThrows(IllegalArgumentException.class, () -> LCType.of("int[0x10]").getWidth());
+  }
+
+  @Test
+  public void arrays() {
+    assertTrue(LCType.of("char[5]").isArray());
+    assertTrue(LCType.of("char[5]").isArrayDeclaration());
+    assertFalse(LCType.CHAR_ARRAY.isArrayDeclaration());
+    assertFalse(LCType.INT.isArray());
+    assertEquals(5, LCType.of("char[5]").getArraySize());
+    assertThrows(IllegalArgumentException.class, () -> LCType.INT_ARRAY.getArraySize());
+    assertThrows(IllegalArgumentException.class, () -> LCType.INT.getElementType());
+  }
+
+  @Test
+  public void casting() {
+    assertTrue(LCType.CHAR.isCastableTo(LCType.INT));
+    assertTrue(LCType.FLOAT.isCastableTo(LCType.CHAR));
+    assertFalse(LCType.INT.isCastableTo(LCType.INT));
+    assertTrue(LCType.of("int[3]").isCastableTo(LCType.INT_ARRAY));
+    assertFalse(LCType.of("int[3]").isCastableTo(LCType.CHAR_ARRAY));
+    assertFalse(LCType.INT_ARRAY.isCastableTo(LCType.of("int[3]")));
+
+    assertTrue(LCType.CHAR.isUpCastableTo(LCType.FLOAT));
+    assertFalse(LCType.INT.isUpCastableTo(LCType.CHAR));
+    assertTrue(LCType.INT.isDownCastableTo(LCType.CHAR));
+    assertFalse(LCType.CHAR.isDownCastableTo(LCType.INT));
+  }
+}
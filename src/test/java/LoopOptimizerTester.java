@@ -0,0 +1,173 @@
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+
+import edu.joshuacrotts.littlec.icode.ICOptimizer;
+import edu.joshuacrotts.littlec.icode.LoopOptimizer;
+import edu.joshuacrotts.littlec.main.CompilationContext;
+import edu.joshuacrotts.littlec.main.CompilerPipeline;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.Phase;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.Unit;
+
+/**
+ * Pins down what loop-invariant code motion is allowed to move. Each test
+ * builds the 3AC of a while loop by hand, in the shape the optimizer sees it
+ * after jump threading, and checks which instructions end up in front of the
+ * loop header.
+ *
+ * @author Joshua Crotts
+ */
+public class LoopOptimizerTester {
+
+  /** Label of the loop header in every test body. */
+  private static final String HEADER = "L1:";
+
+  /** Number of loop nests in the large function. */
+  private static final int LARGE_FUNCTION_NESTS = 400;
+
+  /**
+   * Longest the large function may take to compile through optimization. It
+   * takes about two seconds on a cold JVM; rebuilding the control flow graph
+   * and rescanning the function for every loop took over ten.
+   */
+  private static final Duration LARGE_FUNCTION_BUDGET = Duration.ofSeconds(5);
+
+  /**
+   * Builds a function body from rows of the form "res|op1|op2|op".
+   *
+   * @param rows instructions, in order.
+   *
+   * @return the body.
+   */
+  private static ArrayList<LinkedList<String>> body(String... rows) {
+    ArrayList<LinkedList<String>> body = new ArrayList<>();
+    for (String row : rows) {
+      body.add(new LinkedList<>(Arrays.asList(row.split("\\|", -1))));
+    }
+    return body;
+  }
+
+  /**
+   * Wraps instructions in a loop that runs while l4@0 < p4@0, stepping l4@0 by
+   * one at the end of each iteration.
+   *
+   * @param rows instructions of the loop body.
+   *
+   * @return the function body.
+   */
+  private static ArrayList<LinkedList<String>> loop(String... rows) {
+    ArrayList<LinkedList<String>> body = body("l4@0|0||=", HEADER + "|||", "goto L3|l4@0|p4@0|if>=");
+    body.addAll(body(rows));
+    body.addAll(body("t4_90|l4@0|1|+", "l4@0|t4_90||=", "goto L1|||", "L3:|||"));
+    return body;
+  }
+
+  /**
+   * @return true if the instruction was moved in front of the loop header.
+   */
+  private static boolean isHoisted(ArrayList<LinkedList<String>> body, String row) {
+    int header = body.indexOf(body(HEADER + "|||").get(0));
+    int line = body.indexOf(body(row).get(0));
+    assertTrue(line >= 0, row + " is missing");
+    return line < header;
+  }
+
+  @Test
+  public void onlyTempsAreHoisted() {
+    ArrayList<LinkedList<String>> body = loop("t4_1|l4@4|5|*", "l4@8|l4@4|5|*", "g4_g|l4@4|5|*");
+    assertTrue(LoopOptimizer.hoistLoopInvariants(body));
+    assertTrue(isHoisted(body, "t4_1|l4@4|5|*"));
+    assertFalse(isHoisted(body, "l4@8|l4@4|5|*"));
+    assertFalse(isHoisted(body, "g4_g|l4@4|5|*"));
+  }
+
+  @Test
+  public void dependentTempsAreHoistedTogether() {
+    ArrayList<LinkedList<String>> body = loop("t4_1|l4@4|5|*", "t4_2|t4_1|1|+", "t4_3|t4_2|l4@0|+");
+    assertTrue(LoopOptimizer.hoistLoopInvariants(body));
+    assertTrue(isHoisted(body, "t4_1|l4@4|5|*"));
+    assertTrue(isHoisted(body, "t4_2|t4_1|1|+"));
+    assertFalse(isHoisted(body, "t4_3|t4_2|l4@0|+"));
+  }
+
+  @Test
+  public void divisionNeedsNonZeroLiteralDivisor() {
+    ArrayList<LinkedList<String>> body = loop("t4_1|l4@4|3|/", "t4_2|l4@4|3|%", "t4_3|l4@4|l4@8|/",
+        "t4_4|l4@4|l4@8|%", "t4_5|l4@4|0|/", "t4_6|l4@4|0|%");
+    assertTrue(LoopOptimizer.hoistLoopInvariants(body));
+    assertTrue(isHoisted(body, "t4_1|l4@4|3|/"));
+    assertTrue(isHoisted(body, "t4_2|l4@4|3|%"));
+    assertFalse(isHoisted(body, "t4_3|l4@4|l4@8|/"));
+    assertFalse(isHoisted(body, "t4_4|l4@4|l4@8|%"));
+    assertFalse(isHoisted(body, "t4_5|l4@4|0|/"));
+    assertFalse(isHoisted(body, "t4_6|l4@4|0|%"));
+  }
+
+  @Test
+  public void arraySizeNeedsBlockThatDominatesLatches() {
+    // The first read runs on every iteration; the second only when the branch
+    // falls through.
+    ArrayList<LinkedList<String>> body = loop("t4_1|p4@4||#", "|t4_1||param4", "|gf_printd|1|call",
+        "goto L5|l4@0|1|if<=", "t4_2|p4@8||#", "|t4_2||param4", "|gf_printd|1|call", "L5:|||");
+    assertTrue(LoopOptimizer.hoistLoopInvariants(body));
+    assertTrue(isHoisted(body, "t4_1|p4@4||#"));
+    assertFalse(isHoisted(body, "t4_2|p4@8||#"));
+  }
+
+  @Test
+  public void userCallsWriteGlobals() {
+    ArrayList<LinkedList<String>> runtimeCall = loop("t4_1|g4_g|3|*", "|t4_1||param4", "|gf_printd|1|call");
+    assertTrue(LoopOptimizer.hoistLoopInvariants(runtimeCall));
+    assertTrue(isHoisted(runtimeCall, "t4_1|g4_g|3|*"));
+
+    ArrayList<LinkedList<String>> userCall = loop("t4_1|g4_g|3|*", "|t4_1||param4", "|gf_printd|1|call",
+        "|gf_bump|0|call");
+    assertFalse(LoopOptimizer.hoistLoopInvariants(userCall));
+    assertFalse(isHoisted(userCall, "t4_1|g4_g|3|*"));
+
+    // The callee has no way to write a scalar local, so it stays invariant.
+    ArrayList<LinkedList<String>> local = loop("t4_1|l4@4|3|*", "|gf_bump|0|call");
+    assertTrue(LoopOptimizer.hoistLoopInvariants(local));
+    assertTrue(isHoisted(local, "t4_1|l4@4|3|*"));
+  }
+
+  @Test
+  public void zeroTripLoopKeepsValuesReadAfterIt() {
+    // t4_1 is computed past the exit test and read after the loop, so if the
+    // loop runs zero times the read has to see its old value.
+    ArrayList<LinkedList<String>> body = loop("t4_1|l4@4|5|*", "t4_2|l4@4|7|*");
+    body.add(0, body("t4_1|1||=").get(0));
+    body.addAll(body("|t4_1||param4", "|gf_printd|1|call"));
+    assertTrue(LoopOptimizer.hoistLoopInvariants(body));
+    assertFalse(isHoisted(body, "t4_1|l4@4|5|*"));
+    assertTrue(isHoisted(body, "t4_2|l4@4|7|*"));
+  }
+
+  @Test
+  public void largeFunctionOptimizesQuickly() {
+    StringBuilder program = new StringBuilder("int g;\nint a[64];\nvoid main() {\n  int i;\n  int j;\n  int s;\n"
+        + "  int b[32];\n  s = 0;\n");
+    for (int k = 0; k < LARGE_FUNCTION_NESTS; k++) {
+      program.append("  i = 0;\n  while (i < 10) {\n    j = 0;\n    while (j < 4) {\n")
+          .append("      b[j] = b[j] + g * ").append(k % 7 + 2).append(" + i * 4;\n")
+          .append("      s = s + a[i] * ").append(k % 5 + 1).append(" + g / 3;\n")
+          .append("      j = j + 1;\n    }\n    i = i + 1;\n  }\n");
+    }
+    program.append("  printd(s);\n}\n");
+
+    CompilationContext context = new CompilationContext();
+    context.setOptimizationLevel(ICOptimizer.MAX_OPTIMIZATION_LEVEL);
+    Unit unit = assertTimeoutPreemptively(LARGE_FUNCTION_BUDGET, () -> new CompilerPipeline(context)
+        .setReportingErrors(false).run(CharStreams.fromString(program.toString()), Phase.OPTIMIZE));
+    assertNotNull(unit.getICode());
+  }
+}
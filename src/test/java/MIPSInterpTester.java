@@ -0,0 +1,227 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import edu.joshuacrotts.littlec.mipsgen.MIPSReg;
+import edu.joshuacrotts.littlec.mipsinterp.MIPSAssembler;
+import edu.joshuacrotts.littlec.mipsinterp.MIPSInterp;
+
+/**
+ * Checks the assembler and the MIPS interpreter on small hand-written
+ * programs: every syscall the runtime header uses, the data directives, branch
+ * and jump decoding, and the errors both report. Also checks that each
+ * runtime routine leaves alone every register the allocator may keep live
+ * across a call to it.
+ *
+ * @author Joshua Crotts
+ */
+public class MIPSInterpTester {
+
+  /**
+   * Assembles and runs a program.
+   *
+   * @param asm   assembly text, one instruction or directive per line.
+   * @param input what the read syscalls see.
+   *
+   * @return everything the program printed.
+   */
+  private static String run(String asm, String input) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new MIPSInterp(asm).run(new ByteArrayInputStream(input.getBytes()), new PrintStream(out));
+    return out.toString();
+  }
+
+  private static String run(String asm) {
+    return run(asm, "");
+  }
+
+  /**
+   * @param lines instructions of main, which returns after the last one.
+   *
+   * @return a program whose main runs the given lines.
+   */
+  private static String main(String... lines) {
+    return ".text\nmain:\n" + String.join("\n", lines) + "\njr $ra\n";
+  }
+
+  /**
+   * Checks that running a program faults with a message containing the given
+   * text.
+   */
+  private static void assertFaults(String asm, String message) {
+    IllegalStateException e = assertThrows(IllegalStateException.class, () -> run(asm));
+    assertTrue(e.getMessage().contains(message), e.getMessage());
+  }
+
+  /**
+   * Checks that assembling a program fails with a message containing the
+   * given text.
+   */
+  private static void assertRejected(String asm, String message) {
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> MIPSAssembler.assemble(asm));
+    assertTrue(e.getMessage().contains(message), e.getMessage());
+  }
+
+  @Test
+  public void printSyscalls() {
+    assertEquals("-42", run(main("li $a0, -42", "li $v0, 1", "syscall")));
+    assertEquals("Z", run(main("li $a0, 90", "li $v0, 11", "syscall")));
+    // Nothing ever loads $f12, so print float always sees zero.
+    assertEquals("0.0", run(main("li $v0, 2", "syscall")));
+    assertEquals("hi", run(".data\nmsg: .asciiz \"hi\"\n" + main("la $a0, msg", "li $v0, 4", "syscall")));
+  }
+
+  @Test
+  public void readSyscalls() {
+    String echoInt = main("li $v0, 5", "syscall", "move $a0, $v0", "li $v0, 1", "syscall");
+    assertEquals("123", run(echoInt, " 123 \n"));
+    assertEquals("0", run(echoInt, "abc\n"));
+    assertEquals("0", run(echoInt, ""));
+
+    String echoChar = main("li $v0, 12", "syscall", "move $a0, $v0", "li $v0, 1", "syscall");
+    assertEquals("65", run(echoChar, "A"));
+    assertEquals("-1", run(echoChar, ""));
+  }
+
+  @Test
+  public void readStringSyscall() {
+    // Reads at most seven characters into the eight-byte buffer, then prints
+    // it and the next character read.
+    String asm = ".data\nbuf: .space 8\n" + main("la $a0, buf", "li $a1, 8", "li $v0, 8", "syscall", "li $v0, 4",
+        "syscall", "li $v0, 12", "syscall", "move $a0, $v0", "li $v0, 11", "syscall");
+    assertEquals("hello wo", run(asm, "hello world\n"));
+    assertEquals("hi\nx", run(asm, "hi\nx"));
+  }
+
+  @Test
+  public void exitSyscall() {
+    assertEquals("1", run(main("li $a0, 1", "li $v0, 1", "syscall", "li $v0, 10", "syscall", "li $v0, 1",
+        "syscall")));
+  }
+
+  @Test
+  public void unknownSyscall() {
+    assertFaults(main("li $a0, 7", "li $v0, 1", "syscall", "li $v0, 9", "syscall"), "unsupported syscall 9");
+  }
+
+  @Test
+  public void loadDoubleword() {
+    String asm = ".data\npair: .word 7, -3\n" + main("la $t0, pair", "ld $t2, 0($t0)", "move $a0, $t2", "li $v0, 1",
+        "syscall", "move $a0, $t3", "syscall");
+    assertEquals("7-3", run(asm));
+  }
+
+  @Test
+  public void spaceIsZeroed() {
+    String asm = ".data\nx: .space 5\ny: .byte 9\n" + main("la $t0, x", "la $t1, y", "sub $a0, $t1, $t0", "li $v0, 1",
+        "syscall", "lb $a0, 4($t0)", "syscall", "lb $a0, 0($t1)", "syscall");
+    assertEquals("509", run(asm));
+  }
+
+  @Test
+  public void align() {
+    // Labels before an .align are bound after the padding.
+    String asm = ".data\nc: .byte 1\nd: .align 3\n.byte 2\ne: .word 3\n" + main("la $t0, c", "la $t1, d",
+        "sub $a0, $t1, $t0", "li $v0, 1", "syscall", "la $t1, e", "sub $a0, $t1, $t0", "syscall");
+    assertEquals("812", run(asm));
+  }
+
+  @Test
+  public void asciizEscapes() {
+    String asm = ".data\ns: .asciiz \"a\\tb\\\\n\\\"#\\\"\\n\"\nt: .byte 'x'\n" + main("la $a0, s", "li $v0, 4",
+        "syscall", "la $t0, t", "la $t1, s", "sub $a0, $t0, $t1", "li $v0, 1", "syscall");
+    // Nine characters and the terminator.
+    assertEquals("a\tb\\n\"#\"\n10", run(asm));
+
+    String embeddedNul = ".data\ns: .asciiz \"ab\\0cd\"\n" + main("la $a0, s", "li $v0, 4", "syscall");
+    assertEquals("ab", run(embeddedNul));
+  }
+
+  @Test
+  public void branches() {
+    // Counts down from 5 with a compare-against-immediate loop, printing
+    // whether each value is even via a zero branch.
+    String asm = main("li $s0, 5", "loop:", "blt $s0, 1, done", "rem $t0, $s0, 2", "beqz $t0, even", "li $a0, 'o'",
+        "b print", "even:", "li $a0, 'e'", "print:", "li $v0, 11", "syscall", "sub $s0, $s0, 1", "j loop", "done:");
+    assertEquals("oeoeo", run(asm));
+
+    String registers = main("li $t0, 3", "li $t1, 4", "bge $t0, $t1, skip", "li $a0, 1", "li $v0, 1", "syscall",
+        "skip:", "bne $t0, 3, out", "li $a0, 2", "li $v0, 1", "syscall", "out:");
+    assertEquals("12", run(registers));
+  }
+
+  @Test
+  public void jumpsAndLinks() {
+    String asm = ".text\nmain:\nmove $s0, $ra\njal twice\nla $t0, twice\njalr $t0\nmove $a0, $v1\nli $v0, 1\nsyscall\n"
+        + "move $ra, $s0\njr $ra\ntwice: add $v1, $v1, 2\njr $ra\n";
+    assertEquals("4", run(asm));
+  }
+
+  @Test
+  public void memoryFaults() {
+    assertFaults(main("li $t0, 16", "lw $a0, 0($t0)"), "bad address 0x10");
+    assertFaults(".data\nw: .word 1\n" + main("la $t0, w", "lw $a0, 2($t0)"), "unaligned access");
+    assertFaults(main("li $t0, 0x1001", "jr $t0"), "jump to bad address 0x1001");
+    assertFaults(main("li $t0, 1", "div $a0, $t0, $zero"), "division by zero");
+  }
+
+  @Test
+  public void assemblyErrors() {
+    assertRejected(main("frob $t0, $t1"), "line 3: unsupported instruction frob");
+    assertRejected(main("add $t0, $t1"), "expected 3 operands but found 2");
+    assertRejected(main("move $t0, $q9"), "bad register $q9");
+    assertRejected(main("j nowhere"), "undefined label nowhere");
+    assertRejected(".data\nw: .word 1\n" + main("j w"), "label does not name an instruction");
+    assertRejected(main("x: nop", "x: nop"), "label x is defined more than once");
+    assertRejected(".text\n.word 1\n" + main(), "data directive .word in the text segment");
+    assertRejected(".data\n.float 1.0\n" + main(), "unsupported directive .float");
+    assertRejected(".text\nstart:\njr $ra\n", "Program has no main label");
+  }
+
+  @Test
+  public void runtimeRoutinesOnlyWriteTheirClobbers() {
+    String[] routines = { "gf_printd", "gf_printc", "gf_printf", "gf_prints", "gf_readline", "gf_read", "gf_readc" };
+    for (String routine : routines) {
+      Set<MIPSReg> clobbers = MIPSReg.getCallClobbers(routine);
+
+      // Give every register from $v0 to $t9 that the call may not write its
+      // own value, make the call, and check that the values survived. $k1
+      // says which register didn't.
+      StringBuilder asm = new StringBuilder(MIPSReg.stdFunctions());
+      asm.append(".data\nstr: .word 2\n.asciiz \"ok\"\nbuf: .word 8\n.space 8\nmsg: .asciiz \"clobbered \"\n");
+      asm.append(".text\ngf_main:\n");
+      for (int n = 2; n <= 25; n++) {
+        if (!clobbers.contains(MIPSReg.allReg().get(n))) {
+          asm.append("li ").append(MIPSReg.allReg().get(n)).append(", ").append(1000 + n).append("\n");
+        }
+      }
+      if (clobbers.contains(MIPSReg.aReg(0))) {
+        asm.append(routine.equals("gf_prints") ? "la $a0, str\n" : "la $a0, buf\n");
+      }
+      asm.append("jal ").append(routine).append("\n");
+      for (int n = 2; n <= 25; n++) {
+        if (!clobbers.contains(MIPSReg.allReg().get(n))) {
+          asm.append("li $k1, ").append(n).append("\nli $k0, ").append(1000 + n).append("\nbne ")
+              .append(MIPSReg.allReg().get(n)).append(", $k0, fail\n");
+        }
+      }
+      asm.append("li $v0, 10\nsyscall\n");
+      asm.append("fail: la $a0, msg\nli $v0, 4\nsyscall\nmove $a0, $k1\nli $v0, 1\nsyscall\nli $v0, 10\nsyscall\n");
+
+      String output = run(asm.toString(), "7\nline\n");
+      assertFalse(output.contains("clobbered"), routine + ": " + output);
+    }
+
+    assertTrue(MIPSReg.getCallClobbers("gf_readline").contains(MIPSReg.aReg(1)));
+    assertTrue(MIPSReg.getCallClobbers("gf_prints").contains(MIPSReg.tReg(2)));
+    assertEquals(MIPSReg.callerSaved(), MIPSReg.getCallClobbers("gf_square"));
+  }
+}
@@ -1,8 +1,4 @@
-import edu.joshuacrotts.littlec.exec.ParserTest;
-import edu.joshuacrotts.littlec.icode.ICode;
-import edu.joshuacrotts.littlec.main.LCErrorListener;
-import edu.joshuacrotts.littlec.main.LCListener;
-import edu.joshuacrotts.littlec.syntaxtree.LCSyntaxTree;
+import edu.joshuacrotts.littlec.exec.CompilerHarness;
 
 import org.junit.jupiter.api.Test;
 import org.opentest4j.AssertionFailedError;
@@ -10,7 +6,6 @@ import org.opentest4j.AssertionFailedError;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Scanner;
@@ -101,10 +96,10 @@ public class ParserTester {
      * The testing engine for a valid LittleC program (which should parse and
      * produce a LCSyntaxTree). Both the input LittleC program and the expected
      * syntax tree output file must be provided as files with ".in" and ".out"
-     * extensions, respectively. Runs input file through the
-     * ParserTest.parseFromFile() method, gets the syntax tree and calls the
-     * user-written printSyntaxTree() method to get a text representation,
-     * which is matched token-by-token with the expected output.
+     * extensions, respectively. Runs input file through the syntax tree mode
+     * of the CompilerHarness, which prints the tree with the user-written
+     * printSyntaxTree() method, and matches that text token-by-token with the
+     * expected output.
      *
      * @param testName the base name of the test case; files are stored in the
      *                 tests project directory, with ".in" and ".out"
@@ -114,18 +109,12 @@ public class ParserTester {
         String inName = "tests/" + testName + ".in";
         String expName = "tests/" + testName + ".out";
 
-        PrintStream origOut = System.out;
-        PrintStream origErr = System.err;
-        ByteArrayOutputStream captureOut = new ByteArrayOutputStream();
-        System.setOut(new PrintStream(captureOut));
-        System.setErr(new PrintStream(captureOut));
-        LCListener parser = ParserTest.parseFromFile(inName);
-        if (parser == null)
+        if (!Files.isRegularFile(Paths.get(inName)))
             throw new AssertionFailedError("Failed reading test input file "+inName);
-        LCSyntaxTree syntaxTree = parser.getSyntaxTree();
-        syntaxTree.printSyntaxTree();
-        System.setErr(origErr);
-        System.setOut(origOut);
+
+        ByteArrayOutputStream captureOut = new ByteArrayOutputStream();
+        CompilerHarness.run(CompilerHarness.Mode.SYNTAX_TREE, inName,
+                new ByteArrayInputStream(new byte[0]), captureOut, captureOut);
         byte[] actual = captureOut.toByteArray();
 
         byte[] expected;
@@ -135,7 +124,6 @@ public class ParserTester {
             throw new AssertionFailedError("Missing expected output file " + expName);
         }
         compare(actual, expected);
-        ParserTester.cleanup();
     }
 
     /**
@@ -151,33 +139,14 @@ public class ParserTester {
     private static void errorFileTest(String testName) {
         String inName = "tests/" + testName + ".in";
 
-        PrintStream origOut = System.out;
-        PrintStream origErr = System.err;
-        ByteArrayOutputStream captureOut = new ByteArrayOutputStream();
-        System.setOut(new PrintStream(captureOut));
-        System.setErr(new PrintStream(captureOut));
-        LCListener parser = ParserTest.parseFromFile(inName);
-        if (parser == null)
+        if (!Files.isRegularFile(Paths.get(inName)))
             return;
 
-        LCSyntaxTree result = parser.getSyntaxTree();
-        System.setErr(origErr);
-        System.setOut(origOut);
-        if (result != null)
+        ByteArrayOutputStream captureOut = new ByteArrayOutputStream();
+        boolean sawError = CompilerHarness.run(CompilerHarness.Mode.SYNTAX_TREE, inName,
+                new ByteArrayInputStream(new byte[0]), captureOut, captureOut);
+        if (!sawError)
             throw new AssertionFailedError("Did not catch the error in input "+inName);
-        
-        ParserTester.cleanup();
-    }
-    
-    /**
-     * Cleanup function. I originally used this with the @AfterEach tag, but because
-     * there are group tests that rely on a cleanup, I had to force this into a
-     * function and call it before the assertion in runICTest(...).
-     * 
-     * Removes the errors.
-     */
-    private static void cleanup() {
-      LCErrorListener.reset();
     }
 
     /**
@@ -0,0 +1,186 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+
+import edu.joshuacrotts.littlec.main.CompilationContext;
+import edu.joshuacrotts.littlec.main.CompilerPipeline;
+import edu.joshuacrotts.littlec.main.CompilerPipeline.Phase;
+import edu.joshuacrotts.littlec.main.Environment;
+import edu.joshuacrotts.littlec.main.LCErrorListener;
+import edu.joshuacrotts.littlec.main.LCType;
+import edu.joshuacrotts.littlec.main.SymbolEntry;
+import edu.joshuacrotts.littlec.main.SymbolTable;
+import edu.joshuacrotts.littlec.main.SymbolType;
+
+/**
+ * Checks that the symbol table opens and closes scopes the way LittleC blocks
+ * do: inner declarations shadow outer ones until their scope closes, and a
+ * name is only a redeclaration within one scope. The same rules are then
+ * checked on whole programs through the semantic phase.
+ *
+ * @author Joshua Crotts
+ */
+public class SymbolTableTester {
+
+  private static SymbolEntry var(LCType type) {
+    return new SymbolEntry(SymbolType.VAR, type);
+  }
+
+  /**
+   * Runs a program through the semantic phase.
+   *
+   * @param program LittleC source.
+   *
+   * @return the error report, with the error count on its first line.
+   */
+  private static String semanticErrors(String program) {
+    CompilationContext context = new CompilationContext();
+    new CompilerPipeline(context).setReportingErrors(false).run(CharStreams.fromString(program), Phase.SEMANTIC);
+    CompilationContext.Binding binding = context.bind();
+    try {
+      return LCErrorListener.getErrorReport();
+    } finally {
+      binding.unbind();
+    }
+  }
+
+  @Test
+  public void innerScopeShadows() {
+    SymbolTable table = new SymbolTable();
+    table.addEnvironment();
+    SymbolEntry global = var(LCType.INT);
+    table.addSymbol("x", global);
+
+    table.addEnvironment();
+    assertTrue(table.hasSymbol("x"));
+    assertFalse(table.hasSymbolInCurrentEnvironment("x"));
+
+    SymbolEntry local = var(LCType.CHAR);
+    table.addSymbol("x", local);
+    assertTrue(table.hasSymbolInCurrentEnvironment("x"));
+    assertSame(local, table.getSymbolEntry("x"));
+
+    table.popEnvironment();
+    assertSame(global, table.getSymbolEntry("x"));
+    assertTrue(table.hasSymbolInCurrentEnvironment("x"));
+  }
+
+  @Test
+  public void shadowsUnwindOneScopeAtATime() {
+    SymbolTable table = new SymbolTable();
+    SymbolEntry[] entries = new SymbolEntry[5];
+    for (int depth = 0; depth < entries.length; depth++) {
+      table.addEnvironment();
+      entries[depth] = var(LCType.INT);
+      table.addSymbol("x", entries[depth]);
+      // Only every other scope declares y.
+      if (depth % 2 == 0) {
+        table.addSymbol("y", entries[depth]);
+      }
+    }
+
+    for (int depth = entries.length - 1; depth > 0; depth--) {
+      assertSame(entries[depth], table.getSymbolEntry("x"));
+      assertSame(entries[depth - depth % 2], table.getSymbolEntry("y"));
+      table.popEnvironment();
+    }
+    assertSame(entries[0], table.getSymbolEntry("x"));
+    assertSame(entries[0], table.getSymbolEntry("y"));
+  }
+
+  @Test
+  public void symbolGoesOutOfScope() {
+    SymbolTable table = new SymbolTable();
+    table.addEnvironment();
+    table.addEnvironment();
+    table.addSymbol("y", var(LCType.INT));
+    assertTrue(table.hasSymbol("y"));
+
+    table.popEnvironment();
+    assertFalse(table.hasSymbol("y"));
+    assertFalse(table.hasSymbolInCurrentEnvironment("y"));
+    assertNull(table.getSymbolEntry("y"));
+
+    // A later scope can declare it again from scratch.
+    table.addEnvironment();
+    assertFalse(table.hasSymbolInCurrentEnvironment("y"));
+    table.addSymbol("y", var(LCType.CHAR));
+    assertEquals(LCType.CHAR, table.getSymbolEntry("y").getVarType());
+  }
+
+  @Test
+  public void redeclaringInOneScopeReplaces() {
+    SymbolTable table = new SymbolTable();
+    table.addEnvironment();
+    table.addSymbol("x", var(LCType.INT));
+    table.addEnvironment();
+    table.addSymbol("x", var(LCType.INT));
+    SymbolEntry replacement = var(LCType.CHAR);
+    table.addSymbol("x", replacement);
+    assertSame(replacement, table.getSymbolEntry("x"));
+
+    // The replaced declaration shadowed nothing new, so one pop uncovers the
+    // global again.
+    table.popEnvironment();
+    assertEquals(LCType.INT, table.getSymbolEntry("x").getVarType());
+    table.popEnvironment();
+    assertFalse(table.hasSymbol("x"));
+  }
+
+  @Test
+  public void parametersOpenTheirOwnScope() {
+    SymbolTable table = new SymbolTable();
+    table.addEnvironment();
+    table.addSymbol("n", var(LCType.CHAR));
+
+    Environment params = new Environment();
+    params.addSymbol("n", var(LCType.INT));
+    params.addSymbol("a", var(LCType.INT_ARRAY));
+    table.addEnvironment(params);
+    assertTrue(table.hasSymbolInCurrentEnvironment("n"));
+    assertEquals(LCType.INT, table.getSymbolEntry("n").getVarType());
+    assertEquals(LCType.INT_ARRAY, table.getSymbolEntry("a").getVarType());
+
+    table.popEnvironment();
+    assertEquals(LCType.CHAR, table.getSymbolEntry("n").getVarType());
+    assertFalse(table.hasSymbol("a"));
+  }
+
+  @Test
+  public void blocksShadowInPrograms() {
+    // The inner x is an array, so indexing it is fine only inside the block.
+    assertEquals("ERRORS(0):\n", semanticErrors("int x;\nvoid main() {\n  int y;\n  {\n    int x[3];\n"
+        + "    x[1] = 2;\n    {\n      char x;\n      x = 'a';\n    }\n    x[2] = 3;\n  }\n  x = 4;\n}\n"));
+
+    String report = semanticErrors("void main() {\n  int x;\n  {\n    int x[3];\n    x[0] = 1;\n  }\n"
+        + "  x[0] = 1;\n}\n");
+    assertTrue(report.startsWith("ERRORS(1):"), report);
+    assertTrue(report.contains("cannot treat non-array x as array."), report);
+  }
+
+  @Test
+  public void redeclarationInProgram() {
+    String report = semanticErrors("void main() {\n  int x;\n  char x;\n}\n");
+    assertTrue(report.startsWith("ERRORS(1):"), report);
+    assertTrue(report.contains("x has already been declared in this scope."), report);
+
+    report = semanticErrors("void f() {\n}\nvoid main() {\n  int f;\n}\n");
+    assertTrue(report.contains("f was previously declared as a function."), report);
+  }
+
+  @Test
+  public void outOfScopeInProgram() {
+    String report = semanticErrors("void main() {\n  {\n    int y;\n    y = 1;\n  }\n  y = 2;\n}\n");
+    assertTrue(report.startsWith("ERRORS(1):"), report);
+    assertTrue(report.contains("variable y is not previously declared."), report);
+
+    // Declaring it again in a later block is not a redeclaration.
+    assertEquals("ERRORS(0):\n", semanticErrors("void main() {\n  {\n    int y;\n    y = 1;\n  }\n  {\n"
+        + "    char y;\n    y = 'b';\n  }\n}\n"));
+  }
+}